@@ -4,21 +4,28 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import edu.cornell.cs.nlp.spf.base.string.IStringFilter;
 import edu.cornell.cs.nlp.spf.base.string.StubStringFilter;
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+import edu.cornell.cs.nlp.spf.base.token.TokenTrie;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexicon;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.IVersionedLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment;
@@ -33,6 +40,12 @@ import edu.cornell.cs.nlp.utils.log.LoggerFactory;
 /**
  * Factored lexicon. Added lexical entries are factored and stored decomposed to
  * lexemes and lexical templates. See Kwiatkowski et al. 2011 for details.
+ * Optionally, the lexicon caches the entries it generates for each sequence of
+ * tokens, so templates are not re-applied every time the tokens are looked up.
+ * Cached entries are invalidated when lexemes or templates that generate them
+ * are added or removed. Invalidation is tracked with a version for each
+ * sequence of tokens (see {@link IVersionedLexicon#getVersion(TokenSeq)}), so
+ * a modification only affects the cached entries of the tokens it changed.
  *
  * @author Yoav Artzi
  */
@@ -44,11 +57,29 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 
 	private static final long									serialVersionUID			= -9133601778066386561L;
 
+	/**
+	 * Cache the entries generated for each sequence of tokens.
+	 */
+	private final boolean										cacheEntries;
+
+	/**
+	 * Materialized entries, indexed by their tokens. Only used if
+	 * {@link #cacheEntries} is set, otherwise <code>null</code>.
+	 */
+	private transient ConcurrentHashMap<TokenSeq, List<FactoredLexicalEntry>>	entryCache;
+
 	/**
 	 * Lexemes are grouped by their strings, for quick indexing.
 	 */
 	private final Map<TokenSeq, Set<Lexeme>>					lexemes						= new HashMap<TokenSeq, Set<Lexeme>>();
 
+	/**
+	 * Trie index over the lexeme sets in {@link #lexemes}, to retrieve the
+	 * lexemes of all spans starting at a given token in a single walk.
+	 * Re-created when the lexicon is de-serialized.
+	 */
+	private transient TokenTrie<Set<Lexeme>>					lexemeTrie					= new TokenTrie<Set<Lexeme>>();
+
 	/**
 	 * Maintain all lexemes indexed by type for quick access given template.
 	 */
@@ -60,11 +91,32 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 	 */
 	private final Map<FactoringSignature, Set<LexicalTemplate>>	templates					= new HashMap<FactoringSignature, Set<LexicalTemplate>>();
 
+	/**
+	 * Modification version. Incremented with every modification.
+	 */
+	private transient AtomicLong								version						= new AtomicLong();
+
+	/**
+	 * The version in which the entries of each sequence of tokens were last
+	 * modified. Used to avoid caching entries that were generated concurrently
+	 * with a modification of the same tokens.
+	 */
+	private transient ConcurrentHashMap<TokenSeq, Long>			versions					= new ConcurrentHashMap<TokenSeq, Long>();
+
 	public FactoredLexicon() {
+		this(false);
+	}
+
+	public FactoredLexicon(boolean cacheEntries) {
+		this.cacheEntries = cacheEntries;
+		this.entryCache = cacheEntries
+				? new ConcurrentHashMap<TokenSeq, List<FactoredLexicalEntry>>()
+				: null;
 	}
 
 	public FactoredLexicon(Collection<Lexeme> lexemes,
 			Collection<LexicalTemplate> templates) {
+		this(false);
 		for (final Lexeme lexeme : lexemes) {
 			addLexeme(lexeme);
 		}
@@ -73,15 +125,25 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 		}
 	}
 
+	/**
+	 * Create the entry of a lexeme and a template given the category of
+	 * applying the template to the lexeme (e.g., when the application was
+	 * computed in advance).
+	 */
+	public static FactoredLexicalEntry createEntry(Lexeme lexeme,
+			LexicalTemplate template, Category<LogicalExpression> category) {
+		return new FactoredLexicalEntry(lexeme.getTokens(), category, lexeme,
+				template, false, MapUtils.merge(lexeme.getProperties(),
+						template.getProperties()));
+	}
+
 	private static FactoredLexicalEntry applyTemplate(LexicalTemplate template,
 			Lexeme lexeme) {
 		final Category<LogicalExpression> newCategory = template.apply(lexeme);
 		if (newCategory == null) {
 			return null;
 		}
-		return new FactoredLexicalEntry(lexeme.getTokens(), newCategory, lexeme,
-				template, false, MapUtils.merge(lexeme.getProperties(),
-						template.getProperties()));
+		return createEntry(lexeme, template, newCategory);
 	}
 
 	@Override
@@ -218,78 +280,58 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 			return Collections.emptyIterator();
 		}
 
-		// Create an iterator that iterates over all lexemes and for each lexeme
-		// iterates over all matching templates to generated lexical entries.
-		return new Iterator<FactoredLexicalEntry>() {
-			private Lexeme						currentLexeme		= null;
-			private FactoredLexicalEntry		nextEntry			= null;
-
-			private Iterator<LexicalTemplate>	templateIterator	= null;
-
-			final Iterator<Lexeme>				lexemeIterator		= tokenLexemes
-					.iterator();
-
-			@Override
-			public boolean hasNext() {
-				if (nextEntry == null) {
-					if (!loadNextEntry()) {
-						return false;
-					}
-				}
-				return true;
-			}
-
-			@Override
-			public FactoredLexicalEntry next() {
-				if (nextEntry == null) {
-					loadNextEntry();
-				}
-
-				final FactoredLexicalEntry next = nextEntry;
-				nextEntry = null;
-				return next;
-			}
+		return getEntryIterator(tokens, tokenLexemes);
+	}
 
-			@Override
-			public void remove() {
-				throw new UnsupportedOperationException();
-			}
+	/**
+	 * The current version of the lexicon. Increases with every modification.
+	 */
+	public long getVersion() {
+		return version.get();
+	}
 
-			private boolean loadNextEntry() {
-				do {
-					while (templateIterator != null
-							&& templateIterator.hasNext()) {
-						nextEntry = applyTemplate(templateIterator.next(),
-								currentLexeme);
-						if (nextEntry != null) {
-							return true;
-						}
-					}
-				} while (loadNextLexeme());
+	/**
+	 * The version in which the entries of the given token sequence were last
+	 * modified, or 0 if they were never modified.
+	 */
+	public long getVersion(TokenSeq tokens) {
+		final Long tokensVersion = versions.get(tokens);
+		return tokensVersion == null ? 0L : tokensVersion;
+	}
 
-				return false;
-			}
+	@Override
+	public List<Iterator<? extends LexicalEntry<LogicalExpression>>> getSpans(
+			TokenSeq tokens, int start) {
+		final int numSpans = tokens.size() - start;
+		final List<Iterator<? extends LexicalEntry<LogicalExpression>>> iterators = new ArrayList<Iterator<? extends LexicalEntry<LogicalExpression>>>(
+				numSpans);
+		for (int i = 0; i < numSpans; ++i) {
+			iterators.add(Collections.emptyIterator());
+		}
+		lexemeTrie.forEachPrefix(tokens, start,
+				(set, end) -> iterators.set(end - start - 1,
+						getEntryIterator(tokens.sub(start, end), set)));
+		return iterators;
+	}
 
-			/**
-			 * Assumes the current template iterator is exhausted, tries to load
-			 * the next lexeme, if available, and its template iterator.
-			 *
-			 * @return <code>false</code> if the iterator is completely
-			 *         exhausted, <code>true</code> otherwise.
-			 */
-			private boolean loadNextLexeme() {
-				while (lexemeIterator.hasNext()) {
-					currentLexeme = lexemeIterator.next();
-					final Set<LexicalTemplate> templateSet = templates
-							.get(currentLexeme.getSignature());
-					if (templateSet != null && !templateSet.isEmpty()) {
-						templateIterator = templateSet.iterator();
-						return true;
-					}
-				}
-				return false;
+	/**
+	 * Generate and cache the entries of all token sequences in the lexicon.
+	 * Useful to avoid the cost of generating entries during inference, when
+	 * the lexicon is not expected to change. Requires entry caching.
+	 */
+	public void materialize() {
+		if (!cacheEntries) {
+			throw new IllegalStateException(
+					"Entry caching is disabled, can't materialize");
+		}
+		for (final Entry<TokenSeq, Set<Lexeme>> entry : lexemes.entrySet()) {
+			if (!entryCache.containsKey(entry.getKey())) {
+				cacheEntries(entry.getKey(), entry.getValue());
 			}
-		};
+		}
+		LOG.info("Materialized lexicon: %d token sequences, %d entries",
+				entryCache.size(), entryCache.values().stream()
+						.mapToInt(List::size).sum());
 	}
 
 	@Override
@@ -307,6 +349,9 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 			// it doesn't include
 			final FactoredLexicon factoredLexicon = (FactoredLexicon) lexicon;
 			boolean somethingRemoved = false;
+			// Removing templates may affect any token sequence.
+			final List<TokenSeq> allTokens = new ArrayList<TokenSeq>(
+					lexemes.keySet());
 
 			// Remove lexemes from main lexemes mapping (log as needed).
 			final Iterator<Entry<TokenSeq, Set<Lexeme>>> lexemeIterator = lexemes
@@ -338,6 +383,7 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 						}
 					});
 					lexemeIterator.remove();
+					lexemeTrie.remove(lexemeEntry.getKey());
 					somethingRemoved = true;
 				}
 			}
@@ -399,6 +445,12 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 				}
 			}
 
+			if (somethingRemoved) {
+				for (final TokenSeq tokens : allTokens) {
+					invalidate(tokens);
+				}
+			}
+
 			return somethingRemoved;
 		} else {
 			return retainAll(lexicon.toCollection());
@@ -466,8 +518,9 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 	}
 
 	private boolean addLexeme(Lexeme lexeme) {
-		final Set<Lexeme> lexemeSet = lexemes
-				.computeIfAbsent(lexeme.getTokens(), tokens -> new HashSet<>());
+		final Set<Lexeme> lexemeSet = lexemes.computeIfAbsent(
+				lexeme.getTokens(), tokens -> lexemeTrie.computeIfAbsent(tokens,
+						t -> new HashSet<>()));
 		final boolean added;
 		try {
 			added = lexemeSet.add(lexeme);
@@ -483,6 +536,8 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 			final Set<Lexeme> typeSet = lexemesByType.computeIfAbsent(
 					typeSignature, signature -> new HashSet<>());
 			typeSet.add(lexeme);
+
+			invalidate(lexeme.getTokens());
 		}
 
 		return added;
@@ -491,7 +546,136 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 	private boolean addTemplate(LexicalTemplate template) {
 		final Set<LexicalTemplate> templateSet = templates.computeIfAbsent(
 				template.getSignature(), signture -> new HashSet<>());
-		return templateSet.add(template);
+		if (templateSet.add(template)) {
+			// Invalidate the entries of all lexemes that may be combined with
+			// the new template.
+			final Set<Lexeme> typeLexemes = lexemesByType
+					.get(template.getSignature());
+			if (typeLexemes != null) {
+				for (final Lexeme lexeme : typeLexemes) {
+					invalidate(lexeme.getTokens());
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Generate all entries for the given tokens and their lexemes, and cache
+	 * them. If the entries of the tokens were modified while the entries were
+	 * generated, they are not kept in the cache.
+	 */
+	private List<FactoredLexicalEntry> cacheEntries(TokenSeq tokens,
+			Set<Lexeme> lexemeSet) {
+		final long currentVersion = getVersion(tokens);
+		final List<FactoredLexicalEntry> entries = new ArrayList<FactoredLexicalEntry>();
+		final Iterator<FactoredLexicalEntry> iterator = createEntryIterator(
+				lexemeSet);
+		while (iterator.hasNext()) {
+			entries.add(iterator.next());
+		}
+		entryCache.put(tokens, entries);
+		if (getVersion(tokens) != currentVersion) {
+			entryCache.remove(tokens, entries);
+		}
+		return entries;
+	}
+
+	/**
+	 * Create an iterator over all entries generated from the given set of
+	 * lexemes.
+	 */
+	private Iterator<FactoredLexicalEntry> createEntryIterator(
+			Set<Lexeme> lexemeSet) {
+		// Create an iterator that iterates over all lexemes and for each lexeme
+		// iterates over all matching templates to generated lexical entries.
+		return new Iterator<FactoredLexicalEntry>() {
+			private Lexeme						currentLexeme		= null;
+			private FactoredLexicalEntry		nextEntry			= null;
+
+			private Iterator<LexicalTemplate>	templateIterator	= null;
+
+			final Iterator<Lexeme>				lexemeIterator		= lexemeSet
+					.iterator();
+
+			@Override
+			public boolean hasNext() {
+				if (nextEntry == null) {
+					if (!loadNextEntry()) {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			@Override
+			public FactoredLexicalEntry next() {
+				if (nextEntry == null) {
+					loadNextEntry();
+				}
+
+				final FactoredLexicalEntry next = nextEntry;
+				nextEntry = null;
+				return next;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			private boolean loadNextEntry() {
+				do {
+					while (templateIterator != null
+							&& templateIterator.hasNext()) {
+						nextEntry = applyTemplate(templateIterator.next(),
+								currentLexeme);
+						if (nextEntry != null) {
+							return true;
+						}
+					}
+				} while (loadNextLexeme());
+
+				return false;
+			}
+
+			/**
+			 * Assumes the current template iterator is exhausted, tries to load
+			 * the next lexeme, if available, and its template iterator.
+			 *
+			 * @return <code>false</code> if the iterator is completely
+			 *         exhausted, <code>true</code> otherwise.
+			 */
+			private boolean loadNextLexeme() {
+				while (lexemeIterator.hasNext()) {
+					currentLexeme = lexemeIterator.next();
+					final Set<LexicalTemplate> templateSet = templates
+							.get(currentLexeme.getSignature());
+					if (templateSet != null && !templateSet.isEmpty()) {
+						templateIterator = templateSet.iterator();
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get an iterator over the entries of the given tokens, which are
+	 * generated from the given set of lexemes. Uses the cache, if enabled.
+	 */
+	private Iterator<FactoredLexicalEntry> getEntryIterator(TokenSeq tokens,
+			Set<Lexeme> lexemeSet) {
+		if (!cacheEntries) {
+			return createEntryIterator(lexemeSet);
+		}
+		List<FactoredLexicalEntry> entries = entryCache.get(tokens);
+		if (entries == null) {
+			entries = cacheEntries(tokens, lexemeSet);
+		}
+		return Collections.unmodifiableList(entries).iterator();
 	}
 
 	/**
@@ -531,6 +715,31 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 		return entries;
 	}
 
+	/**
+	 * Create a new version for the entries of the given tokens and drop their
+	 * cached entries, if any.
+	 */
+	private void invalidate(TokenSeq tokens) {
+		versions.put(tokens, version.incrementAndGet());
+		if (cacheEntries) {
+			entryCache.remove(tokens);
+		}
+	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		version = new AtomicLong();
+		versions = new ConcurrentHashMap<TokenSeq, Long>();
+		entryCache = cacheEntries
+				? new ConcurrentHashMap<TokenSeq, List<FactoredLexicalEntry>>()
+				: null;
+		lexemeTrie = new TokenTrie<Set<Lexeme>>();
+		for (final Entry<TokenSeq, Set<Lexeme>> entry : lexemes.entrySet()) {
+			lexemeTrie.put(entry.getKey(), entry.getValue());
+		}
+	}
+
 	public static class Creator
 			implements IResourceObjectCreator<FactoredLexicon> {
 
@@ -538,7 +747,10 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 		@Override
 		public FactoredLexicon create(Parameters params,
 				IResourceRepository repo) {
-			final FactoredLexicon lexicon = new FactoredLexicon();
+			final boolean materialize = params.getAsBoolean("materialize",
+					false);
+			final FactoredLexicon lexicon = new FactoredLexicon(
+					materialize || params.getAsBoolean("cache", false));
 			// Add entries from files.
 			for (final File file : params.getAsFiles("files")) {
 				lexicon.addEntriesFromFile(file,
@@ -551,6 +763,10 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 				lexicon.addAll((ILexicon<LogicalExpression>) repo.get(id));
 			}
 
+			if (materialize) {
+				lexicon.materialize();
+			}
+
 			return lexicon;
 		}
 
@@ -564,6 +780,12 @@ public class FactoredLexicon implements ILexicon<LogicalExpression> {
 			return new ResourceUsage.Builder(type(), FactoredLexicon.class)
 					.addParam("files", File.class,
 							"List of files to read entries from")
+					.addParam("base", ILexicon.class,
+							"Lexicons to add entries from")
+					.addParam("cache", Boolean.class,
+							"Cache the entries generated for each sequence of tokens (default: false)")
+					.addParam("materialize", Boolean.class,
+							"Generate and cache all entries once the lexicon is created, implies caching (default: false)")
 					.setDescription(
 							"Lexicon that contains factored entries. Entries are factored as they are added. The lexicon contains all entries that can be generated by its templates and lexeme")
 					.build();
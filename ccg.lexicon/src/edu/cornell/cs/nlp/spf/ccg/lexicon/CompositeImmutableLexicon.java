@@ -62,6 +62,28 @@ public class CompositeImmutableLexicon<MR> implements ILexiconImmutable<MR> {
 		return new CompositeIterator<LexicalEntry<MR>>(iterators);
 	}
 
+	@Override
+	public List<Iterator<? extends LexicalEntry<MR>>> getSpans(
+			TokenSeq tokens, int start) {
+		final int numSpans = tokens.size() - start;
+		final List<List<Iterator<? extends LexicalEntry<MR>>>> lexiconSpans = new ArrayList<List<Iterator<? extends LexicalEntry<MR>>>>(
+				lexicons.size());
+		for (final ILexiconImmutable<MR> lexicon : lexicons) {
+			lexiconSpans.add(lexicon.getSpans(tokens, start));
+		}
+		final List<Iterator<? extends LexicalEntry<MR>>> iterators = new ArrayList<Iterator<? extends LexicalEntry<MR>>>(
+				numSpans);
+		for (int i = 0; i < numSpans; ++i) {
+			final List<Iterator<? extends LexicalEntry<MR>>> spanIterators = new ArrayList<Iterator<? extends LexicalEntry<MR>>>(
+					lexicons.size());
+			for (final List<Iterator<? extends LexicalEntry<MR>>> spans : lexiconSpans) {
+				spanIterators.add(spans.get(i));
+			}
+			iterators.add(new CompositeIterator<LexicalEntry<MR>>(spanIterators));
+		}
+		return iterators;
+	}
+
 	@Override
 	public int size() {
 		int sum = 0;
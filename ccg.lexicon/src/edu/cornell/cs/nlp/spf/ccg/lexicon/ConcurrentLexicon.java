@@ -0,0 +1,384 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.ccg.lexicon;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import edu.cornell.cs.nlp.spf.base.string.IStringFilter;
+import edu.cornell.cs.nlp.spf.base.string.StubStringFilter;
+import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+import edu.cornell.cs.nlp.spf.base.token.TokenTrie;
+import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
+import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
+import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment;
+import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment.Parameters;
+import edu.cornell.cs.nlp.spf.explat.resources.IResourceObjectCreator;
+import edu.cornell.cs.nlp.spf.explat.resources.usage.ResourceUsage;
+import edu.cornell.cs.nlp.utils.collections.iterators.ImmutableIterator;
+
+/**
+ * Lexicon that supports concurrent reads and modifications. The entries are
+ * stored in immutable snapshots. Modifications are serialized and create a new
+ * snapshot by copying the index and only the entry sets of the token
+ * sequences that changed (copy-on-write). Reads never block and always see a
+ * single consistent version of the lexicon. Since every modification copies
+ * the index, entries should be added in batches using
+ * {@link #addAll(Collection)} when possible.
+ *
+ * @author Yoav Artzi
+ * @param <MR>
+ *            Meaning representation.
+ */
+public class ConcurrentLexicon<MR> implements IVersionedLexicon<MR> {
+
+	private static final long		serialVersionUID	= 4330383934811402713L;
+
+	private volatile Snapshot<MR>	snapshot			= new Snapshot<MR>(
+			Collections.emptyMap(), Collections.emptyMap(), 0);
+
+	public ConcurrentLexicon() {
+	}
+
+	public ConcurrentLexicon(Collection<LexicalEntry<MR>> entries) {
+		addAll(entries);
+	}
+
+	public ConcurrentLexicon(ILexicon<MR> lexicon) {
+		addAll(lexicon);
+	}
+
+	@Override
+	public Set<LexicalEntry<MR>> add(LexicalEntry<MR> lex) {
+		return addAll(Collections.singleton(lex));
+	}
+
+	@Override
+	public synchronized Set<LexicalEntry<MR>> addAll(
+			Collection<LexicalEntry<MR>> newEntries) {
+		final Snapshot<MR> current = snapshot;
+
+		// Group the new entries by their tokens.
+		final Set<LexicalEntry<MR>> added = new HashSet<LexicalEntry<MR>>();
+		final Map<TokenSeq, List<LexicalEntry<MR>>> updates = new HashMap<TokenSeq, List<LexicalEntry<MR>>>();
+		for (final LexicalEntry<MR> entry : newEntries) {
+			if (!current.contains(entry) && added.add(entry)) {
+				updates.computeIfAbsent(entry.getTokens(),
+						t -> new ArrayList<LexicalEntry<MR>>()).add(entry);
+			}
+		}
+
+		if (added.isEmpty()) {
+			return Collections.emptySet();
+		}
+
+		// Copy the index and the updated sets.
+		final long version = current.version + 1;
+		final Map<TokenSeq, Set<LexicalEntry<MR>>> entries = new HashMap<TokenSeq, Set<LexicalEntry<MR>>>(
+				current.entries);
+		final Map<TokenSeq, Long> versions = new HashMap<TokenSeq, Long>(
+				current.versions);
+		for (final Entry<TokenSeq, List<LexicalEntry<MR>>> update : updates
+				.entrySet()) {
+			final Set<LexicalEntry<MR>> oldSet = entries.get(update.getKey());
+			final Set<LexicalEntry<MR>> newSet = oldSet == null
+					? new HashSet<LexicalEntry<MR>>()
+					: new HashSet<LexicalEntry<MR>>(oldSet);
+			newSet.addAll(update.getValue());
+			entries.put(update.getKey(), Collections.unmodifiableSet(newSet));
+			versions.put(update.getKey(), version);
+		}
+		snapshot = new Snapshot<MR>(entries, versions, version);
+
+		return added;
+	}
+
+	@Override
+	public Set<LexicalEntry<MR>> addAll(ILexicon<MR> lexicon) {
+		return addAll(lexicon.toCollection());
+	}
+
+	@Override
+	public Set<LexicalEntry<MR>> addEntriesFromFile(File file,
+			ICategoryServices<MR> categoryServices, String origin) {
+		return addEntriesFromFile(file, new StubStringFilter(),
+				categoryServices, origin);
+	}
+
+	/**
+	 * Read entries from a file, one per line, of the form
+	 *
+	 * <pre>
+	 *  Tokens  :-  Cat
+	 * </pre>
+	 *
+	 * All entries in the file are added in a single modification.
+	 */
+	@Override
+	public Set<LexicalEntry<MR>> addEntriesFromFile(File file,
+			IStringFilter textFilter, ICategoryServices<MR> categoryServices,
+			String origin) {
+		return addAll(new Lexicon<MR>().addEntriesFromFile(file, textFilter,
+				categoryServices, origin));
+	}
+
+	@Override
+	public boolean contains(LexicalEntry<MR> lex) {
+		return snapshot.contains(lex);
+	}
+
+	@Override
+	public Iterator<LexicalEntry<MR>> get(TokenSeq tokens) {
+		return snapshot.get(tokens);
+	}
+
+	@Override
+	public List<Iterator<? extends LexicalEntry<MR>>> getSpans(
+			TokenSeq tokens, int start) {
+		return snapshot.getSpans(tokens, start);
+	}
+
+	@Override
+	public long getVersion() {
+		return snapshot.version;
+	}
+
+	@Override
+	public long getVersion(TokenSeq tokens) {
+		return snapshot.getVersion(tokens);
+	}
+
+	@Override
+	public synchronized boolean retainAll(
+			Collection<LexicalEntry<MR>> toKeepEntries) {
+		final Snapshot<MR> current = snapshot;
+		final long version = current.version + 1;
+		final Map<TokenSeq, Set<LexicalEntry<MR>>> entries = new HashMap<TokenSeq, Set<LexicalEntry<MR>>>();
+		final Map<TokenSeq, Long> versions = new HashMap<TokenSeq, Long>(
+				current.versions);
+		boolean changed = false;
+		for (final Entry<TokenSeq, Set<LexicalEntry<MR>>> entry : current.entries
+				.entrySet()) {
+			final Set<LexicalEntry<MR>> newSet = new HashSet<LexicalEntry<MR>>(
+					entry.getValue());
+			if (newSet.retainAll(toKeepEntries)) {
+				changed = true;
+				versions.put(entry.getKey(), version);
+				if (!newSet.isEmpty()) {
+					entries.put(entry.getKey(),
+							Collections.unmodifiableSet(newSet));
+				}
+			} else {
+				entries.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (changed) {
+			snapshot = new Snapshot<MR>(entries, versions, version);
+		}
+		return changed;
+	}
+
+	@Override
+	public boolean retainAll(ILexicon<MR> lexicon) {
+		return retainAll(lexicon.toCollection());
+	}
+
+	@Override
+	public int size() {
+		return snapshot.size;
+	}
+
+	@Override
+	public ILexiconImmutable<MR> snapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public Collection<LexicalEntry<MR>> toCollection() {
+		return snapshot.toCollection();
+	}
+
+	@Override
+	public String toString() {
+		return snapshot.toString();
+	}
+
+	public static class Creator<MR>
+			implements IResourceObjectCreator<ConcurrentLexicon<MR>> {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public ConcurrentLexicon<MR> create(Parameters params,
+				IResourceRepository repo) {
+			final ConcurrentLexicon<MR> lexicon = new ConcurrentLexicon<MR>();
+			if (params.contains("files")) {
+				for (final File file : params.getAsFiles("files")) {
+					lexicon.addEntriesFromFile(file,
+							(ICategoryServices<MR>) repo.get(
+									ParameterizedExperiment.CATEGORY_SERVICES_RESOURCE),
+							params.get("origin"));
+				}
+			}
+			return lexicon;
+		}
+
+		@Override
+		public String type() {
+			return "lexicon.concurrent";
+		}
+
+		@Override
+		public ResourceUsage usage() {
+			return new ResourceUsage.Builder(type(), ConcurrentLexicon.class)
+					.addParam("files", File.class,
+							"List of files to read entries from")
+					.addParam("origin", String.class,
+							"Origin to assign to lexical entries read from files")
+					.setDescription(
+							"A collection of lexical entries that supports concurrent reads and modifications")
+					.build();
+		}
+
+	}
+
+	/**
+	 * An immutable version of the lexicon. The trie index for span lookups is
+	 * created on first use.
+	 */
+	private static class Snapshot<MR> implements ILexiconImmutable<MR> {
+
+		private static final long									serialVersionUID	= -3418036520957612040L;
+
+		private final Map<TokenSeq, Set<LexicalEntry<MR>>>			entries;
+
+		private final int											size;
+
+		private transient volatile TokenTrie<Set<LexicalEntry<MR>>>	trie;
+
+		private final long											version;
+
+		/**
+		 * The version in which each token sequence was last modified.
+		 */
+		private final Map<TokenSeq, Long>							versions;
+
+		public Snapshot(Map<TokenSeq, Set<LexicalEntry<MR>>> entries,
+				Map<TokenSeq, Long> versions, long version) {
+			this.entries = entries;
+			this.versions = versions;
+			this.version = version;
+			int sum = 0;
+			for (final Set<LexicalEntry<MR>> set : entries.values()) {
+				sum += set.size();
+			}
+			this.size = sum;
+		}
+
+		@Override
+		public boolean contains(LexicalEntry<MR> lex) {
+			final Set<LexicalEntry<MR>> set = entries.get(lex.getTokens());
+			return set != null && set.contains(lex);
+		}
+
+		@Override
+		public Iterator<LexicalEntry<MR>> get(TokenSeq tokens) {
+			final Set<LexicalEntry<MR>> set = entries.get(tokens);
+			if (set != null) {
+				return ImmutableIterator.of(set.iterator());
+			} else {
+				return Collections.emptyIterator();
+			}
+		}
+
+		@Override
+		public List<Iterator<? extends LexicalEntry<MR>>> getSpans(
+				TokenSeq tokens, int start) {
+			final int numSpans = tokens.size() - start;
+			final List<Iterator<? extends LexicalEntry<MR>>> iterators = new ArrayList<Iterator<? extends LexicalEntry<MR>>>(
+					numSpans);
+			for (int i = 0; i < numSpans; ++i) {
+				iterators.add(Collections.emptyIterator());
+			}
+			getTrie().forEachPrefix(tokens, start,
+					(set, end) -> iterators.set(end - start - 1,
+							ImmutableIterator.of(set.iterator())));
+			return iterators;
+		}
+
+		public long getVersion(TokenSeq tokens) {
+			final Long tokensVersion = versions.get(tokens);
+			return tokensVersion == null ? 0 : tokensVersion;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Collection<LexicalEntry<MR>> toCollection() {
+			final Set<LexicalEntry<MR>> all = new HashSet<LexicalEntry<MR>>(
+					size);
+			for (final Set<LexicalEntry<MR>> set : entries.values()) {
+				all.addAll(set);
+			}
+			return Collections.unmodifiableCollection(all);
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder result = new StringBuilder();
+			for (final Set<LexicalEntry<MR>> set : entries.values()) {
+				for (final LexicalEntry<MR> entry : set) {
+					if (result.length() > 0) {
+						result.append("\n");
+					}
+					result.append(entry);
+				}
+			}
+			return result.toString();
+		}
+
+		/**
+		 * Concurrent callers may each create the trie. The tries are
+		 * identical, so it doesn't matter which one is kept.
+		 */
+		private TokenTrie<Set<LexicalEntry<MR>>> getTrie() {
+			TokenTrie<Set<LexicalEntry<MR>>> current = trie;
+			if (current == null) {
+				current = new TokenTrie<Set<LexicalEntry<MR>>>();
+				for (final Entry<TokenSeq, Set<LexicalEntry<MR>>> entry : entries
+						.entrySet()) {
+					current.put(entry.getKey(), entry.getValue());
+				}
+				trie = current;
+			}
+			return current;
+		}
+
+	}
+
+}
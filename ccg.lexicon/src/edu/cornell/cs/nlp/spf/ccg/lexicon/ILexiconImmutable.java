@@ -17,8 +17,10 @@
 package edu.cornell.cs.nlp.spf.ccg.lexicon;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
 
@@ -28,6 +30,26 @@ public interface ILexiconImmutable<MR> extends Serializable {
 
 	Iterator<? extends LexicalEntry<MR>> get(TokenSeq tokens);
 
+	/**
+	 * Get the lexical entries of all spans of the given tokens that start at
+	 * index <code>start</code>. The returned list contains an iterator for
+	 * every possible end index: the i-th iterator gives the entries of the
+	 * tokens <code>[start, start + i]</code> (inclusive). The default
+	 * implementation does a separate lookup for each span. Implementations
+	 * that index their entries by tokens should override this to enumerate all
+	 * spans in a single pass.
+	 */
+	default List<Iterator<? extends LexicalEntry<MR>>> getSpans(
+			TokenSeq tokens, int start) {
+		final int length = tokens.size();
+		final List<Iterator<? extends LexicalEntry<MR>>> iterators = new ArrayList<Iterator<? extends LexicalEntry<MR>>>(
+				length - start);
+		for (int end = start + 1; end <= length; ++end) {
+			iterators.add(get(tokens.sub(start, end)));
+		}
+		return iterators;
+	}
+
 	int size();
 
 	Collection<LexicalEntry<MR>> toCollection();
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.ccg.lexicon;
+
+import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+
+/**
+ * A lexicon that can be modified while it's being read. Every modification
+ * creates a new version of the lexicon. Readers take an immutable snapshot of
+ * the current version, which is not affected by later modifications.
+ *
+ * @author Yoav Artzi
+ * @param <MR>
+ *            Meaning representation.
+ */
+public interface IVersionedLexicon<MR> extends ILexicon<MR> {
+
+	/**
+	 * The current version of the lexicon. Increases with every modification.
+	 */
+	long getVersion();
+
+	/**
+	 * The version in which the entries of the given token sequence were last
+	 * modified, or 0 if they were never modified. Allows caches of entries to
+	 * be invalidated only for the token sequences that actually changed.
+	 */
+	long getVersion(TokenSeq tokens);
+
+	/**
+	 * An immutable view of the current version of the lexicon. Taking a
+	 * snapshot is cheap and doesn't copy the entries.
+	 */
+	ILexiconImmutable<MR> snapshot();
+
+}
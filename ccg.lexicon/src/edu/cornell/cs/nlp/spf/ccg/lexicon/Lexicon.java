@@ -20,17 +20,22 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import edu.cornell.cs.nlp.spf.base.string.IStringFilter;
 import edu.cornell.cs.nlp.spf.base.string.StubStringFilter;
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+import edu.cornell.cs.nlp.spf.base.token.TokenTrie;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment;
@@ -42,6 +47,9 @@ import edu.cornell.cs.nlp.utils.collections.iterators.ImmutableIterator;
 
 /**
  * Lexicon containing a collection of lexical entries that match textual tokens.
+ * Entries are also indexed in a {@link TokenTrie} to retrieve all the spans
+ * that start at a given token in a single walk (see
+ * {@link #getSpans(TokenSeq, int)}).
  *
  * @author Yoav Artzi
  */
@@ -52,6 +60,13 @@ public class Lexicon<MR> implements ILexicon<MR> {
 
 	private final Map<TokenSeq, Set<LexicalEntry<MR>>>	entries					= new HashMap<TokenSeq, Set<LexicalEntry<MR>>>();
 
+	/**
+	 * Trie index over the sets in {@link #entries}. The sets are shared, so
+	 * only new token sequences require updating the trie. Re-created when the
+	 * lexicon is de-serialized.
+	 */
+	private transient TokenTrie<Set<LexicalEntry<MR>>>	trie					= new TokenTrie<Set<LexicalEntry<MR>>>();
+
 	public Lexicon() {
 	}
 
@@ -73,6 +88,7 @@ public class Lexicon<MR> implements ILexicon<MR> {
 			final Set<LexicalEntry<MR>> newSet = new HashSet<LexicalEntry<MR>>();
 			newSet.add(lex);
 			entries.put(lex.getTokens(), newSet);
+			trie.put(lex.getTokens(), newSet);
 			return SetUtils.createSingleton(lex);
 		} else {
 			if (set.add(lex)) {
@@ -160,6 +176,20 @@ public class Lexicon<MR> implements ILexicon<MR> {
 		}
 	}
 
+	@Override
+	public List<Iterator<? extends LexicalEntry<MR>>> getSpans(
+			TokenSeq tokens, int start) {
+		final int numSpans = tokens.size() - start;
+		final List<Iterator<? extends LexicalEntry<MR>>> iterators = new ArrayList<Iterator<? extends LexicalEntry<MR>>>(
+				numSpans);
+		for (int i = 0; i < numSpans; ++i) {
+			iterators.add(Collections.emptyIterator());
+		}
+		trie.forEachPrefix(tokens, start, (set, end) -> iterators
+				.set(end - start - 1, ImmutableIterator.of(set.iterator())));
+		return iterators;
+	}
+
 	@Override
 	public boolean retainAll(Collection<LexicalEntry<MR>> toKeepEntries) {
 		boolean changed = false;
@@ -211,6 +241,16 @@ public class Lexicon<MR> implements ILexicon<MR> {
 		return result.toString();
 	}
 
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		trie = new TokenTrie<Set<LexicalEntry<MR>>>();
+		for (final Entry<TokenSeq, Set<LexicalEntry<MR>>> entry : entries
+				.entrySet()) {
+			trie.put(entry.getKey(), entry.getValue());
+		}
+	}
+
 	public static class Creator<MR> implements
 			IResourceObjectCreator<Lexicon<MR>> {
 
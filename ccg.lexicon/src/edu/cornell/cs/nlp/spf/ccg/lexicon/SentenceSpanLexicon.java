@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.ccg.lexicon;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+
+/**
+ * A read-only view of a lexicon for the spans of a single sentence. The first
+ * time the entries of a span are requested, the entries of all spans that
+ * start at the same token are retrieved in a single pass using
+ * {@link ILexiconImmutable#getSpans(TokenSeq, int)} and cached. The view is
+ * safe for concurrent use by multiple threads, as long as the underlying
+ * lexicon is not modified.
+ *
+ * @author Yoav Artzi
+ * @param <MR>
+ *            Meaning representation.
+ */
+public class SentenceSpanLexicon<MR> implements ILexiconImmutable<MR> {
+
+	private static final long										serialVersionUID	= 3183766473389441957L;
+	private final ILexiconImmutable<MR>								lexicon;
+
+	/**
+	 * Cached entries, indexed by start index and then by span length. Each row
+	 * is computed once, when first needed.
+	 */
+	private final AtomicReferenceArray<List<List<LexicalEntry<MR>>>>	rows;
+
+	private final TokenSeq											tokens;
+
+	public SentenceSpanLexicon(TokenSeq tokens,
+			ILexiconImmutable<MR> lexicon) {
+		this.tokens = tokens;
+		this.lexicon = lexicon;
+		this.rows = new AtomicReferenceArray<List<List<LexicalEntry<MR>>>>(
+				tokens.size());
+	}
+
+	@Override
+	public boolean contains(LexicalEntry<MR> lex) {
+		return lexicon.contains(lex);
+	}
+
+	/**
+	 * Get the entries of the sentence span [start, end] (inclusive).
+	 */
+	public Iterator<? extends LexicalEntry<MR>> get(int start, int end) {
+		return Collections.unmodifiableList(getRow(start).get(end - start))
+				.iterator();
+	}
+
+	@Override
+	public Iterator<? extends LexicalEntry<MR>> get(TokenSeq seq) {
+		return lexicon.get(seq);
+	}
+
+	@Override
+	public List<Iterator<? extends LexicalEntry<MR>>> getSpans(TokenSeq seq,
+			int start) {
+		if (!tokens.equals(seq)) {
+			return lexicon.getSpans(seq, start);
+		}
+		final List<List<LexicalEntry<MR>>> row = getRow(start);
+		final List<Iterator<? extends LexicalEntry<MR>>> iterators = new ArrayList<Iterator<? extends LexicalEntry<MR>>>(
+				row.size());
+		for (final List<LexicalEntry<MR>> entries : row) {
+			iterators.add(Collections.unmodifiableList(entries).iterator());
+		}
+		return iterators;
+	}
+
+	public TokenSeq getTokens() {
+		return tokens;
+	}
+
+	@Override
+	public int size() {
+		return lexicon.size();
+	}
+
+	@Override
+	public Collection<LexicalEntry<MR>> toCollection() {
+		return lexicon.toCollection();
+	}
+
+	private List<List<LexicalEntry<MR>>> getRow(int start) {
+		final List<List<LexicalEntry<MR>>> row = rows.get(start);
+		if (row != null) {
+			return row;
+		}
+
+		// Materialize the entries of all spans starting at this index. If
+		// another thread computes the same row concurrently, the first one to
+		// finish wins.
+		final List<Iterator<? extends LexicalEntry<MR>>> iterators = lexicon
+				.getSpans(tokens, start);
+		final List<List<LexicalEntry<MR>>> newRow = new ArrayList<List<LexicalEntry<MR>>>(
+				iterators.size());
+		for (final Iterator<? extends LexicalEntry<MR>> iterator : iterators) {
+			if (iterator.hasNext()) {
+				final List<LexicalEntry<MR>> entries = new ArrayList<LexicalEntry<MR>>();
+				while (iterator.hasNext()) {
+					entries.add(iterator.next());
+				}
+				newRow.add(entries);
+			} else {
+				newRow.add(Collections.emptyList());
+			}
+		}
+		if (rows.compareAndSet(start, null, newRow)) {
+			return newRow;
+		} else {
+			return rows.get(start);
+		}
+	}
+
+}
@@ -4,7 +4,9 @@ import edu.cornell.cs.nlp.spf.mr.lambda.LogicalConstant;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
 import edu.cornell.cs.nlp.spf.mr.lambda.Variable;
 import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.AbstractEvaluationServices;
-import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.LambdaResult;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.Evaluation;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.ILambdaResult;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.IndexedDomain;
 import edu.cornell.cs.nlp.utils.composites.Pair;
 import edu.mit.bcs.clevros.data.CLEVRObject;
 import edu.mit.bcs.clevros.data.CLEVRScene;
@@ -16,25 +18,38 @@ import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+/**
+ * Evaluation services for a single scene. The literal tables are shared by
+ * all instances, and scene-level indexes live in {@link CLEVRScene}, so one
+ * instance is created per scene and reused across evaluations (see
+ * {@link CLEVRScene#getEvaluationServices()}). {@link #evaluate} is
+ * thread-safe; calling {@link Evaluation} directly on a shared instance is
+ * not, since the result cache isn't synchronized.
+ */
 public class CLEVREvaluationServices extends AbstractEvaluationServices<CLEVRScene> {
 
+    /**
+     * Generic evaluations clear the result cache when it grows beyond this
+     * size, so reused services don't accumulate results without bound.
+     */
+    private static final int MAX_CACHE_SIZE = 4096;
+
     private final CLEVRScene scene;
 
-    private final Map<String, String> propertyLiterals = new HashMap<>();
-    private final Map<String, Function<CLEVRObject, Boolean>> setLiterals = new HashMap<>();
-    private final Map<String, CLEVRRelation> relationLiterals = new HashMap<>();
-
-    private final Map<String, Function<LambdaResult, CLEVRObject>> fetchFunctions = new HashMap<>();
-    private final Map<String, BiFunction<Pair<LambdaResult, LambdaResult>, CLEVRObject, Boolean>> setOpFunctions = new HashMap<>();
-    private final Map<String, BiFunction<Pair<LambdaResult, String>, CLEVRObject, Boolean>> filterFunctions = new HashMap<>();
-    private final Map<String, Function<CLEVRObject, String>> queryFunctions = new HashMap<>();
-    private final Map<String, BiFunction<CLEVRObject, CLEVRObject, Boolean>> sameFunctions = new HashMap<>();
-    private final Map<String, BiFunction<String, String, Boolean>> equalFunctions = new HashMap<>();
-    private final Map<String, Function<LambdaResult, Object>> reductionFunctions = new HashMap<>();
-    private final Map<String, BiFunction<Integer, Integer, Boolean>> relationFunctions = new HashMap<>();
-    private final Map<String, BiFunction<Pair<CLEVRObject, CLEVRRelation>, CLEVRObject, Boolean>> spatialRelationFunctions = new HashMap<>();
-
-    private void seedLiteralsForProperty(String propertyName, String[] vals) {
+    private static final Map<String, String> propertyLiterals = new HashMap<>();
+    private static final Map<String, Function<CLEVRObject, Boolean>> setLiterals = new HashMap<>();
+    private static final Map<String, CLEVRRelation> relationLiterals = new HashMap<>();
+
+    private static final Map<String, Function<ILambdaResult, CLEVRObject>> fetchFunctions = new HashMap<>();
+    private static final Map<String, BiFunction<Pair<ILambdaResult, ILambdaResult>, CLEVRObject, Boolean>> setOpFunctions = new HashMap<>();
+    private static final Map<String, BiFunction<Pair<ILambdaResult, String>, CLEVRObject, Boolean>> filterFunctions = new HashMap<>();
+    private static final Map<String, Function<CLEVRObject, String>> queryFunctions = new HashMap<>();
+    private static final Map<String, BiFunction<CLEVRObject, CLEVRObject, Boolean>> sameFunctions = new HashMap<>();
+    private static final Map<String, BiFunction<String, String, Boolean>> equalFunctions = new HashMap<>();
+    private static final Map<String, Function<ILambdaResult, Object>> reductionFunctions = new HashMap<>();
+    private static final Map<String, BiFunction<Integer, Integer, Boolean>> relationFunctions = new HashMap<>();
+
+    private static void seedLiteralsForProperty(String propertyName, String[] vals) {
         for (String val : vals) {
             // define literals like cylinder:psh
             propertyLiterals.put(val.toLowerCase(), val);
@@ -45,9 +60,7 @@ public class CLEVREvaluationServices extends AbstractEvaluationServices<CLEVRSce
         }
     }
 
-    public CLEVREvaluationServices(CLEVRScene scene) {
-        this.scene = scene;
-
+    static {
         // Prepare literal maps.
 
         CLEVRTypes.PROPERTIES.forEach((name, vals) -> {
@@ -76,22 +89,41 @@ public class CLEVREvaluationServices extends AbstractEvaluationServices<CLEVRSce
                 (lrs, obj) -> lrs.first().hasTupleWithKey(obj) && lrs.second().hasTupleWithKey(obj));
 
         reductionFunctions.put("exists", (lr) -> lr.size() != 0);
-        reductionFunctions.put("count", LambdaResult::size);
+        reductionFunctions.put("count", ILambdaResult::size);
 
         relationFunctions.put("greater_than", (i1, i2) -> i1 > i2);
         relationFunctions.put("less_than", (i1, i2) -> i1 < i2);
 
-        spatialRelationFunctions.put("relate", (pair, candidate) ->
-                scene.hasRelation(pair.first(), candidate, pair.second()));
         for (CLEVRRelation reln : CLEVRRelation.values())
             relationLiterals.put(reln.toString().toLowerCase(), reln);
     }
 
+    public CLEVREvaluationServices(CLEVRScene scene) {
+        this.scene = scene;
+    }
+
     private void arityCheck(String predicate, int expected, Object[] args) {
         if (args.length != expected)
             throw new RuntimeException("bad arity " + args.length + " for literal " + predicate);
     }
 
+    /**
+     * Evaluates a logical form against the scene. Forms in the CLEVR operator
+     * fragment run as a compiled {@link CLEVRProgram}, anything else goes
+     * through the generic {@link Evaluation} visitor.
+     */
+    public Object evaluate(LogicalExpression exp) {
+        CLEVRProgram program = CLEVRProgram.of(exp);
+        if (program != null)
+            return program.execute(scene);
+
+        synchronized (this) {
+            if (cacheSize() > MAX_CACHE_SIZE)
+                clearCache();
+            return Evaluation.of(exp, this);
+        }
+    }
+
     public Object evaluateLiteral(LogicalExpression predicate, Object[] args) {
         if (!(predicate instanceof LogicalConstant)) {
             throw new RuntimeException("Don't support non-constant predicates such as " + predicate.toString());
@@ -105,15 +137,15 @@ public class CLEVREvaluationServices extends AbstractEvaluationServices<CLEVRSce
         } else if (filterFunctions.containsKey(predicateName)) {
             //arityCheck(predicateName, 2, args);
             return filterFunctions.get(predicateName).apply(
-                    Pair.of((LambdaResult) args[0], (String) args[1]),
+                    Pair.of((ILambdaResult) args[0], (String) args[1]),
                     (CLEVRObject) args[2]);
         } else if (setOpFunctions.containsKey(predicateName)) {
             return setOpFunctions.get(predicateName).apply(
-                    Pair.of((LambdaResult) args[0], (LambdaResult) args[1]),
+                    Pair.of((ILambdaResult) args[0], (ILambdaResult) args[1]),
                     (CLEVRObject) args[2]
             );
         } else if (fetchFunctions.containsKey(predicateName)) {
-            return fetchFunctions.get(predicateName).apply((LambdaResult) args[0]);
+            return fetchFunctions.get(predicateName).apply((ILambdaResult) args[0]);
         } else if (queryFunctions.containsKey(predicateName)) {
             return queryFunctions.get(predicateName).apply((CLEVRObject) args[0]);
         } else if (sameFunctions.containsKey(predicateName)) {
@@ -121,12 +153,11 @@ public class CLEVREvaluationServices extends AbstractEvaluationServices<CLEVRSce
         } else if (equalFunctions.containsKey(predicateName)) {
             return equalFunctions.get(predicateName).apply((String) args[0], (String) args[1]);
         } else if (reductionFunctions.containsKey(predicateName)) {
-            return reductionFunctions.get(predicateName).apply((LambdaResult) args[0]);
+            return reductionFunctions.get(predicateName).apply((ILambdaResult) args[0]);
         } else if (relationFunctions.containsKey(predicateName)) {
             return relationFunctions.get(predicateName).apply((Integer) args[0], (Integer) args[1]);
-        } else if (spatialRelationFunctions.containsKey(predicateName)) {
-            return spatialRelationFunctions.get(predicateName).apply(
-                    Pair.of((CLEVRObject) args[2], (CLEVRRelation) args[1]), (CLEVRObject) args[0]);
+        } else if (predicateName.equals("relate")) {
+            return scene.hasRelation((CLEVRObject) args[2], (CLEVRObject) args[0], (CLEVRRelation) args[1]);
         } else {
             throw new RuntimeException("unrecognized literal " + predicateName + " in " + predicate.toString());
         }
@@ -153,7 +184,15 @@ public class CLEVREvaluationServices extends AbstractEvaluationServices<CLEVRSce
         if (!variable.getType().getName().equals("e"))
             throw new RuntimeException("unexpected variable type for variable " + variable.toString());
 
-        return new ArrayList<>(scene.getObjects());
+        return scene.getDomain().asList();
+    }
+
+    @Override
+    public IndexedDomain getIndexedDomain(Variable variable) {
+        if (!variable.getType().getName().equals("e"))
+            return null;
+
+        return scene.getDomain();
     }
 
     @Override
@@ -0,0 +1,284 @@
+package edu.mit.bcs.clevros;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.cornell.cs.nlp.spf.mr.lambda.Lambda;
+import edu.cornell.cs.nlp.spf.mr.lambda.Literal;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicLanguageServices;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalConstant;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.BitSetLambdaResult;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.Evaluation;
+import edu.mit.bcs.clevros.data.CLEVRObject;
+import edu.mit.bcs.clevros.data.CLEVRScene;
+import edu.mit.bcs.clevros.data.CLEVRTypes;
+
+import static edu.mit.bcs.clevros.data.CLEVRTypes.CLEVRRelation;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A CLEVR logical form compiled into a tree of set-algebra operators
+ * (filter, relate, union/intersection, unique, query, same, equal, count,
+ * exists and integer comparisons) that work on object sets directly.
+ *
+ * The generic {@link Evaluation} visitor executes every lambda as a SELECT
+ * over all scene objects and resolves each predicate by name on every call.
+ * A program is compiled once per logical form and can then be executed
+ * against any number of scenes. Results are identical to the ones
+ * {@link CLEVREvaluationServices} produces: sets come back as
+ * {@link BitSetLambdaResult}s over the scene objects, failed lookups (e.g., {@code unique} of a
+ * non-singleton set) propagate as {@code null}.
+ *
+ * Logical forms outside this fragment don't compile; {@link #of} returns
+ * {@code null} for them and callers should fall back to {@link Evaluation}.
+ */
+public class CLEVRProgram {
+
+    private static final int CACHE_SIZE = 10000;
+
+    private static final Cache<LogicalExpression, Optional<CLEVRProgram>> CACHE =
+            CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    private static final Map<String, String> PROPERTY_LITERALS = new HashMap<>();
+    private static final Map<String, String> VALUE_PROPERTIES = new HashMap<>();
+    private static final Map<String, CLEVRRelation> RELATION_LITERALS = new HashMap<>();
+
+    static {
+        CLEVRTypes.PROPERTIES.forEach((name, vals) -> {
+            for (String val : vals) {
+                PROPERTY_LITERALS.put(val.toLowerCase(), val);
+                VALUE_PROPERTIES.put(val.toLowerCase(), name);
+            }
+        });
+
+        for (CLEVRRelation reln : CLEVRRelation.values())
+            RELATION_LITERALS.put(reln.toString().toLowerCase(), reln);
+    }
+
+    private final LogicalExpression expression;
+    private final Function<CLEVRScene, ?> root;
+
+    private CLEVRProgram(LogicalExpression expression, Function<CLEVRScene, ?> root) {
+        this.expression = expression;
+        this.root = root;
+    }
+
+    /**
+     * Compiles the given logical form.
+     *
+     * @throws IllegalArgumentException if the logical form uses anything
+     *                                  outside the supported fragment.
+     */
+    public static CLEVRProgram compile(LogicalExpression exp) {
+        return new CLEVRProgram(exp, compileValue(exp));
+    }
+
+    /**
+     * Returns the (cached) compiled program for the given logical form, or
+     * {@code null} if it can't be compiled.
+     */
+    public static CLEVRProgram of(LogicalExpression exp) {
+        Optional<CLEVRProgram> program = CACHE.getIfPresent(exp);
+        if (program == null) {
+            try {
+                program = Optional.of(compile(exp));
+            } catch (IllegalArgumentException e) {
+                program = Optional.absent();
+            }
+            CACHE.put(exp, program);
+        }
+        return program.orNull();
+    }
+
+    public Object execute(CLEVRScene scene) {
+        return root.apply(scene);
+    }
+
+    public LogicalExpression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return "CLEVRProgram<" + expression + ">";
+    }
+
+    private static IllegalArgumentException unsupported(LogicalExpression exp) {
+        return new IllegalArgumentException("can't compile " + exp);
+    }
+
+    private static String predicateName(Literal literal) {
+        if (!(literal.getPredicate() instanceof LogicalConstant))
+            throw unsupported(literal);
+        return ((LogicalConstant) literal.getPredicate()).getBaseName();
+    }
+
+    private static String propertySuffix(String name, String prefix) {
+        if (!name.startsWith(prefix))
+            return null;
+        String property = name.substring(prefix.length());
+        return CLEVRTypes.PROPERTIES.containsKey(property) ? property : null;
+    }
+
+    /**
+     * Compiles a set of objects. Sets always appear eta-expanded, i.e.,
+     * {@code (lambda $0:e (pred arg1 ... argN $0))}.
+     */
+    private static Function<CLEVRScene, BitSetLambdaResult> compileSet(LogicalExpression exp) {
+        if (!(exp instanceof Lambda))
+            throw unsupported(exp);
+
+        Lambda lambda = (Lambda) exp;
+        if (!lambda.getArgument().getType().getName().equals("e")
+                || !(lambda.getBody() instanceof Literal))
+            throw unsupported(exp);
+
+        Literal body = (Literal) lambda.getBody();
+        int numArgs = body.numArgs() - 1;
+        if (numArgs < 0 || body.getArg(numArgs) != lambda.getArgument())
+            throw unsupported(exp);
+
+        String name = predicateName(body);
+        String filterProperty = propertySuffix(name, "filter_");
+        String sameProperty = propertySuffix(name, "same_");
+
+        if (numArgs == 0 && name.equals("scene")) {
+            return (scene) -> BitSetLambdaResult.all(scene.getDomain());
+        } else if (numArgs == 0 && VALUE_PROPERTIES.containsKey(name)) {
+            String valueProperty = VALUE_PROPERTIES.get(name);
+            String value = PROPERTY_LITERALS.get(name);
+            return (scene) -> scene.getObjectsWith(valueProperty, value);
+        } else if (numArgs == 2 && filterProperty != null) {
+            Function<CLEVRScene, BitSetLambdaResult> set = compileSet(body.getArg(0));
+            Function<CLEVRScene, ?> value = compileValue(body.getArg(1));
+            return (scene) -> {
+                Object val = value.apply(scene);
+                if (!(val instanceof String))
+                    return new BitSetLambdaResult(scene.getDomain());
+                return set.apply(scene).intersection(scene.getObjectsWith(filterProperty, (String) val));
+            };
+        } else if (numArgs == 2 && (name.equals("union") || name.equals("intersection"))) {
+            Function<CLEVRScene, BitSetLambdaResult> left = compileSet(body.getArg(0));
+            Function<CLEVRScene, BitSetLambdaResult> right = compileSet(body.getArg(1));
+            boolean union = name.equals("union");
+            if (union)
+                return (scene) -> left.apply(scene).union(right.apply(scene));
+            return (scene) -> left.apply(scene).intersection(right.apply(scene));
+        } else if (numArgs == 2 && name.equals("relate")) {
+            Function<CLEVRScene, ?> entity = compileValue(body.getArg(0));
+            Function<CLEVRScene, ?> relation = compileValue(body.getArg(1));
+            return (scene) -> {
+                CLEVRObject anchor = (CLEVRObject) entity.apply(scene);
+                CLEVRRelation reln = (CLEVRRelation) relation.apply(scene);
+                // Evaluation propagates a failed argument as null without
+                // calling hasRelation, so the SELECT over relate is empty
+                if (anchor == null || reln == null)
+                    return new BitSetLambdaResult(scene.getDomain());
+                return scene.getRelated(anchor, reln);
+            };
+        } else if (numArgs == 1 && sameProperty != null) {
+            Function<CLEVRScene, ?> entity = compileValue(body.getArg(0));
+            return (scene) -> {
+                CLEVRObject anchor = (CLEVRObject) entity.apply(scene);
+                if (anchor == null)
+                    return new BitSetLambdaResult(scene.getDomain());
+                return scene.getObjectsWith(sameProperty, anchor.getAttribute(sameProperty));
+            };
+        }
+
+        throw unsupported(exp);
+    }
+
+    /**
+     * Compiles an expression of any supported type: sets, objects, property
+     * values, relations, integers and truth values.
+     */
+    private static Function<CLEVRScene, ?> compileValue(LogicalExpression exp) {
+        if (exp instanceof Lambda) {
+            return compileSet(exp);
+        } else if (exp instanceof LogicalConstant) {
+            return compileConstant((LogicalConstant) exp);
+        } else if (!(exp instanceof Literal)) {
+            throw unsupported(exp);
+        }
+
+        Literal literal = (Literal) exp;
+        String name = predicateName(literal);
+        int numArgs = literal.numArgs();
+        String queryProperty = propertySuffix(name, "query_");
+        String sameProperty = propertySuffix(name, "same_");
+
+        if (numArgs == 1 && name.equals("unique")) {
+            Function<CLEVRScene, BitSetLambdaResult> set = compileSet(literal.getArg(0));
+            return (scene) -> {
+                BitSetLambdaResult objs = set.apply(scene);
+                return objs.size() == 1 ? objs.getDomain().get(objs.nextOrdinal(0)) : null;
+            };
+        } else if (numArgs == 1 && name.equals("exists")) {
+            Function<CLEVRScene, BitSetLambdaResult> set = compileSet(literal.getArg(0));
+            return (scene) -> !set.apply(scene).isEmpty();
+        } else if (numArgs == 1 && name.equals("count")) {
+            Function<CLEVRScene, BitSetLambdaResult> set = compileSet(literal.getArg(0));
+            return (scene) -> set.apply(scene).size();
+        } else if (numArgs == 1 && queryProperty != null) {
+            Function<CLEVRScene, ?> entity = compileValue(literal.getArg(0));
+            return (scene) -> {
+                CLEVRObject obj = (CLEVRObject) entity.apply(scene);
+                return obj == null ? null : obj.getAttribute(queryProperty);
+            };
+        } else if (numArgs == 2 && sameProperty != null) {
+            Function<CLEVRScene, ?> first = compileValue(literal.getArg(0));
+            Function<CLEVRScene, ?> second = compileValue(literal.getArg(1));
+            return (scene) -> {
+                CLEVRObject obj1 = (CLEVRObject) first.apply(scene);
+                CLEVRObject obj2 = (CLEVRObject) second.apply(scene);
+                if (obj1 == null || obj2 == null)
+                    return null;
+                return obj1.getAttribute(sameProperty).equals(obj2.getAttribute(sameProperty));
+            };
+        } else if (numArgs == 2 && propertySuffix(name, "equal_") != null) {
+            Function<CLEVRScene, ?> first = compileValue(literal.getArg(0));
+            Function<CLEVRScene, ?> second = compileValue(literal.getArg(1));
+            return (scene) -> {
+                String val1 = (String) first.apply(scene);
+                String val2 = (String) second.apply(scene);
+                if (val1 == null || val2 == null)
+                    return null;
+                return val1.equals(val2);
+            };
+        } else if (numArgs == 2 && (name.equals("greater_than") || name.equals("less_than"))) {
+            Function<CLEVRScene, ?> first = compileValue(literal.getArg(0));
+            Function<CLEVRScene, ?> second = compileValue(literal.getArg(1));
+            boolean greater = name.equals("greater_than");
+            return (scene) -> {
+                Integer i1 = (Integer) first.apply(scene);
+                Integer i2 = (Integer) second.apply(scene);
+                if (i1 == null || i2 == null)
+                    return null;
+                return greater ? i1 > i2 : i1 < i2;
+            };
+        }
+
+        throw unsupported(exp);
+    }
+
+    private static Function<CLEVRScene, ?> compileConstant(LogicalConstant constant) {
+        final Object value;
+        if (LogicLanguageServices.getTrue().equals(constant)) {
+            value = true;
+        } else if (LogicLanguageServices.getFalse().equals(constant)) {
+            value = false;
+        } else if (PROPERTY_LITERALS.containsKey(constant.getBaseName())) {
+            value = PROPERTY_LITERALS.get(constant.getBaseName());
+        } else if (RELATION_LITERALS.containsKey(constant.getBaseName())) {
+            value = RELATION_LITERALS.get(constant.getBaseName());
+        } else {
+            throw unsupported(constant);
+        }
+        return (scene) -> value;
+    }
+
+}
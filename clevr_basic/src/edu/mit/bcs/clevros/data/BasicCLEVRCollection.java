@@ -50,6 +50,7 @@ public class BasicCLEVRCollection extends CLEVRCollection<SingleSentence> {
 			return CLEVRCollection.read(
 					BasicCLEVRCollection.class,
 					params.getAsFile("scenesFile"),
+					params.contains("scenesCacheFile") ? params.getAsFile("scenesCacheFile") : null,
 					params.getAsFile("questionsFile"),
 					params.getAsBoolean("shuffle", false),
                     params.getAsInteger("subsampleQuestions", 0));
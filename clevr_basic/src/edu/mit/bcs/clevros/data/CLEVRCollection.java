@@ -5,12 +5,9 @@ import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
 import edu.cornell.cs.nlp.spf.data.ILabeledDataItem;
 import edu.cornell.cs.nlp.spf.data.sentence.ITokenizer;
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 
 import java.io.File;
-import java.io.FileReader;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -18,7 +15,7 @@ import java.util.stream.IntStream;
 public abstract class CLEVRCollection<DI extends ILabeledDataItem<?, ?>>
         implements IIndexableDataCollection<DI> {
 
-    private static final Map<String, List<CLEVRScene>> scenesCache = new HashMap<>();
+    private static final Map<String, CachedScenes> scenesCache = new HashMap<>();
 
     protected final List<DI> entries;
     protected final boolean shuffle;
@@ -42,9 +39,25 @@ public abstract class CLEVRCollection<DI extends ILabeledDataItem<?, ?>>
     public static <SAMPLE, LABEL, DI extends ILabeledDataItem<SAMPLE, LABEL>,
                    COLL extends CLEVRCollection<DI>> COLL
       read(Class<COLL> collType, File scenesFile, File questionsFile, boolean shuffle, int subsampleQuestions) {
+        return read(collType, scenesFile, null, questionsFile, shuffle, subsampleQuestions);
+    }
+
+    /**
+     * Reads a collection. Both files are streamed rather than parsed into a
+     * single JSON tree, and scenes are kept in a compact
+     * {@link CLEVRSceneStore}.
+     *
+     * @param scenesCacheFile Binary scene cache, memory-mapped if present and
+     *                        up to date, otherwise written after reading the
+     *                        scenes. May be null.
+     */
+    public static <SAMPLE, LABEL, DI extends ILabeledDataItem<SAMPLE, LABEL>,
+                   COLL extends CLEVRCollection<DI>> COLL
+      read(Class<COLL> collType, File scenesFile, File scenesCacheFile, File questionsFile,
+           boolean shuffle, int subsampleQuestions) {
         File curFile = null;
 
-        List<DI> entries = new ArrayList<>();
+        final List<DI> entries = new ArrayList<>();
         final COLL collection;
 
         try {
@@ -56,38 +69,26 @@ public abstract class CLEVRCollection<DI extends ILabeledDataItem<?, ?>>
         }
 
         try {
-            List<CLEVRScene> scenes;
-            if (scenesCache.containsKey(scenesFile.toString())) {
-                scenes = scenesCache.get(scenesFile.toString());
-            } else {
-                // Read scenes file.
-                curFile = scenesFile;
-
-                scenes = new ArrayList<>();
-                JSONObject scenesObj = (JSONObject) new JSONParser()
-                        .parse(new FileReader(scenesFile));
-                JSONArray allScenes = (JSONArray) scenesObj.get("scenes");
-                for (Object sceneData : allScenes) {
-                    CLEVRScene scene = CLEVRScene.buildFromJSON((JSONObject) sceneData);
-                    // sanity check: scenes should be sorted by idx in data
-                    assert scenes.size() == scene.getImageIndex();
-                    scenes.add(scene);
+            final CachedScenes scenes;
+            synchronized (scenesCache) {
+                if (scenesCache.containsKey(scenesFile.toString())) {
+                    scenes = scenesCache.get(scenesFile.toString());
+                } else {
+                    // Read scenes file.
+                    curFile = scenesFile;
+                    scenes = new CachedScenes(CLEVRSceneStore.load(scenesFile, scenesCacheFile));
+                    scenesCache.put(scenesFile.toString(), scenes);
                 }
-
-                scenesCache.put(scenesFile.toString(), scenes);
             }
 
             // Read questions file.
             curFile = questionsFile;
-            JSONObject questionsObj = (JSONObject) new JSONParser()
-                    .parse(new FileReader(questionsFile));
-            JSONArray allQuestions = (JSONArray) questionsObj.get("questions");
-            for (Object questionData : allQuestions) {
+            JSONArrayStream.forEach(questionsFile, "questions", (questionData) -> {
                 JSONObject questionObj = (JSONObject) questionData;
                 CLEVRScene scene = scenes.get(((Long) questionObj.get("image_index")).intValue());
 
                 entries.add(collection.readQuestionJSON(questionObj, scene));
-            }
+            });
         } catch (final Exception e) {
             throw new FileReadingException(e, 0, curFile.getName());
         }
@@ -97,13 +98,34 @@ public abstract class CLEVRCollection<DI extends ILabeledDataItem<?, ?>>
                 throw new IllegalArgumentException("subsampling without shuffling not supported");
 
             Collections.shuffle(entries);
-            entries = entries.subList(0, Math.min(entries.size(), subsampleQuestions));
+            entries.subList(Math.min(entries.size(), subsampleQuestions), entries.size()).clear();
         }
 
         collection.addAll(entries);
         return collection;
     }
 
+    /**
+     * The scenes of a scenes file. Scenes are materialized from the store when
+     * first referenced and then shared by all collections over the file, so
+     * their evaluation services and caches are shared too.
+     */
+    private static class CachedScenes {
+        private final CLEVRSceneStore store;
+        private final CLEVRScene[] scenes;
+
+        CachedScenes(CLEVRSceneStore store) {
+            this.store = store;
+            this.scenes = new CLEVRScene[store.size()];
+        }
+
+        synchronized CLEVRScene get(int imageIndex) {
+            if (scenes[imageIndex] == null)
+                scenes[imageIndex] = store.getScene(imageIndex);
+            return scenes[imageIndex];
+        }
+    }
+
     public static class CLEVRTokenizer implements ITokenizer {
         @Override
         public TokenSeq tokenize(String sentence) {
@@ -1,8 +1,9 @@
 package edu.mit.bcs.clevros.data;
 
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
-import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.Evaluation;
-import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.LambdaResult;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.BitSetLambdaResult;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.ILambdaResult;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.IndexedDomain;
 import edu.cornell.cs.nlp.spf.mr.lambda.visitor.Simplify;
 import edu.mit.bcs.clevros.CLEVREvaluationServices;
 import org.json.simple.JSONArray;
@@ -14,15 +15,62 @@ import static edu.mit.bcs.clevros.data.CLEVRTypes.CLEVRRelation;
 
 public class CLEVRScene {
 
+    /**
+     * Relation masks are single longs, which is plenty for CLEVR (at most 10
+     * objects per scene).
+     */
+    public static final int MAX_OBJECTS = Long.SIZE;
+
     private final int imageIndex;
     private final List<CLEVRObject> objects;
-    private final Map<CLEVRRelation, Map<CLEVRObject, Set<CLEVRObject>>> relations;
+
+    /**
+     * Relations as bitmasks over object ordinals. For relation {@code r} and
+     * anchor ordinal {@code a}, bit {@code x} of
+     * {@code related[r.ordinal() * objects.size() + a]} is set iff
+     * {@code hasRelation(x, a, r)}.
+     */
+    private final long[] related;
+
+    /**
+     * Objects indexed by their position in the scene, for bitset denotations.
+     */
+    private final IndexedDomain domain;
+
+    /**
+     * Attribute indexes, built on first use.
+     */
+    private volatile SceneIndex index;
+
+    /**
+     * Evaluation services shared by all evaluations on this scene, created
+     * on first use.
+     */
+    private volatile CLEVREvaluationServices services;
 
     public CLEVRScene(int imageIndex, List<CLEVRObject> objects,
                       Map<CLEVRRelation, Map<CLEVRObject, Set<CLEVRObject>>> relations) {
+        this(imageIndex, objects, new long[CLEVRRelation.values().length * objects.size()]);
+
+        relations.forEach((relation, relMap) -> relMap.forEach((obj, others) -> {
+            int ordinal = domain.indexOf(obj);
+            for (CLEVRObject other : others)
+                related[relation.ordinal() * objects.size() + domain.indexOf(other)] |= 1L << ordinal;
+        }));
+    }
+
+    /**
+     * Creates a scene from relation masks laid out as in {@link #related}.
+     * The array is not copied.
+     */
+    CLEVRScene(int imageIndex, List<CLEVRObject> objects, long[] related) {
+        if (objects.size() > MAX_OBJECTS)
+            throw new IllegalArgumentException("too many objects in scene: " + objects.size());
+
         this.imageIndex = imageIndex;
         this.objects = objects;
-        this.relations = relations;
+        this.related = related;
+        this.domain = new IndexedDomain(objects);
     }
 
     public static CLEVRScene buildFromJSON(JSONObject scene) {
@@ -69,11 +117,10 @@ public class CLEVRScene {
     }
 
     public CLEVRAnswer evaluate(LogicalExpression expr) {
-        CLEVREvaluationServices services = new CLEVREvaluationServices(this);
-        Object ret = Evaluation.of(expr, services);
+        Object ret = getEvaluationServices().evaluate(expr);
 
-        if (ret instanceof LambdaResult) {
-            LambdaResult matches = (LambdaResult) ret;
+        if (ret instanceof ILambdaResult) {
+            ILambdaResult matches = (ILambdaResult) ret;
             final HashSet<CLEVRObject> retSet = new HashSet<>();
             matches.forEach((tuple) -> retSet.add((CLEVRObject) tuple.get(0)));
             ret = retSet;
@@ -91,21 +138,114 @@ public class CLEVRScene {
         return imageIndex;
     }
 
+    public CLEVREvaluationServices getEvaluationServices() {
+        CLEVREvaluationServices ret = services;
+        if (ret == null) {
+            synchronized (this) {
+                ret = services;
+                if (ret == null)
+                    services = ret = new CLEVREvaluationServices(this);
+            }
+        }
+        return ret;
+    }
+
+    public IndexedDomain getDomain() {
+        return domain;
+    }
+
     public List<CLEVRObject> getObjects() {
         return objects;
     }
 
+    /**
+     * Returns the relations of the scene in the format of the CLEVR scene
+     * files: for each relation and object, the objects that stand in that
+     * relation to it. The maps are built on every call.
+     */
     public Map<CLEVRRelation, Map<CLEVRObject, Set<CLEVRObject>>> getRelations() {
+        Map<CLEVRRelation, Map<CLEVRObject, Set<CLEVRObject>>> relations = new EnumMap<>(CLEVRRelation.class);
+        for (CLEVRRelation relation : CLEVRRelation.values()) {
+            Map<CLEVRObject, Set<CLEVRObject>> relMap = new HashMap<>();
+            for (CLEVRObject obj : objects)
+                relMap.put(obj, new HashSet<>());
+            for (int anchor = 0; anchor < objects.size(); anchor++) {
+                long mask = related[relation.ordinal() * objects.size() + anchor];
+                for (int x = 0; x < objects.size(); x++) {
+                    if ((mask & (1L << x)) != 0)
+                        relMap.get(objects.get(x)).add(objects.get(anchor));
+                }
+            }
+            relations.put(relation, relMap);
+        }
         return relations;
     }
 
+    /**
+     * Returns the objects with the given value of a property (e.g., all red
+     * objects for color and red).
+     */
+    public BitSetLambdaResult getObjectsWith(String property, String value) {
+        Map<String, BitSet> values = getIndex().attributes.get(property);
+        BitSet bits = values == null ? null : values.get(value);
+        return bits == null
+                ? new BitSetLambdaResult(domain)
+                : BitSetLambdaResult.of(domain, bits);
+    }
+
+    /**
+     * Returns all objects {@code x} such that {@code hasRelation(x, anchor,
+     * relation)}, e.g., all objects in front of the anchor.
+     */
+    public BitSetLambdaResult getRelated(CLEVRObject anchor, CLEVRRelation relation) {
+        int ordinal = domain.indexOf(anchor);
+        if (ordinal < 0)
+            throw new RuntimeException("requested object is not part of this scene");
+
+        return BitSetLambdaResult.of(domain,
+                BitSet.valueOf(new long[] { related[relation.ordinal() * objects.size() + ordinal] }));
+    }
+
     public boolean hasRelation(CLEVRObject obj1, CLEVRObject obj2, CLEVRRelation relation) {
-        if (!objects.contains(obj1) || !objects.contains(obj2))
+        int ordinal1 = domain.indexOf(obj1);
+        int ordinal2 = domain.indexOf(obj2);
+        if (ordinal1 < 0 || ordinal2 < 0)
             throw new RuntimeException("one or both of requested objects are not part of this scene");
 
-        Map<CLEVRObject, Set<CLEVRObject>> relMap = relations.get(relation);
-        if (!relMap.containsKey(obj1))
-            return false;
-        return relMap.get(obj1).contains(obj2);
+        return (related[relation.ordinal() * objects.size() + ordinal2] & (1L << ordinal1)) != 0;
+    }
+
+    private SceneIndex getIndex() {
+        SceneIndex ret = index;
+        if (ret == null) {
+            synchronized (this) {
+                ret = index;
+                if (ret == null)
+                    index = ret = new SceneIndex(this);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Per-scene precomputed bitsets over object ordinals: the objects with
+     * each property value.
+     */
+    private static class SceneIndex {
+
+        private final Map<String, Map<String, BitSet>> attributes = new HashMap<>();
+
+        SceneIndex(CLEVRScene scene) {
+            List<CLEVRObject> objects = scene.objects;
+
+            for (String property : CLEVRTypes.PROPERTIES.keySet()) {
+                Map<String, BitSet> values = new HashMap<>();
+                for (int i = 0; i < objects.size(); i++) {
+                    values.computeIfAbsent(objects.get(i).getAttribute(property),
+                            (val) -> new BitSet(objects.size())).set(i);
+                }
+                attributes.put(property, values);
+            }
+        }
     }
 }
@@ -0,0 +1,334 @@
+package edu.mit.bcs.clevros.data;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static edu.mit.bcs.clevros.data.CLEVRTypes.CLEVRRelation;
+
+/**
+ * Compact, columnar storage for all scenes of a CLEVR scenes file. Object
+ * attributes are stored as ordinals into the {@link CLEVRTypes} value arrays,
+ * coordinates as flat columns and relations as per-object bitmasks (see
+ * {@link CLEVRScene}). {@link CLEVRScene} objects are only materialized on
+ * request.
+ *
+ * The columns live in a single {@link ByteBuffer} with the same layout as the
+ * binary cache file, so a store is either built on the heap by streaming the
+ * scenes JSON or memory-mapped from a cache file written by an earlier run.
+ *
+ * Layout (big endian): magic, version, number of scenes S, number of objects
+ * N (ints); size and last modification time of the scenes file (longs);
+ * length of the scenes file path (int) and its canonical path (UTF-8);
+ * padding to 8 bytes; image indices (S ints); object offsets (S + 1 ints);
+ * color, size, shape and material ordinals (N bytes each); padding to 8
+ * bytes; rotation, x, y and z (N doubles each); relation masks (|relations| *
+ * N longs, laid out per scene as in {@link CLEVRScene}). The scenes file
+ * fields identify the source of a cache file, so a stale cache isn't mapped.
+ */
+public class CLEVRSceneStore {
+
+    private static final int MAGIC = 0x434c5652; // "CLVR"
+    private static final int VERSION = 2;
+    private static final int SOURCE_PATH_OFFSET = 32;
+    private static final int HEADER_SIZE = SOURCE_PATH_OFFSET + Integer.BYTES;
+
+    private static final int NUM_RELATIONS = CLEVRRelation.values().length;
+
+    /**
+     * Attribute columns, in the order of the {@link CLEVRObject} constructor.
+     */
+    private static final String[] ATTRIBUTES = new String[] { "color", "size", "shape", "material" };
+    private static final String[][] ATTRIBUTE_VALUES = new String[][] {
+            CLEVRTypes.COLORS, CLEVRTypes.SIZES, CLEVRTypes.SHAPES, CLEVRTypes.MATERIALS };
+
+    private final ByteBuffer buffer;
+    private final int numScenes;
+    private final int numObjects;
+
+    private final int imageIndicesStart;
+    private final int objectOffsetsStart;
+    private final int attributesStart;
+    private final int coordinatesStart;
+    private final int relationsStart;
+
+    private CLEVRSceneStore(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("not a CLEVR scene store");
+        if (buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException("unsupported CLEVR scene store version " + buffer.getInt(4));
+
+        this.buffer = buffer;
+        this.numScenes = buffer.getInt(8);
+        this.numObjects = buffer.getInt(12);
+
+        this.imageIndicesStart = align(HEADER_SIZE + buffer.getInt(SOURCE_PATH_OFFSET));
+        this.objectOffsetsStart = imageIndicesStart + Integer.BYTES * numScenes;
+        this.attributesStart = objectOffsetsStart + Integer.BYTES * (numScenes + 1);
+        this.coordinatesStart = align(attributesStart + ATTRIBUTES.length * numObjects);
+        this.relationsStart = coordinatesStart + 4 * Double.BYTES * numObjects;
+
+        if (buffer.limit() != relationsStart + NUM_RELATIONS * Long.BYTES * numObjects)
+            throw new IllegalArgumentException("truncated CLEVR scene store");
+    }
+
+    /**
+     * Loads the scenes, using a binary cache when possible. If the cache file
+     * exists and was written for the same scenes file, with the same path,
+     * size and modification time, it's memory-mapped. Otherwise the scenes
+     * JSON is streamed and, if a cache file is given, the cache is written for
+     * later runs. A cache file with a valid header but a broken layout is
+     * rebuilt the same way.
+     *
+     * @param cacheFile May be null.
+     */
+    public static CLEVRSceneStore load(File scenesFile, File cacheFile) throws IOException, ParseException {
+        if (cacheFile != null && cacheFile.exists() && isCacheOf(cacheFile, scenesFile)) {
+            try {
+                return map(cacheFile);
+            } catch (IllegalArgumentException e) {
+                // Broken cache file, rebuild it
+            }
+        }
+
+        CLEVRSceneStore store = readJSON(scenesFile);
+        if (cacheFile != null)
+            store.write(cacheFile);
+        return store;
+    }
+
+    /**
+     * Memory-maps a store written by {@link #write}.
+     */
+    public static CLEVRSceneStore map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new CLEVRSceneStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Streams a CLEVR scenes JSON file into a store.
+     */
+    public static CLEVRSceneStore readJSON(File scenesFile) throws IOException, ParseException {
+        Builder builder = new Builder(scenesFile);
+        JSONArrayStream.forEach(scenesFile, "scenes", (scene) -> builder.add((JSONObject) scene));
+        return builder.build();
+    }
+
+    /**
+     * Materializes a scene.
+     *
+     * @param idx Position of the scene in the file, which is also its image
+     *            index.
+     */
+    public CLEVRScene getScene(int idx) {
+        int offset = buffer.getInt(objectOffsetsStart + Integer.BYTES * idx);
+        int size = buffer.getInt(objectOffsetsStart + Integer.BYTES * (idx + 1)) - offset;
+
+        List<CLEVRObject> objects = new ArrayList<>(size);
+        for (int i = offset; i < offset + size; i++) {
+            String[] values = new String[ATTRIBUTES.length];
+            for (int j = 0; j < ATTRIBUTES.length; j++)
+                values[j] = ATTRIBUTE_VALUES[j][buffer.get(attributesStart + j * numObjects + i)];
+
+            objects.add(new CLEVRObject(values[0], values[1], values[2], values[3],
+                    getCoordinate(0, i), getCoordinate(1, i), getCoordinate(2, i), getCoordinate(3, i)));
+        }
+
+        long[] related = new long[NUM_RELATIONS * size];
+        for (int i = 0; i < related.length; i++)
+            related[i] = buffer.getLong(relationsStart + Long.BYTES * (NUM_RELATIONS * offset + i));
+
+        return new CLEVRScene(buffer.getInt(imageIndicesStart + Integer.BYTES * idx),
+                Collections.unmodifiableList(objects), related);
+    }
+
+    public int size() {
+        return numScenes;
+    }
+
+    /**
+     * Writes the store to a file. The store is written to a temporary file in
+     * the same directory, which then atomically replaces the file. Other
+     * processes that mapped the previous file keep reading it unchanged, and
+     * the file never holds a partially written store.
+     */
+    public void write(File file) throws IOException {
+        Path target = file.getAbsoluteFile().toPath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer data = buffer.duplicate();
+                data.clear();
+                while (data.hasRemaining())
+                    channel.write(data);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int align(int position) {
+        return (position + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+    }
+
+    /**
+     * Checks the header of a cache file against the scenes file, without
+     * mapping the cache.
+     */
+    private static boolean isCacheOf(File cacheFile, File scenesFile) throws IOException {
+        byte[] path = scenesFile.getCanonicalPath().getBytes(StandardCharsets.UTF_8);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return false;
+            in.readInt();
+            in.readInt();
+            if (in.readLong() != scenesFile.length() || in.readLong() != scenesFile.lastModified()
+                    || in.readInt() != path.length)
+                return false;
+            byte[] cachedPath = new byte[path.length];
+            in.readFully(cachedPath);
+            return Arrays.equals(path, cachedPath);
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private double getCoordinate(int column, int object) {
+        return buffer.getDouble(coordinatesStart + Double.BYTES * (column * numObjects + object));
+    }
+
+    /**
+     * Accumulates columns while the scenes are streamed.
+     */
+    private static class Builder {
+
+        private final ByteArrayOutputStream[] attributes = new ByteArrayOutputStream[ATTRIBUTES.length];
+        private final ByteArrayOutputStream[] coordinates = new ByteArrayOutputStream[4];
+        private final ByteArrayOutputStream relations = new ByteArrayOutputStream();
+        private final DataOutputStream[] coordinatesOut = new DataOutputStream[4];
+        private final DataOutputStream relationsOut = new DataOutputStream(relations);
+
+        private final List<Integer> imageIndices = new ArrayList<>();
+        private final List<Integer> objectOffsets = new ArrayList<>();
+        private int numObjects = 0;
+
+        private final long sourceSize;
+        private final long sourceModified;
+        private final byte[] sourcePath;
+
+        Builder(File scenesFile) throws IOException {
+            sourceSize = scenesFile.length();
+            sourceModified = scenesFile.lastModified();
+            sourcePath = scenesFile.getCanonicalPath().getBytes(StandardCharsets.UTF_8);
+
+            for (int i = 0; i < attributes.length; i++)
+                attributes[i] = new ByteArrayOutputStream();
+            for (int i = 0; i < coordinates.length; i++) {
+                coordinates[i] = new ByteArrayOutputStream();
+                coordinatesOut[i] = new DataOutputStream(coordinates[i]);
+            }
+            objectOffsets.add(0);
+        }
+
+        void add(JSONObject scene) {
+            JSONArray objects = (JSONArray) scene.get("objects");
+            int size = objects.size();
+            if (size > CLEVRScene.MAX_OBJECTS)
+                throw new IllegalArgumentException("too many objects in scene: " + size);
+
+            try {
+                for (Object obj : objects) {
+                    JSONObject obj_ = (JSONObject) obj;
+                    for (int j = 0; j < ATTRIBUTES.length; j++)
+                        attributes[j].write(ordinal(j, (String) obj_.get(ATTRIBUTES[j])));
+
+                    JSONArray coords = (JSONArray) obj_.get("3d_coords");
+                    coordinatesOut[0].writeDouble((double) obj_.get("rotation"));
+                    for (int j = 0; j < 3; j++)
+                        coordinatesOut[j + 1].writeDouble((double) coords.get(j));
+                }
+
+                // Scene files list, for each object i, the objects j that
+                // stand in the relation to i, i.e., hasRelation(i, j). Masks
+                // are indexed by the anchor j.
+                JSONObject relationships = (JSONObject) scene.get("relationships");
+                long[] related = new long[NUM_RELATIONS * size];
+                for (CLEVRRelation relation : CLEVRRelation.values()) {
+                    JSONArray allIdxs = (JSONArray) relationships.get(relation.toString().toLowerCase());
+                    for (int i = 0; i < allIdxs.size(); i++) {
+                        for (Object idx : (JSONArray) allIdxs.get(i))
+                            related[relation.ordinal() * size + ((Long) idx).intValue()] |= 1L << i;
+                    }
+                }
+                for (long mask : related)
+                    relationsOut.writeLong(mask);
+            } catch (IOException e) {
+                // In-memory streams don't throw
+                throw new IllegalStateException(e);
+            }
+
+            int imageIndex = ((Long) scene.get("image_index")).intValue();
+            // sanity check: scenes should be sorted by idx in data
+            assert imageIndices.size() == imageIndex;
+            imageIndices.add(imageIndex);
+            numObjects += size;
+            objectOffsets.add(numObjects);
+        }
+
+        CLEVRSceneStore build() {
+            int numScenes = imageIndices.size();
+            int imageIndicesStart = align(HEADER_SIZE + sourcePath.length);
+            int attributesStart = imageIndicesStart + Integer.BYTES * (2 * numScenes + 1);
+            int coordinatesStart = align(attributesStart + ATTRIBUTES.length * numObjects);
+            int size = coordinatesStart + 4 * Double.BYTES * numObjects
+                    + NUM_RELATIONS * Long.BYTES * numObjects;
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(numScenes).putInt(numObjects);
+            buffer.putLong(sourceSize).putLong(sourceModified).putInt(sourcePath.length).put(sourcePath);
+            buffer.position(imageIndicesStart);
+            for (int imageIndex : imageIndices)
+                buffer.putInt(imageIndex);
+            for (int offset : objectOffsets)
+                buffer.putInt(offset);
+            for (ByteArrayOutputStream column : attributes)
+                buffer.put(column.toByteArray());
+            buffer.position(coordinatesStart);
+            for (ByteArrayOutputStream column : coordinates)
+                buffer.put(column.toByteArray());
+            buffer.put(relations.toByteArray());
+            buffer.clear();
+
+            return new CLEVRSceneStore(buffer);
+        }
+
+        private static int ordinal(int attribute, String value) {
+            String[] values = ATTRIBUTE_VALUES[attribute];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].equals(value))
+                    return i;
+            }
+            throw new IllegalArgumentException("unknown " + ATTRIBUTES[attribute] + " value " + value);
+        }
+    }
+
+}
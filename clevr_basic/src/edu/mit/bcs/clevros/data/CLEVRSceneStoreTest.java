@@ -0,0 +1,129 @@
+package edu.mit.bcs.clevros.data;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.*;
+
+import static edu.mit.bcs.clevros.data.CLEVRTypes.CLEVRRelation;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CLEVRSceneStoreTest {
+
+    private static final String SCENES = "{\"info\": {\"split\": \"val\"}, \"scenes\": [" +
+            "{\"image_index\": 0, \"image_filename\": \"a.png\", \"objects\": [" +
+            "{\"color\": \"red\", \"size\": \"small\", \"shape\": \"cylinder\", \"material\": \"metal\"," +
+            " \"rotation\": 10.5, \"3d_coords\": [0.5, 1.5, 0.25], \"pixel_coords\": [1, 2, 3.5]}," +
+            "{\"color\": \"blue\", \"size\": \"large\", \"shape\": \"cube\", \"material\": \"rubber\"," +
+            " \"rotation\": 90.0, \"3d_coords\": [-1.0, 2.0, 0.7], \"pixel_coords\": [4, 5, 6.5]}]," +
+            " \"relationships\": {\"right\": [[1], []], \"behind\": [[], [0]]," +
+            " \"front\": [[1], []], \"left\": [[], [0]]}}," +
+            "{\"image_index\": 1, \"objects\": [" +
+            "{\"color\": \"green\", \"size\": \"large\", \"shape\": \"sphere\", \"material\": \"metal\"," +
+            " \"rotation\": 0.0, \"3d_coords\": [0.0, 0.0, 0.0]}]," +
+            " \"relationships\": {\"right\": [[]], \"behind\": [[]], \"front\": [[]], \"left\": [[]]}}]}";
+
+    private File scenesFile;
+    private File cacheFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        scenesFile = File.createTempFile("scenes", ".json");
+        cacheFile = File.createTempFile("scenes", ".bin");
+        cacheFile.delete();
+        try (Writer writer = new FileWriter(scenesFile)) {
+            writer.write(SCENES);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        scenesFile.delete();
+        cacheFile.delete();
+    }
+
+    @Test
+    void testMatchesJSONScenes() throws Exception {
+        CLEVRSceneStore store = CLEVRSceneStore.load(scenesFile, cacheFile);
+        assertTrue(cacheFile.exists());
+
+        CLEVRSceneStore mapped = CLEVRSceneStore.load(scenesFile, cacheFile);
+
+        List<?> allScenes = (List<?>) ((JSONObject) new JSONParser().parse(SCENES)).get("scenes");
+        for (CLEVRSceneStore s : new CLEVRSceneStore[] { store, mapped }) {
+            assertEquals(allScenes.size(), s.size());
+            for (int i = 0; i < s.size(); i++)
+                assertSameScene(CLEVRScene.buildFromJSON((JSONObject) allScenes.get(i)), s.getScene(i));
+        }
+    }
+
+    @Test
+    void testStaleCache() throws Exception {
+        CLEVRSceneStore.load(scenesFile, cacheFile);
+
+        // Replace the scenes with a single scene. The new scenes file is
+        // older than the cache, but its size differs.
+        try (Writer writer = new FileWriter(scenesFile)) {
+            writer.write(SCENES.substring(0, SCENES.indexOf(",{\"image_index\": 1")) + "]}");
+        }
+        assertTrue(scenesFile.setLastModified(cacheFile.lastModified() - 10000));
+        assertEquals(1, CLEVRSceneStore.load(scenesFile, cacheFile).size());
+        assertEquals(1, CLEVRSceneStore.load(scenesFile, cacheFile).size());
+
+        // The same cache for a different scenes file isn't used either.
+        File otherScenesFile = File.createTempFile("scenes", ".json");
+        try {
+            try (Writer writer = new FileWriter(otherScenesFile)) {
+                writer.write(SCENES);
+            }
+            assertEquals(2, CLEVRSceneStore.load(otherScenesFile, cacheFile).size());
+        } finally {
+            otherScenesFile.delete();
+        }
+    }
+
+    @Test
+    void testBrokenCache() throws Exception {
+        CLEVRSceneStore.load(scenesFile, cacheFile);
+
+        // Cut the cache file short, e.g., by a run that died while writing it.
+        // The header still matches the scenes file.
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(file.length() - Long.BYTES);
+        }
+        assertEquals(2, CLEVRSceneStore.load(scenesFile, cacheFile).size());
+        assertEquals(2, CLEVRSceneStore.map(cacheFile).size());
+    }
+
+    private static void assertSameScene(CLEVRScene expected, CLEVRScene actual) {
+        assertEquals(expected.getImageIndex(), actual.getImageIndex());
+        assertEquals(expected.getObjects().size(), actual.getObjects().size());
+
+        for (int i = 0; i < expected.getObjects().size(); i++) {
+            CLEVRObject e = expected.getObjects().get(i);
+            CLEVRObject a = actual.getObjects().get(i);
+            for (String property : CLEVRTypes.PROPERTIES.keySet())
+                assertEquals(e.getAttribute(property), a.getAttribute(property));
+            assertEquals(e.getRotation(), a.getRotation());
+            assertEquals(e.getX(), a.getX());
+            assertEquals(e.getY(), a.getY());
+            assertEquals(e.getZ(), a.getZ());
+
+            for (int j = 0; j < expected.getObjects().size(); j++) {
+                for (CLEVRRelation relation : CLEVRRelation.values()) {
+                    assertEquals(
+                            expected.hasRelation(e, expected.getObjects().get(j), relation),
+                            actual.hasRelation(a, actual.getObjects().get(j), relation));
+                }
+            }
+        }
+    }
+}
@@ -2,7 +2,14 @@ package edu.mit.bcs.clevros.data;
 
 import edu.cornell.cs.nlp.spf.mr.lambda.FlexibleTypeComparator;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicLanguageServices;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.BitSetLambdaResult;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.Evaluation;
+import edu.cornell.cs.nlp.spf.mr.lambda.exec.naive.ILambdaResult;
+import edu.cornell.cs.nlp.spf.mr.lambda.visitor.Simplify;
 import edu.cornell.cs.nlp.spf.mr.language.type.TypeRepository;
+import edu.mit.bcs.clevros.CLEVREvaluationServices;
+import edu.mit.bcs.clevros.CLEVRProgram;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -226,4 +233,105 @@ class CLEVRSceneTest {
                 )
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCompiledMatchesNaive() {
+        String[] exprs = new String[] {
+                "(filter_size:<<e,t>,<psi,<e,t>>> " +
+                        "(filter_material:<<e,t>,<pm,<e,t>>> scene:<e,t> rubber:pm) large:psi)",
+                "(query_material:<e,pm> (unique:<<e,t>,e> scene:<e,t>))",
+                "(same_shape:<e,<e,t>> " +
+                        "(unique:<<e,t>,e> (filter_color:<<e,t>,<pc,<e,t>>> scene:<e,t> red:pc)))",
+                "(union:<<e,t>,<<e,t>,<e,t>>> " +
+                        "(filter_color:<<e,t>,<pc,<e,t>>> scene:<e,t> red:pc)" +
+                        "(same_material:<e,<e,t>> (unique:<<e,t>,e> " +
+                        "(filter_shape:<<e,t>,<psh,<e,t>>> scene:<e,t> cube:psh))))",
+                "(less_than:<i,<i,t>> " +
+                        "(count:<<e,t>,i> (filter_shape:<<e,t>,<psh,<e,t>>> scene:<e,t> cylinder:psh)))" +
+                        "(count:<<e,t>,i> (filter_shape:<<e,t>,<psh,<e,t>>> scene:<e,t> cube:psh))))",
+                "(relate:<e,<s,<e,t>>> " +
+                        "(unique:<<e,t>,e> (filter_color:<<e,t>,<pc,<e,t>>> scene:<e,t> green:pc))" +
+                        "right:s)",
+                "(exists:<<e,t>,t> (relate:<e,<s,<e,t>>> " +
+                        "(unique:<<e,t>,e> (filter_size:<<e,t>,<psi,<e,t>>> scene:<e,t> large:psi))" +
+                        "left:s))",
+        };
+
+        for (String exprString : exprs) {
+            LogicalExpression expr = Simplify.of(LogicalExpression.read(exprString));
+            Object naive = Evaluation.of(expr, new CLEVREvaluationServices(scene));
+
+            CLEVRProgram program = CLEVRProgram.of(expr);
+            assertNotNull(program, exprString);
+            assertEquals(toObjects(naive), toObjects(program.execute(scene)), exprString);
+        }
+    }
+
+    @Test
+    void testRelateFailedAnchor() {
+        // unique of the two large objects fails, so relate has no anchor
+        LogicalExpression expr = Simplify.of(LogicalExpression.read(
+                "(relate:<e,<s,<e,t>>> " +
+                        "(unique:<<e,t>,e> (filter_size:<<e,t>,<psi,<e,t>>> scene:<e,t> large:psi))" +
+                        "front:s)"));
+        Object naive = Evaluation.of(expr, new CLEVREvaluationServices(scene));
+        Object compiled = CLEVRProgram.of(expr).execute(scene);
+
+        assertEquals(Collections.emptySet(), toObjects(naive));
+        assertEquals(Collections.emptySet(), toObjects(compiled));
+    }
+
+    @Test
+    void testBitSetResult() {
+        LogicalExpression expr = Simplify.of(LogicalExpression.read(
+                "(filter_shape:<<e,t>,<psh,<e,t>>> scene:<e,t> cylinder:psh)"));
+        Object result = Evaluation.of(expr, new CLEVREvaluationServices(scene));
+
+        assertTrue(result instanceof BitSetLambdaResult);
+        BitSetLambdaResult bits = (BitSetLambdaResult) result;
+        assertEquals(2, bits.size());
+        assertTrue(bits.hasTupleWithKey(smallObject));
+        assertTrue(bits.hasTupleWithKey(largeObject));
+        assertFalse(bits.hasTupleWithKey(thirdObject));
+    }
+
+    @Test
+    void testSceneIndexes() {
+        for (CLEVRRelation relation : CLEVRRelation.values()) {
+            for (CLEVRObject anchor : objects) {
+                BitSetLambdaResult related = scene.getRelated(anchor, relation);
+                for (CLEVRObject obj : objects) {
+                    Map<CLEVRObject, Set<CLEVRObject>> relMap = scene.getRelations().get(relation);
+                    boolean expected = relMap.containsKey(obj) && relMap.get(obj).contains(anchor);
+                    assertEquals(expected, related.hasTupleWithKey(obj));
+                    assertEquals(expected, scene.hasRelation(obj, anchor, relation));
+                }
+            }
+        }
+
+        BitSetLambdaResult large = scene.getObjectsWith("size", "large");
+        assertEquals(2, large.size());
+        assertTrue(large.hasTupleWithKey(largeObject));
+        assertTrue(large.hasTupleWithKey(thirdObject));
+        assertTrue(scene.getObjectsWith("color", "brown").isEmpty());
+
+        assertSame(scene.getEvaluationServices(), scene.getEvaluationServices());
+    }
+
+    @Test
+    void testCompileUnsupported() {
+        // Variables shared across nested lambdas fall back to naive evaluation
+        LogicalExpression expr = Simplify.of(LogicalExpression.read(
+                "(lambda $0:e (exists:<<e,t>,t> (lambda $1:e (same_shape:<e,<e,t>> $0 $1))))"));
+        assertNull(CLEVRProgram.of(expr));
+    }
+
+    private static Object toObjects(Object result) {
+        if (!(result instanceof ILambdaResult))
+            return result;
+
+        Set<CLEVRObject> objects = new HashSet<>();
+        ((ILambdaResult) result).forEach((tuple) -> objects.add((CLEVRObject) tuple.get(0)));
+        return objects;
+    }
+}
@@ -0,0 +1,154 @@
+package edu.mit.bcs.clevros.data;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Streams the elements of an array stored under a top-level key of a JSON
+ * file (e.g., "scenes" or "questions") without building a tree for the whole
+ * file. Each element is materialized on its own, with the same value types
+ * {@link JSONParser} produces, handed to the consumer and then dropped.
+ * Everything outside the array is skipped.
+ */
+class JSONArrayStream implements ContentHandler {
+
+    private final String key;
+    private final Consumer<Object> consumer;
+
+    /**
+     * Containers of the element currently being built, innermost first.
+     */
+    private final Deque<Object> containers = new ArrayDeque<>();
+
+    /**
+     * Object keys of the element currently being built, innermost first.
+     */
+    private final Deque<String> keys = new ArrayDeque<>();
+
+    /**
+     * Nesting depth in the file, counting the top-level object as 1.
+     */
+    private int depth = 0;
+    private boolean atKey = false;
+    private boolean inArray = false;
+
+    private JSONArrayStream(String key, Consumer<Object> consumer) {
+        this.key = key;
+        this.consumer = consumer;
+    }
+
+    public static void forEach(File file, String key, Consumer<Object> consumer)
+            throws IOException, ParseException {
+        try (Reader reader = new BufferedReader(new FileReader(file))) {
+            new JSONParser().parse(reader, new JSONArrayStream(key, consumer));
+        }
+    }
+
+    @Override
+    public void startJSON() {
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+        depth++;
+        if (inArray)
+            push(new JSONObject());
+        return true;
+    }
+
+    @Override
+    public boolean endObject() {
+        depth--;
+        if (inArray)
+            pop();
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String entryKey) {
+        if (!containers.isEmpty())
+            keys.push(entryKey);
+        else if (depth == 1)
+            atKey = entryKey.equals(key);
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        if (!containers.isEmpty())
+            keys.pop();
+        else if (depth == 1)
+            atKey = false;
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        depth++;
+        if (inArray) {
+            push(new JSONArray());
+        } else if (atKey && depth == 2) {
+            inArray = true;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        depth--;
+        if (!containers.isEmpty()) {
+            pop();
+        } else if (inArray) {
+            inArray = false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+        if (inArray) {
+            if (containers.isEmpty())
+                consumer.accept(value);
+            else
+                attach(value);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void attach(Object value) {
+        Object parent = containers.peek();
+        if (parent instanceof JSONArray)
+            ((JSONArray) parent).add(value);
+        else
+            ((JSONObject) parent).put(keys.peek(), value);
+    }
+
+    private void pop() {
+        Object value = containers.pop();
+        if (containers.isEmpty())
+            consumer.accept(value);
+    }
+
+    private void push(Object container) {
+        if (!containers.isEmpty())
+            attach(container);
+        containers.push(container);
+    }
+
+}
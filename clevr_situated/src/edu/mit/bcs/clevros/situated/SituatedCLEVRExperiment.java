@@ -95,7 +95,10 @@ public class SituatedCLEVRExperiment extends DistributedExperiment {
 							.setUseOntology(true)
 							.addConstantsToOntology(
 									globalParams.getAsFiles("ont"))
-							.closeOntology(true).build());
+							.closeOntology(true)
+							.setInternExpressions(globalParams
+									.getAsBoolean("internSemantics", false))
+							.build());
 
 			storeResource(ONTOLOGY_RESOURCE,
 					LogicLanguageServices.getOntology());
@@ -113,7 +116,9 @@ public class SituatedCLEVRExperiment extends DistributedExperiment {
 		// Category services for logical expressions
 		// //////////////////////////////////////////////////
 
-		this.categoryServices = new LogicalExpressionCategoryServices(true);
+		// Optionally, memoize application and composition results.
+		this.categoryServices = new LogicalExpressionCategoryServices(true,
+				globalParams.getAsInteger("semanticsCacheSize", 0));
 		storeResource(CATEGORY_SERVICES_RESOURCE, categoryServices);
 
 		// //////////////////////////////////////////////////
@@ -251,7 +256,8 @@ public class SituatedCLEVRExperiment extends DistributedExperiment {
 							params.get("model"), params.getAsFile("file")
 									.getAbsolutePath());
 					Model.write((Model<Sentence, LogicalExpression>) get(params
-							.get("model")), params.getAsFile("file"));
+							.get("model")), params.getAsFile("file"), params
+							.getAsBoolean("binary", false));
 				} catch (final IOException e) {
 					LOG.error("Failed to save model to: %s", params.get("file"));
 					throw new RuntimeException(e);
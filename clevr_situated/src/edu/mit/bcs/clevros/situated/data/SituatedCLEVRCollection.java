@@ -46,6 +46,7 @@ public class SituatedCLEVRCollection extends CLEVRCollection<LabeledSituatedSent
 			return CLEVRCollection.read(
 					SituatedCLEVRCollection.class,
 					params.getAsFile("scenesFile"),
+					params.contains("scenesCacheFile") ? params.getAsFile("scenesCacheFile") : null,
 					params.getAsFile("questionsFile"),
 					params.getAsBoolean("shuffle", false),
                     params.getAsInteger("subsampleQuestions", 0));
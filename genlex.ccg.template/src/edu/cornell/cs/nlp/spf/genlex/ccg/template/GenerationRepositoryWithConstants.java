@@ -27,6 +27,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoringSignature;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.Lexeme;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.LexicalTemplate;
@@ -62,6 +63,29 @@ public class GenerationRepositoryWithConstants extends GenerationRepository {
 		return false;
 	}
 
+	/**
+	 * Create a lexicon with all entries that can be generated for the spans of
+	 * a sequence of tokens. The lexicon contains the same entries as a
+	 * {@link FactoredLexicon} with the lexemes of
+	 * {@link #generate(TokenSeq, int, Map)} and the templates of this
+	 * repository, but creates them lazily, only for spans that are looked up.
+	 *
+	 * @param tokens
+	 *            Source tokens.
+	 * @param maxTokens
+	 *            Maximum number of tokens for sub-sequence.
+	 * @param properties
+	 *            The properties to assign to generated lexemes.
+	 * @param applications
+	 *            Cache of template applications, may be shared across calls.
+	 */
+	public LazyGenerationLexicon createLexicon(TokenSeq tokens, int maxTokens,
+			Map<String, String> properties,
+			TemplateApplicationCache applications) {
+		return new LazyGenerationLexicon(this, tokens, maxTokens, properties,
+				applications);
+	}
+
 	/**
 	 * Generate lexemes for a sequence of tokens.
 	 *
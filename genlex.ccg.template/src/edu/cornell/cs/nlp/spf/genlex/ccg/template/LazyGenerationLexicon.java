@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.genlex.ccg.template;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+import edu.cornell.cs.nlp.spf.ccg.categories.Category;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicon;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoringSignature;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.Lexeme;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.LexicalTemplate;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalConstant;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+
+/**
+ * Read-only lexicon with all the lexical entries that can be generated from a
+ * {@link GenerationRepositoryWithConstants} for the spans of a sentence. This
+ * is the same set of entries as a {@link FactoredLexicon} initialized with the
+ * lexemes of {@link GenerationRepositoryWithConstants#generate} and the
+ * repository templates. However, lexemes and entries are only created when the
+ * entries of a span are requested, and template applications are re-used
+ * through a {@link TemplateApplicationCache}, which may be shared across
+ * sentences. The entries of each span are created once and memoized. The
+ * templates, constants and attributes of the repository are captured when the
+ * lexicon is created.
+ *
+ * @author Yoav Artzi
+ */
+public class LazyGenerationLexicon
+		implements ILexiconImmutable<LogicalExpression> {
+
+	private static final long											serialVersionUID	= -2185213402826468532L;
+
+	private final TemplateApplicationCache								applications;
+
+	private final Map<FactoringSignature, List<List<String>>>			attributeLists;
+
+	private final Map<FactoringSignature, List<List<LogicalConstant>>>	constantSeqs;
+
+	/**
+	 * Memoized entries of each span, created when first requested.
+	 */
+	private final ConcurrentHashMap<TokenSeq, List<FactoredLexicalEntry>>	entries				= new ConcurrentHashMap<TokenSeq, List<FactoredLexicalEntry>>();
+
+	/**
+	 * Number of entries created, to track how much of the lexicon is actually
+	 * used. Each entry is counted once.
+	 */
+	private final AtomicInteger											numGeneratedEntries	= new AtomicInteger();
+
+	/**
+	 * Number of lookups of valid spans.
+	 */
+	private final AtomicInteger											numLookups			= new AtomicInteger();
+
+	private final Map<String, String>									properties;
+
+	/**
+	 * All token sequences with entries.
+	 */
+	private final Set<TokenSeq>											spans;
+
+	private final Map<FactoringSignature, List<LexicalTemplate>>		templates;
+
+	public LazyGenerationLexicon(GenerationRepositoryWithConstants repository,
+			TokenSeq tokens, int maxTokens, Map<String, String> properties,
+			TemplateApplicationCache applications) {
+		this.applications = applications;
+		this.properties = properties;
+
+		final int numTokens = tokens.size();
+		this.spans = new HashSet<>();
+		for (int i = 0; i < numTokens; ++i) {
+			for (int j = i; j < numTokens && j - i + 1 <= maxTokens; ++j) {
+				spans.add(tokens.sub(i, j + 1));
+			}
+		}
+
+		this.templates = new HashMap<>();
+		for (final LexicalTemplate template : repository.getTemplates()) {
+			templates.computeIfAbsent(template.getSignature(),
+					s -> new ArrayList<>()).add(template);
+		}
+		this.attributeLists = new HashMap<>();
+		this.constantSeqs = new HashMap<>();
+		for (final FactoringSignature signature : templates.keySet()) {
+			attributeLists.put(signature,
+					repository.getAttributeLists(signature.getNumAttributes()));
+			constantSeqs.put(signature, repository.getConstantSeqs(signature));
+		}
+	}
+
+	@Override
+	public boolean contains(LexicalEntry<LogicalExpression> lex) {
+		return spans.contains(lex.getTokens())
+				&& getEntries(lex.getTokens()).contains(lex);
+	}
+
+	@Override
+	public Iterator<FactoredLexicalEntry> get(TokenSeq tokens) {
+		if (!spans.contains(tokens)) {
+			return Collections.emptyIterator();
+		}
+		numLookups.incrementAndGet();
+		return Collections.unmodifiableList(getEntries(tokens)).iterator();
+	}
+
+	/**
+	 * The number of distinct entries created so far.
+	 */
+	public int numGeneratedEntries() {
+		return numGeneratedEntries.get();
+	}
+
+	/**
+	 * The number of calls to {@link #get(TokenSeq)} with a sequence of tokens
+	 * that has entries.
+	 */
+	public int numLookups() {
+		return numLookups.get();
+	}
+
+	/**
+	 * Upper bound on the number of entries. Similar to
+	 * {@link FactoredLexicon#size()}, template applications that fail are
+	 * counted.
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		for (final Map.Entry<FactoringSignature, List<LexicalTemplate>> entry : templates
+				.entrySet()) {
+			size += entry.getValue().size()
+					* attributeLists.get(entry.getKey()).size()
+					* constantSeqs.get(entry.getKey()).size();
+		}
+		return size * spans.size();
+	}
+
+	/**
+	 * Creates all entries. Inefficient, this defeats the purpose of this
+	 * lexicon.
+	 */
+	@Override
+	public Collection<LexicalEntry<LogicalExpression>> toCollection() {
+		final Set<LexicalEntry<LogicalExpression>> allEntries = new HashSet<>();
+		for (final TokenSeq tokens : spans) {
+			allEntries.addAll(getEntries(tokens));
+		}
+		return allEntries;
+	}
+
+	@Override
+	public String toString() {
+		return LazyGenerationLexicon.class.getSimpleName() + " [spans="
+				+ spans.size() + ", templates=" + templates.size()
+				+ ", lookups=" + numLookups + ", generated="
+				+ numGeneratedEntries + "]";
+	}
+
+	private List<FactoredLexicalEntry> createEntries(TokenSeq tokens) {
+		final List<FactoredLexicalEntry> spanEntries = new ArrayList<>();
+		for (final Map.Entry<FactoringSignature, List<LexicalTemplate>> entry : templates
+				.entrySet()) {
+			final FactoringSignature signature = entry.getKey();
+			for (final List<String> attributes : attributeLists
+					.get(signature)) {
+				for (final List<LogicalConstant> constants : constantSeqs
+						.get(signature)) {
+					final Lexeme lexeme = new Lexeme(tokens, constants,
+							attributes, signature, properties);
+					for (final LexicalTemplate template : entry.getValue()) {
+						final Category<LogicalExpression> category = applications
+								.apply(template, lexeme);
+						if (category != null) {
+							spanEntries.add(FactoredLexicon.createEntry(lexeme,
+									template, category));
+						}
+					}
+				}
+			}
+		}
+		return spanEntries;
+	}
+
+	/**
+	 * Get the memoized entries of the given span, creating them if needed. If
+	 * two threads create the entries of the same span concurrently, the first
+	 * to finish wins, and only its entries are counted.
+	 */
+	private List<FactoredLexicalEntry> getEntries(TokenSeq tokens) {
+		final List<FactoredLexicalEntry> cached = entries.get(tokens);
+		if (cached != null) {
+			return cached;
+		}
+		final List<FactoredLexicalEntry> created = createEntries(tokens);
+		final List<FactoredLexicalEntry> existing = entries
+				.putIfAbsent(tokens, created);
+		if (existing != null) {
+			return existing;
+		}
+		numGeneratedEntries.addAndGet(created.size());
+		return created;
+	}
+
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.genlex.ccg.template;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import edu.cornell.cs.nlp.spf.ccg.categories.Category;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicon;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoringServices;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.Lexeme;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.LexicalTemplate;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalConstant;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+
+/**
+ * Bounded cache of the categories created by applying lexical templates to
+ * lexemes, and of the factoring of the entries they create. The category of a
+ * template application and its factoring depend only on the constants and
+ * attributes of the lexeme, and not on its tokens, so the same result is
+ * re-used for all token sequences and across data items. The cache is not part
+ * of the serialized state.
+ *
+ * @author Yoav Artzi
+ */
+public class TemplateApplicationCache implements Serializable {
+
+	private static final long														serialVersionUID	= -6393426315384364316L;
+
+	private transient Cache<ApplicationKey, Optional<Category<LogicalExpression>>>	cache;
+
+	private transient Cache<ApplicationKey, Optional<FactoredLexicalEntry>>			factorings;
+
+	private final long																maxSize;
+
+	public TemplateApplicationCache(long maxSize) {
+		this.maxSize = maxSize;
+		initCache();
+	}
+
+	/**
+	 * Apply the template to the lexeme, using the cached category if one is
+	 * available.
+	 *
+	 * @return The category or <code>null</code> if the template can't be
+	 *         applied to the lexeme.
+	 */
+	public Category<LogicalExpression> apply(LexicalTemplate template,
+			Lexeme lexeme) {
+		if (cache == null) {
+			return template.apply(lexeme);
+		}
+
+		final ApplicationKey key = new ApplicationKey(template,
+				lexeme.getConstants(), lexeme.getAttributes());
+		final Optional<Category<LogicalExpression>> cached = cache
+				.getIfPresent(key);
+		if (cached != null) {
+			return cached.orNull();
+		}
+		final Category<LogicalExpression> category = template.apply(lexeme);
+		cache.put(key, Optional.fromNullable(category));
+		return category;
+	}
+
+	/**
+	 * Apply the template to the lexeme and factor the created lexical entry
+	 * (see {@link FactoringServices#factor(LexicalEntry)}). The entry has the
+	 * tokens and properties of the lexeme. If the factoring of the application
+	 * is cached, the entry is re-created for the tokens and properties of the
+	 * lexeme without factoring.
+	 *
+	 * @return The factored entry or <code>null</code> if the template can't be
+	 *         applied to the lexeme.
+	 */
+	public FactoredLexicalEntry applyAndFactor(LexicalTemplate template,
+			Lexeme lexeme) {
+		if (factorings == null) {
+			return factor(template.apply(lexeme), lexeme);
+		}
+
+		final ApplicationKey key = new ApplicationKey(template,
+				lexeme.getConstants(), lexeme.getAttributes());
+		final Optional<FactoredLexicalEntry> cached = factorings
+				.getIfPresent(key);
+		if (cached == null) {
+			final FactoredLexicalEntry factored = factor(apply(template, lexeme),
+					lexeme);
+			factorings.put(key, Optional.fromNullable(factored));
+			return factored;
+		} else if (!cached.isPresent()) {
+			return null;
+		}
+
+		final FactoredLexicalEntry factored = cached.get();
+		final Map<String, String> properties = lexeme.getProperties();
+		if (factored.getTokens().equals(lexeme.getTokens())
+				&& factored.getProperties().equals(properties)) {
+			return factored;
+		}
+		// The factoring gives the lexeme and template the properties of the
+		// factored entry, so replace them as well.
+		final Lexeme factoredLexeme = factored.getLexeme();
+		return FactoredLexicon.createEntry(
+				new Lexeme(lexeme.getTokens(), factoredLexeme.getConstants(),
+						factoredLexeme.getAttributes(),
+						factoredLexeme.getSignature(), properties),
+				factored.getTemplate().cloneWithProperties(properties),
+				factored.getCategory());
+	}
+
+	public void clear() {
+		if (cache != null) {
+			cache.invalidateAll();
+			factorings.invalidateAll();
+		}
+	}
+
+	/**
+	 * Statistics of the factoring cache.
+	 */
+	public CacheStats factoringStats() {
+		return factorings == null ? null : factorings.stats();
+	}
+
+	public CacheStats stats() {
+		return cache == null ? null : cache.stats();
+	}
+
+	private FactoredLexicalEntry factor(Category<LogicalExpression> category,
+			Lexeme lexeme) {
+		return category == null ? null
+				: FactoringServices.factor(new LexicalEntry<LogicalExpression>(
+						lexeme.getTokens(), category, false,
+						lexeme.getProperties()));
+	}
+
+	private void initCache() {
+		if (maxSize > 0) {
+			this.cache = CacheBuilder.newBuilder().maximumSize(maxSize)
+					.recordStats().build();
+			this.factorings = CacheBuilder.newBuilder().maximumSize(maxSize)
+					.recordStats().build();
+		} else {
+			this.cache = null;
+			this.factorings = null;
+		}
+	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initCache();
+	}
+
+	/**
+	 * Cache key: a template and the constants and attributes it's applied to.
+	 */
+	private static class ApplicationKey {
+		private final List<String>			attributes;
+		private final List<LogicalConstant>	constants;
+		private final int					hashCode;
+		private final LexicalTemplate		template;
+
+		public ApplicationKey(LexicalTemplate template,
+				List<LogicalConstant> constants, List<String> attributes) {
+			this.template = template;
+			this.constants = constants;
+			this.attributes = attributes;
+			this.hashCode = calcHashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ApplicationKey)) {
+				return false;
+			}
+			final ApplicationKey other = (ApplicationKey) obj;
+			return hashCode == other.hashCode
+					&& template.equals(other.template)
+					&& constants.equals(other.constants)
+					&& attributes.equals(other.attributes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		private int calcHashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + attributes.hashCode();
+			result = prime * result + constants.hashCode();
+			result = prime * result + template.hashCode();
+			return result;
+		}
+	}
+}
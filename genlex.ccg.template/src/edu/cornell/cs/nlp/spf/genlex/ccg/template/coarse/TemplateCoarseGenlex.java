@@ -16,20 +16,21 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.genlex.ccg.template.coarse;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
-import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.Lexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicalEntry;
-import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoringServices;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.Lexeme;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.LexicalTemplate;
@@ -42,6 +43,8 @@ import edu.cornell.cs.nlp.spf.genlex.ccg.AbstractLexiconGenerator;
 import edu.cornell.cs.nlp.spf.genlex.ccg.ILexiconGenerator;
 import edu.cornell.cs.nlp.spf.genlex.ccg.template.GenerationRepository;
 import edu.cornell.cs.nlp.spf.genlex.ccg.template.GenerationRepositoryWithConstants;
+import edu.cornell.cs.nlp.spf.genlex.ccg.template.LazyGenerationLexicon;
+import edu.cornell.cs.nlp.spf.genlex.ccg.template.TemplateApplicationCache;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicLanguageServices;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalConstant;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
@@ -51,6 +54,8 @@ import edu.cornell.cs.nlp.spf.parser.IParser;
 import edu.cornell.cs.nlp.spf.parser.IParserOutput;
 import edu.cornell.cs.nlp.spf.parser.ccg.model.IModelImmutable;
 import edu.cornell.cs.nlp.spf.parser.ccg.model.IModelListener;
+import edu.cornell.cs.nlp.spf.parser.graph.IGraphDerivation;
+import edu.cornell.cs.nlp.spf.parser.graph.IGraphParserOutput;
 import edu.cornell.cs.nlp.utils.composites.Triplet;
 import edu.cornell.cs.nlp.utils.log.ILogger;
 import edu.cornell.cs.nlp.utils.log.LoggerFactory;
@@ -63,7 +68,9 @@ import edu.cornell.cs.nlp.utils.log.LoggerFactory;
  * coarse ontology (see the ACL 2013 tutorial for details on coarse ontologies).
  * Coarse entries used in the generated parses are then used to initialize
  * fine-grained lexical entries using all the constants in the original
- * ontologies. These entries are then returned by the generator.
+ * ontologies. These entries are then returned by the generator. Optionally,
+ * the coarse entries of the top-k coarse parse trees are used as well, to get
+ * alternative entries without parsing with a larger beam.
  *
  * @author Yoav Artzi
  * @param <DI>
@@ -81,16 +88,28 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 
 	private final GenerationRepositoryWithConstants		fineRepository;
 
+	/**
+	 * Number of top-scoring coarse parse trees to collect coarse entries from,
+	 * in addition to the max-scoring parses. Requires a graph parser. If 0,
+	 * only the max-scoring parses are used.
+	 */
+	private final int									kBest;
+
 	private final int									maxTokens;
 
 	private final IParser<Sentence, LogicalExpression>	parser;
 	private final int									parsingBeam;
 
+	/**
+	 * Cache of template applications, shared across data items.
+	 */
+	private final TemplateApplicationCache				templateApplications;
+
 	protected TemplateCoarseGenlex(
 			GenerationRepositoryWithConstants fineRepository,
 			GenerationRepositoryWithConstants coarseRepository, int maxTokens,
 			IParser<Sentence, LogicalExpression> parser, int parsingBeam,
-			String origin, boolean mark) {
+			String origin, boolean mark, int applicationCacheSize, int kBest) {
 		super(origin, mark);
 		assert fineRepository.getTemplates()
 				.equals(coarseRepository.getTemplates());
@@ -98,22 +117,29 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 		this.coarseRepository = coarseRepository;
 		this.parser = parser;
 		this.parsingBeam = parsingBeam;
+		this.kBest = kBest;
 		this.maxTokens = maxTokens;
-		LOG.info("Init %s :: maxTokens=%d, #Templates=%d, parsingBeam=%d ...",
+		this.templateApplications = new TemplateApplicationCache(
+				applicationCacheSize);
+		LOG.info(
+				"Init %s :: maxTokens=%d, #Templates=%d, parsingBeam=%d, applicationCacheSize=%d ...",
 				this.getClass().getSimpleName(), maxTokens,
-				fineRepository.getTemplates().size(), parsingBeam);
+				fineRepository.getTemplates().size(), parsingBeam,
+				applicationCacheSize);
+		LOG.info("Init %s :: ... kBest=%d", this.getClass().getSimpleName(),
+				kBest);
 	}
 
 	@Override
 	public ILexicon<LogicalExpression> generate(DI dataItem,
 			IModelImmutable<Sentence, LogicalExpression> model,
 			ICategoryServices<LogicalExpression> categoryServices) {
-		// Create all possible lexemes using abstract lists for all spans of
-		// tokens up to the limit and the abstract factored lexicon.
-		final FactoredLexicon abstractLexicon = new FactoredLexicon(
-				coarseRepository.generate(dataItem.getTokens(), maxTokens,
-						entryProperties),
-				coarseRepository.getTemplates());
+		// Create a lexicon with all possible abstract entries for all spans of
+		// tokens up to the limit. Entries are only created for spans the
+		// parser looks up.
+		final LazyGenerationLexicon abstractLexicon = coarseRepository
+				.createLexicon(dataItem.getTokens(), maxTokens, entryProperties,
+						templateApplications);
 
 		// Parse with abstract constants.
 		final IParserOutput<LogicalExpression> parserOutput = parser.parse(
@@ -124,21 +150,29 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 				parserOutput.getParsingTime() / 1000.0);
 		LOG.debug("Generated %d abstract parses",
 				parserOutput.getAllDerivations().size());
+		LOG.debug(
+				"Abstract lexicon: %d entries created in %d lookups (upper bound: %d entries), template applications: %s",
+				abstractLexicon.numGeneratedEntries(),
+				abstractLexicon.numLookups(), abstractLexicon.size(),
+				templateApplications.stats());
 
 		// Collect triplets of template, tokens and attributes used in generated
-		// lexical entries in complete derivations.
-		final List<Triplet<LexicalTemplate, TokenSeq, List<String>>> triplets = new LinkedList<Triplet<LexicalTemplate, TokenSeq, List<String>>>();
+		// lexical entries in complete derivations. Many derivations share the
+		// same entries, so the triplets are de-duplicated.
+		final Set<Triplet<LexicalTemplate, TokenSeq, List<String>>> triplets = new LinkedHashSet<Triplet<LexicalTemplate, TokenSeq, List<String>>>();
 		for (final IDerivation<LogicalExpression> parse : parserOutput
 				.getAllDerivations()) {
-			for (final LexicalEntry<LogicalExpression> entry : parse
-					.getMaxLexicalEntries()) {
-				if (origin.equals(entry.getOrigin())) {
-					final FactoredLexicalEntry factored = FactoringServices
-							.factor(entry);
-					triplets.add(Triplet.of(factored.getTemplate(),
-							entry.getTokens(),
-							factored.getLexeme().getAttributes()));
-				}
+			collectTriplets(parse, triplets);
+		}
+
+		// Collect the triplets of the top-k trees. The trees are extracted
+		// lazily from the packed parser output.
+		if (kBest > 0 && parserOutput instanceof IGraphParserOutput) {
+			@SuppressWarnings("unchecked")
+			final Iterator<? extends IGraphDerivation<LogicalExpression>> iterator = ((IGraphParserOutput<LogicalExpression>) parserOutput)
+					.kBestIterator();
+			for (int i = 0; i < kBest && iterator.hasNext(); ++i) {
+				collectTriplets(iterator.next(), triplets);
 			}
 		}
 
@@ -153,30 +187,35 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 		// Create lexemes using the tokens that were used with GENLEX entries
 		// during the abstract parse. Create lexical entries from the tokens,
 		// the potential sequences and used templates. Only add entries that are
-		// missing from the model.
+		// missing from the model. The triplets are expanded in parallel, and
+		// template applications and their factoring are re-used across
+		// samples.
+		final long startTime = System.currentTimeMillis();
+		final List<LexicalEntry<LogicalExpression>> entries = triplets
+				.parallelStream().flatMap(triplet -> {
+					final LexicalTemplate template = triplet.first();
+					final List<String> attributes = triplet.third();
+					final TokenSeq tokens = triplet.second();
+					final List<LexicalEntry<LogicalExpression>> expanded = new ArrayList<LexicalEntry<LogicalExpression>>();
+					for (final List<LogicalConstant> seq : fineRepository
+							.getConstantSeqs(template)) {
+						final FactoredLexicalEntry entry = templateApplications
+								.applyAndFactor(template, new Lexeme(tokens,
+										seq, attributes, entryProperties));
+						if (entry != null
+								&& !model.getLexicon().contains(entry)) {
+							expanded.add(entry);
+						}
+					}
+					return expanded.stream();
+				}).collect(Collectors.toList());
 		final Lexicon<LogicalExpression> lexicon = new Lexicon<LogicalExpression>();
+		lexicon.addAll(entries);
 
-		for (final Triplet<LexicalTemplate, TokenSeq, List<String>> triplet : triplets) {
-			final LexicalTemplate template = triplet.first();
-			final List<String> attributes = triplet.third();
-			final TokenSeq tokens = triplet.second();
-			for (final List<LogicalConstant> seq : fineRepository
-					.getConstantSeqs(template)) {
-				final Lexeme lexeme = new Lexeme(tokens, seq, attributes,
-						entryProperties);
-				final Category<LogicalExpression> category = template
-						.apply(lexeme);
-				if (category != null) {
-					final LexicalEntry<LogicalExpression> entry = FactoringServices
-							.factor(new LexicalEntry<LogicalExpression>(
-									lexeme.getTokens(), category, false,
-									entryProperties));
-					if (!model.getLexicon().contains(entry)) {
-						lexicon.add(entry);
-					}
-				}
-			}
-		}
+		LOG.debug(
+				"Fine-grained expansion completed, %.4fsec, factoring cache: %s",
+				(System.currentTimeMillis() - startTime) / 1000.0,
+				templateApplications.factoringStats());
 
 		LOG.debug("%d lexical entries generated", lexicon.size());
 		LOG.debug(() -> {
@@ -193,6 +232,7 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 	public void init(IModelImmutable<Sentence, LogicalExpression> model) {
 		coarseRepository.init(model);
 		fineRepository.init(model);
+		templateApplications.clear();
 	}
 
 	@Override
@@ -229,12 +269,32 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 		}
 	}
 
+	/**
+	 * Collect the template, tokens and attributes of every generated entry in
+	 * the max-scoring trees of the given derivation.
+	 */
+	private void collectTriplets(IDerivation<LogicalExpression> derivation,
+			Set<Triplet<LexicalTemplate, TokenSeq, List<String>>> triplets) {
+		for (final LexicalEntry<LogicalExpression> entry : derivation
+				.getMaxLexicalEntries()) {
+			if (origin.equals(entry.getOrigin())) {
+				final FactoredLexicalEntry factored = FactoringServices
+						.factor(entry);
+				triplets.add(Triplet.of(factored.getTemplate(),
+						entry.getTokens(),
+						factored.getLexeme().getAttributes()));
+			}
+		}
+	}
+
 	public static class Builder<DI extends Sentence> {
-		private static final String								CONST_SEED_NAME	= "absconst";
+		private static final String								CONST_SEED_NAME			= "absconst";
 
+		private int												applicationCacheSize	= 100000;
+		private int												kBest					= 0;
 		private final boolean									mark;
-		private String											origin			= ILexiconGenerator.GENLEX_LEXICAL_ORIGIN;
-		protected final Set<LogicalConstant>					constants		= new HashSet<LogicalConstant>();
+		private String											origin					= ILexiconGenerator.GENLEX_LEXICAL_ORIGIN;
+		protected final Set<LogicalConstant>					constants				= new HashSet<LogicalConstant>();
 		protected final int										maxTokens;
 		protected final IParser<Sentence, LogicalExpression>	parser;
 		protected final int										parsingBeam;
@@ -262,7 +322,26 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 			return new TemplateCoarseGenlex<DI>(
 					repository.setConstants(constants),
 					repository.setConstants(createAbstractConstants()),
-					maxTokens, parser, parsingBeam, origin, mark);
+					maxTokens, parser, parsingBeam, origin, mark,
+					applicationCacheSize, kBest);
+		}
+
+		/**
+		 * Maximum number of cached template applications (0 to disable
+		 * caching).
+		 */
+		public Builder<DI> setApplicationCacheSize(int applicationCacheSize) {
+			this.applicationCacheSize = applicationCacheSize;
+			return this;
+		}
+
+		/**
+		 * Number of top-scoring coarse parse trees to collect coarse entries
+		 * from, in addition to the max-scoring parses (0 to disable).
+		 */
+		public Builder<DI> setKBest(int kBest) {
+			this.kBest = kBest;
+			return this;
 		}
 
 		public Builder<DI> setOrigin(String origin) {
@@ -314,6 +393,15 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 				builder.setOrigin(params.get("origin"));
 			}
 
+			if (params.contains("applicationCache")) {
+				builder.setApplicationCacheSize(
+						params.getAsInteger("applicationCache"));
+			}
+
+			if (params.contains("kBest")) {
+				builder.setKBest(params.getAsInteger("kBest"));
+			}
+
 			return builder.build();
 		}
 
@@ -338,6 +426,10 @@ public class TemplateCoarseGenlex<DI extends Sentence> extends
 					.addParam("beam", Integer.class, "Beam for parsing.")
 					.addParam("ontology", Set.class,
 							"Collection of logical constants to initialize templates.")
+					.addParam("applicationCache", Integer.class,
+							"Max number of cached template applications, shared across samples, 0 to disable (default: 100000)")
+					.addParam("kBest", Integer.class,
+							"Number of top-scoring coarse parse trees to collect entries from, in addition to the max-scoring parses. Requires a graph parser, 0 to disable (default: 0)")
 					.build();
 		}
 
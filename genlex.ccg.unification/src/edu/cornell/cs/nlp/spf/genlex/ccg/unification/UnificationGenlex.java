@@ -16,11 +16,13 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.genlex.ccg.unification;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
@@ -40,6 +42,7 @@ import edu.cornell.cs.nlp.spf.explat.resources.usage.ResourceUsage;
 import edu.cornell.cs.nlp.spf.genlex.ccg.AbstractLexiconGenerator;
 import edu.cornell.cs.nlp.spf.genlex.ccg.ILexiconGeneratorPrecise;
 import edu.cornell.cs.nlp.spf.genlex.ccg.unification.split.IUnificationSplitter;
+import edu.cornell.cs.nlp.spf.genlex.ccg.unification.split.SplitBudget;
 import edu.cornell.cs.nlp.spf.genlex.ccg.unification.split.SplittingServices.SplittingPair;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
 import edu.cornell.cs.nlp.spf.parser.IDerivation;
@@ -58,11 +61,17 @@ import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName;
 import edu.cornell.cs.nlp.spf.parser.filter.IParsingFilterFactory;
 import edu.cornell.cs.nlp.spf.parser.filter.StubFilterFactory;
 import edu.cornell.cs.nlp.utils.collections.CollectionUtils;
+import edu.cornell.cs.nlp.utils.composites.Pair;
 import edu.cornell.cs.nlp.utils.log.ILogger;
 import edu.cornell.cs.nlp.utils.log.LoggerFactory;
 
 /**
  * Unification-based GENLEX method. See Kwiatkowski et al. 2010 for details.
+ * The spans of the chart can be processed in parallel. The splitting work for
+ * each sample and the time spent on it can be bounded (see
+ * {@link SplitBudget}). The budget bounds both the enumeration of the splits
+ * of each category and their evaluation. When the budget is exhausted, the
+ * best splits found so far are used.
  *
  * @author Yoav Artzi
  * @author Luke Zettlemoyer
@@ -81,6 +90,24 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 	private final boolean										conservative;
 	private final IParsingFilterFactory<DI, LogicalExpression>	filterFactory;
 
+	/**
+	 * Max number of splitting steps for each sample (0 for no limit). Each
+	 * enumerated split candidate and each evaluation of a split at a splitting
+	 * point is a single step.
+	 */
+	private final int											maxSteps;
+
+	/**
+	 * Max time in milliseconds to spend on splitting for each sample (0 for no
+	 * limit).
+	 */
+	private final long											maxTime;
+
+	/**
+	 * Process the spans of the chart in parallel.
+	 */
+	private final boolean										parallel;
+
 	private final AbstractCKYParser<SAMPLE, LogicalExpression>	parser;
 
 	private final Syntax										sentenceSyntax;
@@ -92,12 +119,28 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 			IUnificationSplitter splitter, boolean conservative,
 			IParsingFilterFactory<DI, LogicalExpression> filterFactory,
 			Syntax sentenceSyntax, String origin) {
+		this(parser, splitter, conservative, filterFactory, sentenceSyntax,
+				origin, false, 0, 0);
+	}
+
+	public UnificationGenlex(
+			AbstractCKYParser<SAMPLE, LogicalExpression> parser,
+			IUnificationSplitter splitter, boolean conservative,
+			IParsingFilterFactory<DI, LogicalExpression> filterFactory,
+			Syntax sentenceSyntax, String origin, boolean parallel,
+			int maxSteps, long maxTime) {
 		super(origin, false);
 		this.parser = parser;
 		this.splitter = splitter;
 		this.conservative = conservative;
 		this.filterFactory = filterFactory;
 		this.sentenceSyntax = sentenceSyntax;
+		this.parallel = parallel;
+		this.maxSteps = maxSteps;
+		this.maxTime = maxTime;
+		LOG.info("Init %s: parallel=%s, maxSteps=%d, maxTime=%d",
+				UnificationGenlex.class.getSimpleName(), parallel, maxSteps,
+				maxTime);
 	}
 
 	@Override
@@ -138,25 +181,38 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 		// it here.
 
 		// Iterate over each nonterminal in the highest scoring parse in the
-		// chart to collect potential splits
-		final List<Split> splits = new LinkedList<Split>();
+		// chart to collect potential splits. The best splits of each span are
+		// computed independently, and then merged in the order of the spans.
 		chart.setMaxes(dataItem.getLabel());
-		double mostImproved = 0.0;
 		final int size = dataItem.getSample().getTokens().size();
+		final List<Pair<Integer, Integer>> spans = new ArrayList<Pair<Integer, Integer>>();
 		for (int begin = 0; begin < size; begin++) {
 			for (int len = 0; len < size - begin; len++) {
-				final Iterator<Cell<LogicalExpression>> i = chart
-						.getSpanIterator(begin, begin + len);
-				while (i.hasNext()) {
-					final Cell<LogicalExpression> cell = i.next();
-					if (cell.isMax()) {
-						mostImproved = collectBestSplits(cell, begin,
-								begin + len, splits, chart, dataItem,
-								mostImproved, model);
-					}
+				spans.add(Pair.of(begin, begin + len));
+			}
+		}
+		final SplitBudget budget = new SplitBudget(maxSteps, maxTime);
+		final List<Pair<Double, List<Split>>> spanSplits = (parallel
+				? spans.parallelStream() : spans.stream())
+						.map(span -> collectSpanSplits(span.first(),
+								span.second(), chart, dataItem, model, budget))
+						.collect(Collectors.toList());
+		final List<Split> splits = new LinkedList<Split>();
+		double mostImproved = 0.0;
+		for (final Pair<Double, List<Split>> pair : spanSplits) {
+			if (!pair.second().isEmpty() && pair.first() >= mostImproved) {
+				if (pair.first() > mostImproved) {
+					splits.clear();
+					mostImproved = pair.first();
 				}
+				splits.addAll(pair.second());
 			}
 		}
+		if (budget.isExhausted()) {
+			LOG.info(
+					"Split budget exhausted (%d steps, %.3fsec), using best splits found",
+					budget.getNumSteps(), budget.getElapsed() / 1000.0);
+		}
 
 		// Collect the new lexical entries
 		final Set<LexicalEntry<LogicalExpression>> entries = new HashSet<LexicalEntry<LogicalExpression>>();
@@ -209,7 +265,8 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 	private double collectBestSplits(Cell<LogicalExpression> cell, int begin,
 			int end, List<Split> maxEntries, Chart<LogicalExpression> chart,
 			DI dataItem, double mostImproved,
-			IModelImmutable<Sentence, LogicalExpression> model) {
+			IModelImmutable<Sentence, LogicalExpression> model,
+			SplitBudget budget) {
 
 		// Cell category and tokens
 		final Category<LogicalExpression> rootCategory = cell.getCategory();
@@ -223,8 +280,11 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 		final AbstractCellFactory<LogicalExpression> cellFactory = chart
 				.getCellFactory();
 
-		// Get all splits for the root category
-		final Set<SplittingPair> allSplits = splitter.getSplits(rootCategory);
+		// Get all splits for the root category. If the budget is exhausted
+		// during the enumeration, only the splits enumerated so far are
+		// returned.
+		final Set<SplittingPair> allSplits = splitter.getSplits(rootCategory,
+				budget);
 
 		// Iterate over all possible splits
 		for (final SplittingPair split : allSplits) {
@@ -234,6 +294,10 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 			// Iterate over all breaking points for dividing the phrase
 			// (tokens), create new lexical entries and cells
 			for (int splittingPoint = begin; splittingPoint < end; splittingPoint++) {
+				if (!budget.consume()) {
+					return currentMaxImprovement;
+				}
+
 				// Create new lexical entries
 
 				// TODO [yoav] [limitation] Factoring so templates and lexemes
@@ -349,6 +413,30 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 		return currentMaxImprovement;
 	}
 
+	/**
+	 * Collect the splits with the maximum score increase for all max cells of
+	 * a span.
+	 *
+	 * @return The maximum score increase and the splits with this score.
+	 */
+	private Pair<Double, List<Split>> collectSpanSplits(int begin, int end,
+			Chart<LogicalExpression> chart, DI dataItem,
+			IModelImmutable<Sentence, LogicalExpression> model,
+			SplitBudget budget) {
+		final List<Split> splits = new LinkedList<Split>();
+		double mostImproved = 0.0;
+		final Iterator<Cell<LogicalExpression>> i = chart.getSpanIterator(begin,
+				end);
+		while (i.hasNext() && !budget.isExhausted()) {
+			final Cell<LogicalExpression> cell = i.next();
+			if (cell.isMax()) {
+				mostImproved = collectBestSplits(cell, begin, end, splits,
+						chart, dataItem, mostImproved, model, budget);
+			}
+		}
+		return Pair.of(mostImproved, splits);
+	}
+
 	public static class Creator<SAMPLE extends Sentence, DI extends ILabeledDataItem<SAMPLE, LogicalExpression>>
 			implements IResourceObjectCreator<UnificationGenlex<SAMPLE, DI>> {
 
@@ -376,7 +464,10 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 									? repo.get(params.get("filterFactory"))
 									: new StubFilterFactory<DI, LogicalExpression>()),
 					Syntax.read(params.get("sentenceSyntax")),
-					params.get("origin", "splitting"));
+					params.get("origin", "splitting"),
+					params.getAsBoolean("parallel", false),
+					params.getAsInteger("maxSplitSteps", 0),
+					params.getAsLong("maxTime", 0));
 		}
 
 		@Override
@@ -395,6 +486,12 @@ public class UnificationGenlex<SAMPLE extends Sentence, DI extends ILabeledDataI
 							"Origin of generated entries (default: splitting)")
 					.addParam("convervative", "boolean",
 							"If 'true' only use splits if there's a single best split.")
+					.addParam("parallel", Boolean.class,
+							"Process the spans of the chart in parallel (default: false)")
+					.addParam("maxSplitSteps", Integer.class,
+							"Max number of splitting steps for each sample, where each enumerated split candidate and each evaluation of a split at a splitting point is a step, 0 for no limit (default: 0)")
+					.addParam("maxTime", Long.class,
+							"Max time in milliseconds to spend on splitting for each sample, 0 for no limit (default: 0)")
 					.build();
 		}
 
@@ -26,4 +26,14 @@ public interface IUnificationSplitter {
 	
 	Set<SplittingPair> getSplits(Category<LogicalExpression> category);
 	
+	/**
+	 * Get the splits of the category, stopping the enumeration once the budget
+	 * is exhausted.
+	 * 
+	 * @return All splits if the budget was not exhausted, otherwise the splits
+	 *         enumerated before it was.
+	 */
+	Set<SplittingPair> getSplits(Category<LogicalExpression> category,
+			SplitBudget budget);
+	
 }
@@ -160,13 +160,16 @@ public class MakeApplicationSplits {
 	 *            The number of times this literal appears in
 	 *            originalCategory.getSem()
 	 * @param categoryServices
+	 * @param budget
+	 *            Each order of variables consumes a single step. Returns the
+	 *            splits created so far once exhausted.
 	 * @return
 	 */
 	private static Set<SplittingPair> doOrderInsensitiveSplits(
 			Category<LogicalExpression> originalCategory,
 			Literal subExpression, int count,
 			ICategoryServices<LogicalExpression> categoryServices,
-			int minSubsetSize) {
+			int minSubsetSize, SplitBudget budget) {
 
 		final Set<SplittingPair> newSplits = new HashSet<SplittingServices.SplittingPair>();
 		final int subExpNumArgs = subExpression.numArgs();
@@ -202,6 +205,9 @@ public class MakeApplicationSplits {
 					// Iterate over all possible orders of the variables
 					for (final List<Variable> variablesOrder : SplittingServices
 							.allOrders(freeVars)) {
+						if (!budget.consume()) {
+							return newSplits;
+						}
 
 						// Wrap the extracted literal with Lambda operators to
 						// tie all the free variables
@@ -296,12 +302,15 @@ public class MakeApplicationSplits {
 	 *            The number of times this literal appears in
 	 *            originalCategory.getSem()
 	 * @param categoryServices
+	 * @param budget
+	 *            Each order of variables consumes a single step. Returns the
+	 *            splits created so far once exhausted.
 	 * @return
 	 */
 	private static Set<SplittingPair> doOrderSensitiveSplits(
 			Category<LogicalExpression> originalCategory, Literal literal,
 			int count, ICategoryServices<LogicalExpression> categoryServices,
-			int minSpanLength) {
+			int minSpanLength, SplitBudget budget) {
 		final int numArgs = literal.numArgs();
 		final Set<SplittingPair> newSplits = new HashSet<SplittingServices.SplittingPair>();
 
@@ -331,6 +340,9 @@ public class MakeApplicationSplits {
 					// Iterate over all possible orders of the variables
 					for (final List<Variable> variablesOrder : SplittingServices
 							.allOrders(freeVars)) {
+						if (!budget.consume()) {
+							return newSplits;
+						}
 
 						// Wrap the extracted literal with Lambda operators to
 						// tie all the free variables
@@ -481,8 +493,14 @@ public class MakeApplicationSplits {
 				input);
 	}
 
+	/**
+	 * Create all application splits of the category. Each order of variables
+	 * of an extracted sub-expression consumes a single step of the budget.
+	 * Once the budget is exhausted, the splits created so far are returned.
+	 */
 	static Set<SplittingPair> of(Category<LogicalExpression> originalCategory,
-			ICategoryServices<LogicalExpression> categoryServices) {
+			ICategoryServices<LogicalExpression> categoryServices,
+			SplitBudget budget) {
 		// Get all sub-expressions and predicates
 		final Map<LogicalExpression, Counter> subExpressions = new HashMap<LogicalExpression, Counter>();
 
@@ -528,12 +546,13 @@ public class MakeApplicationSplits {
 					if (literal.getPredicateType().isOrderSensitive()) {
 						// Case order sensitive
 						splits.addAll(doOrderSensitiveSplits(originalCategory,
-								literal, count, categoryServices, minArgs));
+								literal, count, categoryServices, minArgs,
+								budget));
 					} else {
 						// Case order insensitive
 						splits.addAll(doOrderInsensitiveSplits(
 								originalCategory, literal, count,
-								categoryServices, minArgs));
+								categoryServices, minArgs, budget));
 					}
 				}
 			}
@@ -546,6 +565,9 @@ public class MakeApplicationSplits {
 
 				for (final List<Variable> order : SplittingServices
 						.allOrders(freeVars)) {
+					if (!budget.consume()) {
+						return splits;
+					}
 					// Extract the sub-expression with the given order of
 					// variables. Also handles repeating sub-expressions.
 					splits.addAll(doSplits(subExpression, order,
@@ -58,6 +58,7 @@ public class MakeCompositionSplits implements ILogicalExpressionVisitor {
 																		.create(MakeCompositionSplits.class
 																				.getName());
 
+	private final SplitBudget							budget;
 	private final ICategoryServices<LogicalExpression>	categoryServices;
 	private final ComplexCategory<LogicalExpression>	originalCategory;
 	private final Lambda								originalLambda;
@@ -70,14 +71,17 @@ public class MakeCompositionSplits implements ILogicalExpressionVisitor {
 	 * @param originalCategory
 	 * @param originalLambda
 	 * @param categoryServices
+	 * @param budget
 	 */
 	private MakeCompositionSplits(
 			ComplexCategory<LogicalExpression> originalCategory,
 			Lambda originalLambda,
-			ICategoryServices<LogicalExpression> categoryServices) {
+			ICategoryServices<LogicalExpression> categoryServices,
+			SplitBudget budget) {
 		this.originalCategory = originalCategory;
 		this.originalLambda = originalLambda;
 		this.categoryServices = categoryServices;
+		this.budget = budget;
 	}
 
 	/**
@@ -128,8 +132,15 @@ public class MakeCompositionSplits implements ILogicalExpressionVisitor {
 		return split;
 	}
 
+	/**
+	 * Create all composition splits of the category. Each order of variables
+	 * of an extracted sub-expression consumes a single step of the budget.
+	 * Once the budget is exhausted, the splits created so far are returned.
+	 * The empty split is always included.
+	 */
 	static Set<SplittingPair> of(Category<LogicalExpression> originalCategory,
-			ICategoryServices<LogicalExpression> categoryServices) {
+			ICategoryServices<LogicalExpression> categoryServices,
+			SplitBudget budget) {
 
 		// Check if can split
 		if (!(originalCategory instanceof ComplexCategory)
@@ -148,7 +159,7 @@ public class MakeCompositionSplits implements ILogicalExpressionVisitor {
 		// Create the visitor and visit the logical expression
 		final MakeCompositionSplits visitor = new MakeCompositionSplits(
 				complexCategory, (Lambda) complexCategory.getSemantics(),
-				categoryServices);
+				categoryServices, budget);
 		visitor.visit(originalCategory.getSemantics());
 
 		// Empty split
@@ -165,6 +176,10 @@ public class MakeCompositionSplits implements ILogicalExpressionVisitor {
 
 	@Override
 	public void visit(Literal literal) {
+		if (budget.isExhausted()) {
+			return;
+		}
+
 		if (literal.getPredicateType() instanceof RecursiveComplexType) {
 			// Case recursive predicate, we to extract subsets of its arguments
 			splits.addAll(doSplitsForRecursivePredicate(literal));
@@ -180,6 +195,9 @@ public class MakeCompositionSplits implements ILogicalExpressionVisitor {
 				&& !(literal.getPredicate() instanceof Variable)) {
 			for (final List<Variable> order : SplittingServices
 					.allOrders(freeVars)) {
+				if (!budget.consume()) {
+					return;
+				}
 				final SplittingPair split = doSplit(literal, order);
 				if (split != null) {
 					splits.add(split);
@@ -337,6 +355,9 @@ public class MakeCompositionSplits implements ILogicalExpressionVisitor {
 					// Iterate over all possible variable orderings
 					for (final List<Variable> newArgOrder : SplittingServices
 							.allOrders(gFreeVars)) {
+						if (!budget.consume()) {
+							return newSplits;
+						}
 
 						// Construct the variables list
 						final List<Variable> newVars = new LinkedList<Variable>();
@@ -430,6 +451,9 @@ public class MakeCompositionSplits implements ILogicalExpressionVisitor {
 					// Iterate over all possible variable orderings
 					for (final List<Variable> newArgOrder : SplittingServices
 							.allOrders(gFreeVars)) {
+						if (!budget.consume()) {
+							return newSplits;
+						}
 
 						// Construct the variables list
 						final List<Variable> newVars = new LinkedList<Variable>();
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.genlex.ccg.unification.split;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits on the splitting work done for a single sample. Each step is a
+ * single unit of work: enumerating a candidate split (a single ordering of
+ * the variables of an extracted sub-expression) or evaluating a split at a
+ * single splitting point. Once the number of steps or the wall clock time
+ * exceeds the budget, the budget is exhausted and all further steps are
+ * refused. Each limit is disabled when set to 0. Safe for concurrent use.
+ *
+ * @author Yoav Artzi
+ */
+public class SplitBudget {
+
+	private final long			deadline;
+
+	private volatile boolean	exhausted	= false;
+
+	private final int			maxSteps;
+
+	private final AtomicInteger	numSteps	= new AtomicInteger();
+
+	private final long			startTime	= System.currentTimeMillis();
+
+	/**
+	 * @param maxSteps
+	 *            Max number of steps (0 for no limit).
+	 * @param maxTime
+	 *            Max time in milliseconds (0 for no limit).
+	 */
+	public SplitBudget(int maxSteps, long maxTime) {
+		this.maxSteps = maxSteps;
+		this.deadline = maxTime > 0 ? startTime + maxTime : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Consume the budget for a single step.
+	 *
+	 * @return 'false' iff the budget is exhausted and the step should be
+	 *         skipped.
+	 */
+	public boolean consume() {
+		if (exhausted) {
+			return false;
+		}
+		final int count = numSteps.incrementAndGet();
+		if (maxSteps > 0 && count > maxSteps
+				|| System.currentTimeMillis() > deadline) {
+			numSteps.decrementAndGet();
+			exhausted = true;
+			return false;
+		}
+		return true;
+	}
+
+	public long getElapsed() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * The number of steps taken, not including refused steps.
+	 */
+	public int getNumSteps() {
+		return numSteps.get();
+	}
+
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[steps=%d, time=%dms, exhausted=%s]",
+				getNumSteps(), getElapsed(), exhausted);
+	}
+
+}
@@ -16,9 +16,14 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.genlex.ccg.unification.split;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
@@ -28,26 +33,103 @@ import edu.cornell.cs.nlp.spf.explat.resources.IResourceObjectCreator;
 import edu.cornell.cs.nlp.spf.explat.resources.usage.ResourceUsage;
 import edu.cornell.cs.nlp.spf.genlex.ccg.unification.split.SplittingServices.SplittingPair;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+import edu.cornell.cs.nlp.utils.log.ILogger;
+import edu.cornell.cs.nlp.utils.log.LoggerFactory;
 
 /**
- * Splitting service object.
+ * Splitting service object. Optionally, memoizes the application and
+ * composition splits of each category, so categories that repeat across cells
+ * and sentences are only split once. The memoized splits are kept in a bounded
+ * cache. Splits enumerated under an exhausted budget are partial, so they are
+ * never memoized.
  * 
  * @author Yoav Artzi
  */
 public class Splitter implements IUnificationSplitter {
-	private final ICategoryServices<LogicalExpression>	categoryServices;
+	private static final ILogger											LOG	= LoggerFactory
+			.create(Splitter.class);
+
+	private final Cache<Category<LogicalExpression>, Set<SplittingPair>>	applicationSplits;
+	private final ICategoryServices<LogicalExpression>						categoryServices;
+	private final Cache<Category<LogicalExpression>, Set<SplittingPair>>	compositionSplits;
 	
 	public Splitter(ICategoryServices<LogicalExpression> categoryServices) {
+		this(categoryServices, 0);
+	}
+	
+	/**
+	 * @param cacheSize
+	 *            Max number of categories to memoize splits for, for each type
+	 *            of split (0 to disable).
+	 */
+	public Splitter(ICategoryServices<LogicalExpression> categoryServices,
+			int cacheSize) {
 		this.categoryServices = categoryServices;
+		if (cacheSize > 0) {
+			this.applicationSplits = CacheBuilder.newBuilder()
+					.maximumSize(cacheSize).recordStats().build();
+			this.compositionSplits = CacheBuilder.newBuilder()
+					.maximumSize(cacheSize).recordStats().build();
+		} else {
+			this.applicationSplits = null;
+			this.compositionSplits = null;
+		}
+		LOG.info("Init %s: cacheSize=%d", Splitter.class.getSimpleName(),
+				cacheSize);
 	}
 	
+	@Override
 	public Set<SplittingPair> getSplits(Category<LogicalExpression> category) {
+		return getSplits(category, new SplitBudget(0, 0));
+	}
+	
+	@Override
+	public Set<SplittingPair> getSplits(Category<LogicalExpression> category,
+			SplitBudget budget) {
 		final Set<SplittingPair> splits = new HashSet<SplittingPair>();
-		splits.addAll(MakeApplicationSplits.of(category, categoryServices));
-		splits.addAll(MakeCompositionSplits.of(category, categoryServices));
+		if (applicationSplits == null) {
+			splits.addAll(MakeApplicationSplits.of(category, categoryServices,
+					budget));
+			splits.addAll(MakeCompositionSplits.of(category, categoryServices,
+					budget));
+		} else {
+			boolean miss = false;
+			Set<SplittingPair> cached = applicationSplits
+					.getIfPresent(category);
+			if (cached == null) {
+				miss = true;
+				cached = Collections.unmodifiableSet(MakeApplicationSplits
+						.of(category, categoryServices, budget));
+				if (!budget.isExhausted()) {
+					applicationSplits.put(category, cached);
+				}
+			}
+			splits.addAll(cached);
+			cached = compositionSplits.getIfPresent(category);
+			if (cached == null) {
+				miss = true;
+				cached = Collections.unmodifiableSet(MakeCompositionSplits
+						.of(category, categoryServices, budget));
+				if (!budget.isExhausted()) {
+					compositionSplits.put(category, cached);
+				}
+			}
+			splits.addAll(cached);
+			if (miss) {
+				LOG.debug("Split cache stats: %s", stats());
+			}
+		}
 		return splits;
 	}
 	
+	/**
+	 * Statistics of the application and composition caches.
+	 */
+	public CacheStats stats() {
+		return applicationSplits == null ? null
+				: applicationSplits.stats().plus(compositionSplits.stats());
+	}
+	
 	public static class Creator implements IResourceObjectCreator<Splitter> {
 		
 		@SuppressWarnings("unchecked")
@@ -56,7 +138,8 @@ public class Splitter implements IUnificationSplitter {
 				IResourceRepository resourceRepo) {
 			return new Splitter(
 					(ICategoryServices<LogicalExpression>) resourceRepo
-							.get(ParameterizedExperiment.CATEGORY_SERVICES_RESOURCE));
+							.get(ParameterizedExperiment.CATEGORY_SERVICES_RESOURCE),
+					parameters.getAsInteger("cacheSize", 0));
 		}
 		
 		@Override
@@ -69,6 +152,8 @@ public class Splitter implements IUnificationSplitter {
 			return new ResourceUsage.Builder(type(), Splitter.class)
 					.setDescription(
 							"Logical expression splitter for unification-based GENLEX")
+					.addParam("cacheSize", Integer.class,
+							"Max number of categories to memoize splits for, 0 to disable (default: 0)")
 					.build();
 		}
 		
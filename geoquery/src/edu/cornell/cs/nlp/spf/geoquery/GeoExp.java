@@ -102,7 +102,10 @@ public class GeoExp extends DistributedExperiment {
 							.setUseOntology(true)
 							.addConstantsToOntology(
 									globalParams.getAsFiles("ont"))
-							.closeOntology(true).build());
+							.closeOntology(true)
+							.setInternExpressions(globalParams
+									.getAsBoolean("internSemantics", false))
+							.build());
 
 			storeResource(ONTOLOGY_RESOURCE,
 					LogicLanguageServices.getOntology());
@@ -115,7 +118,9 @@ public class GeoExp extends DistributedExperiment {
 		// Category services for logical expressions
 		// //////////////////////////////////////////////////
 
-		this.categoryServices = new LogicalExpressionCategoryServices(true);
+		// Optionally, memoize application and composition results.
+		this.categoryServices = new LogicalExpressionCategoryServices(true,
+				globalParams.getAsInteger("semanticsCacheSize", 0));
 		storeResource(CATEGORY_SERVICES_RESOURCE, categoryServices);
 
 		// //////////////////////////////////////////////////
@@ -253,7 +258,8 @@ public class GeoExp extends DistributedExperiment {
 							params.get("model"), params.getAsFile("file")
 									.getAbsolutePath());
 					Model.write((Model<Sentence, LogicalExpression>) get(params
-							.get("model")), params.getAsFile("file"));
+							.get("model")), params.getAsFile("file"), params
+							.getAsBoolean("binary", false));
 				} catch (final IOException e) {
 					LOG.error("Failed to save model to: %s", params.get("file"));
 					throw new RuntimeException(e);
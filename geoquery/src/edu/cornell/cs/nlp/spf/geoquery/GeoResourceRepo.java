@@ -16,6 +16,7 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.geoquery;
 
+import edu.cornell.cs.nlp.spf.ccg.lexicon.ConcurrentLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicon;
 import edu.cornell.cs.nlp.spf.data.collection.CompositeDataCollection;
 import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
@@ -86,6 +87,8 @@ public class GeoResourceRepo extends ResourceCreatorRepository {
 		registerResourceCreator(
 				new LogicalExpressionCoordinationFeatureSet.Creator<Sentence>());
 		registerResourceCreator(new FactoredLexicon.Creator());
+		registerResourceCreator(
+				new ConcurrentLexicon.Creator<LogicalExpression>());
 		registerResourceCreator(
 				new TemplateSupervisedGenlex.Creator<Sentence, SingleSentence>());
 		registerResourceCreator(new SingleSentenceCollection.Creator());
@@ -16,13 +16,34 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.learn.validation;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import edu.cornell.cs.nlp.spf.base.concurrency.LoggingForkJoinWorkerThreadFactory;
+import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.IVersionedLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
 import edu.cornell.cs.nlp.spf.data.ILabeledDataItem;
@@ -42,10 +63,14 @@ import edu.cornell.cs.nlp.spf.parser.ccg.model.IDataItemModel;
 import edu.cornell.cs.nlp.spf.parser.ccg.model.IModelImmutable;
 import edu.cornell.cs.nlp.spf.parser.ccg.model.Model;
 import edu.cornell.cs.nlp.spf.parser.filter.IParsingFilterFactory;
+import edu.cornell.cs.nlp.spf.parser.graph.IGraphDerivation;
+import edu.cornell.cs.nlp.spf.parser.graph.IGraphParserOutput;
 import edu.cornell.cs.nlp.utils.collections.CollectionUtils;
 import edu.cornell.cs.nlp.utils.filter.IFilter;
 import edu.cornell.cs.nlp.utils.log.ILogger;
+import edu.cornell.cs.nlp.utils.log.Log;
 import edu.cornell.cs.nlp.utils.log.LoggerFactory;
+import edu.cornell.cs.nlp.utils.log.thread.ILoggingThread;
 import edu.cornell.cs.nlp.utils.system.MemoryReport;
 
 /**
@@ -63,6 +88,25 @@ import edu.cornell.cs.nlp.utils.system.MemoryReport;
  * 2007. Trigger-based Language Modeling using a Loss-sensitive Perceptron
  * Algorithm. In proceedings of ICASSP 2007.
  * </p>
+ * <p>
+ * Optionally, training is done in mini-batches. The samples of a mini-batch
+ * are parsed concurrently with the same parameters, and their updates are
+ * summed or averaged (iterative parameter mixing, McDonald et al. 2010) into a
+ * single update. Mini-batch training requires the parser and the GENLEX
+ * procedure to support concurrent calls.
+ * </p>
+ * <p>
+ * Alternatively, training is done asynchronously (Hogwild, Niu et al. 2011).
+ * Workers process samples concurrently and update the model parameters
+ * without locking, which requires a model with a concurrent weight vector.
+ * Adding lexical entries requires exclusive access to the lexicon and the
+ * lexical feature sets, so workers only wait for each other when entries are
+ * added.
+ * </p>
+ * <p>
+ * Validation results are memoized for each sample, and retained across epochs
+ * for a bounded number of recently processed samples.
+ * </p>
  *
  * @author Yoav Artzi
  * @see ValidationPerceptron
@@ -77,6 +121,26 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
     protected static final String											HAS_VALID_LF		= "V";
     protected static final String											TRIGGERED_UPDATE	= "U";
 
+    /**
+     * Number of asynchronous workers. If positive, workers process samples
+     * concurrently and update the (concurrent) model parameters without
+     * locking. If 0, training is synchronous.
+     */
+    private final int														asyncWorkers;
+
+    /**
+     * Average the updates of a mini-batch, as in iterative parameter mixing,
+     * instead of summing them.
+     */
+    private final boolean													batchAveraging;
+
+    /**
+     * Number of samples in each mini-batch. Samples in a mini-batch are
+     * processed concurrently and the model is updated once per batch. If 1,
+     * the model is updated after each sample.
+     */
+    private final int														batchSize;
+
     private final ICategoryServices<MR>										categoryServices;
 
     /**
@@ -111,6 +175,15 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
      */
     private final Integer													lexiconGenerationBeamSize;
 
+    /**
+     * Number of top-scoring lexical generation parse trees to consider in
+     * addition to the max-scoring valid parses. The trees are extracted lazily
+     * from the packed parser output, which is much cheaper than parsing with a
+     * larger beam to get alternative entries. Requires a graph parser output.
+     * If 0, only the max-scoring valid parses are used.
+     */
+    private final int														lexiconGenerationKBest;
+
     private final IParsingFilterFactory<DI, MR>								parsingFilterFactory;
 
     private final IFilter<DI>												processingFilter;
@@ -125,6 +198,17 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
      */
     private final Map<DI, MR>												trainingDataDebug;
 
+    /**
+     * Validation results of recently processed samples. Each sample is mapped
+     * to the validation results of the semantics considered for it. Data items
+     * are compared by identity.
+     */
+    private final Cache<DI, Map<MR, Boolean>>							validationCache;
+
+    private final AtomicLong											validationCacheHits		= new AtomicLong();
+
+    private final AtomicLong											validationCacheMisses	= new AtomicLong();
+
     /**
      * Parser output logger.
      */
@@ -142,12 +226,19 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
             ICategoryServices<MR> categoryServices,
             ILexiconGenerator<DI, MR, IModelImmutable<SAMPLE, MR>> genlex,
             IFilter<DI> processingFilter,
-            IParsingFilterFactory<DI, MR> parsingFilterFactory) {
+            IParsingFilterFactory<DI, MR> parsingFilterFactory, int batchSize,
+            boolean batchAveraging, int asyncWorkers,
+            int validationCacheSize, int lexiconGenerationKBest) {
+        if (asyncWorkers > 0 && batchSize > 1) {
+            throw new IllegalArgumentException(
+                    "Asynchronous training doesn't support mini-batches");
+        }
         this.epochs = epochs;
         this.maxIterations = maxIterations;
         this.trainingData = trainingData;
         this.trainingDataDebug = trainingDataDebug;
         this.lexiconGenerationBeamSize = lexiconGenerationBeamSize;
+        this.lexiconGenerationKBest = lexiconGenerationKBest;
         this.parserOutputLogger = parserOutputLogger;
         this.conflateGenlexAndPrunedParses = conflateGenlexAndPrunedParses;
         this.errorDriven = errorDriven;
@@ -155,6 +246,16 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
         this.genlex = genlex;
         this.processingFilter = processingFilter;
         this.parsingFilterFactory = parsingFilterFactory;
+        this.batchSize = batchSize;
+        this.batchAveraging = batchAveraging;
+        this.asyncWorkers = asyncWorkers;
+        // Retain at least the samples that are processed concurrently, so
+        // each sample's results are shared by all its validation calls.
+        this.validationCache = CacheBuilder.newBuilder().weakKeys()
+                .concurrencyLevel(1)
+                .maximumSize(Math.max(validationCacheSize,
+                        Math.max(Math.max(batchSize, asyncWorkers), 1)))
+                .build();
         this.stats = new LearningStats.Builder(trainingData.size())
                 .addStat(HAS_VALID_LF, "Has a valid parse")
                 .addStat(TRIGGERED_UPDATE, "Sample triggered update")
@@ -166,6 +267,12 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
     @Override
     public void train(Model<SAMPLE, MR> model) {
 
+        if (asyncWorkers > 0
+                && !HashVectorFactory.isConcurrent(model.getTheta())) {
+            throw new IllegalStateException(
+                    "Asynchronous training requires a concurrent weight vector");
+        }
+
         // Init GENLEX.
         LOG.info("Initializing GENLEX ...");
         genlex.init(model);
@@ -180,6 +287,20 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
             LOG.info("=========================");
             LOG.info("Training epoch %d", epochNumber);
             LOG.info("=========================");
+
+            if (asyncWorkers > 0 || batchSize > 1) {
+                // Case asynchronous or mini-batch training.
+                iterations = asyncWorkers > 0
+                        ? trainAsync(model, epochNumber, iterations)
+                        : trainBatches(model, epochNumber, iterations);
+                if (maxIterations > 0 && iterations >= maxIterations) {
+                    LOG.info("Reached max iteration count of %d. Ending.", iterations);
+                    break outer;
+                }
+                logEpochStats(epochNumber);
+                continue;
+            }
+
             int itemCounter = -1;
 
             // Iterating over training data
@@ -190,11 +311,7 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
                 final long startTime = System.currentTimeMillis();
 
                 // Log sample header
-                LOG.info("%d : ================== [%d]", ++itemCounter,
-                        epochNumber);
-                LOG.info("Sample type: %s",
-                        dataItem.getClass().getSimpleName());
-                LOG.info("%s", dataItem);
+                logSampleHeader(dataItem, ++itemCounter, epochNumber);
 
                 // Skip sample, if over the length limit
                 if (!processingFilter.test(dataItem)) {
@@ -216,26 +333,8 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
                     // ///////////////////////////
 
                     // Parse with current model and record some statistics
-                    final PO parserOutput = parse(dataItem, dataItemModel);
-                    stats.mean("Model parse",
-                            parserOutput.getParsingTime() / 1000.0, "sec");
-                    parserOutputLogger.log(parserOutput, dataItemModel, String
-                            .format("train-%d-%d", epochNumber, itemCounter));
-
-                    final List<? extends IDerivation<MR>> modelParses = parserOutput
-                            .getAllDerivations();
-
-                    LOG.info("Model parsing time: %.4fsec",
-                            parserOutput.getParsingTime() / 1000.0);
-                    LOG.info("Output is %s",
-                            parserOutput.isExact() ? "exact" : "approximate");
-                    LOG.info("Created %d model parses for training sample:",
-                            modelParses.size());
-                    for (final IDerivation<MR> parse : modelParses) {
-                        logParse(dataItem, parse,
-                                validate(dataItem, parse.getSemantics()), true,
-                                dataItemModel);
-                    }
+                    final PO parserOutput = modelParse(dataItem, dataItemModel,
+                            itemCounter, epochNumber);
 
                     // Create a list of all valid parses
                     final List<? extends IDerivation<MR>> validParses = getValidParses(
@@ -244,7 +343,8 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
                     // If has a valid parse, call parameter update procedure
                     // and continue
                     if (!validParses.isEmpty() && errorDriven) {
-                        parameterUpdate(dataItem, parserOutput, parserOutput,
+                        applyUpdate(parameterUpdate(dataItem, parserOutput,
+                                parserOutput, model, itemCounter, epochNumber),
                                 model, itemCounter, epochNumber);
                         continue;
                     }
@@ -268,22 +368,16 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
 
                     if (conflateGenlexAndPrunedParses
                             && generationParserOutput != null) {
-                        parameterUpdate(dataItem, parserOutput,
+                        applyUpdate(parameterUpdate(dataItem, parserOutput,
                                 generationParserOutput, model, itemCounter,
-                                epochNumber);
+                                epochNumber), model, itemCounter, epochNumber);
                     } else {
-                        final PO prunedParserOutput = parse(dataItem,
-                                parsingFilterFactory.create(dataItem),
-                                dataItemModel);
-                        LOG.info("Conditioned parsing time: %.4fsec",
-                                prunedParserOutput.getParsingTime() / 1000.0);
-                        parserOutputLogger.log(prunedParserOutput,
-                                dataItemModel,
-                                String.format("train-%d-%d-conditioned",
-                                        epochNumber, itemCounter));
-                        parameterUpdate(dataItem, parserOutput,
-                                prunedParserOutput, model, itemCounter,
+                        final PO prunedParserOutput = conditionedParse(
+                                dataItem, dataItemModel, itemCounter,
                                 epochNumber);
+                        applyUpdate(parameterUpdate(dataItem, parserOutput,
+                                prunedParserOutput, model, itemCounter,
+                                epochNumber), model, itemCounter, epochNumber);
                     }
 
                 } finally {
@@ -302,13 +396,166 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
                 }
             }
 
-            // Output epoch statistics
-            LOG.info("System memory: %s", MemoryReport.generate());
-            LOG.info("Epoch stats:");
-            LOG.info(stats);
+            logEpochStats(epochNumber);
+        }
+    }
+
+    /**
+     * Add the generated lexical entries of the given lexical generation parses
+     * to the model. All new entries are added in a single batch, so versioned
+     * lexicons create a single new version per sample.
+     */
+    private void addGeneratedEntries(
+            List<IDerivation<MR>> bestGenerationParses,
+            Model<SAMPLE, MR> model, int dataItemNumber, int epochNumber) {
+        // Collect the generated lexical entries from the max scoring valid
+        // generation parses
+        final Set<LexicalEntry<MR>> generatedEntries = new LinkedHashSet<>();
+        final Set<LexicalEntry<MR>> linkedEntries = new HashSet<>();
+        for (final IDerivation<MR> parse : bestGenerationParses) {
+            for (final LexicalEntry<MR> entry : parse
+                    .getMaxLexicalEntries()) {
+                if (genlex.isGenerated(entry)) {
+                    generatedEntries
+                            .add(LexiconGenerationServices.unmark(entry));
+                    // Lexical generators might link related lexical
+                    // entries, so if we add the original one, we
+                    // should also add all its linked ones
+                    for (final LexicalEntry<MR> linkedEntry : entry
+                            .getLinkedEntries()) {
+                        final LexicalEntry<MR> unmarkedLinked = LexiconGenerationServices
+                                .unmark(linkedEntry);
+                        if (generatedEntries.add(unmarkedLinked)) {
+                            linkedEntries.add(unmarkedLinked);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Update the model's lexicon. An entry is new if it's not in the
+        // lexicon when it's added, including entries added before it in this
+        // loop (e.g., a factored lexicon may already contain an entry once the
+        // lexeme and template of other entries were added).
+        final List<LexicalEntry<MR>> newEntries = new ArrayList<>();
+        if (model.getLexicon() instanceof IVersionedLexicon) {
+            // Versioned lexicons contain exactly the entries added to them, so
+            // an entry is new iff it's not in the lexicon before the update.
+            // Add all new entries in a single modification, to create a
+            // single new version.
+            for (final LexicalEntry<MR> entry : generatedEntries) {
+                if (!model.getLexicon().contains(entry)) {
+                    newEntries.add(entry);
+                }
+            }
+            model.addLexEntries(newEntries);
+        } else {
+            for (final LexicalEntry<MR> entry : generatedEntries) {
+                if (model.addLexEntry(entry)) {
+                    newEntries.add(entry);
+                }
+            }
+        }
+
+        if (newEntries.isEmpty()) {
+            return;
+        }
+
+        for (final LexicalEntry<MR> entry : newEntries) {
+            LOG.info(
+                    linkedEntries.contains(entry)
+                            ? "Added (linked) LexicalEntry to model: %s [%s]"
+                            : "Added LexicalEntry to model: %s [%s]",
+                    entry, model.getTheta()
+                            .printValues(model.computeFeatures(entry)));
+        }
+
+        // Record statistics
+        stats.appendSampleStat(dataItemNumber, epochNumber,
+                newEntries.size());
+    }
+
+    /**
+     * Apply a parameter update computed by
+     * {@link #parameterUpdate(IDataItem, IParserOutput, IParserOutput, Model, int, int)}
+     * . If the update is <code>null</code>, do nothing.
+     */
+    private void applyUpdate(IHashVector update, Model<SAMPLE, MR> model,
+            int itemCounter, int epochNumber) {
+        if (update != null) {
+            update.addTimesInto(1.0, model.getTheta());
+            stats.appendSampleStat(itemCounter, epochNumber, TRIGGERED_UPDATE);
         }
     }
 
+    /**
+     * Parse constrained by the data item's parsing filter.
+     */
+    private PO conditionedParse(DI dataItem, IDataItemModel<MR> dataItemModel,
+            int itemCounter, int epochNumber) {
+        final PO prunedParserOutput = parse(dataItem,
+                parsingFilterFactory.create(dataItem), dataItemModel);
+        LOG.info("Conditioned parsing time: %.4fsec",
+                prunedParserOutput.getParsingTime() / 1000.0);
+        parserOutputLogger.log(prunedParserOutput, dataItemModel,
+                String.format("train-%d-%d-conditioned", epochNumber,
+                        itemCounter));
+        return prunedParserOutput;
+    }
+
+    /**
+     * Collect the max-scoring valid parses from the output of lexical
+     * generation parsing.
+     */
+    private List<IDerivation<MR>> getBestGenerationParses(DI dataItem,
+            PO parserOutput, IDataItemModel<MR> dataItemModel) {
+        // Get valid lexical generation parses
+        final List<? extends IDerivation<MR>> validParses = getValidParses(
+                parserOutput, dataItem);
+        LOG.info("Removed %d invalid parses",
+                parserOutput.getAllDerivations().size() - validParses.size());
+
+        // Collect max scoring valid generation parses
+        final List<IDerivation<MR>> bestGenerationParses = new LinkedList<IDerivation<MR>>();
+        double currentMaxModelScore = -Double.MAX_VALUE;
+        for (final IDerivation<MR> parse : validParses) {
+            if (parse.getScore() > currentMaxModelScore) {
+                currentMaxModelScore = parse.getScore();
+                bestGenerationParses.clear();
+                bestGenerationParses.add(parse);
+            } else if (parse.getScore() == currentMaxModelScore) {
+                bestGenerationParses.add(parse);
+            }
+        }
+        LOG.info("%d valid best parses for lexical generation:",
+                bestGenerationParses.size());
+        for (final IDerivation<MR> parse : bestGenerationParses) {
+            logParse(dataItem, parse, true, true, dataItemModel);
+        }
+
+        // Add the valid trees among the top-k generation parse trees.
+        if (lexiconGenerationKBest > 0
+                && parserOutput instanceof IGraphParserOutput) {
+            @SuppressWarnings("unchecked")
+            final Iterator<? extends IGraphDerivation<MR>> iterator = ((IGraphParserOutput<MR>) parserOutput)
+                    .kBestIterator(
+                            category -> isValid(dataItem,
+                                    category.getSemantics()));
+            final List<IDerivation<MR>> kBestTrees = new ArrayList<IDerivation<MR>>();
+            while (iterator.hasNext()
+                    && kBestTrees.size() < lexiconGenerationKBest) {
+                kBestTrees.add(iterator.next());
+            }
+            LOG.info("%d valid top-%d trees for lexical generation:",
+                    kBestTrees.size(), lexiconGenerationKBest);
+            for (final IDerivation<MR> tree : kBestTrees) {
+                logParse(dataItem, tree, true, true, dataItemModel);
+            }
+            bestGenerationParses.addAll(kBestTrees);
+        }
+        return bestGenerationParses;
+    }
+
     private List<? extends IDerivation<MR>> getValidParses(PO parserOutput,
             final DI dataItem) {
         final List<? extends IDerivation<MR>> parses = new LinkedList<IDerivation<MR>>(
@@ -317,13 +564,33 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
         // Use validation function to prune generation parses. Syntax is not
         // used to distinguish between derivations.
         CollectionUtils.filterInPlace(parses,
-                e -> validate(dataItem, e.getSemantics()));
+                e -> isValid(dataItem, e.getSemantics()));
         return parses;
     }
 
     private PO lexicalInduction(final DI dataItem, int dataItemNumber,
             IDataItemModel<MR> dataItemModel, Model<SAMPLE, MR> model,
             int epochNumber) {
+        final PO parserOutput = lexicalInductionParse(dataItem, dataItemNumber,
+                dataItemModel, model, epochNumber);
+        if (parserOutput != null) {
+            addGeneratedEntries(
+                    getBestGenerationParses(dataItem, parserOutput,
+                            dataItemModel),
+                    model, dataItemNumber, epochNumber);
+        }
+        return parserOutput;
+    }
+
+    /**
+     * Generate lexical entries and parse with them. Doesn't modify the model.
+     *
+     * @return The lexical generation parser output, or <code>null</code> if no
+     *         entries were generated.
+     */
+    private PO lexicalInductionParse(final DI dataItem, int dataItemNumber,
+            IDataItemModel<MR> dataItemModel, IModelImmutable<SAMPLE, MR> model,
+            int epochNumber) {
         // Generate lexical entries
         final ILexiconImmutable<MR> generatedLexicon = genlex.generate(dataItem,
                 model, categoryServices);
@@ -355,77 +622,386 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
             LOG.info("Created %d lexicon generation parses for training sample",
                     parserOutput.getAllDerivations().size());
 
-            // Get valid lexical generation parses
-            final List<? extends IDerivation<MR>> validParses = getValidParses(
-                    parserOutput, dataItem);
-            LOG.info("Removed %d invalid parses",
-                    parserOutput.getAllDerivations().size()
-                            - validParses.size());
-
-            // Collect max scoring valid generation parses
-            final List<IDerivation<MR>> bestGenerationParses = new LinkedList<IDerivation<MR>>();
-            double currentMaxModelScore = -Double.MAX_VALUE;
-            for (final IDerivation<MR> parse : validParses) {
-                if (parse.getScore() > currentMaxModelScore) {
-                    currentMaxModelScore = parse.getScore();
-                    bestGenerationParses.clear();
-                    bestGenerationParses.add(parse);
-                } else if (parse.getScore() == currentMaxModelScore) {
-                    bestGenerationParses.add(parse);
+            return parserOutput;
+        } else {
+            // Skip lexical induction
+            LOG.info("Skipped GENLEX step. No generated lexical items.");
+            return null;
+        }
+    }
+
+    private void logEpochStats(int epochNumber) {
+        // Record validation cache statistics for the epoch
+        stats.count("Validation cache hits",
+                (int) validationCacheHits.getAndSet(0), epochNumber);
+        stats.count("Validation cache misses",
+                (int) validationCacheMisses.getAndSet(0), epochNumber);
+
+        // Output epoch statistics
+        LOG.info("System memory: %s", MemoryReport.generate());
+        LOG.info("Epoch stats:");
+        LOG.info(stats);
+    }
+
+    private void logSampleHeader(DI dataItem, int itemCounter,
+            int epochNumber) {
+        LOG.info("%d : ================== [%d]", itemCounter, epochNumber);
+        LOG.info("Sample type: %s", dataItem.getClass().getSimpleName());
+        LOG.info("%s", dataItem);
+    }
+
+    /**
+     * Parse with the current model and log the output.
+     */
+    private PO modelParse(DI dataItem, IDataItemModel<MR> dataItemModel,
+            int itemCounter, int epochNumber) {
+        final PO parserOutput = parse(dataItem, dataItemModel);
+        stats.mean("Model parse", parserOutput.getParsingTime() / 1000.0,
+                "sec");
+        parserOutputLogger.log(parserOutput, dataItemModel,
+                String.format("train-%d-%d", epochNumber, itemCounter));
+
+        final List<? extends IDerivation<MR>> modelParses = parserOutput
+                .getAllDerivations();
+
+        LOG.info("Model parsing time: %.4fsec",
+                parserOutput.getParsingTime() / 1000.0);
+        LOG.info("Output is %s",
+                parserOutput.isExact() ? "exact" : "approximate");
+        LOG.info("Created %d model parses for training sample:",
+                modelParses.size());
+        for (final IDerivation<MR> parse : modelParses) {
+            logParse(dataItem, parse, isValid(dataItem, parse.getSemantics()),
+                    true, dataItemModel);
+        }
+        return parserOutput;
+    }
+
+    /**
+     * Parse the sample with the current model. If the sample requires lexical
+     * induction, also parse it with its generated lexicon. Doesn't modify the
+     * model.
+     */
+    private void parseSample(BatchSample sample, Model<SAMPLE, MR> model,
+            int epochNumber) {
+        logSampleHeader(sample.dataItem, sample.itemCounter, epochNumber);
+        sample.dataItemModel = model
+                .createDataItemModel(sample.dataItem.getSample());
+        sample.parserOutput = modelParse(sample.dataItem, sample.dataItemModel,
+                sample.itemCounter, epochNumber);
+        if (errorDriven && !getValidParses(sample.parserOutput,
+                sample.dataItem).isEmpty()) {
+            sample.goodOutput = sample.parserOutput;
+        } else if (genlex != null) {
+            sample.generationOutput = lexicalInductionParse(sample.dataItem,
+                    sample.itemCounter, sample.dataItemModel, model,
+                    epochNumber);
+            if (sample.generationOutput != null) {
+                sample.bestGenerationParses = getBestGenerationParses(
+                        sample.dataItem, sample.generationOutput,
+                        sample.dataItemModel);
+            }
+        }
+    }
+
+    /**
+     * Get the conditioned parser output for a sample that went through lexical
+     * induction. Must be called after the generated entries were added to the
+     * model.
+     */
+    private void parseSampleGood(BatchSample sample, int epochNumber) {
+        if (sample.goodOutput != null || genlex == null) {
+            return;
+        }
+        if (conflateGenlexAndPrunedParses
+                && sample.generationOutput != null) {
+            sample.goodOutput = sample.generationOutput;
+        } else {
+            sample.goodOutput = conditionedParse(sample.dataItem,
+                    sample.dataItemModel, sample.itemCounter, epochNumber);
+        }
+    }
+
+    /**
+     * Process a single sample in asynchronous training. Workers share the
+     * lexicon and the lexical feature sets for parsing and computing updates,
+     * and take exclusive access only to add generated entries. The update is
+     * added to the concurrent parameter vector without any locking (Hogwild,
+     * Niu et al. 2011), so it may be computed with parameters that were
+     * modified by other workers in the meantime.
+     */
+    private void processAsync(BatchSample sample, Model<SAMPLE, MR> model,
+            int epochNumber, ReadWriteLock lexiconLock) {
+        final long startTime = System.currentTimeMillis();
+        try {
+            lexiconLock.readLock().lock();
+            try {
+                parseSample(sample, model, epochNumber);
+            } finally {
+                lexiconLock.readLock().unlock();
+            }
+
+            if (sample.bestGenerationParses != null) {
+                lexiconLock.writeLock().lock();
+                try {
+                    addGeneratedEntries(sample.bestGenerationParses, model,
+                            sample.itemCounter, epochNumber);
+                } finally {
+                    lexiconLock.writeLock().unlock();
                 }
             }
-            LOG.info("%d valid best parses for lexical generation:",
-                    bestGenerationParses.size());
-            for (final IDerivation<MR> parse : bestGenerationParses) {
-                logParse(dataItem, parse, true, true, dataItemModel);
+
+            // The update reads the model's lexical feature sets (e.g., when
+            // computing the features of steps and lexical entries), which
+            // are modified when entries are added, so it's computed under
+            // the read lock too. Adding it to the parameters doesn't require
+            // the lock.
+            final IHashVector update;
+            lexiconLock.readLock().lock();
+            try {
+                parseSampleGood(sample, epochNumber);
+                update = sample.goodOutput == null ? null
+                        : parameterUpdate(sample.dataItem, sample.parserOutput,
+                                sample.goodOutput, model, sample.itemCounter,
+                                epochNumber);
+            } finally {
+                lexiconLock.readLock().unlock();
             }
+            applyUpdate(update, model, sample.itemCounter, epochNumber);
+        } finally {
+            stats.mean("Sample processing",
+                    (System.currentTimeMillis() - startTime) / 1000.0, "sec");
+            LOG.info("Total sample handling time: %.4fsec",
+                    (System.currentTimeMillis() - startTime) / 1000.0);
+        }
+    }
 
-            // Update the model's lexicon with generated lexical
-            // entries from the max scoring valid generation parses
-            int newLexicalEntries = 0;
-            for (final IDerivation<MR> parse : bestGenerationParses) {
-                for (final LexicalEntry<MR> entry : parse
-                        .getMaxLexicalEntries()) {
-                    if (genlex.isGenerated(entry)) {
-                        if (model.addLexEntry(
-                                LexiconGenerationServices.unmark(entry))) {
-                            ++newLexicalEntries;
-                            LOG.info("Added LexicalEntry to model: %s [%s]",
-                                    entry, model.getTheta().printValues(
-                                            model.computeFeatures(entry)));
-                        }
-                        // Lexical generators might link related lexical
-                        // entries, so if we add the original one, we
-                        // should also add all its linked ones
-                        for (final LexicalEntry<MR> linkedEntry : entry
-                                .getLinkedEntries()) {
-                            if (model.addLexEntry(LexiconGenerationServices
-                                    .unmark(linkedEntry))) {
-                                ++newLexicalEntries;
-                                LOG.info(
-                                        "Added (linked) LexicalEntry to model: %s [%s]",
-                                        linkedEntry,
-                                        model.getTheta().printValues(model
-                                                .computeFeatures(linkedEntry)));
-                            }
-                        }
+    /**
+     * Run the given action on all samples of the batch concurrently, using the
+     * worker threads of the given pool. The log of each sample is buffered and
+     * written once the action completes for that sample.
+     */
+    private void forEachSample(List<BatchSample> batch, ForkJoinPool pool,
+            Consumer<BatchSample> action) {
+        try {
+            pool.submit(() -> batch.parallelStream().forEach(
+                    sample -> runBufferedLog(() -> action.accept(sample))))
+                    .get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Process a mini-batch. All samples are parsed concurrently against the
+     * same parameters, which are not modified until the end of the batch.
+     * Lexical entries are added and updates are computed in the order of the
+     * samples, so the result doesn't depend on thread scheduling.
+     */
+    private void processBatch(List<BatchSample> batch, Model<SAMPLE, MR> model,
+            int epochNumber, ForkJoinPool pool) {
+        final long startTime = System.currentTimeMillis();
+        LOG.info("Processing batch of %d samples [%d]", batch.size(),
+                epochNumber);
+
+        // Step I: Parse all samples with the current model. Samples that
+        // require lexical induction are also parsed with their generated
+        // lexicons. The model is not modified.
+        forEachSample(batch, pool,
+                sample -> parseSample(sample, model, epochNumber));
+
+        // Step II: Update the lexicon with the generated entries.
+        for (final BatchSample sample : batch) {
+            if (sample.bestGenerationParses != null) {
+                addGeneratedEntries(sample.bestGenerationParses, model,
+                        sample.itemCounter, epochNumber);
+            }
+        }
+
+        // Step III: Conditioned parsing for samples that went through lexical
+        // induction. Uses the updated lexicon.
+        forEachSample(batch, pool,
+                sample -> parseSampleGood(sample, epochNumber));
+
+        // Step IV: Compute the updates and merge them.
+        final IHashVector batchUpdate = HashVectorFactory.create();
+        for (final BatchSample sample : batch) {
+            if (sample.goodOutput != null) {
+                final IHashVector update = parameterUpdate(sample.dataItem,
+                        sample.parserOutput, sample.goodOutput, model,
+                        sample.itemCounter, epochNumber);
+                if (update != null) {
+                    update.addTimesInto(1.0, batchUpdate);
+                    stats.appendSampleStat(sample.itemCounter, epochNumber,
+                            TRIGGERED_UPDATE);
+                }
+            }
+        }
+        if (batchAveraging) {
+            batchUpdate.multiplyBy(1.0 / batch.size());
+        }
+        batchUpdate.dropNoise();
+        LOG.info("Batch update: %s", batchUpdate);
+        batchUpdate.addTimesInto(1.0, model.getTheta());
+
+        stats.mean("Batch processing",
+                (System.currentTimeMillis() - startTime) / 1000.0, "sec");
+        LOG.info("Total batch handling time: %.4fsec",
+                (System.currentTimeMillis() - startTime) / 1000.0);
+    }
+
+    /**
+     * Asynchronous training epoch. Each worker takes the next sample from the
+     * training data and processes it independently.
+     *
+     * @return Updated number of iterations.
+     */
+    private int trainAsync(Model<SAMPLE, MR> model, int epochNumber,
+            int iterations) {
+        final Iterator<DI> iterator = trainingData.iterator();
+        final ReadWriteLock lexiconLock = new ReentrantReadWriteLock();
+        final AtomicInteger itemCounter = new AtomicInteger(-1);
+        final AtomicInteger currentIterations = new AtomicInteger(iterations);
+
+        final Runnable worker = () -> {
+            while (true) {
+                final BatchSample sample;
+                synchronized (iterator) {
+                    if (!iterator.hasNext() || maxIterations > 0
+                            && currentIterations.get() >= maxIterations) {
+                        return;
+                    }
+                    final DI dataItem = iterator.next();
+                    final int counter = itemCounter.incrementAndGet();
+
+                    // Skip sample, if over the length limit
+                    if (!processingFilter.test(dataItem)) {
+                        LOG.info(
+                                "%d : Skipped training sample, due to processing filter",
+                                counter);
+                        continue;
                     }
+
+                    stats.count("Processed", epochNumber);
+                    currentIterations.incrementAndGet();
+                    sample = new BatchSample(dataItem, counter);
                 }
+                runBufferedLog(() -> processAsync(sample, model, epochNumber,
+                        lexiconLock));
             }
-            // Record statistics
-            if (newLexicalEntries > 0) {
-                stats.appendSampleStat(dataItemNumber, epochNumber,
-                        newLexicalEntries);
+        };
+
+        final ForkJoinPool pool = new ForkJoinPool(asyncWorkers,
+                new LoggingForkJoinWorkerThreadFactory("L"), null, false);
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>(
+                    asyncWorkers);
+            for (int i = 0; i < asyncWorkers; ++i) {
+                futures.add(pool.submit(worker));
             }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
 
-            return parserOutput;
-        } else {
-            // Skip lexical induction
-            LOG.info("Skipped GENLEX step. No generated lexical items.");
-            return null;
+        if (maxIterations > 0 && currentIterations.get() >= maxIterations) {
+            LOG.info("Reached max iteration count of %d. Ending.",
+                    currentIterations.get());
+        }
+
+        return currentIterations.get();
+    }
+
+    /**
+     * Run the given task with the log of the current thread buffered, and
+     * write the buffered lines once the task completes. Used to keep the log
+     * lines of a sample together when samples are processed concurrently.
+     */
+    private void runBufferedLog(Runnable task) {
+        if (!(Thread.currentThread() instanceof ILoggingThread)) {
+            task.run();
+            return;
+        }
+
+        final ILoggingThread thread = (ILoggingThread) Thread.currentThread();
+        final Log originalLog = thread.getLog();
+        final SampleLog sampleLog = new SampleLog();
+        thread.setLog(sampleLog);
+        try {
+            task.run();
+        } finally {
+            thread.setLog(originalLog);
+            sampleLog.writeTo(originalLog);
+        }
+    }
+
+    /**
+     * Training epoch in mini-batches.
+     *
+     * @return Updated number of iterations.
+     */
+    private int trainBatches(Model<SAMPLE, MR> model, int epochNumber,
+            int iterations) {
+        final ForkJoinPool pool = new ForkJoinPool(
+                Math.min(batchSize,
+                        Runtime.getRuntime().availableProcessors()),
+                new LoggingForkJoinWorkerThreadFactory("B"), null, false);
+        try {
+            return trainBatches(model, epochNumber, iterations, pool);
+        } finally {
+            pool.shutdownNow();
         }
     }
 
+    private int trainBatches(Model<SAMPLE, MR> model, int epochNumber,
+            int iterations, ForkJoinPool pool) {
+        final List<BatchSample> batch = new ArrayList<BatchSample>(batchSize);
+        int itemCounter = -1;
+        int currentIterations = iterations;
+        for (final DI dataItem : trainingData) {
+            ++itemCounter;
+
+            // Skip sample, if over the length limit
+            if (!processingFilter.test(dataItem)) {
+                LOG.info(
+                        "%d : Skipped training sample, due to processing filter",
+                        itemCounter);
+                continue;
+            }
+
+            stats.count("Processed", epochNumber);
+            batch.add(new BatchSample(dataItem, itemCounter));
+            currentIterations++;
+            final boolean reachedMax = maxIterations > 0
+                    && currentIterations >= maxIterations;
+
+            if (batch.size() == batchSize || reachedMax) {
+                processBatch(batch, model, epochNumber, pool);
+                batch.clear();
+            }
+
+            if (reachedMax) {
+                return currentIterations;
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            processBatch(batch, model, epochNumber, pool);
+        }
+
+        return currentIterations;
+    }
+
     protected boolean isGoldDebugCorrect(DI dataItem, MR label) {
         if (trainingDataDebug.containsKey(dataItem)) {
             return trainingDataDebug.get(dataItem).equals(label);
@@ -434,6 +1010,38 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
         }
     }
 
+    /**
+     * Memoized validation. All validation calls should go through this method,
+     * so each semantic hypothesis is validated only once per sample (and
+     * across epochs, as long as the sample is in the cache).
+     */
+    protected boolean isValid(DI dataItem, MR hypothesis) {
+        if (hypothesis == null) {
+            return validate(dataItem, hypothesis);
+        }
+
+        Map<MR, Boolean> sampleCache = validationCache.getIfPresent(dataItem);
+        if (sampleCache == null) {
+            final Map<MR, Boolean> newSampleCache = new ConcurrentHashMap<MR, Boolean>();
+            sampleCache = validationCache.asMap().putIfAbsent(dataItem,
+                    newSampleCache);
+            if (sampleCache == null) {
+                sampleCache = newSampleCache;
+            }
+        }
+
+        final Boolean cached = sampleCache.get(hypothesis);
+        if (cached != null) {
+            validationCacheHits.incrementAndGet();
+            return cached;
+        }
+
+        validationCacheMisses.incrementAndGet();
+        final boolean valid = validate(dataItem, hypothesis);
+        sampleCache.put(hypothesis, valid);
+        return valid;
+    }
+
     protected void logParse(DI dataItem, IDerivation<MR> parse, Boolean valid,
             boolean verbose, IDataItemModel<MR> dataItemModel) {
         logParse(dataItem, parse, valid, verbose, null, dataItemModel);
@@ -459,9 +1067,13 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
     }
 
     /**
-     * Parameter update method.
+     * Parameter update method. Computes the update for a single sample without
+     * modifying the model.
+     *
+     * @return The update to add to the model parameters, or <code>null</code>
+     *         if the sample triggers no update.
      */
-    protected abstract void parameterUpdate(DI dataItem, PO realOutput,
+    protected abstract IHashVector parameterUpdate(DI dataItem, PO realOutput,
             PO goodOutput, Model<SAMPLE, MR> model, int itemCounter,
             int epochNumber);
 
@@ -486,7 +1098,59 @@ public abstract class AbstractLearner<SAMPLE extends IDataItem<?>, DI extends IL
             ILexiconImmutable<MR> generatedLexicon, Integer beamSize);
 
     /**
-     * Validation method.
+     * Validation method. Use {@link #isValid(ILabeledDataItem, Object)} to
+     * validate with memoization.
      */
     abstract protected boolean validate(DI dataItem, MR hypothesis);
+
+    /**
+     * Processing state of a single sample in a mini-batch or in asynchronous
+     * training.
+     */
+    private class BatchSample {
+        private List<IDerivation<MR>>	bestGenerationParses	= null;
+        private final DI				dataItem;
+        private IDataItemModel<MR>		dataItemModel			= null;
+        private PO						generationOutput		= null;
+        private PO						goodOutput				= null;
+        private final int				itemCounter;
+        private PO						parserOutput			= null;
+
+        public BatchSample(DI dataItem, int itemCounter) {
+            this.dataItem = dataItem;
+            this.itemCounter = itemCounter;
+        }
+    }
+
+    /**
+     * Log that holds the lines of a single sample until they are written to
+     * the log of the worker thread. The lines are already formatted by the
+     * thread that logged them.
+     */
+    private static class SampleLog extends Log {
+        private final List<Object> lines = new ArrayList<Object>();
+
+        @Override
+        public synchronized void println(String string) {
+            lines.add(string);
+        }
+
+        @Override
+        public synchronized void println(Throwable throwable) {
+            lines.add(throwable);
+        }
+
+        public synchronized void writeTo(Log log) {
+            synchronized (log) {
+                for (final Object line : lines) {
+                    if (line instanceof Throwable) {
+                        log.println((Throwable) line);
+                    } else {
+                        log.println((String) line);
+                    }
+                }
+            }
+            lines.clear();
+        }
+    }
 }
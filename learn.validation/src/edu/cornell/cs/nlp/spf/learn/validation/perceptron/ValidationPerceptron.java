@@ -16,6 +16,10 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.learn.validation.perceptron;
 
+import gnu.trove.map.hash.TIntDoubleHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -23,9 +27,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
+import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgsIndexer;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
@@ -92,6 +100,12 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 	 */
 	private final double				margin;
 
+	/**
+	 * Minimal number of valid-invalid derivation pairs to search for margin
+	 * violations in parallel. If 0, the search is never done in parallel.
+	 */
+	private final int					parallelMarginThreshold;
+
 	private final IParser<SAMPLE, MR>	parser;
 	private final IValidator<DI, MR>	validator;
 
@@ -104,27 +118,40 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 			ILexiconGenerator<DI, MR, IModelImmutable<SAMPLE, MR>> genlex,
 			double margin, boolean hardUpdates, IValidator<DI, MR> validator,
 			IFilter<DI> processingFilter,
-			IParsingFilterFactory<DI, MR> parsingFilterFactory) {
+			IParsingFilterFactory<DI, MR> parsingFilterFactory, int batchSize,
+			boolean batchAveraging, int parallelMarginThreshold,
+			int validationCacheSize, int lexiconGenerationKBest) {
 		super(epochs, maxIterations, trainingData, trainingDataDebug,
 				lexiconGenerationBeamSize, parserOutputLogger,
 				conflateGenlexAndPrunedParses, errorDriven, categoryServices,
-				genlex, processingFilter, parsingFilterFactory);
+				genlex, processingFilter, parsingFilterFactory, batchSize,
+				batchAveraging, 0, validationCacheSize,
+				lexiconGenerationKBest);
 		this.margin = margin;
 		this.parser = parser;
 		this.hardUpdates = hardUpdates;
 		this.validator = validator;
+		this.parallelMarginThreshold = parallelMarginThreshold;
 		LOG.info(
-				"Init ValidationStocGrad: epochs=%d, maxIterations=%d, margin=%f, trainingData.size()=%d, trainingDataDebug.size()=%d  ...",
+				"Init ValidationPerceptron: epochs=%d, maxIterations=%d, margin=%f, trainingData.size()=%d, trainingDataDebug.size()=%d  ...",
 				epochs, maxIterations, margin, trainingData.size(),
 				trainingDataDebug.size());
-		LOG.info("Init ValidationStocGrad: ... lexiconGenerationBeamSize=%d",
+		LOG.info("Init ValidationPerceptron: ... lexiconGenerationBeamSize=%d",
 				lexiconGenerationBeamSize);
 		LOG.info(
-				"Init ValidationStocGrad: ... conflateParses=%s, errorDriven=%s",
+				"Init ValidationPerceptron: ... conflateParses=%s, errorDriven=%s",
 				conflateGenlexAndPrunedParses ? "true" : "false",
 				errorDriven ? "true" : "false");
-		LOG.info("Init ValidationStocGrad: ... parsingFilterFactory=%s",
+		LOG.info("Init ValidationPerceptron: ... parsingFilterFactory=%s",
 				parsingFilterFactory);
+		LOG.info("Init ValidationPerceptron: ... batchSize=%d, batchAveraging=%s",
+				batchSize, batchAveraging ? "true" : "false");
+		LOG.info("Init ValidationPerceptron: ... parallelMarginThreshold=%d",
+				parallelMarginThreshold);
+		LOG.info("Init ValidationPerceptron: ... validationCacheSize=%d",
+				validationCacheSize);
+		LOG.info("Init ValidationPerceptron: ... lexiconGenerationKBest=%d",
+				lexiconGenerationKBest);
 	}
 
 	private static <MR, P extends IDerivation<MR>, MODEL extends IModelImmutable<?, MR>> IHashVector constructUpdate(
@@ -156,71 +183,86 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 		return update;
 	}
 
+	/**
+	 * Test if the valid derivation is not separated from the invalid one by the
+	 * margin: theta * (f(valid) - f(invalid)) < margin * |f(valid) -
+	 * f(invalid)|_1.
+	 */
+	private static boolean isMarginViolation(ScoredFeatures valid,
+			ScoredFeatures invalid, double margin) {
+		final double deltaScore = valid.score - invalid.score;
+		if (deltaScore < 0.0 && margin >= 0.0) {
+			// The right-hand side is non-negative, no need to compute the
+			// norm.
+			return true;
+		}
+		return deltaScore < margin * valid.l1Distance(invalid);
+	}
+
 	private static <LF, P extends IDerivation<LF>, MODEL extends IModelImmutable<?, LF>> Pair<List<P>, List<P>> marginViolatingSets(
 			MODEL model, double margin, List<P> validParses,
-			List<P> invalidParses) {
-		// Construct margin violating sets
-		final List<P> violatingValidParses = new LinkedList<P>();
-		final List<P> violatingInvalidParses = new LinkedList<P>();
+			List<P> invalidParses, boolean parallel) {
+		// Score each derivation and index its features once. The score of the
+		// difference between two derivations is the difference of their
+		// scores, and the norm of the difference is computed by merging their
+		// features.
+		final List<ScoredFeatures> validFeatures = scoreFeatures(validParses,
+				model, parallel);
+		final List<ScoredFeatures> invalidFeatures = scoreFeatures(
+				invalidParses, model, parallel);
 
 		// Flags to mark that we inserted a parse into the violating
 		// sets, so no need to check for its violation against others
-		final boolean[] validParsesFlags = new boolean[validParses.size()];
-		final boolean[] invalidParsesFlags = new boolean[invalidParses.size()];
-		int validParsesCounter = 0;
-		for (final P validParse : validParses) {
-			int invalidParsesCounter = 0;
-			for (final P invalidParse : invalidParses) {
-				if (!validParsesFlags[validParsesCounter]
-						|| !invalidParsesFlags[invalidParsesCounter]) {
-					// Create the delta vector if needed, we do it only
-					// once. This is why we check if we are going to
-					// need it in the above 'if'.
-					final IHashVector featureDelta = validParse
-							.getAverageMaxFeatureVector().addTimes(-1.0,
-									invalidParse.getAverageMaxFeatureVector());
-					final double deltaScore = model.score(featureDelta);
-
-					// Test valid parse for insertion into violating
-					// valid parses
-					if (!validParsesFlags[validParsesCounter]) {
-						// Case this valid sample is still not in the
-						// violating set
-						if (deltaScore < margin * featureDelta.l1Norm()) {
-							// Case of violation
-							// Add to the violating set
-							violatingValidParses.add(validParse);
-							// Mark flag, so we won't test it again
-							validParsesFlags[validParsesCounter] = true;
-						}
-					}
-
-					// Test invalid parse for insertion into
-					// violating invalid parses
-					if (!invalidParsesFlags[invalidParsesCounter]) {
-						// Case this invalid sample is still not in
-						// the violating set
-						if (deltaScore < margin * featureDelta.l1Norm()) {
-							// Case of violation
-							// Add to the violating set
-							violatingInvalidParses.add(invalidParse);
-							// Mark flag, so we won't test it again
-							invalidParsesFlags[invalidParsesCounter] = true;
-						}
-					}
+		final boolean[] validParsesFlags = new boolean[validFeatures.size()];
+		final boolean[] invalidParsesFlags = new boolean[invalidFeatures
+				.size()];
+		final IntStream validIndices = IntStream.range(0,
+				validFeatures.size());
+		(parallel ? validIndices.parallel() : validIndices).forEach(i -> {
+			final ScoredFeatures validParse = validFeatures.get(i);
+			for (int j = 0; j < invalidParsesFlags.length; ++j) {
+				// Skip the pair if both parses are already in the violating
+				// sets. When done in parallel, the flags of invalid parses
+				// might be set concurrently, at worst leading to redundant
+				// checks.
+				if ((!validParsesFlags[i] || !invalidParsesFlags[j])
+						&& isMarginViolation(validParse,
+								invalidFeatures.get(j), margin)) {
+					validParsesFlags[i] = true;
+					invalidParsesFlags[j] = true;
 				}
+			}
+		});
 
-				// Increase the counter, as we move to the next sample
-				++invalidParsesCounter;
+		// Construct margin violating sets, preserving the order of the parses
+		final List<P> violatingValidParses = new LinkedList<P>();
+		int validParsesCounter = 0;
+		for (final P validParse : validParses) {
+			if (validParsesFlags[validParsesCounter++]) {
+				violatingValidParses.add(validParse);
+			}
+		}
+		final List<P> violatingInvalidParses = new LinkedList<P>();
+		int invalidParsesCounter = 0;
+		for (final P invalidParse : invalidParses) {
+			if (invalidParsesFlags[invalidParsesCounter++]) {
+				violatingInvalidParses.add(invalidParse);
 			}
-			// Increase the counter, as we move to the next sample
-			++validParsesCounter;
 		}
 
 		return Pair.of(violatingValidParses, violatingInvalidParses);
 
 	}
 
+	private static <LF> List<ScoredFeatures> scoreFeatures(
+			List<? extends IDerivation<LF>> parses,
+			IModelImmutable<?, LF> model, boolean parallel) {
+		return (parallel ? parses.parallelStream() : parses.stream())
+				.map(parse -> new ScoredFeatures(
+						parse.getAverageMaxFeatureVector(), model))
+				.collect(Collectors.toCollection(ArrayList::new));
+	}
+
 	/**
 	 * Collect valid and invalid parses.
 	 *
@@ -242,7 +284,7 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 
 		// Collect invalid parses from readlOutput
 		for (final IDerivation<MR> parse : realOutput.getAllDerivations()) {
-			if (!validate(dataItem, parse.getSemantics())) {
+			if (!isValid(dataItem, parse.getSemantics())) {
 				invalidParses.add(parse);
 				invalidSemantics.add(parse);
 			}
@@ -251,7 +293,7 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 		// Collect valid and invalid parses from goodOutput
 		double validScore = -Double.MAX_VALUE;
 		for (final IDerivation<MR> parse : goodOutput.getAllDerivations()) {
-			if (validate(dataItem, parse.getSemantics())) {
+			if (isValid(dataItem, parse.getSemantics())) {
 				if (hardUpdates) {
 					// Case using hard updates, only keep the highest scored
 					// valid ones
@@ -273,9 +315,9 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 	}
 
 	@Override
-	protected void parameterUpdate(DI dataItem, IParserOutput<MR> realOutput,
-			IParserOutput<MR> goodOutput, Model<SAMPLE, MR> model,
-			int itemCounter, int epochNumber) {
+	protected IHashVector parameterUpdate(DI dataItem,
+			IParserOutput<MR> realOutput, IParserOutput<MR> goodOutput,
+			Model<SAMPLE, MR> model, int itemCounter, int epochNumber) {
 
 		final IDataItemModel<MR> dataItemModel = model
 				.createDataItemModel(dataItem.getSample());
@@ -311,12 +353,14 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 		// Skip update if there are no valid or invalid parses
 		if (validParses.isEmpty() || invalidParses.isEmpty()) {
 			LOG.info("No valid/invalid parses -- skipping");
-			return;
+			return null;
 		}
 
 		// Construct margin violating sets
 		final Pair<List<IDerivation<MR>>, List<IDerivation<MR>>> marginViolatingSets = marginViolatingSets(
-				model, margin, validParses, invalidParses);
+				model, margin, validParses, invalidParses,
+				parallelMarginThreshold > 0 && (long) validParses.size()
+						* invalidParses.size() >= parallelMarginThreshold);
 		final List<IDerivation<MR>> violatingValidParses = marginViolatingSets
 				.first();
 		final List<IDerivation<MR>> violatingInvalidParses = marginViolatingSets
@@ -325,7 +369,7 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 				violatingValidParses.size(), violatingInvalidParses.size());
 		if (violatingValidParses.isEmpty()) {
 			LOG.info("There are no violating valid/invalid parses -- skipping");
-			return;
+			return null;
 		}
 		LOG.info("Violating valid parses: ");
 		for (final IDerivation<MR> pair : violatingValidParses) {
@@ -340,10 +384,8 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 		final IHashVector update = constructUpdate(violatingValidParses,
 				violatingInvalidParses, model);
 
-		// Update the parameters vector
 		LOG.info("Update: %s", update);
-		update.addTimesInto(1.0, model.getTheta());
-		stats.appendSampleStat(itemCounter, epochNumber, TRIGGERED_UPDATE);
+		return update;
 	}
 
 	@Override
@@ -380,6 +422,17 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 	 */
 	public static class Builder<SAMPLE extends IDataItem<?>, DI extends ILabeledDataItem<SAMPLE, ?>, MR> {
 
+		/**
+		 * Average the updates of each mini-batch (iterative parameter mixing),
+		 * instead of summing them.
+		 */
+		private boolean													batchAveraging					= true;
+
+		/**
+		 * Mini-batch size. If 1, the model is updated after each sample.
+		 */
+		private int														batchSize						= 1;
+
 		/**
 		 * Required for lexicon learning.
 		 */
@@ -418,6 +471,12 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 		/** Max number of training iterations */
 		private int														maxIterations					= 4;
 
+		/**
+		 * Minimal number of valid-invalid derivation pairs to search for
+		 * margin violations in parallel. If 0, the search is sequential.
+		 */
+		private int														parallelMarginThreshold			= 0;
+
 		private final IParser<SAMPLE, MR>								parser;
 
 		private IOutputLogger<MR>										parserOutputLogger				= new IOutputLogger<MR>() {
@@ -447,6 +506,19 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 		 */
 		private Map<DI, MR>												trainingDataDebug				= new HashMap<DI, MR>();
 
+		/**
+		 * Number of top-scoring lexical generation parse trees to consider in
+		 * addition to the max-scoring valid parses. If 0, only the max-scoring
+		 * valid parses are used.
+		 */
+		private int														lexiconGenerationKBest			= 0;
+
+		/**
+		 * Number of samples to retain validation results for across epochs.
+		 * If 0, results are only shared within the processing of a sample.
+		 */
+		private int														validationCacheSize				= 0;
+
 		private final IValidator<DI, MR>								validator;
 
 		public Builder(IDataCollection<DI> trainingData,
@@ -461,7 +533,20 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 					trainingData, trainingDataDebug, lexiconGenerationBeamSize,
 					parser, parserOutputLogger, conflateGenlexAndPrunedParses,
 					errorDriven, categoryServices, genlex, margin, hardUpdates,
-					validator, processingFilter, parsingFilterFactory);
+					validator, processingFilter, parsingFilterFactory,
+					batchSize, batchAveraging, parallelMarginThreshold,
+					validationCacheSize, lexiconGenerationKBest);
+		}
+
+		public Builder<SAMPLE, DI, MR> setBatchAveraging(
+				boolean batchAveraging) {
+			this.batchAveraging = batchAveraging;
+			return this;
+		}
+
+		public Builder<SAMPLE, DI, MR> setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
 		}
 
 		public Builder<SAMPLE, DI, MR> setConflateGenlexAndPrunedParses(
@@ -499,6 +584,12 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 			return this;
 		}
 
+		public Builder<SAMPLE, DI, MR> setLexiconGenerationKBest(
+				int lexiconGenerationKBest) {
+			this.lexiconGenerationKBest = lexiconGenerationKBest;
+			return this;
+		}
+
 		public Builder<SAMPLE, DI, MR> setMargin(double margin) {
 			this.margin = margin;
 			return this;
@@ -510,6 +601,12 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 			return this;
 		}
 
+		public Builder<SAMPLE, DI, MR> setParallelMarginThreshold(
+				int parallelMarginThreshold) {
+			this.parallelMarginThreshold = parallelMarginThreshold;
+			return this;
+		}
+
 		public Builder<SAMPLE, DI, MR> setParserOutputLogger(
 				IOutputLogger<MR> parserOutputLogger) {
 			this.parserOutputLogger = parserOutputLogger;
@@ -533,6 +630,12 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 			this.trainingDataDebug = trainingDataDebug;
 			return this;
 		}
+
+		public Builder<SAMPLE, DI, MR> setValidationCacheSize(
+				int validationCacheSize) {
+			this.validationCacheSize = validationCacheSize;
+			return this;
+		}
 	}
 
 	public static class Creator<SAMPLE extends IDataItem<?>, DI extends ILabeledDataItem<SAMPLE, ?>, MR>
@@ -618,6 +721,30 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 				builder.setMaxTrainingIterations(params.getAsInteger("maxIterations"));
 			}
 
+			if (params.contains("batchSize")) {
+				builder.setBatchSize(params.getAsInteger("batchSize"));
+			}
+
+			if (params.contains("batchAveraging")) {
+				builder.setBatchAveraging(
+						params.getAsBoolean("batchAveraging"));
+			}
+
+			if (params.contains("validationCacheSize")) {
+				builder.setValidationCacheSize(
+						params.getAsInteger("validationCacheSize"));
+			}
+
+			if (params.contains("genlexKBest")) {
+				builder.setLexiconGenerationKBest(
+						params.getAsInteger("genlexKBest"));
+			}
+
+			if (params.contains("parallelMarginThreshold")) {
+				builder.setParallelMarginThreshold(
+						params.getAsInteger("parallelMarginThreshold"));
+			}
+
 			return builder.build();
 		}
 
@@ -651,8 +778,67 @@ public class ValidationPerceptron<SAMPLE extends IDataItem<?>, DI extends ILabel
 							"Recyle lexical induction parsing output as pruned parsing output")
 					.addParam("errorDriven", "boolean",
 							"Error driven lexical generation, if the can generate a valid parse, skip lexical induction")
+					.addParam("batchSize", "int",
+							"Mini-batch size. Samples in a mini-batch are parsed concurrently and the model is updated once per batch (default: 1)")
+					.addParam("batchAveraging", "boolean",
+							"Average mini-batch updates (iterative parameter mixing), instead of summing them (default: true)")
+					.addParam("validationCacheSize", "int",
+							"Number of samples to retain memoized validation results for across epochs. If 0, results are only shared within the processing of a sample (default: 0)")
+					.addParam("genlexKBest", "int",
+							"Number of top-scoring GENLEX parse trees to add valid entries from, in addition to the max-scoring valid parses. Requires a graph parser. If 0, only the max-scoring valid parses are used (default: 0)")
+					.addParam("parallelMarginThreshold", "int",
+							"Minimal number of valid-invalid parse pairs to search for margin violations in parallel. If 0, the search is sequential (default: 0)")
 					.build();
 		}
 
 	}
+
+	/**
+	 * The features of a derivation and their score under the model. Features
+	 * are stored sorted by their global index (see {@link KeyArgsIndexer}), so
+	 * the L1 distance between two derivations is computed with a sparse merge,
+	 * without creating a difference vector.
+	 */
+	private static class ScoredFeatures {
+		private final int[]		ids;
+		private final double	score;
+		private final double[]	values;
+
+		public ScoredFeatures(IHashVectorImmutable features,
+				IModelImmutable<?, ?> model) {
+			this.score = model.score(features);
+			final TIntDoubleHashMap indexed = new TIntDoubleHashMap(
+					features.size());
+			features.iterate((key, value) -> indexed
+					.put(KeyArgsIndexer.index(key), value));
+			this.ids = indexed.keys();
+			Arrays.sort(ids);
+			this.values = new double[ids.length];
+			for (int i = 0; i < ids.length; ++i) {
+				values[i] = indexed.get(ids[i]);
+			}
+		}
+
+		public double l1Distance(ScoredFeatures other) {
+			double sum = 0.0;
+			int i = 0;
+			int j = 0;
+			while (i < ids.length && j < other.ids.length) {
+				if (ids[i] == other.ids[j]) {
+					sum += Math.abs(values[i++] - other.values[j++]);
+				} else if (ids[i] < other.ids[j]) {
+					sum += Math.abs(values[i++]);
+				} else {
+					sum += Math.abs(other.values[j++]);
+				}
+			}
+			while (i < ids.length) {
+				sum += Math.abs(values[i++]);
+			}
+			while (j < other.ids.length) {
+				sum += Math.abs(other.values[j++]);
+			}
+			return sum;
+		}
+	}
 }
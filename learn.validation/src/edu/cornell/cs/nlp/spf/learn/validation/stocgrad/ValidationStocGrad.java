@@ -18,6 +18,7 @@ package edu.cornell.cs.nlp.spf.learn.validation.stocgrad;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
@@ -79,7 +80,12 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 
 	private final IGraphParser<SAMPLE, MR>	parser;
 
-	private int								stocGradientNumUpdates	= 0;
+	/**
+	 * Number of updates so far. Shared by asynchronous workers to compute the
+	 * learning rate.
+	 */
+	private final AtomicInteger				stocGradientNumUpdates	= new AtomicInteger(
+			0);
 
 	private final IValidator<DI, MR>		validator;
 
@@ -92,11 +98,15 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 			boolean errorDriven, ICategoryServices<MR> categoryServices,
 			ILexiconGenerator<DI, MR, IModelImmutable<SAMPLE, MR>> genlex,
 			IFilter<DI> processingFilter,
-			IParsingFilterFactory<DI, MR> parsingFilterFactory) {
+			IParsingFilterFactory<DI, MR> parsingFilterFactory, int batchSize,
+			boolean batchAveraging, int asyncWorkers,
+			int validationCacheSize, int lexiconGenerationKBest) {
 		super(epochs, maxIterations, trainingData, trainingDataDebug,
 				lexiconGenerationBeamSize, parserOutputLogger,
 				conflateGenlexAndPrunedParses, errorDriven, categoryServices,
-				genlex, processingFilter, parsingFilterFactory);
+				genlex, processingFilter, parsingFilterFactory, batchSize,
+				batchAveraging, asyncWorkers, validationCacheSize,
+				lexiconGenerationKBest);
 		this.parser = parser;
 		this.alpha0 = alpha0;
 		this.c = c;
@@ -114,16 +124,23 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 		LOG.info("Init ValidationStocGrad: ... c=%f, alpha0=%f", c, alpha0);
 		LOG.info("Init ValidationStocGrad: ... parsingFilterFactory=%s",
 				parsingFilterFactory);
+		LOG.info("Init ValidationStocGrad: ... batchSize=%d, batchAveraging=%s",
+				batchSize, batchAveraging ? "true" : "false");
+		LOG.info("Init ValidationStocGrad: ... asyncWorkers=%d", asyncWorkers);
+		LOG.info("Init ValidationStocGrad: ... validationCacheSize=%d",
+				validationCacheSize);
+		LOG.info("Init ValidationStocGrad: ... lexiconGenerationKBest=%d",
+				lexiconGenerationKBest);
 	}
 
 	@Override
 	public void train(Model<SAMPLE, MR> model) {
-		stocGradientNumUpdates = 0;
+		stocGradientNumUpdates.set(0);
 		super.train(model);
 	}
 
 	@Override
-	protected void parameterUpdate(final DI dataItem,
+	protected IHashVector parameterUpdate(final DI dataItem,
 			IGraphParserOutput<MR> realOutput,
 			IGraphParserOutput<MR> goodOutput, Model<SAMPLE, MR> model,
 			int itemCounter, int epochNumber) {
@@ -134,14 +151,14 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 		// Step A: Compute the positive half of the update: conditioned on
 		// getting successful validation
 
-		final IFilter<Category<MR>> filter = e -> validate(dataItem,
+		final IFilter<Category<MR>> filter = e -> isValid(dataItem,
 				e.getSemantics());
 
 		final double logConditionedNorm = goodOutput.logNorm(filter);
 		if (logConditionedNorm == Double.NEGATIVE_INFINITY) {
 			// No positive update, skip the update.
 			LOG.info("No positive update");
-			return;
+			return null;
 		} else {
 			// Case have complete valid parses.
 			final IHashVector expectedFeatures = goodOutput
@@ -191,14 +208,14 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 		}
 
 		// Scale the update
-		final double scale = alpha0 / (1.0 + c * stocGradientNumUpdates);
+		final double scale = alpha0
+				/ (1.0 + c * stocGradientNumUpdates.getAndIncrement());
 		update.multiplyBy(scale);
 		update.dropNoise();
-		stocGradientNumUpdates++;
 		LOG.info("Scale: %f", scale);
 		if (update.size() == 0) {
 			LOG.info("No update");
-			return;
+			return null;
 		} else {
 			LOG.info("Update: %s", update);
 		}
@@ -213,9 +230,7 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 				LOG.error("Large update: %s -- log-norm: %.4f -- features: %s",
 						update, logNorm, model.getTheta().printValues(update));
 			}
-			// Do the update
-			update.addTimesInto(1, model.getTheta());
-			stats.appendSampleStat(itemCounter, epochNumber, TRIGGERED_UPDATE);
+			return update;
 		}
 	}
 
@@ -254,6 +269,22 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 		 */
 		private double													alpha0							= 1.0;
 
+		/**
+		 * Number of asynchronous workers. If 0, training is synchronous.
+		 */
+		private int														asyncWorkers					= 0;
+
+		/**
+		 * Average the updates of each mini-batch (iterative parameter mixing),
+		 * instead of summing them.
+		 */
+		private boolean													batchAveraging					= true;
+
+		/**
+		 * Mini-batch size. If 1, the model is updated after each sample.
+		 */
+		private int														batchSize						= 1;
+
 		/**
 		 * Used to define the temperature of parameter updates. temp =
 		 * alpha_0/(1+c*num_updates)
@@ -327,6 +358,19 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 		 */
 		private Map<DI, MR>												trainingDataDebug				= new HashMap<DI, MR>();
 
+		/**
+		 * Number of top-scoring lexical generation parse trees to consider in
+		 * addition to the max-scoring valid parses. If 0, only the max-scoring
+		 * valid parses are used.
+		 */
+		private int														lexiconGenerationKBest			= 0;
+
+		/**
+		 * Number of samples to retain validation results for across epochs.
+		 * If 0, results are only shared within the processing of a sample.
+		 */
+		private int														validationCacheSize				= 0;
+
 		private final IValidator<DI, MR>								validator;
 
 		public Builder(IDataCollection<DI> trainingData,
@@ -342,7 +386,8 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 					lexiconGenerationBeamSize, parser, parserOutputLogger,
 					alpha0, c, validator, conflateGenlexAndPrunedParses,
 					errorDriven, categoryServices, genlex, filter,
-					parsingFilterFactory);
+					parsingFilterFactory, batchSize, batchAveraging,
+					asyncWorkers, validationCacheSize, lexiconGenerationKBest);
 		}
 
 		public Builder<SAMPLE, DI, MR> setAlpha0(double alpha0) {
@@ -350,6 +395,22 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 			return this;
 		}
 
+		public Builder<SAMPLE, DI, MR> setAsyncWorkers(int asyncWorkers) {
+			this.asyncWorkers = asyncWorkers;
+			return this;
+		}
+
+		public Builder<SAMPLE, DI, MR> setBatchAveraging(
+				boolean batchAveraging) {
+			this.batchAveraging = batchAveraging;
+			return this;
+		}
+
+		public Builder<SAMPLE, DI, MR> setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
 		public Builder<SAMPLE, DI, MR> setC(double c) {
 			this.c = c;
 			return this;
@@ -385,6 +446,12 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 			return this;
 		}
 
+		public Builder<SAMPLE, DI, MR> setLexiconGenerationKBest(
+				int lexiconGenerationKBest) {
+			this.lexiconGenerationKBest = lexiconGenerationKBest;
+			return this;
+		}
+
 		public Builder<SAMPLE, DI, MR> setMaxIterations(int maxIterations) {
 			this.maxIterations = maxIterations;
 			return this;
@@ -413,6 +480,12 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 			return this;
 		}
 
+		public Builder<SAMPLE, DI, MR> setValidationCacheSize(
+				int validationCacheSize) {
+			this.validationCacheSize = validationCacheSize;
+			return this;
+		}
+
 	}
 
 	public static class Creator<SAMPLE extends IDataItem<SAMPLE>, DI extends ILabeledDataItem<SAMPLE, ?>, MR>
@@ -498,6 +571,29 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 						"true".equals(params.get("conflateParses")));
 			}
 
+			if (params.contains("batchSize")) {
+				builder.setBatchSize(params.getAsInteger("batchSize"));
+			}
+
+			if (params.contains("batchAveraging")) {
+				builder.setBatchAveraging(
+						params.getAsBoolean("batchAveraging"));
+			}
+
+			if (params.contains("validationCacheSize")) {
+				builder.setValidationCacheSize(
+						params.getAsInteger("validationCacheSize"));
+			}
+
+			if (params.contains("genlexKBest")) {
+				builder.setLexiconGenerationKBest(
+						params.getAsInteger("genlexKBest"));
+			}
+
+			if (params.contains("asyncWorkers")) {
+				builder.setAsyncWorkers(params.getAsInteger("asyncWorkers"));
+			}
+
 			return builder.build();
 		}
 
@@ -532,6 +628,16 @@ public class ValidationStocGrad<SAMPLE extends IDataItem<SAMPLE>, DI extends ILa
 							"Learing rate alpha0 parameter, temperature=alpha_0/(1+c*tot_number_of_training_instances)")
 					.addParam("errorDriven", "boolean",
 							"Error driven lexical generation, if the can generate a valid parse, skip lexical induction")
+					.addParam("batchSize", "int",
+							"Mini-batch size. Samples in a mini-batch are parsed concurrently and the model is updated once per batch (default: 1)")
+					.addParam("batchAveraging", "boolean",
+							"Average mini-batch updates (iterative parameter mixing), instead of summing them (default: true)")
+					.addParam("validationCacheSize", "int",
+							"Number of samples to retain memoized validation results for across epochs. If 0, results are only shared within the processing of a sample (default: 0)")
+					.addParam("genlexKBest", "int",
+							"Number of top-scoring GENLEX parse trees to add valid entries from, in addition to the max-scoring valid parses. Requires a graph parser. If 0, only the max-scoring valid parses are used (default: 0)")
+					.addParam("asyncWorkers", "int",
+							"Number of asynchronous (Hogwild) workers. Requires a model with a concurrent weight vector. If 0, training is synchronous (default: 0)")
 					.build();
 		}
 
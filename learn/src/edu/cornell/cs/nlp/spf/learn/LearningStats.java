@@ -31,6 +31,10 @@ import edu.cornell.cs.nlp.utils.log.LoggerFactory;
 
 import java.util.Set;
 
+/**
+ * Learning statistics. Updates are synchronized, so statistics can be recorded
+ * by concurrent training workers.
+ */
 public class LearningStats {
 	public static final ILogger					LOG					= LoggerFactory
 			.create(LearningStats.class);
@@ -58,8 +62,8 @@ public class LearningStats {
 
 	}
 
-	public void appendSampleStat(int itemNumber, int iterationNumber,
-			int value) {
+	public synchronized void appendSampleStat(int itemNumber,
+			int iterationNumber, int value) {
 		extendSampleList(itemNumber, iterationNumber);
 		verifyStat(DIGIT_STAT);
 		if (sampleStat[itemNumber][iterationNumber] == null) {
@@ -75,8 +79,8 @@ public class LearningStats {
 		}
 	}
 
-	public void appendSampleStat(int itemNumber, int iterationNumber,
-			String stat) {
+	public synchronized void appendSampleStat(int itemNumber,
+			int iterationNumber, String stat) {
 		extendSampleList(itemNumber, iterationNumber);
 		verifyStat(stat);
 		if (sampleStat[itemNumber][iterationNumber] == null) {
@@ -92,21 +96,22 @@ public class LearningStats {
 		}
 	}
 
-	public void count(String label, int iterationNumber) {
+	public synchronized void count(String label, int iterationNumber) {
 		verifyCounterExist(label, iterationNumber);
 		counters.get(label).get(iterationNumber).inc();
 	}
 
-	public void count(String label, int value, int iterationNumber) {
+	public synchronized void count(String label, int value,
+			int iterationNumber) {
 		verifyCounterExist(label, iterationNumber);
 		counters.get(label).get(iterationNumber).inc(value);
 	}
 
-	public double getMean(String label) {
+	public synchronized double getMean(String label) {
 		return means.containsKey(label) ? means.get(label).mean : 0.0;
 	}
 
-	public void mean(String label, double value, String unit) {
+	public synchronized void mean(String label, double value, String unit) {
 		final Mean aggregate = means.get(label);
 		if (aggregate == null) {
 			means.put(label, new Mean(unit, value));
@@ -116,8 +121,8 @@ public class LearningStats {
 		}
 	}
 
-	public void setSampleStat(int itemNumber, int iterationNumber,
-			String stat) {
+	public synchronized void setSampleStat(int itemNumber,
+			int iterationNumber, String stat) {
 		extendSampleList(itemNumber, iterationNumber);
 		verifyStat(stat);
 		sampleStat[itemNumber][iterationNumber] = stat;
@@ -131,7 +136,7 @@ public class LearningStats {
 	}
 
 	@Override
-	public String toString() {
+	public synchronized String toString() {
 		final StringBuilder ret = new StringBuilder();
 
 		final Iterator<Entry<String, Mean>> aggregateIterator = means.entrySet()
@@ -16,6 +16,14 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.mr.lambda.ccg;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import edu.cornell.cs.nlp.spf.ccg.categories.AbstractCategoryServices;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.SimpleCategory;
@@ -32,32 +40,179 @@ import edu.cornell.cs.nlp.utils.composites.Pair;
 import edu.cornell.cs.nlp.utils.log.ILogger;
 import edu.cornell.cs.nlp.utils.log.LoggerFactory;
 
+/**
+ * Category services for lambda calculus semantics. Optionally, memoizes the
+ * results of application and composition in bounded concurrent caches. The
+ * same pairs of expressions are combined repeatedly across sentences and
+ * epochs (e.g., the same lexical entries with the same noun phrases), so the
+ * caches save repeated simplification. Failed combinations are cached as well.
+ * Logical expressions are immutable and keys are compared using logical
+ * expression equality (free variables are compared by instance), so cached
+ * results are safe to share between parsing threads. If enabled, results are
+ * interned (see {@link LogicLanguageServices#intern(LogicalExpression)}), so
+ * cells with equal semantics share a single canonical expression.
+ *
+ * @author Yoav Artzi
+ */
 public class LogicalExpressionCategoryServices extends
 		AbstractCategoryServices<LogicalExpression> {
-	public static final ILogger					LOG					= LoggerFactory
-																			.create(LogicalExpressionCategoryServices.class);
+	public static final ILogger											LOG					= LoggerFactory
+			.create(LogicalExpressionCategoryServices.class);
+
+	private static final long											serialVersionUID	= -3386234351724055685L;
+
+	private transient Cache<SemanticsPair, Optional<LogicalExpression>>	applyCache;
+
+	/**
+	 * Maximum number of results in each of the caches. 0 disables caching.
+	 */
+	private final int													cacheSize;
+
+	private transient Cache<SemanticsPair, Optional<LogicalExpression>>	composeCache;
 
-	private static final long					serialVersionUID	= -3386234351724055685L;
+	private final boolean												doTypeChecking;
 
-	private final boolean						doTypeChecking;
-	private final Category<LogicalExpression>	EMP					= new SimpleCategory<LogicalExpression>(
-																			Syntax.EMPTY,
-																			null);
+	private final Category<LogicalExpression>							EMP					= new SimpleCategory<LogicalExpression>(
+			Syntax.EMPTY, null);
 
 	public LogicalExpressionCategoryServices() {
 		this(false);
 	}
 
 	public LogicalExpressionCategoryServices(boolean doTypeChecking) {
+		this(doTypeChecking, 0);
+	}
+
+	public LogicalExpressionCategoryServices(boolean doTypeChecking,
+			int cacheSize) {
 		this.doTypeChecking = doTypeChecking;
-		LOG.info("Init :: %s: doTypeChecking=%s",
+		this.cacheSize = cacheSize;
+		initCaches();
+		LOG.info("Init :: %s: doTypeChecking=%s, cacheSize=%d",
 				LogicalExpressionCategoryServices.class.getSimpleName(),
-				doTypeChecking);
+				doTypeChecking, cacheSize);
 	}
 
 	@Override
 	public LogicalExpression apply(LogicalExpression function,
 			LogicalExpression argument) {
+		if (applyCache == null) {
+			return doApply(function, argument);
+		}
+
+		final SemanticsPair key = new SemanticsPair(function, argument, 0);
+		final Optional<LogicalExpression> cached = applyCache.getIfPresent(key);
+		if (cached != null) {
+			return cached.orNull();
+		}
+		final LogicalExpression result = doApply(function, argument);
+		applyCache.put(key, Optional.fromNullable(result));
+		return result;
+	}
+
+	/**
+	 * Generalized function composition given a specific order.
+	 */
+	@Override
+	public LogicalExpression compose(LogicalExpression f, LogicalExpression g,
+			int order) {
+		if (composeCache == null) {
+			return doCompose(f, g, order);
+		}
+
+		final SemanticsPair key = new SemanticsPair(f, g, order);
+		final Optional<LogicalExpression> cached = composeCache
+				.getIfPresent(key);
+		if (cached != null) {
+			return cached.orNull();
+		}
+		final LogicalExpression result = doCompose(f, g, order);
+		composeCache.put(key, Optional.fromNullable(result));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final LogicalExpressionCategoryServices other = (LogicalExpressionCategoryServices) obj;
+		if (doTypeChecking != other.doTypeChecking) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Statistics of the application cache, or <code>null</code> if caching is
+	 * disabled.
+	 */
+	public CacheStats getApplyCacheStats() {
+		return applyCache == null ? null : applyCache.stats();
+	}
+
+	/**
+	 * Statistics of the composition cache, or <code>null</code> if caching is
+	 * disabled.
+	 */
+	public CacheStats getComposeCacheStats() {
+		return composeCache == null ? null : composeCache.stats();
+	}
+
+	@Override
+	public Category<LogicalExpression> getEmptyCategory() {
+		return EMP;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (doTypeChecking ? 1231 : 1237);
+		return result;
+	}
+
+	/**
+	 * Invalidate all cached results, for example, to release memory between
+	 * learning stages.
+	 */
+	public void invalidateCaches() {
+		if (applyCache != null) {
+			applyCache.invalidateAll();
+		}
+		if (composeCache != null) {
+			composeCache.invalidateAll();
+		}
+	}
+
+	@Override
+	public LogicalExpression readSemantics(String string, boolean checkType) {
+		final LogicalExpression exp = LogicalExpression.read(string);
+		if (checkType) {
+
+			final Pair<Boolean, String> typeChecking = IsTypeConsistent
+					.ofVerbose(exp);
+			if (!typeChecking.first()) {
+				throw new IllegalStateException("Semantics not well typed ["
+						+ typeChecking.second() + "]: " + string);
+			}
+		}
+		return LogicLanguageServices.intern(Simplify.of(exp));
+	}
+
+	@Override
+	public String toString() {
+		return LogicalExpressionCategoryServices.class.getName();
+	}
+
+	private LogicalExpression doApply(LogicalExpression function,
+			LogicalExpression argument) {
 		final LogicalExpression result;
 
 		// Combined application and simplification
@@ -72,15 +227,11 @@ public class LogicalExpressionCategoryServices extends
 			result = applicationResult;
 		}
 
-		return result;
+		return LogicLanguageServices.intern(result);
 	}
 
-	/**
-	 * Generalized function composition given a specific order.
-	 */
-	@Override
-	public LogicalExpression compose(LogicalExpression f, LogicalExpression g,
-			int order) {
+	private LogicalExpression doCompose(LogicalExpression f,
+			LogicalExpression g, int order) {
 		assert order != 0 : "Order must be at least 1. Zero-order composition is identical to application and should use the apply() method.";
 
 		final Variable[] gVariableStack = new Variable[order - 1];
@@ -146,7 +297,7 @@ public class LogicalExpressionCategoryServices extends
 								wrappedResult);
 					}
 
-					return wrappedResult;
+					return LogicLanguageServices.intern(wrappedResult);
 				}
 			}
 		}
@@ -155,54 +306,67 @@ public class LogicalExpressionCategoryServices extends
 		return null;
 	}
 
-	@Override
-	public boolean equals(Object obj) {
-		if (this == obj) {
-			return true;
-		}
-		if (obj == null) {
-			return false;
-		}
-		if (getClass() != obj.getClass()) {
-			return false;
-		}
-		final LogicalExpressionCategoryServices other = (LogicalExpressionCategoryServices) obj;
-		if (doTypeChecking != other.doTypeChecking) {
-			return false;
+	private void initCaches() {
+		if (cacheSize > 0) {
+			this.applyCache = CacheBuilder.newBuilder().maximumSize(cacheSize)
+					.recordStats().build();
+			this.composeCache = CacheBuilder.newBuilder()
+					.maximumSize(cacheSize).recordStats().build();
+		} else {
+			this.applyCache = null;
+			this.composeCache = null;
 		}
-		return true;
 	}
 
-	@Override
-	public Category<LogicalExpression> getEmptyCategory() {
-		return EMP;
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initCaches();
 	}
 
-	@Override
-	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + (doTypeChecking ? 1231 : 1237);
-		return result;
-	}
+	/**
+	 * Cache key. For application, the order is 0.
+	 */
+	private static class SemanticsPair {
+		private final LogicalExpression	first;
+		private final int				hashCode;
+		private final int				order;
+		private final LogicalExpression	second;
 
-	@Override
-	public LogicalExpression readSemantics(String string, boolean checkType) {
-		final LogicalExpression exp = LogicalExpression.read(string);
-		if (checkType) {
+		public SemanticsPair(LogicalExpression first, LogicalExpression second,
+				int order) {
+			this.first = first;
+			this.second = second;
+			this.order = order;
+			this.hashCode = calcHashCode();
+		}
 
-			final Pair<Boolean, String> typeChecking = IsTypeConsistent
-					.ofVerbose(exp);
-			if (!typeChecking.first()) {
-				throw new IllegalStateException("Semantics not well typed ["
-						+ typeChecking.second() + "]: " + string);
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof SemanticsPair)) {
+				return false;
 			}
+			final SemanticsPair other = (SemanticsPair) obj;
+			return hashCode == other.hashCode && order == other.order
+					&& first.equals(other.first)
+					&& second.equals(other.second);
 		}
-		return Simplify.of(exp);
-	}
 
-	@Override
-	public String toString() {
-		return LogicalExpressionCategoryServices.class.getName();
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		private int calcHashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + first.hashCode();
+			result = prime * result + order;
+			result = prime * result + second.hashCode();
+			return result;
+		}
 	}
 }
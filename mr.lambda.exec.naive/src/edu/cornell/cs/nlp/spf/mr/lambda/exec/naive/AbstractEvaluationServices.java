@@ -16,6 +16,8 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.mr.lambda.exec.naive;
 
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -26,29 +28,47 @@ import edu.cornell.cs.nlp.spf.mr.lambda.LogicLanguageServices;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalConstant;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
 import edu.cornell.cs.nlp.spf.mr.lambda.Variable;
-import edu.cornell.cs.nlp.spf.mr.lambda.visitor.GetAllFreeVariables;
 import edu.cornell.cs.nlp.utils.composites.Pair;
 
+/**
+ * Evaluation services with a two-tier result cache. Results of closed
+ * expressions (no free variables) don't depend on variable denotations and are
+ * never invalidated. Results of open expressions are stored with the
+ * generation of each of their free variables at caching time. Every denotation
+ * change increments the generation of the variable, so invalidation is O(1)
+ * and stale entries are detected (and dropped) on lookup.
+ *
+ * @author Yoav Artzi
+ * @param <S>
+ *            Type of the evaluation state (e.g., the world).
+ */
 public abstract class AbstractEvaluationServices<S> implements
 		IEvaluationServices {
 	
-	private final Map<Pair<LogicalExpression, S>, CacheObject>	cache	= new HashMap<Pair<LogicalExpression, S>, CacheObject>();
+	private final Map<Pair<LogicalExpression, S>, Object>		closedCache	= new HashMap<Pair<LogicalExpression, S>, Object>();
+	
+	/**
+	 * Current generation of each variable. Variables are compared by
+	 * identity.
+	 */
+	private final Reference2LongOpenHashMap<Variable>			generations	= new Reference2LongOpenHashMap<Variable>();
+	
+	private final Map<Pair<LogicalExpression, S>, CacheObject>	openCache	= new HashMap<Pair<LogicalExpression, S>, CacheObject>();
 	
 	@Override
 	public void cacheResult(LogicalExpression exp, Object result) {
-		cache.put(Pair.of(exp, currentState()), new CacheObject(
-				GetAllFreeVariables.of(exp), result));
+		final Pair<LogicalExpression, S> key = Pair.of(exp, currentState());
+		final Set<Variable> freeVariables = exp.getFreeVariables();
+		if (freeVariables.isEmpty()) {
+			closedCache.put(key, result);
+		} else {
+			openCache.put(key, new CacheObject(freeVariables, result));
+		}
 	}
 	
 	@Override
 	public void denotationChanged(Variable variable) {
-		final Iterator<Entry<Pair<LogicalExpression, S>, CacheObject>> iterator = cache
-				.entrySet().iterator();
-		while (iterator.hasNext()) {
-			if (iterator.next().getValue().freeVariables.contains(variable)) {
-				iterator.remove();
-			}
-		}
+		generations.addTo(variable, 1L);
 	}
 	
 	@Override
@@ -77,12 +97,33 @@ public abstract class AbstractEvaluationServices<S> implements
 	
 	@Override
 	public Object getFromCache(LogicalExpression exp) {
-		return cache.get(Pair.of(exp, currentState())).cachedObject;
+		final Pair<LogicalExpression, S> key = Pair.of(exp, currentState());
+		if (exp.numFreeVariables() == 0) {
+			return closedCache.get(key);
+		} else {
+			final CacheObject cached = openCache.get(key);
+			return cached != null && cached.isValid() ? cached.cachedObject
+					: null;
+		}
 	}
 	
 	@Override
 	public boolean isCached(LogicalExpression exp) {
-		return cache.containsKey(Pair.of(exp, currentState()));
+		final Pair<LogicalExpression, S> key = Pair.of(exp, currentState());
+		if (exp.numFreeVariables() == 0) {
+			return closedCache.containsKey(key);
+		} else {
+			final CacheObject cached = openCache.get(key);
+			if (cached == null) {
+				return false;
+			} else if (cached.isValid()) {
+				return true;
+			} else {
+				// Drop the stale entry
+				openCache.remove(key);
+				return false;
+			}
+		}
 	}
 	
 	@Override
@@ -90,25 +131,68 @@ public abstract class AbstractEvaluationServices<S> implements
 		return LogicLanguageServices.isCoordinationPredicate(constant);
 	}
 	
+	/**
+	 * Drops all cached results and variable generations. Must not be called
+	 * while an evaluation is in progress.
+	 */
+	protected void clearCache() {
+		closedCache.clear();
+		openCache.clear();
+		generations.clear();
+	}
+	
+	/**
+	 * @return Number of cached results and tracked variables.
+	 */
+	protected int cacheSize() {
+		return closedCache.size() + openCache.size() + generations.size();
+	}
+	
 	protected void clearStateFromCache(S state) {
-		final Iterator<Entry<Pair<LogicalExpression, S>, CacheObject>> iterator = cache
+		final Iterator<Entry<Pair<LogicalExpression, S>, CacheObject>> iterator = openCache
 				.entrySet().iterator();
 		while (iterator.hasNext()) {
 			if (iterator.next().getKey().second().equals(state)) {
 				iterator.remove();
 			}
 		}
+		final Iterator<Pair<LogicalExpression, S>> closedIterator = closedCache
+				.keySet().iterator();
+		while (closedIterator.hasNext()) {
+			if (closedIterator.next().second().equals(state)) {
+				closedIterator.remove();
+			}
+		}
 	}
 	
 	protected abstract S currentState();
 	
 	private class CacheObject {
 		private final Object		cachedObject;
-		private final Set<Variable>	freeVariables;
+		private final long[]		variableGenerations;
+		private final Variable[]	variables;
 		
 		public CacheObject(Set<Variable> freeVariables, Object cachedObject) {
-			this.freeVariables = freeVariables;
 			this.cachedObject = cachedObject;
+			this.variables = freeVariables.toArray(new Variable[freeVariables
+					.size()]);
+			this.variableGenerations = new long[variables.length];
+			for (int i = 0; i < variables.length; ++i) {
+				variableGenerations[i] = generations.getLong(variables[i]);
+			}
+		}
+		
+		/**
+		 * The entry is valid as long as none of its free variables changed
+		 * its denotation since it was cached.
+		 */
+		public boolean isValid() {
+			for (int i = 0; i < variables.length; ++i) {
+				if (generations.getLong(variables[i]) != variableGenerations[i]) {
+					return false;
+				}
+			}
+			return true;
 		}
 		
 	}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.mr.lambda.exec.naive;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Unary lambda result over a finite {@link IndexedDomain}. Stored as a bitset
+ * indexed by the domain ordinal, so membership is constant time and set
+ * operations and counting are word-parallel. Iterates over tuples of the form
+ * <code>x -> true</code>, same as the {@link LambdaResult} created for a
+ * truth-typed unary lambda.
+ *
+ * @author Yoav Artzi
+ */
+public class BitSetLambdaResult implements ILambdaResult {
+
+	private final BitSet		bits;
+	private final IndexedDomain	domain;
+
+	public BitSetLambdaResult(IndexedDomain domain) {
+		this(domain, new BitSet(domain.size()));
+	}
+
+	private BitSetLambdaResult(IndexedDomain domain, BitSet bits) {
+		this.domain = domain;
+		this.bits = bits;
+	}
+
+	/**
+	 * Result that contains the entire domain.
+	 */
+	public static BitSetLambdaResult all(IndexedDomain domain) {
+		final BitSet bits = new BitSet(domain.size());
+		bits.set(0, domain.size());
+		return new BitSetLambdaResult(domain, bits);
+	}
+
+	/**
+	 * Result with the members set in the given bitset. The bitset is copied.
+	 */
+	public static BitSetLambdaResult of(IndexedDomain domain, BitSet bits) {
+		if (bits.length() > domain.size()) {
+			throw new IllegalArgumentException(
+					"Bitset exceeds domain of size " + domain.size());
+		}
+		return new BitSetLambdaResult(domain, (BitSet) bits.clone());
+	}
+
+	public void add(int ordinal) {
+		if (ordinal < 0 || ordinal >= domain.size()) {
+			throw new IndexOutOfBoundsException("Invalid ordinal " + ordinal
+					+ " for domain of size " + domain.size());
+		}
+		bits.set(ordinal);
+	}
+
+	public void addKey(Object key) {
+		final int ordinal = domain.indexOf(key);
+		if (ordinal < 0) {
+			throw new IllegalArgumentException("Key not in domain: " + key);
+		}
+		bits.set(ordinal);
+	}
+
+	public boolean contains(int ordinal) {
+		return bits.get(ordinal);
+	}
+
+	public IndexedDomain getDomain() {
+		return domain;
+	}
+
+	@Override
+	public boolean hasTupleWithKey(Object key) {
+		final int ordinal = domain.indexOf(key);
+		return ordinal >= 0 && bits.get(ordinal);
+	}
+
+	public BitSetLambdaResult intersection(BitSetLambdaResult other) {
+		final BitSet result = copyBits(other);
+		result.and(other.bits);
+		return new BitSetLambdaResult(domain, result);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return bits.isEmpty();
+	}
+
+	@Override
+	public Iterator<Tuple> iterator() {
+		return new Iterator<Tuple>() {
+			private int	next	= bits.nextSetBit(0);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Tuple next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				final Tuple tuple = new Tuple(
+						new Object[] { domain.get(next) }, Boolean.TRUE);
+				next = bits.nextSetBit(next + 1);
+				return tuple;
+			}
+		};
+	}
+
+	/**
+	 * Ordinal of the first member at or after the given ordinal, or -1 if
+	 * there's none. Iterate over all members with
+	 * <code>for (int i = r.nextOrdinal(0); i >= 0; i = r.nextOrdinal(i + 1))</code>
+	 * .
+	 */
+	public int nextOrdinal(int from) {
+		return bits.nextSetBit(from);
+	}
+
+	@Override
+	public int size() {
+		return bits.cardinality();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		final Iterator<Tuple> iterator = iterator();
+		while (iterator.hasNext()) {
+			sb.append(iterator.next().toString());
+			if (iterator.hasNext()) {
+				sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	public BitSetLambdaResult union(BitSetLambdaResult other) {
+		final BitSet result = copyBits(other);
+		result.or(other.bits);
+		return new BitSetLambdaResult(domain, result);
+	}
+
+	private BitSet copyBits(BitSetLambdaResult other) {
+		if (domain != other.domain) {
+			throw new IllegalArgumentException(
+					"Set operations require results over the same domain");
+		}
+		return (BitSet) bits.clone();
+	}
+}
@@ -251,6 +251,22 @@ public class Evaluation implements ILogicalExpressionVisitor {
 		// the final body being type 't'. The query variables are all these
 		// arguments.
 		final Pair<List<Variable>, LogicalExpression> selectDecomposition = decomposeLogicalExpressionAsSelect(lambda);
+		if (selectDecomposition != null
+				&& selectDecomposition.first().size() == 1
+				&& LogicLanguageServices.getTypeRepository()
+						.getTruthValueType()
+						.equals(selectDecomposition.second().getType())) {
+			// Case unary truth-typed SELECT, use a bitset if the domain of
+			// the variable is indexed
+			final Variable variable = selectDecomposition.first().get(0);
+			final IndexedDomain domain = services.getIndexedDomain(variable);
+			if (domain != null) {
+				result = selectUnary(variable, selectDecomposition.second(),
+						domain, shortcircuit);
+				return;
+			}
+		}
+
 		if (selectDecomposition != null) {
 			// Case SELECT expression
 			final LogicalExpression queryBody = selectDecomposition.second();
@@ -319,4 +335,31 @@ public class Evaluation implements ILogicalExpressionVisitor {
 		}
 	}
 
+	private BitSetLambdaResult selectUnary(Variable variable,
+			LogicalExpression queryBody, IndexedDomain domain,
+			boolean shortcircuit) {
+		LOG.debug("Unary lambda SELECT execution: query_variable=%s, body=%s",
+				variable, queryBody);
+
+		final BitSetLambdaResult lambdaResult = new BitSetLambdaResult(domain);
+		final int size = domain.size();
+		for (int i = 0; i < size; ++i) {
+			denotations.put(variable, domain.get(i));
+			services.denotationChanged(variable);
+			queryBody.accept(this);
+			if (Boolean.TRUE.equals(result)) {
+				lambdaResult.add(i);
+				if (shortcircuit) {
+					break;
+				}
+			}
+		}
+
+		// Clean the cache and the denotation of the variable
+		services.denotationChanged(variable);
+		denotations.remove(variable);
+
+		return lambdaResult;
+	}
+
 }
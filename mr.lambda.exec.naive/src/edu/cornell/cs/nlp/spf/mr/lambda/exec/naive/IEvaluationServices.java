@@ -35,6 +35,15 @@ public interface IEvaluationServices {
 	List<?> getAllDenotations(Variable variable);
 	
 	Object getFromCache(LogicalExpression exp);
+
+	/**
+	 * Returns the denotations of the variable as an indexed domain, or null if
+	 * the domain isn't finite and indexed. When available, unary truth-typed
+	 * lambdas over this variable evaluate to a {@link BitSetLambdaResult}.
+	 */
+	default IndexedDomain getIndexedDomain(Variable variable) {
+		return null;
+	}
 	
 	boolean isCached(LogicalExpression exp);
 	
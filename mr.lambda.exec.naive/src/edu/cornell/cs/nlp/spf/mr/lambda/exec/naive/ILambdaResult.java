@@ -17,6 +17,11 @@
 package edu.cornell.cs.nlp.spf.mr.lambda.exec.naive;
 
 public interface ILambdaResult extends Iterable<Tuple> {
+	/**
+	 * @return 'true' iff there's a tuple with the given first key.
+	 */
+	boolean hasTupleWithKey(Object key);
+
 	boolean isEmpty();
 	
 	int size();
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.mr.lambda.exec.naive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finite, ordered domain of denotations. Each element is assigned a dense
+ * ordinal (its position in the domain), which allows unary results over the
+ * domain to be stored as bitsets (see {@link BitSetLambdaResult}).
+ *
+ * @author Yoav Artzi
+ */
+public class IndexedDomain {
+
+	private final List<Object>			elements;
+	private final Map<Object, Integer>	ordinals;
+
+	public IndexedDomain(List<?> elements) {
+		this.elements = Collections
+				.unmodifiableList(new ArrayList<Object>(elements));
+		this.ordinals = new HashMap<Object, Integer>();
+		for (int i = 0; i < elements.size(); ++i) {
+			if (ordinals.put(elements.get(i), i) != null) {
+				throw new IllegalArgumentException(
+						"Duplicate domain element: " + elements.get(i));
+			}
+		}
+	}
+
+	public List<Object> asList() {
+		return elements;
+	}
+
+	public Object get(int ordinal) {
+		return elements.get(ordinal);
+	}
+
+	/**
+	 * @return The ordinal of the element, or -1 if it's not in the domain.
+	 */
+	public int indexOf(Object element) {
+		final Integer ordinal = ordinals.get(element);
+		return ordinal == null ? -1 : ordinal;
+	}
+
+	public int size() {
+		return elements.size();
+	}
+
+	@Override
+	public String toString() {
+		return elements.toString();
+	}
+}
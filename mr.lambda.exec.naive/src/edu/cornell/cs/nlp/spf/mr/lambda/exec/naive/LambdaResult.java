@@ -42,6 +42,7 @@ public class LambdaResult implements ILambdaResult {
 		return numKeys;
 	}
 
+	@Override
 	public boolean hasTupleWithKey(Object key) {
 		return tuples.stream().anyMatch((t) -> t.get(0).equals(key));
 	}
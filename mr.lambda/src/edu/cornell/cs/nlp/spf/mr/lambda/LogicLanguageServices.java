@@ -78,6 +78,12 @@ public class LogicLanguageServices {
 
 	private final LogicalConstant								indexIncreasePredicate;
 
+	/**
+	 * Hash-consing table for closed logical expressions. If <code>null</code>,
+	 * expressions are not interned.
+	 */
+	private final LogicalExpressionInterner						interner;
+
 	private final LogicalConstant								negationPredicate;
 
 	/**
@@ -110,8 +116,10 @@ public class LogicLanguageServices {
 			LogicalConstant indexIncreasePredicate,
 			LogicalConstant trueConstant, LogicalConstant falseConstant,
 			ILogicalExpressionPrinter printer,
-			ILogicalExpressionComparator comparator) {
+			ILogicalExpressionComparator comparator,
+			LogicalExpressionInterner interner) {
 		this.typeRepository = typeRepository;
+		this.interner = interner;
 		this.ontology = ontology;
 		this.printer = printer;
 		this.comparator = comparator;
@@ -233,6 +241,15 @@ public class LogicLanguageServices {
 		return INSTANCE;
 	}
 
+	/**
+	 * Returns the canonical instance of the given expression, if interning is
+	 * enabled and the expression is closed (i.e., contains no free variables).
+	 * Otherwise, returns the expression itself.
+	 */
+	public static LogicalExpression intern(LogicalExpression exp) {
+		return INSTANCE.interner == null ? exp : INSTANCE.interner.intern(exp);
+	}
+
 	static public LogicalConstant intToIndexConstant(int i) {
 		final String name = LogicalConstant.makeFullName(String.valueOf(i),
 				INSTANCE.typeRepository.getIndexType());
@@ -337,11 +354,12 @@ public class LogicLanguageServices {
 
 	public static class Builder {
 
-		private ILogicalExpressionComparator	comparator		= new LogicalExpressionComparator();
-		private final List<File>				constantsFiles	= new LinkedList<File>();
-		private String							numeralTypeName	= null;
-		private boolean							ontologyClosed	= false;
-		private ILogicalExpressionPrinter		printer			= new LogicalExpressionToString.Printer();
+		private ILogicalExpressionComparator	comparator			= new LogicalExpressionComparator();
+		private final List<File>				constantsFiles		= new LinkedList<File>();
+		private boolean							internExpressions	= false;
+		private String							numeralTypeName		= null;
+		private boolean							ontologyClosed		= false;
+		private ILogicalExpressionPrinter		printer				= new LogicalExpressionToString.Printer();
 
 		private final ITypeComparator			typeComparator;
 
@@ -474,7 +492,8 @@ public class LogicLanguageServices {
 					typeComparator, ontology, conjunctionPredicate,
 					disjunctionPredicate, negationPredicate,
 					indexIncreasePredicate, trueConstant, falseConstant,
-					printer, comparator);
+					printer, comparator,
+					internExpressions ? new LogicalExpressionInterner() : null);
 		}
 
 		/**
@@ -492,6 +511,17 @@ public class LogicLanguageServices {
 			return this;
 		}
 
+		/**
+		 * Intern closed logical expressions created by category services
+		 * (see {@link LogicLanguageServices#intern(LogicalExpression)}).
+		 * Equal canonical expressions usually share a single instance, so
+		 * comparing them takes a single reference comparison.
+		 */
+		public Builder setInternExpressions(boolean internExpressions) {
+			this.internExpressions = internExpressions;
+			return this;
+		}
+
 		/**
 		 * Set the type used for numerical objects in the logical system. This
 		 * type is used to convert such objects to numbers using
@@ -52,6 +52,14 @@ public abstract class LogicalExpression implements
 	 */
 	private transient boolean	hashCodeCalculated	= false;
 
+	/**
+	 * ID of the {@link LogicalExpressionInterner} this object is the canonical
+	 * instance in, or 0 if the object is not canonical. This field is for
+	 * internal use only! It mustn't be used when copying/comparing/storing/etc.
+	 * the object.
+	 */
+	transient volatile int		internTableId		= 0;
+
 	public static LogicalExpression read(String string) {
 		return LogicalExpressionReader.from(string);
 	}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.mr.lambda;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Hash-consing table for closed logical expressions (i.e., expressions without
+ * free variables). Interning returns a canonical instance for each equality
+ * class, so equal expressions share a single object. The table holds weak
+ * references, so canonical instances are released once they are no longer
+ * used. Canonical instances are marked with the ID of the table, so interning
+ * them again is a no-op. Equal expressions that were interned in the same
+ * table are the same object, so comparing them in
+ * {@link LogicLanguageServices#isEqual(LogicalExpression, LogicalExpression)}
+ * takes a single reference comparison.
+ * <p>
+ * Interning relies on logical expression equality. Since equality is
+ * approximate (see
+ * {@link LogicLanguageServices#isEqual(LogicalExpression, LogicalExpression)}
+ * ), the table may contain more than a single instance for an equality
+ * class. Such instances are still compared structurally.
+ *
+ * @author Yoav Artzi
+ */
+public class LogicalExpressionInterner {
+
+	private static final AtomicInteger			NEXT_ID		= new AtomicInteger(1);
+
+	/**
+	 * Unique identifier of this table. Canonical expressions store it to
+	 * indicate their membership.
+	 */
+	private final int							id			= NEXT_ID
+			.getAndIncrement();
+
+	private final Interner<LogicalExpression>	interner	= Interners
+			.newWeakInterner();
+
+	/**
+	 * Returns the canonical instance of the given expression. Expressions with
+	 * free variables are returned as is, since their equality depends on the
+	 * identity of their free variables.
+	 */
+	public LogicalExpression intern(LogicalExpression exp) {
+		if (exp == null || exp.internTableId == id
+				|| exp.numFreeVariables() != 0) {
+			return exp;
+		}
+		final LogicalExpression canonical = interner.intern(exp);
+		canonical.internTableId = id;
+		return canonical;
+	}
+
+}
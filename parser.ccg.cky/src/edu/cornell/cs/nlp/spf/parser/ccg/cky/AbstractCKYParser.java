@@ -20,6 +20,7 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,6 +40,7 @@ import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Syntax;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.CompositeImmutableLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.Lexicon;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.SentenceSpanLexicon;
 import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
 import edu.cornell.cs.nlp.spf.parser.ISentenceLexiconGenerator;
 import edu.cornell.cs.nlp.spf.parser.ParsingOp;
@@ -81,6 +83,11 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 	 */
 	private final int										beamSize;
 
+	/**
+	 * Index of the binary rules by the syntactic shapes of their arguments.
+	 */
+	private final BinaryRuleIndex<MR>						binaryRuleIndex;
+
 	/**
 	 * Binary CCG parsing rules.
 	 */
@@ -92,6 +99,11 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 	 */
 	private final boolean									breakTies;
 
+	/**
+	 * Default budget of a single parse.
+	 */
+	private final ParseBudget								budget;
+
 	private final ScoreComparator<MR>						cellScoreComparator	= new Cell.ScoreComparator<MR>();
 
 	private final IFilter<Category<MR>>						completeParseFilter;
@@ -122,9 +134,10 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 			ICategoryServices<MR> categoryServices, boolean pruneLexicalCells,
 			IFilter<Category<MR>> completeParseFilter,
 			CKYUnaryParsingRule<MR>[] unaryRules, ILexicalRule<MR> lexicalRule,
-			boolean breakTies) {
+			boolean breakTies, ParseBudget budget) {
 		this.beamSize = beamSize;
 		this.binaryRules = binaryRules;
+		this.binaryRuleIndex = new BinaryRuleIndex<MR>(binaryRules);
 		this.sentenceLexiconGenerators = sentenceLexiconGenerators;
 		this.sloppyLexicalGenerators = sloppyLexicalGenerators;
 		this.categoryServices = categoryServices;
@@ -133,6 +146,7 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		this.unaryRules = unaryRules;
 		this.lexicalRule = lexicalRule;
 		this.breakTies = breakTies;
+		this.budget = budget;
 		LOG.info("Init :: %s: pruneLexicalCells=%s beamSize=%d ...", getClass(),
 				pruneLexicalCells, beamSize);
 		LOG.info("Init :: %s: ... sloppyLexicalGenerator=%s ...", getClass(),
@@ -143,7 +157,8 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 				Arrays.toString(unaryRules));
 		LOG.info("Init :: %s: ... lexical rule=%s ...", getClass(),
 				lexicalRule);
-		LOG.info("Init :: %s: ... breakTies=%s", getClass(), breakTies);
+		LOG.info("Init :: %s: ... breakTies=%s ...", getClass(), breakTies);
+		LOG.info("Init :: %s: ... budget=%s", getClass(), budget);
 	}
 
 	/**
@@ -218,6 +233,20 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 			boolean sloppy, ILexiconImmutable<MR> tempLexicon,
 			Integer altBeamSize,
 			AbstractCellFactory<MR> scoreSensitiveFactory) {
+		return parse(dataItem, pruningFilter, model, sloppy, tempLexicon,
+				altBeamSize, scoreSensitiveFactory, budget);
+	}
+
+	/**
+	 * Parse with the given budget, instead of the default budget of the
+	 * parser. If the budget is exhausted, the parse stops and the output is
+	 * marked as inexact. A null budget is unbounded.
+	 */
+	public CKYParserOutput<MR> parse(DI dataItem,
+			Predicate<ParsingOp<MR>> pruningFilter, IDataItemModel<MR> model,
+			boolean sloppy, ILexiconImmutable<MR> tempLexicon,
+			Integer altBeamSize, AbstractCellFactory<MR> scoreSensitiveFactory,
+			ParseBudget parseBudget) {
 		// Store starting time
 		final long start = System.currentTimeMillis();
 
@@ -236,7 +265,9 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		// Create a chart and add the input words
 		final Chart<MR> chart = new Chart<MR>(tokens,
 				altBeamSize == null ? beamSize : altBeamSize, cellFactory,
-				!pruneLexicalCells, breakTies);
+				!pruneLexicalCells, breakTies,
+				(parseBudget == null ? ParseBudget.UNBOUNDED : parseBudget)
+						.start());
 
 		// Create the list of active lexicons
 		final List<ILexiconImmutable<MR>> lexicons = new ArrayList<ILexiconImmutable<MR>>();
@@ -272,16 +303,28 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 			lexicons.add(tempLexicon);
 		}
 
-		return new CKYParserOutput<MR>(
-				doParse(pruningFilter, model, chart, tokens.size(), cellFactory,
-						new CompositeImmutableLexicon<MR>(lexicons)),
-				System.currentTimeMillis() - start);
+		// Bind the lexicons to the sentence, so the entries of all spans with
+		// the same start are retrieved in a single pass.
+		final Chart<MR> parsedChart = doParse(pruningFilter, model, chart,
+				tokens.size(), cellFactory, new SentenceSpanLexicon<MR>(tokens,
+						new CompositeImmutableLexicon<MR>(lexicons)));
+
+		final boolean budgetExhausted = parsedChart.getBudget().wasExhausted();
+		if (budgetExhausted) {
+			LOG.info("Parse budget %s exhausted: %s",
+					parsedChart.getBudget().getBudget(),
+					parsedChart.getBudget());
+		}
+
+		return new CKYParserOutput<MR>(parsedChart,
+				System.currentTimeMillis() - start, budgetExhausted);
 
 	}
 
 	protected abstract Chart<MR> doParse(Predicate<ParsingOp<MR>> pruningFilter,
 			IDataItemModel<MR> model, Chart<MR> currentChart, int numTokens,
-			AbstractCellFactory<MR> cellFactory, ILexiconImmutable<MR> lexicon);
+			AbstractCellFactory<MR> cellFactory,
+			SentenceSpanLexicon<MR> lexicon);
 
 	/**
 	 * Adds all of the cells to the chart that can be created by lexical
@@ -289,7 +332,7 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 	 * each split is done by getLexEntries.
 	 */
 	protected Pair<Collection<Cell<MR>>, Boolean> generateLexicalCells(
-			int start, int end, Chart<MR> chart, ILexiconImmutable<MR> lexicon,
+			int start, int end, Chart<MR> chart, SentenceSpanLexicon<MR> lexicon,
 			IDataItemModel<MR> model, Predicate<ParsingOp<MR>> filter) {
 
 		final AbstractCellFactory<MR> cellFactory = chart.getCellFactory();
@@ -299,6 +342,11 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 
 		LOG.debug("Populating lexical entries for: %s", tokens);
 
+		if (chart.getBudget().isExhausted()) {
+			LOG.debug("Parse budget exhausted, skipping lexical entries");
+			return Pair.of(Collections.<Cell<MR>> emptyList(), true);
+		}
+
 		if (pruneLexicalCells) {
 			final IDirectAccessBoundedPriorityQueue<Cell<MR>> queue = breakTies
 					? new DirectAccessBoundedPriorityQueue<Cell<MR>>(
@@ -320,12 +368,11 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 			// Create a stream to distribute the computation. During DEBUG
 			// logging, the stream is sequential to simplify log reading.
 			final Iterable<LexicalResult<MR>> iterable = () -> resultIterator;
-			final Stream<LexicalResult<MR>> lexicalStream = LOG
-					.getLogLevel() == LogLevel.DEBUG
-							? StreamSupport.stream(iterable.spliterator(), true)
-									.sequential()
-							: StreamSupport.stream(iterable.spliterator(), true)
-									.parallel().unordered();
+			final Stream<LexicalResult<MR>> lexicalStream = isParallelSpanProcessing()
+					? StreamSupport.stream(iterable.spliterator(), true)
+							.parallel().unordered()
+					: StreamSupport.stream(iterable.spliterator(), true)
+							.sequential();
 
 			// To protect the queue from concurrent modification, the stream
 			// is converted to sequential before items are added to the
@@ -410,12 +457,11 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 			// Create a stream to distribute the computation. During DEBUG
 			// logging, the stream is sequential to simplify log reading.
 			final Iterable<LexicalResult<MR>> iterable = () -> resultIterator;
-			final Stream<LexicalResult<MR>> lexicalStream = LOG
-					.getLogLevel() == LogLevel.DEBUG
-							? StreamSupport.stream(iterable.spliterator(), true)
-									.sequential()
-							: StreamSupport.stream(iterable.spliterator(), true)
-									.parallel().unordered();
+			final Stream<LexicalResult<MR>> lexicalStream = isParallelSpanProcessing()
+					? StreamSupport.stream(iterable.spliterator(), true)
+							.parallel().unordered()
+					: StreamSupport.stream(iterable.spliterator(), true)
+							.sequential();
 
 			// To protect the queue from concurrent modification, the stream
 			// is converted to sequential before items are added to the
@@ -455,6 +501,32 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		}
 	}
 
+	/**
+	 * The cells of the given span to combine with cells of other spans. With
+	 * progressive beam tightening, only the highest scoring cells allowed by
+	 * the remaining budget are returned, and the pruning flag is set if any
+	 * cells were dropped.
+	 */
+	protected Cell<MR>[] getSpanCells(Chart<MR> chart, int start, int end,
+			AtomicBoolean pruned) {
+		final Iterator<Cell<MR>> iterator = chart.getSpanIterator(start, end);
+		@SuppressWarnings("unchecked")
+		final Cell<MR>[] cells = (Cell<MR>[]) Array.newInstance(Cell.class,
+				chart.spanSize(start, end));
+		int i = 0;
+		while (iterator.hasNext()) {
+			cells[i++] = iterator.next();
+		}
+		final int size = chart.getBudget().getBeamSize(chart.getBeamSize());
+		if (size < chart.getBeamSize() && cells.length > size) {
+			Arrays.sort(cells, Collections.reverseOrder(cellScoreComparator));
+			pruned.set(true);
+			return Arrays.copyOf(cells, size);
+		} else {
+			return cells;
+		}
+	}
+
 	/**
 	 * Checks if the current category in the given span can be considered a
 	 * complete parse.
@@ -463,6 +535,16 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		return isCompleteSpan(span) && completeParseFilter.test(category);
 	}
 
+	/**
+	 * Indicates if the processing of a single span (or a single split) should
+	 * distribute its work using parallel streams. When debugging, it's easier
+	 * to read the logs with sequential processing. Parsers that process spans
+	 * concurrently should avoid nested parallelism and return false.
+	 */
+	protected boolean isParallelSpanProcessing() {
+		return LOG.getLogLevel() != LogLevel.DEBUG;
+	}
+
 	/**
 	 * Processing a (single) split of a (single) span.
 	 *
@@ -485,47 +567,52 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		LOG.debug("... with %d x %d cells", chart.spanSize(leftStart, leftEnd),
 				chart.spanSize(rightStart, rightEnd));
 
+		final ParseBudget.Tracker budget = chart.getBudget();
+		if (budget.isExhausted()) {
+			LOG.debug("Parse budget exhausted, skipping split");
+			return Pair.of(Collections.<Cell<MR>> emptyList(), true);
+		}
+
 		final SentenceSpan span = new SentenceSpan(start, end, sentenceLength);
 
+		// Flag to track if cells were dropped by progressive beam tightening.
+		final AtomicBoolean pruned = new AtomicBoolean(false);
+
 		// Copy the cells of the right span to a local array to avoid
 		// re-creating the iterator.
-		final Iterator<Cell<MR>> rightIter = chart.getSpanIterator(rightStart,
-				rightEnd);
-		final int numRightCells = chart.spanSize(rightStart, rightEnd);
-		@SuppressWarnings("unchecked")
-		final Cell<MR>[] rightCells = (Cell<MR>[]) Array.newInstance(Cell.class,
-				numRightCells);
-		int i = 0;
-		while (rightIter.hasNext()) {
-			rightCells[i++] = rightIter.next();
-		}
+		final Cell<MR>[] rightCells = getSpanCells(chart, rightStart, rightEnd,
+				pruned);
+		final int numRightCells = rightCells.length;
 
-		final int numRules = binaryRules.length;
 		final AtomicInteger counter = new AtomicInteger(0);
 
 		// Create a list from left cells. This will allow the stream() to
 		// distribute better.
-		final List<Cell<MR>> leftCells = new ArrayList<>();
-		final Iterator<Cell<MR>> iterator = chart.getSpanIterator(leftStart,
-				leftEnd);
-		while (iterator.hasNext()) {
-			leftCells.add(iterator.next());
-		}
+		final List<Cell<MR>> leftCells = Arrays
+				.asList(getSpanCells(chart, leftStart, leftEnd, pruned));
+
+		// Index the rules by the syntactic shapes of the cells in this split,
+		// so only rules that may fire are applied to each pair of cells.
+		final BinaryRuleIndex.SplitIndex<MR> ruleIndex = binaryRuleIndex
+				.index(leftCells, rightCells);
 
 		// When debugging, it's easier to read the logs with a sequential
 		// stream. Naturally, this has performance costs.
-		final Stream<Cell<MR>> leftStream = LOG.getLogLevel() == LogLevel.DEBUG
-				? leftCells.stream().sequential()
-				: leftCells.stream().parallel().unordered();
+		final Stream<Cell<MR>> leftStream = isParallelSpanProcessing()
+				? leftCells.stream().parallel().unordered()
+				: leftCells.stream().sequential();
 
 		final List<Cell<MR>> newCells = leftStream.map(left -> {
 			final List<Cell<MR>> newCellsFromLeft = new LinkedList<>();
+			if (budget.isExhausted()) {
+				return newCellsFromLeft;
+			}
+			final CKYBinaryParsingRule<MR>[][] leftRules = ruleIndex.get(left);
 			for (int j = 0; j < numRightCells; ++j) {
 				final Cell<MR> right = rightCells[j];
 				LOG.debug("Processing: left=%d , right=%d", left.hashCode(),
 						right.hashCode());
-				for (int ruleIndex = 0; ruleIndex < numRules; ++ruleIndex) {
-					final CKYBinaryParsingRule<MR> rule = binaryRules[ruleIndex];
+				for (final CKYBinaryParsingRule<MR> rule : leftRules[j]) {
 					LOG.debug("Applying %s", rule);
 					final ParseRuleResult<MR> prr = rule.apply(left, right,
 							span);
@@ -564,7 +651,9 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 				"Finished processing split (%d, %d)[%d], generated %d cells, returning %d cells",
 				start, end, split, counter.get(), newCells.size());
 
-		return Pair.of(newCells, false);
+		budget.addRuleApplications(counter.get());
+
+		return Pair.of(newCells, pruned.get() || budget.wasExhausted());
 	}
 
 	/**
@@ -593,6 +682,12 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		LOG.debug("... with %d x %d cells", chart.spanSize(leftStart, leftEnd),
 				chart.spanSize(rightStart, rightEnd));
 
+		final ParseBudget.Tracker budget = chart.getBudget();
+		if (budget.isExhausted()) {
+			LOG.debug("Parse budget exhausted, skipping split");
+			return Pair.of(Collections.<Cell<MR>> emptyList(), true);
+		}
+
 		final OrderInvariantDirectAccessBoundedQueue<Cell<MR>> queue = new OrderInvariantDirectAccessBoundedQueue<Cell<MR>>(
 				chartBeamSize * 2 + 1, cellScoreComparator);
 
@@ -603,44 +698,40 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 
 		// Copy the cells of the right span to a local array to avoid
 		// re-creating the iterator.
-		final Iterator<Cell<MR>> rightIter = chart.getSpanIterator(rightStart,
-				rightEnd);
-		final int numRightCells = chart.spanSize(rightStart, rightEnd);
-		@SuppressWarnings("unchecked")
-		final Cell<MR>[] rightCells = (Cell<MR>[]) Array.newInstance(Cell.class,
-				numRightCells);
-		int i = 0;
-		while (rightIter.hasNext()) {
-			rightCells[i++] = rightIter.next();
-		}
+		final Cell<MR>[] rightCells = getSpanCells(chart, rightStart, rightEnd,
+				pruned);
+		final int numRightCells = rightCells.length;
 
 		final AtomicInteger counter = new AtomicInteger(0);
-		final int numRules = binaryRules.length;
 
 		// Create a list from left cells. This will allow the stream() to
 		// distribute better.
-		final List<Cell<MR>> leftCells = new ArrayList<>();
-		final Iterator<Cell<MR>> iterator = chart.getSpanIterator(leftStart,
-				leftEnd);
-		while (iterator.hasNext()) {
-			leftCells.add(iterator.next());
-		}
+		final List<Cell<MR>> leftCells = Arrays
+				.asList(getSpanCells(chart, leftStart, leftEnd, pruned));
+
+		// Index the rules by the syntactic shapes of the cells in this split,
+		// so only rules that may fire are applied to each pair of cells.
+		final BinaryRuleIndex.SplitIndex<MR> ruleIndex = binaryRuleIndex
+				.index(leftCells, rightCells);
 
 		// When debugging, it's easier to read the logs with a sequential
 		// stream. Naturally, this has performance costs.
-		final Stream<Cell<MR>> leftStream = LOG.getLogLevel() == LogLevel.DEBUG
-				? leftCells.stream().sequential()
-				: leftCells.stream().parallel().unordered();
+		final Stream<Cell<MR>> leftStream = isParallelSpanProcessing()
+				? leftCells.stream().parallel().unordered()
+				: leftCells.stream().sequential();
 
 		leftStream.forEach(left -> {
+			if (budget.isExhausted()) {
+				return;
+			}
+			final CKYBinaryParsingRule<MR>[][] leftRules = ruleIndex.get(left);
 			for (int j = 0; j < numRightCells; ++j) {
 				final Cell<MR> right = rightCells[j];
 				LOG.debug("Processing: left=%d , right=%d", left.hashCode(),
 						right.hashCode());
 				LOG.debug("Left: %s", left);
 				LOG.debug("Right: %s", right);
-				for (int ruleIndex = 0; ruleIndex < numRules; ++ruleIndex) {
-					final CKYBinaryParsingRule<MR> rule = binaryRules[ruleIndex];
+				for (final CKYBinaryParsingRule<MR> rule : leftRules[j]) {
 					LOG.debug("Applying %s", rule);
 					final ParseRuleResult<MR> prr = rule.apply(left, right,
 							span);
@@ -731,8 +822,11 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 				"Finished processing split (%d, %d)[%d], generated %d cells, returning %d cells",
 				start, end, split, counter.get(), queue.size());
 
+		budget.addRuleApplications(counter.get());
+
 		final List<Cell<MR>> cells = new ArrayList<Cell<MR>>(queue);
-		return Pair.of(cells, pruned.get() || queue.hasThreshold());
+		return Pair.of(cells, pruned.get() || queue.hasThreshold()
+				|| budget.wasExhausted());
 	}
 
 	/**
@@ -810,6 +904,11 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		LOG.debug("Unary processing span (%d, %d) with %d  cells", start, end,
 				chart.spanSize(start, end));
 
+		if (chart.getBudget().isExhausted()) {
+			LOG.debug("Parse budget exhausted, skipping unary rules");
+			return Pair.of(Collections.<Cell<MR>> emptyList(), true);
+		}
+
 		final SentenceSpan span = new SentenceSpan(start, end, sentenceLength);
 
 		// Create a list from left cells. This will allow the stream() to
@@ -824,7 +923,7 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		final int numRules = unaryRules.length;
 		final List<Cell<MR>> newCells = StreamSupport
 				.stream(Spliterators.spliterator(cells, Spliterator.IMMUTABLE),
-						LOG.getLogLevel() == LogLevel.DEBUG ? false : true)
+						isParallelSpanProcessing())
 				.map(cell -> {
 					LOG.debug("Processing: cell=%d", cell.hashCode());
 					for (int ruleIndex = 0; ruleIndex < numRules; ++ruleIndex) {
@@ -868,6 +967,8 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 				"Finished unary processing span (%d, %d), generated %d cells, returning %d cells",
 				start, end, counter.get(), newCells.size());
 
+		chart.getBudget().addRuleApplications(counter.get());
+
 		return Pair.of(newCells, false);
 	}
 
@@ -886,6 +987,11 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 		LOG.debug("Unary processing span (%d, %d) with %d  cells", start, end,
 				chart.spanSize(start, end));
 
+		if (chart.getBudget().isExhausted()) {
+			LOG.debug("Parse budget exhausted, skipping unary rules");
+			return Pair.of(Collections.<Cell<MR>> emptyList(), true);
+		}
+
 		final SentenceSpan span = new SentenceSpan(start, end, sentenceLength);
 		final OrderInvariantDirectAccessBoundedQueue<Cell<MR>> queue = new OrderInvariantDirectAccessBoundedQueue<Cell<MR>>(
 				chartBeamSize * 2 + 1, new Cell.ScoreComparator<MR>());
@@ -906,7 +1012,7 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 
 		StreamSupport
 				.stream(Spliterators.spliterator(cells, Spliterator.IMMUTABLE),
-						LOG.getLogLevel() == LogLevel.DEBUG ? false : true)
+						isParallelSpanProcessing())
 				.forEach(cell -> {
 					LOG.debug("Processing: cell=%d", cell.hashCode());
 					for (int ruleIndex = 0; ruleIndex < numRules; ++ruleIndex) {
@@ -1001,6 +1107,8 @@ public abstract class AbstractCKYParser<DI extends Sentence, MR>
 				"Finished unary processing span (%d, %d), generated %d cells, returning %d cells",
 				start, end, counter, queue.size());
 
+		chart.getBudget().addRuleApplications(counter.get());
+
 		return Pair.of(new ArrayList<Cell<MR>>(queue),
 				pruned.get() || queue.hasThreshold());
 	}
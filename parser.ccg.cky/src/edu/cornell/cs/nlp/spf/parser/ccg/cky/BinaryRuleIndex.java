@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.cky;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Cell;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
+import edu.cornell.cs.nlp.utils.composites.Pair;
+
+/**
+ * Index of binary parsing rules by the syntactic shapes of the categories they
+ * may combine. The set of rules for each pair of shapes is computed once and
+ * cached, so the parser only invokes rules that may fire on a given pair of
+ * cells.
+ *
+ * @author Yoav Artzi
+ * @param <MR>
+ *            Meaning representation.
+ */
+public class BinaryRuleIndex<MR> implements Serializable {
+
+	private static final long															serialVersionUID	= -3413367434437516766L;
+
+	private transient Map<Pair<SyntaxShape, SyntaxShape>, CKYBinaryParsingRule<MR>[]>	cache;
+
+	private final CKYBinaryParsingRule<MR>[]											rules;
+
+	public BinaryRuleIndex(CKYBinaryParsingRule<MR>[] rules) {
+		this.rules = rules;
+		this.cache = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * @return All rules that may apply to a pair of categories with the given
+	 *         shapes. The returned array must not be modified.
+	 */
+	public CKYBinaryParsingRule<MR>[] get(SyntaxShape left,
+			SyntaxShape right) {
+		return cache.computeIfAbsent(Pair.of(left, right), pair -> {
+			final List<CKYBinaryParsingRule<MR>> valid = new ArrayList<>(
+					rules.length);
+			for (final CKYBinaryParsingRule<MR> rule : rules) {
+				if (rule.isValidArgumentShapes(left, right)) {
+					valid.add(rule);
+				}
+			}
+			return toArray(valid);
+		});
+	}
+
+	/**
+	 * Creates a dispatch table for a single split, mapping each pair of left
+	 * and right cells to the rules that may combine them.
+	 */
+	public SplitIndex<MR> index(List<Cell<MR>> leftCells,
+			Cell<MR>[] rightCells) {
+		// Shapes of the right cells. Cells sharing the same shape share the
+		// same rules array.
+		final SyntaxShape[] rightShapes = new SyntaxShape[rightCells.length];
+		for (int i = 0; i < rightCells.length; ++i) {
+			rightShapes[i] = SyntaxShape
+					.of(rightCells[i].getCategory().getSyntax());
+		}
+
+		// Create a row for each distinct shape of the left cells.
+		final Map<SyntaxShape, CKYBinaryParsingRule<MR>[][]> rows = new HashMap<>();
+		for (final Cell<MR> left : leftCells) {
+			final SyntaxShape leftShape = SyntaxShape
+					.of(left.getCategory().getSyntax());
+			if (!rows.containsKey(leftShape)) {
+				@SuppressWarnings("unchecked")
+				final CKYBinaryParsingRule<MR>[][] row = (CKYBinaryParsingRule<MR>[][]) Array
+						.newInstance(CKYBinaryParsingRule.class,
+								rightCells.length, 0);
+				for (int i = 0; i < rightShapes.length; ++i) {
+					row[i] = get(leftShape, rightShapes[i]);
+				}
+				rows.put(leftShape, row);
+			}
+		}
+
+		return new SplitIndex<>(rows);
+	}
+
+	@SuppressWarnings("unchecked")
+	private CKYBinaryParsingRule<MR>[] toArray(
+			List<CKYBinaryParsingRule<MR>> list) {
+		return list.toArray((CKYBinaryParsingRule<MR>[]) Array
+				.newInstance(CKYBinaryParsingRule.class, list.size()));
+	}
+
+	private void readObject(ObjectInputStream ois)
+			throws ClassNotFoundException, IOException {
+		ois.defaultReadObject();
+		this.cache = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Rule dispatch table for a single split. Read-only, so safe to share
+	 * between threads processing the split.
+	 *
+	 * @author Yoav Artzi
+	 */
+	public static class SplitIndex<MR> {
+		private final Map<SyntaxShape, CKYBinaryParsingRule<MR>[][]> rows;
+
+		private SplitIndex(Map<SyntaxShape, CKYBinaryParsingRule<MR>[][]> rows) {
+			this.rows = rows;
+		}
+
+		/**
+		 * @return Array indexed by the position of the right cells, each entry
+		 *         holding the rules that may combine the given left cell with
+		 *         the right cell.
+		 */
+		public CKYBinaryParsingRule<MR>[][] get(Cell<MR> left) {
+			return rows.get(SyntaxShape.of(left.getCategory().getSyntax()));
+		}
+	}
+
+}
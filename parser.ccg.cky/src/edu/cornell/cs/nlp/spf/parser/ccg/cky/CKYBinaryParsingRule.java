@@ -24,6 +24,7 @@ import edu.cornell.cs.nlp.spf.parser.ccg.rules.IBinaryParseRule;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 
 public class CKYBinaryParsingRule<MR> implements Serializable {
 	private static final long			serialVersionUID	= -5629394704296771855L;
@@ -103,4 +104,11 @@ public class CKYBinaryParsingRule<MR> implements Serializable {
 		}
 		return rule.apply(left.getCategory(), right.getCategory(), span);
 	}
+
+	/**
+	 * @see IBinaryParseRule#isValidArgumentShapes(SyntaxShape, SyntaxShape)
+	 */
+	boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return rule.isValidArgumentShapes(left, right);
+	}
 }
@@ -23,6 +23,7 @@ import java.util.List;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Cell;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Chart;
 import edu.cornell.cs.nlp.spf.parser.graph.IGraphDerivation;
 import edu.cornell.cs.nlp.spf.parser.graph.IGraphParserOutput;
@@ -46,6 +47,11 @@ public class CKYParserOutput<MR> implements IGraphParserOutput<MR> {
 	/** Max scoring complete parses */
 	private final List<CKYDerivation<MR>>	bestParses;
 
+	/**
+	 * The parse was stopped before completion since its budget was exhausted.
+	 */
+	private final boolean					budgetExhausted;
+
 	/** The CKY chart */
 	private final Chart<MR>					chart;
 
@@ -53,8 +59,14 @@ public class CKYParserOutput<MR> implements IGraphParserOutput<MR> {
 	private final long						parsingTime;
 
 	public CKYParserOutput(Chart<MR> chart, long parsingTime) {
+		this(chart, parsingTime, false);
+	}
+
+	public CKYParserOutput(Chart<MR> chart, long parsingTime,
+			boolean budgetExhausted) {
 		this.chart = chart;
 		this.parsingTime = parsingTime;
+		this.budgetExhausted = budgetExhausted;
 		this.allParses = Collections.unmodifiableList(chart.getParseResults());
 		this.bestParses = Collections
 				.unmodifiableList(findBestParses(allParses));
@@ -125,9 +137,33 @@ public class CKYParserOutput<MR> implements IGraphParserOutput<MR> {
 		return parsingTime;
 	}
 
+	/**
+	 * Indicates if the parse was stopped before completion due to its budget.
+	 * The derivations include only complete parses created before it stopped.
+	 */
+	public boolean isBudgetExhausted() {
+		return budgetExhausted;
+	}
+
 	@Override
 	public boolean isExact() {
-		return chart.getPrunedSpans().isEmpty();
+		return !budgetExhausted && chart.getPrunedSpans().isEmpty();
+	}
+
+	@Override
+	public LazyKBestIterator<MR> kBestIterator() {
+		return kBestIterator(FilterUtils.<Category<MR>> stubTrue());
+	}
+
+	@Override
+	public LazyKBestIterator<MR> kBestIterator(IFilter<Category<MR>> filter) {
+		final List<Cell<MR>> roots = new ArrayList<Cell<MR>>(allParses.size());
+		for (final CKYDerivation<MR> derivation : allParses) {
+			if (filter.test(derivation.getCategory())) {
+				roots.add(derivation.getCell());
+			}
+		}
+		return new LazyKBestIterator<MR>(roots);
 	}
 
 	/** {@inheritDoc} */
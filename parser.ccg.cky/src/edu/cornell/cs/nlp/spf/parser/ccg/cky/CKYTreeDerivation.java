@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.cky;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
+import edu.cornell.cs.nlp.spf.ccg.categories.Category;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.parser.RuleUsageTriplet;
+import edu.cornell.cs.nlp.spf.parser.ccg.ILexicalParseStep;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Cell;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.steps.IWeightedCKYStep;
+import edu.cornell.cs.nlp.spf.parser.graph.IGraphDerivation;
+import edu.cornell.cs.nlp.utils.composites.Pair;
+
+/**
+ * A single parse tree extracted from the CKY chart. Unlike
+ * {@link CKYDerivation}, which packs all trees with the same root category,
+ * this derivation is a single tree: a {@link IWeightedCKYStep} at the root and
+ * a tree for each of its children. Since there's a single tree, all and max
+ * quantities are identical, and the inside score is the score of the tree.
+ *
+ * @author Yoav Artzi
+ * @param <MR>
+ *            Meaning representation.
+ * @see LazyKBestIterator
+ */
+public class CKYTreeDerivation<MR> implements IGraphDerivation<MR> {
+
+	private final Cell<MR>						cell;
+	private final List<CKYTreeDerivation<MR>>	children;
+	private IHashVectorImmutable				features	= null;
+	private final int							hashCodeCache;
+	private final double						score;
+	private final IWeightedCKYStep<MR>			step;
+
+	public CKYTreeDerivation(Cell<MR> cell, IWeightedCKYStep<MR> step,
+			List<CKYTreeDerivation<MR>> children) {
+		assert step.numChildren() == children.size();
+		this.cell = cell;
+		this.step = step;
+		this.children = Collections.unmodifiableList(children);
+		double treeScore = step.getStepScore();
+		for (final CKYTreeDerivation<MR> child : children) {
+			treeScore += child.score;
+		}
+		this.score = treeScore;
+		this.hashCodeCache = calcHashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		@SuppressWarnings("rawtypes")
+		final CKYTreeDerivation other = (CKYTreeDerivation) obj;
+		if (hashCodeCache != other.hashCodeCache) {
+			return false;
+		}
+		if (!step.equals(other.step)) {
+			return false;
+		}
+		if (!children.equals(other.children)) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public LinkedHashSet<LexicalEntry<MR>> getAllLexicalEntries() {
+		return getMaxLexicalEntries();
+	}
+
+	@Override
+	public LinkedHashSet<IWeightedCKYStep<MR>> getAllSteps() {
+		return getMaxSteps();
+	}
+
+	@Override
+	public IHashVectorImmutable getAverageMaxFeatureVector() {
+		if (features == null) {
+			final IHashVector result = HashVectorFactory.create();
+			collectFeatures(result);
+			features = result;
+		}
+		return features;
+	}
+
+	@Override
+	public Category<MR> getCategory() {
+		return cell.getCategory();
+	}
+
+	/**
+	 * The chart cell of the root of the tree.
+	 */
+	public Cell<MR> getCell() {
+		return cell;
+	}
+
+	public List<CKYTreeDerivation<MR>> getChildren() {
+		return children;
+	}
+
+	@Override
+	public double getLogInsideScore() {
+		return score;
+	}
+
+	@Override
+	public LinkedHashSet<LexicalEntry<MR>> getMaxLexicalEntries() {
+		final LinkedHashSet<LexicalEntry<MR>> entries = new LinkedHashSet<LexicalEntry<MR>>();
+		collectLexicalEntries(entries);
+		return entries;
+	}
+
+	@Override
+	public LinkedHashSet<RuleUsageTriplet> getMaxRulesUsed() {
+		final LinkedHashSet<RuleUsageTriplet> rules = new LinkedHashSet<RuleUsageTriplet>();
+		collectRules(rules);
+		return rules;
+	}
+
+	@Override
+	public LinkedHashSet<IWeightedCKYStep<MR>> getMaxSteps() {
+		final LinkedHashSet<IWeightedCKYStep<MR>> steps = new LinkedHashSet<IWeightedCKYStep<MR>>();
+		collectSteps(steps);
+		return steps;
+	}
+
+	@Override
+	public double getScore() {
+		return score;
+	}
+
+	@Override
+	public MR getSemantics() {
+		return cell.getCategory().getSemantics();
+	}
+
+	/**
+	 * The step at the root of the tree.
+	 */
+	public IWeightedCKYStep<MR> getStep() {
+		return step;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCodeCache;
+	}
+
+	@Override
+	public long numParses() {
+		return 1;
+	}
+
+	@Override
+	public String toString() {
+		return cell.getCategory().toString();
+	}
+
+	private int calcHashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + children.hashCode();
+		result = prime * result + step.hashCode();
+		return result;
+	}
+
+	private void collectFeatures(IHashVector result) {
+		for (final CKYTreeDerivation<MR> child : children) {
+			child.collectFeatures(result);
+		}
+		step.getStepFeatures().addTimesInto(1.0, result);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void collectLexicalEntries(LinkedHashSet<LexicalEntry<MR>> result) {
+		if (step instanceof ILexicalParseStep) {
+			result.add(((ILexicalParseStep<MR>) step).getLexicalEntry());
+		}
+		for (final CKYTreeDerivation<MR> child : children) {
+			child.collectLexicalEntries(result);
+		}
+	}
+
+	private void collectRules(LinkedHashSet<RuleUsageTriplet> result) {
+		final List<Pair<Integer, Integer>> spans = new ArrayList<Pair<Integer, Integer>>(
+				Math.max(children.size(), 1));
+		for (final CKYTreeDerivation<MR> child : children) {
+			child.collectRules(result);
+			spans.add(Pair.of(child.cell.getStart(), child.cell.getEnd()));
+		}
+		if (spans.isEmpty()) {
+			// Case no children, usually for lexical rules, simply assign the
+			// span (as for unary rules).
+			spans.add(Pair.of(cell.getStart(), cell.getEnd()));
+		}
+		result.add(new RuleUsageTriplet(step.getRuleName(), spans));
+	}
+
+	private void collectSteps(LinkedHashSet<IWeightedCKYStep<MR>> result) {
+		for (final CKYTreeDerivation<MR> child : children) {
+			child.collectSteps(result);
+		}
+		result.add(step);
+	}
+
+}
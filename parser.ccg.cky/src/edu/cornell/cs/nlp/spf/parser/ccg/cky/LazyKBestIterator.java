@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.cky;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Cell;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.steps.IWeightedCKYStep;
+
+/**
+ * Lazy k-best extraction of parse trees from the packed CKY chart, following
+ * Algorithm 3 of Huang and Chiang (2005). Each {@link Cell} is a node in the
+ * hypergraph and each of its {@link IWeightedCKYStep}s is an incoming
+ * hyperedge. The k-th best tree of a cell is only computed when requested, and
+ * computing it only requires the trees of its descendants up to the same rank.
+ * Iterates over trees rooted at the given cells in descending order of score.
+ * Trees with equal scores are returned in an arbitrary order. Not thread-safe.
+ *
+ * @author Yoav Artzi
+ * @param <MR>
+ *            Meaning representation.
+ */
+public class LazyKBestIterator<MR> implements Iterator<CKYTreeDerivation<MR>> {
+
+	private static final Comparator<Candidate<?>>	CANDIDATE_COMPARATOR	= (
+			c1, c2) -> Double.compare(c2.derivation.getScore(),
+					c1.derivation.getScore());
+
+	/**
+	 * The last root returned. Its successor is only queued when the next tree
+	 * is requested.
+	 */
+	private RootCandidate<MR>						lastRoot				= null;
+
+	private final PriorityQueue<RootCandidate<MR>>	roots					= new PriorityQueue<RootCandidate<MR>>(
+			(r1, r2) -> Double.compare(r2.derivation.getScore(),
+					r1.derivation.getScore()));
+
+	private final Map<Cell<MR>, CellState<MR>>		states					= new HashMap<Cell<MR>, CellState<MR>>();
+
+	public LazyKBestIterator(Collection<Cell<MR>> rootCells) {
+		for (final Cell<MR> cell : rootCells) {
+			final CKYTreeDerivation<MR> best = getKth(cell, 0);
+			if (best != null) {
+				roots.add(new RootCandidate<MR>(cell, 0, best));
+			}
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		queueNextRoot();
+		return !roots.isEmpty();
+	}
+
+	@Override
+	public CKYTreeDerivation<MR> next() {
+		queueNextRoot();
+		final RootCandidate<MR> root = roots.poll();
+		if (root == null) {
+			throw new NoSuchElementException();
+		}
+		lastRoot = root;
+		return root.derivation;
+	}
+
+	/**
+	 * Get the k-th best tree (zero-based) rooted at the given cell, or
+	 * <code>null</code> if the cell has less than k+1 trees.
+	 */
+	private CKYTreeDerivation<MR> getKth(Cell<MR> cell, int k) {
+		CellState<MR> state = states.get(cell);
+		if (state == null) {
+			state = new CellState<MR>();
+			states.put(cell, state);
+		}
+
+		if (state.busy) {
+			// Case the cell is its own descendant (e.g., a cycle of unary
+			// steps). Only use what was computed so far.
+			return k < state.derivations.size() ? state.derivations.get(k)
+					: null;
+		}
+
+		state.busy = true;
+		try {
+			if (state.candidates == null) {
+				// Initialize the candidates with the best tree of every
+				// incoming step.
+				state.candidates = new PriorityQueue<Candidate<MR>>(
+						CANDIDATE_COMPARATOR);
+				for (final IWeightedCKYStep<MR> step : cell.getSteps()) {
+					queueCandidate(state, createCandidate(cell, step,
+							new int[step.numChildren()]));
+				}
+			}
+
+			while (state.derivations.size() <= k) {
+				if (state.last != null) {
+					// Lazily queue the successors of the last popped
+					// candidate.
+					queueSuccessors(cell, state, state.last);
+					state.last = null;
+				}
+				retryBlocked(cell, state);
+				final Candidate<MR> best = state.candidates.poll();
+				if (best == null) {
+					break;
+				}
+				state.derivations.add(best.derivation);
+				state.last = best;
+			}
+		} finally {
+			state.busy = false;
+		}
+
+		return k < state.derivations.size() ? state.derivations.get(k) : null;
+	}
+
+	/**
+	 * Create a candidate tree for the given step with the given ranks for its
+	 * children. If any of the children doesn't have a tree with the required
+	 * rank, the candidate has no derivation. Such a candidate is blocked if
+	 * the child cell may still gain more trees (see
+	 * {@link CellState#isComplete()}).
+	 */
+	private Candidate<MR> createCandidate(Cell<MR> cell,
+			IWeightedCKYStep<MR> step, int[] ranks) {
+		final List<CKYTreeDerivation<MR>> children = new ArrayList<CKYTreeDerivation<MR>>(
+				ranks.length);
+		for (int i = 0; i < ranks.length; ++i) {
+			final Cell<MR> childCell = step.getChildCell(i);
+			final CKYTreeDerivation<MR> child = getKth(childCell, ranks[i]);
+			if (child == null) {
+				return new Candidate<MR>(step, ranks, null,
+						!states.get(childCell).isComplete());
+			}
+			children.add(child);
+		}
+		return new Candidate<MR>(step, ranks,
+				new CKYTreeDerivation<MR>(cell, step, children), false);
+	}
+
+	/**
+	 * Record a new candidate of a cell. Queue it if it has a derivation, keep
+	 * it for later if it's blocked, and otherwise drop it.
+	 */
+	private void queueCandidate(CellState<MR> state, Candidate<MR> candidate) {
+		state.seen.add(candidate);
+		if (candidate.derivation != null) {
+			state.candidates.add(candidate);
+		} else if (candidate.blocked) {
+			state.blocked.add(candidate);
+		}
+	}
+
+	private void queueNextRoot() {
+		if (lastRoot != null) {
+			final CKYTreeDerivation<MR> derivation = getKth(lastRoot.cell,
+					lastRoot.rank + 1);
+			if (derivation != null) {
+				roots.add(new RootCandidate<MR>(lastRoot.cell,
+						lastRoot.rank + 1, derivation));
+			}
+			lastRoot = null;
+		}
+	}
+
+	private void queueSuccessors(Cell<MR> cell, CellState<MR> state,
+			Candidate<MR> candidate) {
+		for (int i = 0; i < candidate.ranks.length; ++i) {
+			final int[] ranks = Arrays.copyOf(candidate.ranks,
+					candidate.ranks.length);
+			++ranks[i];
+			if (state.seen.contains(
+					new Candidate<MR>(candidate.step, ranks, null, false))) {
+				continue;
+			}
+			queueCandidate(state, createCandidate(cell, candidate.step, ranks));
+		}
+	}
+
+	/**
+	 * Re-create the blocked candidates of a cell, since their child cells may
+	 * have gained trees since they were created. Queue the ones that now have
+	 * a derivation and drop the ones that are no longer blocked.
+	 */
+	private void retryBlocked(Cell<MR> cell, CellState<MR> state) {
+		final Iterator<Candidate<MR>> iterator = state.blocked.iterator();
+		while (iterator.hasNext()) {
+			final Candidate<MR> blocked = iterator.next();
+			final Candidate<MR> candidate = createCandidate(cell, blocked.step,
+					blocked.ranks);
+			if (candidate.derivation != null) {
+				iterator.remove();
+				state.candidates.add(candidate);
+			} else if (!candidate.blocked) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * A candidate tree for a cell: a step and the rank of the tree of each of
+	 * its children. Equality ignores the derivation.
+	 */
+	private static class Candidate<MR> {
+		/**
+		 * The candidate has no derivation, but one of its children may still
+		 * gain the missing tree.
+		 */
+		private final boolean				blocked;
+		private final CKYTreeDerivation<MR>	derivation;
+		private final int					hashCode;
+		private final int[]					ranks;
+		private final IWeightedCKYStep<MR>	step;
+
+		public Candidate(IWeightedCKYStep<MR> step, int[] ranks,
+				CKYTreeDerivation<MR> derivation, boolean blocked) {
+			this.step = step;
+			this.ranks = ranks;
+			this.derivation = derivation;
+			this.blocked = blocked;
+			this.hashCode = 31 * System.identityHashCode(step)
+					+ Arrays.hashCode(ranks);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Candidate)) {
+				return false;
+			}
+			final Candidate<?> other = (Candidate<?>) obj;
+			return step == other.step && Arrays.equals(ranks, other.ranks);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/**
+	 * The k-best state of a single cell.
+	 */
+	private static class CellState<MR> {
+		/**
+		 * Candidates without a derivation, since a child tree they require is
+		 * missing, but may still be computed. For example, in a cycle of unary
+		 * steps, a child may be an ancestor that is still computing its
+		 * trees. Retried before each new tree of the cell is selected.
+		 */
+		private final List<Candidate<MR>>			blocked		= new ArrayList<Candidate<MR>>();
+		private boolean								busy		= false;
+		private PriorityQueue<Candidate<MR>>		candidates	= null;
+		private final List<CKYTreeDerivation<MR>>	derivations	= new ArrayList<CKYTreeDerivation<MR>>();
+		private Candidate<MR>						last		= null;
+		/**
+		 * All candidates created, whether queued, blocked or dropped.
+		 */
+		private final Set<Candidate<MR>>			seen		= new HashSet<Candidate<MR>>();
+
+		/**
+		 * Indicates if the cell can't gain any more trees. Without cycles, a
+		 * cell is complete once it has no more candidates.
+		 */
+		public boolean isComplete() {
+			return !busy && last == null && candidates != null
+					&& candidates.isEmpty() && blocked.isEmpty();
+		}
+	}
+
+	private static class RootCandidate<MR> {
+		private final Cell<MR>				cell;
+		private final CKYTreeDerivation<MR>	derivation;
+		private final int					rank;
+
+		public RootCandidate(Cell<MR> cell, int rank,
+				CKYTreeDerivation<MR> derivation) {
+			this.cell = cell;
+			this.rank = rank;
+			this.derivation = derivation;
+		}
+	}
+
+}
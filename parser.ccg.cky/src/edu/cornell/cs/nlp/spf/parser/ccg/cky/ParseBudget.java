@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.cky;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on the work done by a single CKY parse. A parse stops when its wall
+ * clock time, the number of cells added to its chart or the number of
+ * successful rule applications exceeds the budget. Each limit is disabled when
+ * set to 0. The parse output of a stopped parse is marked as inexact and
+ * includes only the complete derivations created before it stopped. With
+ * progressive beam tightening, the number of cells from each span used for
+ * further processing shrinks as the budget is consumed, making it more likely
+ * that the parse reaches the complete span in time.
+ *
+ * @author Yoav Artzi
+ */
+public class ParseBudget implements Serializable {
+
+	public static final ParseBudget	UNBOUNDED			= new ParseBudget(0, 0,
+			0, false);
+
+	private static final long		serialVersionUID	= -4725218306613542637L;
+
+	private final long				maxCells;
+
+	private final long				maxRuleApplications;
+
+	/** Wall clock limit in milliseconds. */
+	private final long				maxTime;
+
+	private final boolean			progressiveBeam;
+
+	public ParseBudget(long maxTime, long maxCells, long maxRuleApplications,
+			boolean progressiveBeam) {
+		this.maxTime = maxTime;
+		this.maxCells = maxCells;
+		this.maxRuleApplications = maxRuleApplications;
+		this.progressiveBeam = progressiveBeam;
+	}
+
+	public boolean isBounded() {
+		return maxTime > 0 || maxCells > 0 || maxRuleApplications > 0;
+	}
+
+	/**
+	 * Start tracking the budget of a single parse.
+	 */
+	public Tracker start() {
+		return new Tracker();
+	}
+
+	@Override
+	public String toString() {
+		return isBounded()
+				? String.format(
+						"[maxTime=%dms, maxCells=%d, maxRuleApplications=%d, progressiveBeam=%s]",
+						maxTime, maxCells, maxRuleApplications,
+						progressiveBeam)
+				: "[unbounded]";
+	}
+
+	/**
+	 * Tracks the budget consumption of a single parse. Safe for concurrent
+	 * use.
+	 *
+	 * @author Yoav Artzi
+	 */
+	public class Tracker {
+
+		private final AtomicLong	cells				= new AtomicLong();
+
+		private volatile boolean	exhausted			= false;
+
+		private final AtomicLong	ruleApplications	= new AtomicLong();
+
+		private final long			startTime			= System.currentTimeMillis();
+
+		private Tracker() {
+			// Use ParseBudget.start().
+		}
+
+		public void addCells(int num) {
+			if (maxCells > 0 && cells.addAndGet(num) > maxCells) {
+				exhausted = true;
+			}
+		}
+
+		public void addRuleApplications(int num) {
+			if (maxRuleApplications > 0
+					&& ruleApplications.addAndGet(num) > maxRuleApplications) {
+				exhausted = true;
+			}
+		}
+
+		/**
+		 * The number of cells to use from a span with the given beam. Without
+		 * progressive beam tightening, returns the beam unchanged. Otherwise,
+		 * shrinks the beam linearly with the consumed fraction of the budget.
+		 */
+		public int getBeamSize(int beamSize) {
+			if (!progressiveBeam || !isBounded()) {
+				return beamSize;
+			}
+			final double remaining = Math.max(0.0, 1.0 - getUsage());
+			return Math.max(1, (int) Math.ceil(beamSize * remaining));
+		}
+
+		public ParseBudget getBudget() {
+			return ParseBudget.this;
+		}
+
+		/**
+		 * The consumed fraction of the budget, taking the maximum over all
+		 * enabled limits.
+		 */
+		public double getUsage() {
+			double usage = 0.0;
+			if (maxTime > 0) {
+				usage = Math.max(usage,
+						(System.currentTimeMillis() - startTime)
+								/ (double) maxTime);
+			}
+			if (maxCells > 0) {
+				usage = Math.max(usage, cells.get() / (double) maxCells);
+			}
+			if (maxRuleApplications > 0) {
+				usage = Math.max(usage,
+						ruleApplications.get() / (double) maxRuleApplications);
+			}
+			return usage;
+		}
+
+		/**
+		 * Checks if the budget is exhausted. Callers are expected to skip the
+		 * remaining work once this returns true.
+		 */
+		public boolean isExhausted() {
+			if (!exhausted && maxTime > 0
+					&& System.currentTimeMillis() - startTime >= maxTime) {
+				exhausted = true;
+			}
+			return exhausted;
+		}
+
+		/**
+		 * Indicates if any check of the budget found it exhausted, so some
+		 * work was skipped.
+		 */
+		public boolean wasExhausted() {
+			return exhausted;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"[time=%dms, cells=%d, ruleApplications=%d, exhausted=%s]",
+					System.currentTimeMillis() - startTime, cells.get(),
+					ruleApplications.get(), exhausted);
+		}
+	}
+
+}
@@ -632,6 +632,15 @@ public class Cell<MR> implements IArrayRuleNameSet {
 		return false;
 	}
 
+	/**
+	 * Log-sum-exp the given score into the cell's log outside score. The chart
+	 * propagates outside scores from spans of the same length concurrently, so
+	 * a cell may receive contributions from several threads.
+	 */
+	synchronized void addToLogOutsideScore(double logScore) {
+		logOutsideScore = LogSumExp.of(logOutsideScore, logScore);
+	}
+
 	/**
 	 * Update the cell's log expected feature values to the given hash vector.
 	 * Assumes outside and inside scores computed.
@@ -702,12 +711,10 @@ public class Cell<MR> implements IArrayRuleNameSet {
 					final double logScore = derivationStep.getStepScore();
 					final Cell<MR> child1 = derivationStep.getChildCell(0);
 					final Cell<MR> child2 = derivationStep.getChildCell(1);
-					child1.logOutsideScore = LogSumExp
-							.of(child1.logOutsideScore, logOutsideScore
-									+ child2.getLogInsideScore() + logScore);
-					child2.logOutsideScore = LogSumExp
-							.of(child2.logOutsideScore, logOutsideScore
-									+ child1.getLogInsideScore() + logScore);
+					child1.addToLogOutsideScore(logOutsideScore
+							+ child2.getLogInsideScore() + logScore);
+					child2.addToLogOutsideScore(logOutsideScore
+							+ child1.getLogInsideScore() + logScore);
 				}
 			}
 		}
@@ -728,8 +735,7 @@ public class Cell<MR> implements IArrayRuleNameSet {
 				// non-terminal for a given span. For the unary case, there are
 				// no siblings, so no need to take any inside score into
 				// account, unlike the binary case.
-				derivationStep.getChildCell(0).logOutsideScore = LogSumExp.of(
-						derivationStep.getChildCell(0).logOutsideScore,
+				derivationStep.getChildCell(0).addToLogOutsideScore(
 						logOutsideScore + derivationStep.getStepScore());
 			}
 		}
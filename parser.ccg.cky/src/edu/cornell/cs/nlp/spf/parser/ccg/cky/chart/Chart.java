@@ -28,13 +28,17 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
+import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorUtils;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYDerivation;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.ParseBudget;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.steps.IWeightedCKYStep;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.Span;
 import edu.cornell.cs.nlp.utils.collections.CollectionUtils;
@@ -47,6 +51,7 @@ import edu.cornell.cs.nlp.utils.collections.queue.OrderInvariantDirectAccessBoun
 import edu.cornell.cs.nlp.utils.composites.Pair;
 import edu.cornell.cs.nlp.utils.filter.IFilter;
 import edu.cornell.cs.nlp.utils.log.ILogger;
+import edu.cornell.cs.nlp.utils.log.LogLevel;
 import edu.cornell.cs.nlp.utils.log.LoggerFactory;
 import edu.cornell.cs.nlp.utils.math.LogSumExp;
 
@@ -63,6 +68,11 @@ public class Chart<MR> implements Iterable<Cell<MR>> {
 
 	private final int						beamSize;
 
+	/**
+	 * Budget consumption of the parse that populates this chart.
+	 */
+	private final ParseBudget.Tracker		budget;
+
 	private final AbstractCellFactory<MR>	cellFactory;
 
 	/** An array of spans for every starting and end indices. */
@@ -81,11 +91,27 @@ public class Chart<MR> implements Iterable<Cell<MR>> {
 	 *            Breaks ties during pruning using the order of insertion to the
 	 *            queue. In a multi-threaded parser, this is essentially random.
 	 */
-	@SuppressWarnings("unchecked")
 	public Chart(TokenSeq tokens, int maxNumberOfCellPerSpan,
 			AbstractCellFactory<MR> cellFactory, boolean separateLexicalQueue,
 			boolean breakTies) {
+		this(tokens, maxNumberOfCellPerSpan, cellFactory, separateLexicalQueue,
+				breakTies, ParseBudget.UNBOUNDED.start());
+	}
+
+	/**
+	 * @param breakTies
+	 *            Breaks ties during pruning using the order of insertion to the
+	 *            queue. In a multi-threaded parser, this is essentially random.
+	 * @param budget
+	 *            Budget tracker of the parse. Cells added to the chart are
+	 *            counted against it.
+	 */
+	@SuppressWarnings("unchecked")
+	public Chart(TokenSeq tokens, int maxNumberOfCellPerSpan,
+			AbstractCellFactory<MR> cellFactory, boolean separateLexicalQueue,
+			boolean breakTies, ParseBudget.Tracker budget) {
 		this.beamSize = maxNumberOfCellPerSpan;
+		this.budget = budget;
 		this.tokens = tokens;
 		this.cellFactory = cellFactory;
 		this.sentenceLength = tokens.size();
@@ -112,6 +138,7 @@ public class Chart<MR> implements Iterable<Cell<MR>> {
 	 * previously added cell.
 	 */
 	public void add(Cell<MR> cell) {
+		budget.addCells(1);
 		final AbstractSpan<MR> span = chart[cell.getStart()][cell.getEnd()];
 		final Cell<MR> existingCell = span.get(cell);
 		if (existingCell == null) {
@@ -144,6 +171,10 @@ public class Chart<MR> implements Iterable<Cell<MR>> {
 		return beamSize;
 	}
 
+	public ParseBudget.Tracker getBudget() {
+		return budget;
+	}
+
 	public Cell<MR> getCell(Cell<MR> cell) {
 		return chart[cell.getStart()][cell.getEnd()].get(cell);
 	}
@@ -429,17 +460,22 @@ public class Chart<MR> implements Iterable<Cell<MR>> {
 	 * log outside scores were computed.
 	 */
 	private IHashVector collectLogExpectedFeatures() {
-		final IHashVector feats = HashVectorFactory.create();
+		// Reduction: each sub-task accumulates into its own sparse vector, and
+		// the partial vectors are log-sum-exp merged.
+		final List<AbstractSpan<MR>> spans = new ArrayList<AbstractSpan<MR>>(
+				sentenceLength * (sentenceLength + 1) / 2);
 		for (int len = sentenceLength - 1; len >= 0; len--) {
 			for (int begin = 0; begin < sentenceLength - len; begin++) {
-				final Iterator<Cell<MR>> i = getSpanIterator(begin,
-						begin + len);
-				while (i.hasNext()) {
-					i.next().collectLogExpectedFeatures(feats);
-				}
+				spans.add(chart[begin][begin + len]);
 			}
 		}
-		return feats;
+		final Stream<AbstractSpan<MR>> stream = isParallelInference()
+				? spans.parallelStream() : spans.stream();
+		return stream.collect(HashVectorFactory::create, (feats, span) -> {
+			for (final Cell<MR> cell : span) {
+				cell.collectLogExpectedFeatures(feats);
+			}
+		} , (feats, other) -> HashVectorUtils.sumExpLogged(other, feats));
 	}
 
 	private List<Cell<MR>> fullparses() {
@@ -524,40 +560,55 @@ public class Chart<MR> implements Iterable<Cell<MR>> {
 		// First, init all outside probabilities. All roots of complete parses
 		// are scored using the given scorer.
 		for (int len = sentenceLength - 1; len >= 0; len--) {
-			for (int begin = 0; begin < sentenceLength - len; begin++) {
+			final int spanLength = len;
+			spanStream(len).forEach(begin -> {
 				final Iterator<Cell<MR>> spanIterator = getSpanIterator(begin,
-						begin + len);
+						begin + spanLength);
 				while (spanIterator.hasNext()) {
 					spanIterator.next().initializeLogOutsideProbabilities(
 							initialScorer, span);
 				}
-			}
+			});
 		}
 	}
 
+	/**
+	 * Indicates if inside-outside computations should distribute the spans of
+	 * each length using parallel streams. Similar to the parser, sequential
+	 * processing is used when debugging.
+	 */
+	private boolean isParallelInference() {
+		return LOG.getLogLevel() != LogLevel.DEBUG;
+	}
+
 	/**
 	 * Propagates log outside probabilities. Assumes that all appropriate source
 	 * cells were initialized.
 	 */
 	private void propagateLogOutsideProbabilities() {
 		// Iterate over all spans from the entire sentence to the token level.
+		// Spans of the same length only propagate into strictly shorter spans
+		// (binary steps) or into themselves (unary steps), so they are
+		// processed concurrently. Cells synchronize the update of their outside
+		// score, since a shorter span may be the child of several spans.
 		for (int len = sentenceLength - 1; len >= 0; len--) {
-			for (int begin = 0; begin < sentenceLength - len; begin++) {
+			final int spanLength = len;
+			spanStream(len).forEach(begin -> {
 				// Must first process unary derivation steps.
 				final Iterator<Cell<MR>> unarySpanIterator = getSpanIterator(
-						begin, begin + len);
+						begin, begin + spanLength);
 				while (unarySpanIterator.hasNext()) {
 					unarySpanIterator.next()
 							.updateUnaryChildrenLogOutsideScore();
 				}
 				// Now do the rest of the steps (i.e., results of binary steps)
 				final Iterator<Cell<MR>> binarySpanIterator = getSpanIterator(
-						begin, begin + len);
+						begin, begin + spanLength);
 				while (binarySpanIterator.hasNext()) {
 					binarySpanIterator.next()
 							.updateBinaryChildrenLogOutsideScore();
 				}
-			}
+			});
 		}
 	}
 
@@ -596,6 +647,15 @@ public class Chart<MR> implements Iterable<Cell<MR>> {
 		}
 	}
 
+	/**
+	 * Stream of the start indices of all spans of the given length (i.e., end
+	 * index minus start index).
+	 */
+	private IntStream spanStream(int len) {
+		final IntStream stream = IntStream.range(0, sentenceLength - len);
+		return isParallelInference() ? stream.parallel() : stream;
+	}
+
 	/**
 	 * A single span in a chart
 	 *
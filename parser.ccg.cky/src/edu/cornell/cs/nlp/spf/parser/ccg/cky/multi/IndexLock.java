@@ -1,41 +0,0 @@
-/*******************************************************************************
- * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
- * <p>
- * This program is free software; you can redistribute it and/or modify it under
- * the terms of the GNU General Public License as published by the Free Software
- * Foundation; either version 2 of the License, or any later version.
- * <p>
- * This program is distributed in the hope that it will be useful, but WITHOUT
- * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
- * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
- * details.
- * <p>
- * You should have received a copy of the GNU General Public License along with
- * this program; if not, write to the Free Software Foundation, Inc., 51
- * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
- *******************************************************************************/
-package edu.cornell.cs.nlp.spf.parser.ccg.cky.multi;
-
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
-public class IndexLock {
-	
-	private final Lock[]	indices;
-	
-	public IndexLock(int length) {
-		this.indices = new Lock[length];
-		for (int i = 0; i < length; ++i) {
-			indices[i] = new ReentrantLock();
-		}
-	}
-	
-	public void lock(int index) {
-		indices[index].lock();
-	}
-	
-	public void unlock(int index) {
-		indices[index].unlock();
-	}
-	
-}
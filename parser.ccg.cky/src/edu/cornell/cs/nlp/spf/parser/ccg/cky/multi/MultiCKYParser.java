@@ -21,22 +21,25 @@ import java.io.ObjectInputStream;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.function.Predicate;
 
 import com.google.common.base.Function;
 
-import edu.cornell.cs.nlp.spf.base.concurrency.ITinyExecutor;
+import edu.cornell.cs.nlp.spf.base.concurrency.LoggingForkJoinWorkerThreadFactory;
 import edu.cornell.cs.nlp.spf.base.concurrency.Shutdownable;
-import edu.cornell.cs.nlp.spf.base.concurrency.TinyExecutorService;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
-import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.SentenceSpanLexicon;
 import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment;
@@ -48,6 +51,7 @@ import edu.cornell.cs.nlp.spf.parser.ParsingOp;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.AbstractCKYParser;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYBinaryParsingRule;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYUnaryParsingRule;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.ParseBudget;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.AbstractCellFactory;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Cell;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Chart;
@@ -69,12 +73,19 @@ import edu.cornell.cs.nlp.utils.composites.Pair;
 import edu.cornell.cs.nlp.utils.filter.FilterUtils;
 import edu.cornell.cs.nlp.utils.filter.IFilter;
 import edu.cornell.cs.nlp.utils.log.ILogger;
+import edu.cornell.cs.nlp.utils.log.Log;
+import edu.cornell.cs.nlp.utils.log.Logger;
 import edu.cornell.cs.nlp.utils.log.LoggerFactory;
-import edu.cornell.cs.nlp.utils.log.thread.LoggingRunnable;
-import edu.cornell.cs.nlp.utils.log.thread.LoggingThreadFactory;
+import edu.cornell.cs.nlp.utils.log.thread.ILoggingThread;
 
 /**
- * Multi threaded CKY parser. Work is distributed on the level of span splits.
+ * Multi threaded CKY parser. Work is scheduled on a single work-stealing
+ * {@link ForkJoinPool}. Each span is a task that becomes ready once its two
+ * maximal sub-spans are complete (which transitively means all its sub-spans
+ * are complete). A span task processes its lexical entries and all of its
+ * splits as forked sub-tasks, adds the results to the chart and applies unary
+ * rules. Since each span is written by a single task, no span locking is
+ * required.
  *
  * @author Yoav Artzi
  * @param <DI>
@@ -84,13 +95,14 @@ import edu.cornell.cs.nlp.utils.log.thread.LoggingThreadFactory;
  */
 public class MultiCKYParser<DI extends Sentence, MR>
 		extends AbstractCKYParser<DI, MR> implements Shutdownable {
-	public static final ILogger		LOG					= LoggerFactory
+	public static final ILogger				LOG					= LoggerFactory
 			.create(MultiCKYParser.class);
-	private static final long		serialVersionUID	= 8447853586348529473L;
-	private transient ITinyExecutor	executor;
-	private final Integer			numThreads;
-	private final boolean			preChartPruning;
-	private final String			threadNamePrefix;
+	private static final long				serialVersionUID	= 8447853586348529473L;
+	private final Integer					numThreads;
+	private transient ForkJoinPool			pool;
+	private final boolean					preChartPruning;
+	private transient SpanLatencyStats		spanStats;
+	private final String					threadNamePrefix;
 
 	private MultiCKYParser(int maxNumberOfCellsInSpan,
 			CKYBinaryParsingRule<MR>[] binaryRules,
@@ -100,44 +112,59 @@ public class MultiCKYParser<DI extends Sentence, MR>
 			boolean preChartPruning, IFilter<Category<MR>> completeParseFilter,
 			CKYUnaryParsingRule<MR>[] unaryRules, Integer numThreads,
 			String threadNamePrefix, ILexicalRule<MR> lexicalRule,
-			boolean breakTies) {
+			boolean breakTies, ParseBudget budget) {
 		super(maxNumberOfCellsInSpan, binaryRules, sentenceLexiconGenerators,
 				sloppyLexicalGenerators, categoryServices, pruneLexicalCells,
-				completeParseFilter, unaryRules, lexicalRule, breakTies);
+				completeParseFilter, unaryRules, lexicalRule, breakTies,
+				budget);
 		this.numThreads = numThreads;
 		this.threadNamePrefix = threadNamePrefix;
-		this.executor = new TinyExecutorService(
+		this.pool = createPool(numThreads, threadNamePrefix);
+		this.spanStats = new SpanLatencyStats();
+		this.preChartPruning = preChartPruning;
+	}
+
+	private static ForkJoinPool createPool(Integer numThreads,
+			String threadNamePrefix) {
+		return new ForkJoinPool(
 				numThreads == null ? Runtime.getRuntime().availableProcessors()
 						: numThreads,
-				new LoggingThreadFactory(threadNamePrefix),
-				ITinyExecutor.DEFAULT_MONITOR_SLEEP);
-		this.preChartPruning = preChartPruning;
+				new LoggingForkJoinWorkerThreadFactory(threadNamePrefix), null,
+				false);
 	}
 
 	@Override
 	public boolean awaitTermination(long timeout, TimeUnit unit)
 			throws InterruptedException {
-		return executor.awaitTermination(timeout, unit);
+		return pool.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Latency counters of span tasks, aggregated over all parses since the
+	 * parser was created (or the counters were reset).
+	 */
+	public SpanLatencyStats getSpanLatencyStats() {
+		return spanStats;
 	}
 
 	@Override
 	public boolean isShutdown() {
-		return executor.isShutdown();
+		return pool.isShutdown();
 	}
 
 	@Override
 	public boolean isTerminated() {
-		return executor.isTerminated();
+		return pool.isTerminated();
 	}
 
 	@Override
 	public void shutdown() {
-		executor.shutdown();
+		pool.shutdown();
 	}
 
 	@Override
 	public List<Runnable> shutdownNow() {
-		return executor.shutdownNow();
+		return pool.shutdownNow();
 	}
 
 	/**
@@ -148,88 +175,48 @@ public class MultiCKYParser<DI extends Sentence, MR>
 	private void readObject(ObjectInputStream ois)
 			throws ClassNotFoundException, IOException {
 		ois.defaultReadObject();
-		this.executor = new TinyExecutorService(
-				numThreads == null ? Runtime.getRuntime().availableProcessors()
-						: numThreads,
-				new LoggingThreadFactory(threadNamePrefix),
-				ITinyExecutor.DEFAULT_MONITOR_SLEEP);
+		this.pool = createPool(numThreads, threadNamePrefix);
+		this.spanStats = new SpanLatencyStats();
 	}
 
 	@Override
 	protected Chart<MR> doParse(Predicate<ParsingOp<MR>> pruningFilter,
 			IDataItemModel<MR> model, Chart<MR> chart, int numTokens,
 			AbstractCellFactory<MR> cellFactory,
-			ILexiconImmutable<MR> lexicon) {
+			SentenceSpanLexicon<MR> lexicon) {
 
 		LOG.debug(
 				"Starting a multi-threaded CKY parse (chart already populated)");
 
-		// Generate all triplets of span and splits <begin,end,split> and
-		// store them in a set. Notice the added dummy splits for lexical jobs.
-		final Map<SpanPair, Set<SplitTriplet>> spans = new HashMap<SpanPair, Set<SplitTriplet>>();
-		for (int len = 0; len < numTokens; len++) {
-			for (int begin = 0; begin < numTokens - len; begin++) {
-				final HashSet<SplitTriplet> triplets = new HashSet<SplitTriplet>();
-				spans.put(new SpanPair(begin, begin + len), triplets);
-				// Add dummy split for the lexical job
-				triplets.add(new SplitTriplet(begin, begin + len, -1));
-				for (int split = 0; split < len; split++) {
-					triplets.add(new SplitTriplet(begin, begin + len, split));
-				}
-			}
-		}
-
-		// Create a map to hold all completed spans, index them by both
-		// start and end points (so most will appear in the map twice).
-		final Map<Integer, Set<SpanPair>> completedSpanBegins = new HashMap<Integer, Set<SpanPair>>();
-		final Map<Integer, Set<SpanPair>> completedSpanEnds = new HashMap<Integer, Set<SpanPair>>();
-		for (int i = 0; i < numTokens; ++i) {
-			completedSpanBegins.put(i, new HashSet<SpanPair>());
-			completedSpanEnds.put(i, new HashSet<SpanPair>());
+		if (numTokens == 0) {
+			return chart;
 		}
 
-		// Lock
-		final SpanLock lock = new SpanLock(numTokens);
-
-		// Create the listener
-		final Listener listener = new Listener(completedSpanBegins,
-				completedSpanEnds, pruningFilter, model, chart, numTokens,
-				cellFactory, lock, spans);
-
-		try {
-			// Need to sync over splits, in case the jobs will complete before
-			// we get to wait on it. Plus, to wait we need to lock it using
-			// sync.
-			synchronized (spans) {
-				// Add all lexical jobs to start the parsing process
-				LOG.debug("Creating initial lexical jobs");
-
-				// Create all lexical jobs.
-				for (int i = 0; i < numTokens; i++) {
-					for (int j = i; j < numTokens; j++) {
-						executor.execute(new LexicalJob(cellFactory, chart,
-								listener, lock, model, new SpanPair(i, j),
-								lexicon, pruningFilter, numTokens));
-					}
-				}
+		new SpanScheduler(pruningFilter, model, chart, numTokens, cellFactory,
+				lexicon).run();
 
-				// Wait for the set of triplets to be empty, i.e., all spans are
-				// processed.
-				spans.wait();
-			}
-		} catch (final InterruptedException e) {
-			throw new IllegalStateException(e);
-		}
+		LOG.debug("All spans complete");
 
 		return chart;
 	}
 
+	/**
+	 * Spans and splits are already distributed by the fork-join pool. Nested
+	 * parallel streams would only compete with it over the common pool.
+	 */
+	@Override
+	protected boolean isParallelSpanProcessing() {
+		return false;
+	}
+
 	public static class Builder<DI extends Sentence, MR> {
 
 		private final Set<CKYBinaryParsingRule<MR>>				binaryRules					= new HashSet<CKYBinaryParsingRule<MR>>();
 
 		private boolean											breakTies					= false;
 
+		private ParseBudget										budget						= ParseBudget.UNBOUNDED;
+
 		private final ICategoryServices<MR>						categoryServices;
 
 		private IFilter<Category<MR>>							completeParseFilter			= FilterUtils
@@ -245,10 +232,10 @@ public class MultiCKYParser<DI extends Sentence, MR>
 
 		/**
 		 * Pre-chart pruning creates a further approximation of the packed chart
-		 * which influences non-maximal children. It does mean that worker
-		 * threads will take chart span locks for shorter periods. This option
-		 * is not to be used for gradient based learning, as it creates
-		 * instability in the non-maximal children of a cell.
+		 * which influences non-maximal children. It does mean that each split
+		 * contributes fewer cells to its span. This option is not to be used
+		 * for gradient based learning, as it creates instability in the
+		 * non-maximal children of a cell.
 		 */
 		private boolean											preChartPruning				= false;
 
@@ -300,7 +287,8 @@ public class MultiCKYParser<DI extends Sentence, MR>
 					unaryRules.toArray((CKYUnaryParsingRule<MR>[]) Array
 							.newInstance(CKYUnaryParsingRule.class,
 									unaryRules.size())),
-					numThreads, threadNamePrefix, lexicalRule, breakTies);
+					numThreads, threadNamePrefix, lexicalRule, breakTies,
+					budget);
 		}
 
 		public Builder<DI, MR> setBreakTies(boolean breakTies) {
@@ -308,6 +296,11 @@ public class MultiCKYParser<DI extends Sentence, MR>
 			return this;
 		}
 
+		public Builder<DI, MR> setBudget(ParseBudget budget) {
+			this.budget = budget;
+			return this;
+		}
+
 		public Builder<DI, MR> setCompleteParseFilter(
 				IFilter<Category<MR>> completeParseFilter) {
 			this.completeParseFilter = completeParseFilter;
@@ -397,6 +390,15 @@ public class MultiCKYParser<DI extends Sentence, MR>
 				builder.setBreakTies(params.getAsBoolean("breakTies"));
 			}
 
+			if (params.contains("maxTime") || params.contains("maxCells")
+					|| params.contains("maxRuleApplications")) {
+				builder.setBudget(new ParseBudget(
+						params.getAsLong("maxTime", 0L),
+						params.getAsLong("maxCells", 0L),
+						params.getAsLong("maxRuleApplications", 0L),
+						params.getAsBoolean("progressiveBeam", false)));
+			}
+
 			if (params.contains("pruneLexicalCells")) {
 				builder.setPruneLexicalCells(
 						params.getAsBoolean("pruneLexicalCells"));
@@ -517,6 +519,14 @@ public class MultiCKYParser<DI extends Sentence, MR>
 							"Beam to use for cell pruning (default: 50).")
 					.addParam("lex", ILexicalRule.class,
 							"Lexical rule (default: simple generic rule)")
+					.addParam("maxTime", Long.class,
+							"Wall clock budget of a single parse in milliseconds. When exhausted, the parse stops and its output is marked as inexact (default: 0, unbounded)")
+					.addParam("maxCells", Long.class,
+							"Maximum number of cells added to the chart of a single parse (default: 0, unbounded)")
+					.addParam("maxRuleApplications", Long.class,
+							"Maximum number of successful rule applications in a single parse (default: 0, unbounded)")
+					.addParam("progressiveBeam", Boolean.class,
+							"Shrink the number of cells combined from each span as the parse budget is consumed (default: false)")
 					.addParam("preChartPruning", Boolean.class,
 							"Prune categories before adding to the chart (default: false)")
 					.addParam("pruneLexicalCells", Boolean.class,
@@ -561,421 +571,263 @@ public class MultiCKYParser<DI extends Sentence, MR>
 
 	}
 
-	private abstract class AbstractJob extends LoggingRunnable {
-		protected final AbstractCellFactory<MR>	cellFactory;
-		protected final Chart<MR>				chart;
-		protected final Listener				listener;
-		protected final SpanLock				lock;
-		protected final IDataItemModel<MR>		model;
-		protected final int						sentenceLength;
-		protected final SplitTriplet			split;
-
-		public AbstractJob(AbstractCellFactory<MR> cellFactory, Chart<MR> chart,
-				Listener listener, SpanLock lock, IDataItemModel<MR> model,
-				SplitTriplet split, int sentenceLength) {
-			this.cellFactory = cellFactory;
-			this.chart = chart;
-			this.listener = listener;
-			this.lock = lock;
-			this.model = model;
-			this.split = split;
-			this.sentenceLength = sentenceLength;
-		}
-	}
-
-	private class LexicalJob extends AbstractJob {
-
-		private final ILexiconImmutable<MR>		lexicon;
-		private final Predicate<ParsingOp<MR>>	pruningFilter;
-
-		public LexicalJob(AbstractCellFactory<MR> cellFactory, Chart<MR> chart,
-				Listener listener, SpanLock lock, IDataItemModel<MR> model,
-				SpanPair span, ILexiconImmutable<MR> lexicon,
-				Predicate<ParsingOp<MR>> pruningFilter, int sentenceLength) {
-			super(cellFactory, chart, listener, lock, model,
-					new SplitTriplet(span.start, span.end, -1), sentenceLength);
-			this.lexicon = lexicon;
-			this.pruningFilter = pruningFilter;
-			LOG.debug("Created lexical job for %s", split.span);
-		}
-
-		@Override
-		public void loggedRun() {
-			LOG.debug("%s Lexical job started", split.span);
-
-			final Pair<Collection<Cell<MR>>, Boolean> processingPair = generateLexicalCells(
-					split.start, split.end, chart, lexicon, model,
-					pruningFilter);
-
-			// Add all the valid cells under a span lock.
-			lock.lock(split.start, split.end);
-			for (final Cell<MR> newCell : processingPair.first()) {
-				chart.add(newCell);
-			}
-			if (processingPair.second()) {
-				chart.externalPruning(split.start, split.end);
-			}
-			lock.unlock(split.start, split.end);
-
-			LOG.debug("%s: Lexical job completed, tried to add %d entries",
-					split.span, processingPair.first().size());
-
-			// Signal the job is complete.
-			listener.jobComplete(this);
-		}
-	}
+	/**
+	 * Schedules the span tasks of a single parse. Each span (begin, end) with
+	 * more than one token depends on (begin, end-1) and (begin+1, end). A span
+	 * task is forked once both are complete. Single token spans are ready
+	 * immediately. The parse is complete when the span of the entire sentence
+	 * is complete.
+	 *
+	 * @author Yoav Artzi
+	 */
+	private class SpanScheduler {
+		private final AbstractCellFactory<MR>		cellFactory;
+		private final Chart<MR>						chart;
+		private final CompletableFuture<Void>		done	= new CompletableFuture<Void>();
+		private final SentenceSpanLexicon<MR>		lexicon;
+		/**
+		 * The log of the thread that initiated the parse. Set on the worker
+		 * threads while executing tasks of this parse.
+		 */
+		private final Log							log;
+		private final IDataItemModel<MR>			model;
+		private final int							numTokens;
+		/**
+		 * The number of incomplete dependencies of each span, indexed by
+		 * begin * numTokens + end.
+		 */
+		private final AtomicIntegerArray			pending;
+		private final Predicate<ParsingOp<MR>>		pruningFilter;
 
-	private class Listener {
-		private final IndexLock							adjacentLock;
-		private final AbstractCellFactory<MR>			cellFactory;
-		private final Chart<MR>							chart;
-		private final Map<Integer, Set<SpanPair>>		completedSpanBegins;
-		private final Map<Integer, Set<SpanPair>>		completedSpanEnds;
-		private final SpanLock							lock;
-		private final IDataItemModel<MR>				model;
-		private final int								numTokens;
-		private final Predicate<ParsingOp<MR>>			pruningFilter;
-		private final Map<SpanPair, Set<SplitTriplet>>	spans;
-
-		public Listener(Map<Integer, Set<SpanPair>> completedSpanBegins,
-				Map<Integer, Set<SpanPair>> completedSpanEnds,
-				Predicate<ParsingOp<MR>> pruningFilter,
+		public SpanScheduler(Predicate<ParsingOp<MR>> pruningFilter,
 				IDataItemModel<MR> model, Chart<MR> chart, int numTokens,
-				AbstractCellFactory<MR> cellFactory, SpanLock lock,
-				Map<SpanPair, Set<SplitTriplet>> spans) {
-			this.completedSpanBegins = completedSpanBegins;
-			this.completedSpanEnds = completedSpanEnds;
+				AbstractCellFactory<MR> cellFactory,
+				SentenceSpanLexicon<MR> lexicon) {
 			this.pruningFilter = pruningFilter;
 			this.model = model;
 			this.chart = chart;
 			this.numTokens = numTokens;
 			this.cellFactory = cellFactory;
-			this.lock = lock;
-			this.spans = spans;
-			this.adjacentLock = new IndexLock(numTokens);
-		}
-
-		public void jobComplete(AbstractJob job) {
-			final boolean doSpanUnary;
-			final boolean spanComplete;
-
-			synchronized (spans) {
-				// Remove split from splits set
-				final Set<SplitTriplet> spanSplits = spans.get(job.split.span);
-				final boolean removed = spanSplits.remove(job.split);
-
-				// Case all splits for this span are processed
-				if (removed && spanSplits.isEmpty()) {
-					// Case last split in the span finished. Next, should
-					// process the span with unary rules.
-					spanComplete = false;
-					doSpanUnary = true;
-				} else if (spanSplits.isEmpty()) {
-					// Case the span was empty of splits, so this is the unary
-					// job returning. Mark that we complete the span.
-					spanComplete = true;
-					doSpanUnary = false;
-				} else {
-					// Case split jobs are still pending.
-					spanComplete = false;
-					doSpanUnary = false;
-				}
-
-				// If the span is complete, can remove it from the spans map.
-				if (spanComplete) {
-					LOG.debug("Span complete: %s", job.split.span);
-
-					// Remove span
-					spans.remove(job.split.span);
-
-					if (spans.isEmpty()) {
-						// Case all splits processed, notify the spans object.
-						// The main thread is waiting on this object.
-						LOG.debug("All spans complete -- notifying parser");
-						spans.notifyAll();
-					}
+			this.lexicon = lexicon;
+			this.log = Thread.currentThread() instanceof ILoggingThread
+					? ((ILoggingThread) Thread.currentThread()).getLog()
+					: Logger.DEFAULT_LOG;
+			this.pending = new AtomicIntegerArray(numTokens * numTokens);
+			for (int begin = 0; begin < numTokens; ++begin) {
+				for (int end = begin + 1; end < numTokens; ++end) {
+					pending.set(begin * numTokens + end, 2);
 				}
 			}
+		}
 
-			if (doSpanUnary) {
-				// Case all splits processed, we still require processing with
-				// unary rules.
-				executor.execute(new UnarySpanJob(pruningFilter, model, chart,
-						cellFactory, job.split.span, lock, this, numTokens));
+		public void run() {
+			final long now = System.nanoTime();
+			for (int i = 0; i < numTokens; ++i) {
+				pool.execute(new SpanTask(i, i, now));
 			}
 
-			// If span is complete, process it with unary rules.
-			if (spanComplete) {
-				// Case the span is complete, including processing with unary
-				// rules.
-				LOG.debug("Span completed: %s", job.split.span);
-
-				// Iterate over all neighboring completed spans, and
-				// create and queue split jobs with them. For each
-				// pair of spans only one of them gets here while the other
-				// already exists, so there's no duplicate work. This is why
-				// it's critical to access this part under the same lock in
-				// which the newly added span is added to the being and ends
-				// maps.
-
-				// Block I: Queue jobs with spans on the left
-
-				// Lock to stop all spans that are adjacent to the current
-				// span on the left from getting into block II.
-				if (job.split.start > 0) {
-					adjacentLock.lock(job.split.start - 1);
-					for (final SpanPair leftSpan : completedSpanEnds
-							.get(job.split.start - 1)) {
-						executor.execute(new SplitJob(pruningFilter, model,
-								chart, cellFactory,
-								new SplitTriplet(leftSpan.start, job.split.end,
-										leftSpan.end - leftSpan.start),
-								lock, this, numTokens));
-					}
-				}
-				// Add the beginning index of the span to the completed
-				// map.
-				completedSpanBegins.get(job.split.start).add(job.split.span);
-				if (job.split.start > 0) {
-					adjacentLock.unlock(job.split.start - 1);
-				}
-
-				// Block II: Queue jobs with spans on the right.
-
-				// Lock to stop all spans that are adjacent to the current
-				// span on the right from getting into block I.
-				if (job.split.end < numTokens - 1) {
-					adjacentLock.lock(job.split.end);
-					for (final SpanPair rightSpan : completedSpanBegins
-							.get(job.split.end + 1)) {
-						executor.execute(new SplitJob(pruningFilter, model,
-								chart, cellFactory,
-								new SplitTriplet(job.split.start, rightSpan.end,
-										job.split.end - job.split.start),
-								lock, this, numTokens));
-					}
-				}
-				// Add the end index of the span to the completed map
-				completedSpanEnds.get(job.split.end).add(job.split.span);
-				if (job.split.end < numTokens - 1) {
-					adjacentLock.unlock(job.split.end);
+			try {
+				done.get();
+			} catch (final InterruptedException e) {
+				throw new IllegalStateException(e);
+			} catch (final ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				} else if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				} else {
+					throw new IllegalStateException(e.getCause());
 				}
 			}
 		}
-	}
-
-	private static class SpanPair {
-		final int	end;
-		final int	hashCode;
-		final int	start;
-
-		public SpanPair(int begin, int end) {
-			this.start = begin;
-			this.end = end;
-			this.hashCode = calcHashCode();
-		}
 
-		public int calcHashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + start;
-			result = prime * result + end;
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj) {
-				return true;
-			}
-			if (obj == null) {
-				return false;
-			}
-			if (getClass() != obj.getClass()) {
-				return false;
-			}
-			final SpanPair other = (SpanPair) obj;
-			if (start != other.start) {
-				return false;
-			}
-			if (end != other.end) {
-				return false;
+		/**
+		 * Sets the parse log on the current worker thread.
+		 *
+		 * @return The original log of the thread.
+		 */
+		private Log setLog(Log newLog) {
+			if (Thread.currentThread() instanceof ILoggingThread) {
+				final ILoggingThread thread = (ILoggingThread) Thread
+						.currentThread();
+				final Log originalLog = thread.getLog();
+				thread.setLog(newLog);
+				return originalLog;
+			} else {
+				return null;
 			}
-			return true;
 		}
 
-		@Override
-		public int hashCode() {
-			return hashCode;
-		}
-
-		@Override
-		public String toString() {
-			return "(" + start + "-" + end + ")";
-		}
-	}
-
-	private class SplitJob extends AbstractJob {
-
-		private final Predicate<ParsingOp<MR>> pruningFilter;
-
-		public SplitJob(Predicate<ParsingOp<MR>> pruningFilter,
-				IDataItemModel<MR> model, Chart<MR> chart,
-				AbstractCellFactory<MR> cellFactory, SplitTriplet split,
-				SpanLock lock, Listener listener, int sentenceLength) {
-			super(cellFactory, chart, listener, lock, model, split,
-					sentenceLength);
-			this.pruningFilter = pruningFilter;
-			LOG.debug("Created split job for %s", split);
-		}
-
-		@Override
-		public void loggedRun() {
-			LOG.debug("%s: Split job started", split);
-
-			final Pair<List<Cell<MR>>, Boolean> processingPair = preChartPruning
-					? processSplitAndPrune(split.start, split.end, split.split,
-							sentenceLength, chart, cellFactory, pruningFilter,
-							chart.getBeamSize(), model)
-					: processSplit(split.start, split.end, split.split,
-							sentenceLength, chart, cellFactory, pruningFilter,
-							model);
-
-			final List<Cell<MR>> newCells = processingPair.first();
-
-			LOG.debug("%s: %d new cells", split, newCells.size());
-
-			// Add all the valid cells under a span lock
-			lock.lock(split.start, split.end);
-			for (final Cell<MR> newCell : newCells) {
-				chart.add(newCell);
-			}
-			if (processingPair.second()) {
-				chart.externalPruning(split.start, split.end);
+		/**
+		 * Complete a dependency of the given span. Forks the span task if this
+		 * was its last incomplete dependency.
+		 */
+		void release(int begin, int end) {
+			if (pending.decrementAndGet(begin * numTokens + end) == 0) {
+				LOG.debug("(%d-%d): Span ready", begin, end);
+				new SpanTask(begin, end, System.nanoTime()).fork();
 			}
-			lock.unlock(split.start, split.end);
-
-			LOG.debug("%s: Split job completed", split);
-
-			// Signal the job is complete
-			listener.jobComplete(this);
-		}
-	}
-
-	private static class SplitTriplet {
-		final int		end;
-		final int		hashCode;
-		final SpanPair	span;
-		final int		split;
-		final int		start;
-
-		public SplitTriplet(int begin, int end, int split) {
-			this.start = begin;
-			this.end = end;
-			this.split = split;
-			this.span = new SpanPair(begin, end);
-			this.hashCode = calcHashCode();
 		}
 
-		public int calcHashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + start;
-			result = prime * result + end;
-			result = prime * result + split;
-			return result;
-		}
+		/**
+		 * Process a single span. Lexical entries and all splits of the span
+		 * are processed as forked sub-tasks. Their results are added to the
+		 * chart, and then the span is processed using unary rules.
+		 *
+		 * @author Yoav Artzi
+		 */
+		private class SpanTask extends RecursiveAction {
+			private static final long	serialVersionUID	= -2410532813052474468L;
+			private final int			begin;
+			private final int			end;
+			private final long			readyTime;
 
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj) {
-				return true;
-			}
-			if (obj == null) {
-				return false;
-			}
-			if (getClass() != obj.getClass()) {
-				return false;
-			}
-			final SplitTriplet other = (SplitTriplet) obj;
-			if (start != other.start) {
-				return false;
-			}
-			if (end != other.end) {
-				return false;
-			}
-			if (split != other.split) {
-				return false;
+			public SpanTask(int begin, int end, long readyTime) {
+				this.begin = begin;
+				this.end = end;
+				this.readyTime = readyTime;
 			}
-			return true;
-		}
-
-		@Override
-		public int hashCode() {
-			return hashCode;
-		}
 
-		@Override
-		public String toString() {
-			if (split < 0) {
-				return "(" + start + "-" + end + ")";
-			} else {
-				return "(" + start + "-" + (start + split) + ", "
-						+ (start + split + 1) + "-" + end + ")";
+			@Override
+			public String toString() {
+				return "(" + begin + "-" + end + ")";
 			}
-		}
 
-	}
+			private void complete() {
+				if (begin == 0 && end == numTokens - 1) {
+					done.complete(null);
+				} else {
+					if (begin > 0) {
+						release(begin - 1, end);
+					}
+					if (end < numTokens - 1) {
+						release(begin, end + 1);
+					}
+				}
+			}
 
-	/**
-	 * Process a single span using all unary rules. Assumes the span has been
-	 * processed using {@link LexicalJob} and {@link SplitJob}.
-	 *
-	 * @author Yoav Artzi
-	 */
-	private class UnarySpanJob extends AbstractJob {
+			private void process() {
+				if (chart.getBudget().isExhausted()) {
+					// Skip the span, but still complete it, so the parse
+					// drains quickly.
+					LOG.debug("%s: Parse budget exhausted, skipping span",
+							this);
+					chart.externalPruning(begin, end);
+					return;
+				}
 
-		private final Predicate<ParsingOp<MR>> pruningFilter;
+				// Lexical entries (split=-1) and all splits of the span.
+				final List<SplitTask> splitTasks = new ArrayList<SplitTask>(
+						end - begin + 1);
+				for (int split = -1; split < end - begin; ++split) {
+					splitTasks.add(new SplitTask(begin, end, split));
+				}
+				invokeAll(splitTasks);
+
+				// Add all the cells to the chart. This task is the only writer
+				// of this span, so no locking is required.
+				boolean pruned = false;
+				int numCells = 0;
+				for (final SplitTask splitTask : splitTasks) {
+					final Pair<? extends Collection<Cell<MR>>, Boolean> processingPair = splitTask
+							.join();
+					for (final Cell<MR> newCell : processingPair.first()) {
+						chart.add(newCell);
+					}
+					numCells += processingPair.first().size();
+					pruned |= processingPair.second();
+				}
+				LOG.debug("%s: Tried to add %d cells from %d splits", this,
+						numCells, splitTasks.size() - 1);
+
+				// Unary rules.
+				final Pair<List<Cell<MR>>, Boolean> processingPair = preChartPruning
+						? unaryProcessSpanAndPrune(begin, end, numTokens, chart,
+								cellFactory, pruningFilter, chart.getBeamSize(),
+								model)
+						: unaryProcessSpan(begin, end, numTokens, chart,
+								cellFactory, pruningFilter, model);
+				for (final Cell<MR> newCell : processingPair.first()) {
+					chart.add(newCell);
+				}
+				LOG.debug("%s: %d new cells from unary rules", this,
+						processingPair.first().size());
+				if (pruned || processingPair.second()) {
+					chart.externalPruning(begin, end);
+				}
+			}
 
-		public UnarySpanJob(Predicate<ParsingOp<MR>> pruningFilter,
-				IDataItemModel<MR> model, Chart<MR> chart,
-				AbstractCellFactory<MR> cellFactory, SpanPair span,
-				SpanLock lock, Listener listener, int sentenceLength) {
-			super(cellFactory, chart, listener, lock, model,
-					new SplitTriplet(span.start, span.end, -1), sentenceLength);
-			this.pruningFilter = pruningFilter;
-			LOG.debug("Created unary job for %s", split.span);
+			@Override
+			protected void compute() {
+				final Log originalLog = setLog(log);
+				try {
+					final long startTime = System.nanoTime();
+					LOG.debug("%s: Span task started", this);
+					process();
+					final long processingTime = System.nanoTime() - startTime;
+					spanStats.record(end - begin + 1, startTime - readyTime,
+							processingTime);
+					LOG.debug(
+							"%s: Span complete (waited %.3fms, processed %.3fms)",
+							this, (startTime - readyTime) / 1000000.0,
+							processingTime / 1000000.0);
+					complete();
+				} catch (final Throwable t) {
+					done.completeExceptionally(t);
+				} finally {
+					setLog(originalLog);
+				}
+			}
 		}
 
-		@Override
-		public void loggedRun() {
-			LOG.debug("%s: Unary span job started", split.span);
-
-			final Pair<List<Cell<MR>>, Boolean> processingPair = preChartPruning
-					? unaryProcessSpanAndPrune(split.start, split.end,
-							sentenceLength, chart, cellFactory, pruningFilter,
-							chart.getBeamSize(), model)
-					: unaryProcessSpan(split.start, split.end, sentenceLength,
-							chart, cellFactory, pruningFilter, model);
-
-			final List<Cell<MR>> newCells = processingPair.first();
-
-			LOG.debug("%s: %d new cells", split, newCells.size());
-
-			// Add all the valid cells under a span lock.
-			lock.lock(split.start, split.end);
-			for (final Cell<MR> newCell : newCells) {
-				chart.add(newCell);
-			}
-			if (processingPair.second()) {
-				chart.externalPruning(split.start, split.end);
+		/**
+		 * Process a single split of a span. Split -1 generates the lexical
+		 * cells of the span.
+		 *
+		 * @author Yoav Artzi
+		 */
+		private class SplitTask
+				extends RecursiveTask<Pair<? extends Collection<Cell<MR>>, Boolean>> {
+			private static final long	serialVersionUID	= 3254926010484932563L;
+			private final int			begin;
+			private final int			end;
+			private final int			split;
+
+			public SplitTask(int begin, int end, int split) {
+				this.begin = begin;
+				this.end = end;
+				this.split = split;
+			}
+
+			@Override
+			public String toString() {
+				if (split < 0) {
+					return "(" + begin + "-" + end + ")";
+				} else {
+					return "(" + begin + "-" + (begin + split) + ", "
+							+ (begin + split + 1) + "-" + end + ")";
+				}
 			}
-			lock.unlock(split.start, split.end);
-
-			LOG.debug("%s: Unary span job completed", split);
 
-			// Signal the job is complete
-			listener.jobComplete(this);
+			@Override
+			protected Pair<? extends Collection<Cell<MR>>, Boolean> compute() {
+				final Log originalLog = setLog(log);
+				try {
+					if (split < 0) {
+						return generateLexicalCells(begin, end, chart, lexicon,
+								model, pruningFilter);
+					} else if (preChartPruning) {
+						return processSplitAndPrune(begin, end, split,
+								numTokens, chart, cellFactory, pruningFilter,
+								chart.getBeamSize(), model);
+					} else {
+						return processSplit(begin, end, split, numTokens, chart,
+								cellFactory, pruningFilter, model);
+					}
+				} finally {
+					setLog(originalLog);
+				}
+			}
 		}
 	}
 
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.cky.multi;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency counters for span tasks, aggregated by span length (number of
+ * tokens). For each span, records the time it waited between becoming ready
+ * (all of its sub-spans completed) and starting to execute, and the time it
+ * took to process (lexical, binary and unary steps). Thread-safe.
+ *
+ * @author Yoav Artzi
+ */
+public class SpanLatencyStats {
+
+	private final Map<Integer, Counters> counters = new ConcurrentHashMap<Integer, Counters>();
+
+	/**
+	 * @return Number of spans of the given length processed.
+	 */
+	public long getCount(int length) {
+		final Counters c = counters.get(length);
+		return c == null ? 0 : c.count.sum();
+	}
+
+	/**
+	 * @return Maximum processing time of a span of the given length (msec).
+	 */
+	public double getMaxProcessingTime(int length) {
+		final Counters c = counters.get(length);
+		return c == null ? 0.0 : c.maxProcessing.get() / 1000000.0;
+	}
+
+	/**
+	 * @return Longest span length recorded.
+	 */
+	public int getMaxSpanLength() {
+		int max = 0;
+		for (final Integer length : counters.keySet()) {
+			if (length > max) {
+				max = length;
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return Mean processing time of spans of the given length (msec).
+	 */
+	public double getMeanProcessingTime(int length) {
+		final Counters c = counters.get(length);
+		if (c == null) {
+			return 0.0;
+		}
+		final long count = c.count.sum();
+		return count == 0 ? 0.0 : c.processing.sum() / 1000000.0 / count;
+	}
+
+	/**
+	 * @return Mean time spans of the given length waited in the pool after
+	 *         becoming ready (msec).
+	 */
+	public double getMeanWaitTime(int length) {
+		final Counters c = counters.get(length);
+		if (c == null) {
+			return 0.0;
+		}
+		final long count = c.count.sum();
+		return count == 0 ? 0.0 : c.wait.sum() / 1000000.0 / count;
+	}
+
+	/**
+	 * @param length
+	 *            Span length (number of tokens).
+	 * @param waitNanos
+	 *            Time between the span becoming ready and starting to execute.
+	 * @param processingNanos
+	 *            Time spent processing the span.
+	 */
+	public void record(int length, long waitNanos, long processingNanos) {
+		final Counters c = counters.computeIfAbsent(length,
+				l -> new Counters());
+		c.count.increment();
+		c.wait.add(waitNanos);
+		c.processing.add(processingNanos);
+		c.maxProcessing.accumulateAndGet(processingNanos, Math::max);
+	}
+
+	public void reset() {
+		counters.clear();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		final int maxLength = getMaxSpanLength();
+		for (int length = 1; length <= maxLength; ++length) {
+			final long count = getCount(length);
+			if (count > 0) {
+				sb.append(String.format(
+						"len=%d: count=%d, wait=%.3fms, processing=%.3fms (max=%.3fms)%n",
+						length, count, getMeanWaitTime(length),
+						getMeanProcessingTime(length),
+						getMaxProcessingTime(length)));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static class Counters {
+		private final LongAdder		count			= new LongAdder();
+		private final AtomicLong	maxProcessing	= new AtomicLong();
+		private final LongAdder		processing		= new LongAdder();
+		private final LongAdder		wait			= new LongAdder();
+	}
+
+}
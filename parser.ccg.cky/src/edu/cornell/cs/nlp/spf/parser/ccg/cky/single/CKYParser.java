@@ -28,7 +28,7 @@ import com.google.common.base.Function;
 
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
-import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.SentenceSpanLexicon;
 import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment;
@@ -40,6 +40,7 @@ import edu.cornell.cs.nlp.spf.parser.ParsingOp;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.AbstractCKYParser;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYBinaryParsingRule;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYUnaryParsingRule;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.ParseBudget;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.AbstractCellFactory;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Cell;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Chart;
@@ -84,10 +85,11 @@ public class CKYParser<DI extends Sentence, MR>
 			ICategoryServices<MR> categoryServices, boolean pruneLexicalCells,
 			IFilter<Category<MR>> completeParseFilter,
 			CKYUnaryParsingRule<MR>[] unaryRules, ILexicalRule<MR> lexicalRule,
-			boolean breakTies) {
+			boolean breakTies, ParseBudget budget) {
 		super(maxNumberOfCellsInSpan, binaryRules, sentenceLexiconGenerators,
 				sloppyLexicalGenerators, categoryServices, pruneLexicalCells,
-				completeParseFilter, unaryRules, lexicalRule, breakTies);
+				completeParseFilter, unaryRules, lexicalRule, breakTies,
+				budget);
 	}
 
 	/**
@@ -109,7 +111,7 @@ public class CKYParser<DI extends Sentence, MR>
 	protected Chart<MR> doParse(final Predicate<ParsingOp<MR>> pruningFilter,
 			IDataItemModel<MR> model, Chart<MR> chart, int numTokens,
 			AbstractCellFactory<MR> cellFactory,
-			ILexiconImmutable<MR> lexicon) {
+			SentenceSpanLexicon<MR> lexicon) {
 
 		final int sentenceLength = chart.getSentenceLength();
 
@@ -140,6 +142,13 @@ public class CKYParser<DI extends Sentence, MR>
 		// now do the CKY parsing:
 		for (int len = 1; len < numTokens; len++) {
 			for (int begin = 0; begin < numTokens - len; begin++) {
+				if (chart.getBudget().isExhausted()) {
+					// Stop gracefully. The chart contains all complete parses
+					// created so far.
+					LOG.debug("Parse budget exhausted at span (%d, %d)", begin,
+							begin + len);
+					return chart;
+				}
 				for (int split = 0; split < len; split++) {
 					final Pair<List<Cell<MR>>, Boolean> processingPair = processSplit(
 							begin, begin + len, split, sentenceLength, chart,
@@ -173,6 +182,8 @@ public class CKYParser<DI extends Sentence, MR>
 
 		private boolean											breakTies					= false;
 
+		private ParseBudget										budget						= ParseBudget.UNBOUNDED;
+
 		private final ICategoryServices<MR>						categoryServices;
 
 		private IFilter<Category<MR>>							completeParseFilter			= FilterUtils
@@ -228,7 +239,7 @@ public class CKYParser<DI extends Sentence, MR>
 					unaryRules.toArray((CKYUnaryParsingRule<MR>[]) Array
 							.newInstance(CKYUnaryParsingRule.class,
 									unaryRules.size())),
-					lexicalRule, breakTies);
+					lexicalRule, breakTies, budget);
 		}
 
 		public Builder<DI, MR> setBreakTies(boolean breakTies) {
@@ -236,6 +247,11 @@ public class CKYParser<DI extends Sentence, MR>
 			return this;
 		}
 
+		public Builder<DI, MR> setBudget(ParseBudget budget) {
+			this.budget = budget;
+			return this;
+		}
+
 		public Builder<DI, MR> setCompleteParseFilter(
 				IFilter<Category<MR>> completeParseFilter) {
 			this.completeParseFilter = completeParseFilter;
@@ -283,6 +299,15 @@ public class CKYParser<DI extends Sentence, MR>
 				builder.setBreakTies(params.getAsBoolean("breakTies"));
 			}
 
+			if (params.contains("maxTime") || params.contains("maxCells")
+					|| params.contains("maxRuleApplications")) {
+				builder.setBudget(new ParseBudget(
+						params.getAsLong("maxTime", 0L),
+						params.getAsLong("maxCells", 0L),
+						params.getAsLong("maxRuleApplications", 0L),
+						params.getAsBoolean("progressiveBeam", false)));
+			}
+
 			if (params.contains("parseFilter")) {
 				builder.setCompleteParseFilter((IFilter<Category<MR>>) repo
 						.get(params.get("parseFilter")));
@@ -413,6 +438,14 @@ public class CKYParser<DI extends Sentence, MR>
 							"Beam to use for cell pruning (default: 50).")
 					.addParam("lex", ILexicalRule.class,
 							"Lexical rule (default: simple generic rule)")
+					.addParam("maxTime", Long.class,
+							"Wall clock budget of a single parse in milliseconds. When exhausted, the parse stops and its output is marked as inexact (default: 0, unbounded)")
+					.addParam("maxCells", Long.class,
+							"Maximum number of cells added to the chart of a single parse (default: 0, unbounded)")
+					.addParam("maxRuleApplications", Long.class,
+							"Maximum number of successful rule applications in a single parse (default: 0, unbounded)")
+					.addParam("progressiveBeam", Boolean.class,
+							"Shrink the number of cells combined from each span as the parse budget is consumed (default: false)")
 					.addParam("pruneLexicalCells", Boolean.class,
 							"Prune lexical entries similarly to conventional categories (default: false)")
 					.addParam("wordSkipping", String.class,
@@ -23,6 +23,7 @@ import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 
 /**
  * A rule to skip words by ignoring empty categories.
@@ -94,6 +95,13 @@ public class SkippingRule<MR> implements IBinaryParseRule<MR> {
 		return name;
 	}
 
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		final SyntaxShape emptyShape = SyntaxShape.of(emptyCategory
+				.getSyntax());
+		return backward ? left.equals(emptyShape) : right.equals(emptyShape);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -41,8 +41,12 @@ public class WeightedCKYLexicalStep<MR>
 	private final int					hashCode;
 
 	private final CKYLexicalStep<MR>	step;
+
+	/**
+	 * Computed when the step is scored, see {@link #getStepFeatures()}.
+	 */
 	private final IHashVector			stepFeatures;
-	private final Double				stepScore;
+	private final double				stepScore;
 
 	public WeightedCKYLexicalStep(CKYLexicalStep<MR> step,
 			IDataItemModel<MR> model) {
@@ -79,9 +83,6 @@ public class WeightedCKYLexicalStep<MR>
 		if (!step.equals(other.step)) {
 			return false;
 		}
-		if (!stepFeatures.equals(other.stepFeatures)) {
-			return false;
-		}
 		return true;
 	}
 
@@ -120,6 +121,15 @@ public class WeightedCKYLexicalStep<MR>
 		return step.getStart();
 	}
 
+	/**
+	 * The local features of this step. Unlike non-lexical steps, the features
+	 * are computed eagerly, together with the score. Lexical features depend
+	 * on the state of the lexical feature sets (e.g., whether a lexeme or
+	 * template was already added to the model), which changes as entries are
+	 * added. The features are therefore a snapshot of the state the step was
+	 * scored with, so updates computed from them later agree with the score,
+	 * and reading them doesn't access the (non thread-safe) feature set state.
+	 */
 	@Override
 	public IHashVector getStepFeatures() {
 		return stepFeatures;
@@ -202,7 +212,6 @@ public class WeightedCKYLexicalStep<MR>
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + step.hashCode();
-		result = prime * result + stepFeatures.hashCode();
 		return result;
 	}
 
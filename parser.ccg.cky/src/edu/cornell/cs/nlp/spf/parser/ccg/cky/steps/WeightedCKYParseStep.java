@@ -23,6 +23,7 @@ import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Cell;
 import edu.cornell.cs.nlp.spf.parser.ccg.model.IDataItemModel;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.parse.IParseFeatureSet;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName;
 
@@ -35,18 +36,22 @@ import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName;
  */
 public class WeightedCKYParseStep<MR> implements IWeightedCKYStep<MR> {
 
-	private final int				hashCode;
-	private final CKYParseStep<MR>	step;
-	private final IHashVector		stepFeatures;
-	private final Double			stepScore;
+	private final int					hashCode;
+	private final IDataItemModel<MR>	model;
+	private final CKYParseStep<MR>		step;
+
+	/**
+	 * Lazily computed, see {@link #getStepFeatures()}.
+	 */
+	private volatile IHashVector		stepFeatures;
+	private final double				stepScore;
 
 	public WeightedCKYParseStep(CKYParseStep<MR> step,
 			IDataItemModel<MR> model) {
 		assert step != null;
 		this.step = step;
-		this.stepFeatures = model.computeFeatures(step);
-		assert stepFeatures != null;
-		this.stepScore = model.score(stepFeatures);
+		this.model = model;
+		this.stepScore = model.score(step);
 		assert !Double.isNaN(stepScore) && !Double.isInfinite(stepScore);
 		this.hashCode = calcHashCode();
 	}
@@ -74,9 +79,6 @@ public class WeightedCKYParseStep<MR> implements IWeightedCKYStep<MR> {
 		if (!step.equals(other.step)) {
 			return false;
 		}
-		if (!stepFeatures.equals(other.stepFeatures)) {
-			return false;
-		}
 		return true;
 	}
 
@@ -110,9 +112,28 @@ public class WeightedCKYParseStep<MR> implements IWeightedCKYStep<MR> {
 		return step.getStart();
 	}
 
+	/**
+	 * The local features of this step. The score of the step is computed
+	 * directly from the model weights without materializing any features.
+	 * Features are only computed (using the parsing model) the first time they
+	 * are requested, which is mostly limited to learning and logging. This is
+	 * only safe because non-lexical steps get their features from parse
+	 * feature sets, which are immutable ({@link IParseFeatureSet}). Lexical
+	 * feature sets, which change as entries are added, only fire on lexical
+	 * steps, which snapshot their features when scored (see
+	 * {@link WeightedCKYLexicalStep#getStepFeatures()}).
+	 */
 	@Override
 	public IHashVector getStepFeatures() {
-		return stepFeatures;
+		IHashVector features = stepFeatures;
+		if (features == null) {
+			// Racy single-check: concurrent calls may compute the features
+			// more than once, but will always observe equal vectors.
+			features = model.computeFeatures(step);
+			assert features != null;
+			stepFeatures = features;
+		}
+		return features;
 	}
 
 	/**
@@ -182,8 +203,9 @@ public class WeightedCKYParseStep<MR> implements IWeightedCKYStep<MR> {
 			IHashVectorImmutable theta) {
 		final StringBuilder sb = new StringBuilder(
 				step.toString(verbose, recursive));
+		final IHashVector features = getStepFeatures();
 		sb.append("{").append(
-				theta == null ? stepFeatures : theta.printValues(stepFeatures));
+				theta == null ? features : theta.printValues(features));
 		sb.append(" -> ").append(stepScore).append("}");
 		return sb.toString();
 	}
@@ -192,7 +214,6 @@ public class WeightedCKYParseStep<MR> implements IWeightedCKYStep<MR> {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + step.hashCode();
-		result = prime * result + stepFeatures.hashCode();
 		return result;
 	}
 
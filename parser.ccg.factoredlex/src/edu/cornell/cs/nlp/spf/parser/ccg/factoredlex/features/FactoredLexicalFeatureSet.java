@@ -20,6 +20,7 @@ import java.util.Set;
 import java.util.function.Predicate;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicalEntry;
@@ -240,6 +241,67 @@ public class FactoredLexicalFeatureSet<DI extends IDataItem<?>>
 		return true;
 	}
 
+	@Override
+	protected double doScore(LexicalEntry<LogicalExpression> entry,
+			IHashVectorImmutable theta) {
+		// Mirrors doSetFeatures(), but looks up the weights directly.
+		double score = super.doScore(entry, theta);
+		if (entry instanceof FactoredLexicalEntry) {
+			final FactoredLexicalEntry factored = (FactoredLexicalEntry) entry;
+			final Lexeme lexeme = factored.getLexeme();
+			final LexicalTemplate template = factored.getTemplate();
+			final boolean lexemeExists = lexemeIds.containsKey(lexeme);
+			final boolean templateExists = templateIds.containsKey(template);
+
+			// Lexeme feature.
+			if (lexemeScale != 0.0) {
+				if (lexemeExists) {
+					score += theta.get(featureTag, KEY_XEME,
+							String.valueOf(lexemeIds.getInt(lexeme)))
+							* lexemeScale;
+				} else {
+					score += theta.get(featureTag, DEFAULT_FEAT_XEME)
+							* lexemeInitialScorer.score(lexeme) * lexemeScale;
+				}
+			}
+
+			// Template feature.
+			if (templateScale != 0.0) {
+				if (templateExists) {
+					score += theta.get(featureTag, KEY_TMP,
+							String.valueOf(templateIds.getInt(template)))
+							* templateScale;
+				} else {
+					score += theta.get(featureTag, DEFAULT_FEAT_TMP)
+							* templateInitialScorer.score(template)
+							* templateScale;
+				}
+			}
+
+			// Pairing feature.
+			if (lexemeExists && templateExists) {
+				score += theta.get(featureTag, KEY_ENTRY,
+						String.valueOf(lexemeIds.getInt(lexeme)),
+						String.valueOf(templateIds.getInt(template)))
+						* entryScale;
+			} else {
+				score += theta.get(featureTag, DEFAULT_FEAT_LEX)
+						* entryInitialScorer.score(entry) * entryScale;
+			}
+		} else {
+			// Case non-factored entry.
+			if (nonFactoredIds.containsKey(entry)) {
+				score += theta.get(featureTag, KEY_ENTRY,
+						String.valueOf(nonFactoredIds.getInt(entry)))
+						* entryScale;
+			} else {
+				score += theta.get(featureTag, DEFAULT_FEAT_LEX)
+						* entryInitialScorer.score(entry) * entryScale;
+			}
+		}
+		return score;
+	}
+
 	@Override
 	protected void doSetFeatures(LexicalEntry<LogicalExpression> entry,
 			IHashVector features) {
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.Set;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicalEntry;
@@ -60,6 +61,24 @@ public class SyntaxAttributeFeatureSet<DI extends IDataItem<?>>
 		return Collections.emptySet();
 	}
 
+	@Override
+	public double score(IParseStep<LogicalExpression> parseStep,
+			IHashVectorImmutable theta, DI dataItem) {
+		if (parseStep instanceof ILexicalParseStep) {
+			final LexicalEntry<LogicalExpression> lexicalEntry = ((ILexicalParseStep<LogicalExpression>) parseStep)
+					.getLexicalEntry();
+			if (lexicalEntry instanceof FactoredLexicalEntry) {
+				final FactoredLexicalEntry entry = (FactoredLexicalEntry) lexicalEntry;
+				return theta.get(FEATURE_TAG,
+						entry.getTemplate().getTemplateCategory().getSyntax()
+								.toString(),
+						ListUtils.join(entry.getLexeme().getAttributes(), "+"))
+						* scale;
+			}
+		}
+		return 0.0;
+	}
+
 	@Override
 	public void setFeatures(IParseStep<LogicalExpression> parseStep,
 			IHashVector features, DI dataItem) {
@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.Set;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
@@ -55,6 +56,21 @@ public class DynamicWordSkippingFeatures<DI extends IDataItem<?>, MR>
 		return Collections.emptySet();
 	}
 
+	@Override
+	public double score(IParseStep<MR> parseStep, IHashVectorImmutable theta,
+			DI dataItem) {
+		if (parseStep instanceof ILexicalParseStep) {
+			final LexicalEntry<MR> lexicalEntry = ((ILexicalParseStep<MR>) parseStep)
+					.getLexicalEntry();
+			if (lexicalEntry.isDynamic()
+					&& emptyCategory.equals(lexicalEntry.getCategory())) {
+				return theta.get(featureTag)
+						* lexicalEntry.getTokens().size();
+			}
+		}
+		return 0.0;
+	}
+
 	@Override
 	public void setFeatures(IParseStep<MR> parseStep, IHashVector features,
 			DI dataItem) {
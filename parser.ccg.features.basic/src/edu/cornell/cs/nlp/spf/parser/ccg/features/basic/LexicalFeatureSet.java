@@ -20,6 +20,7 @@ import java.util.Set;
 import java.util.function.Predicate;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
@@ -141,6 +142,22 @@ public class LexicalFeatureSet<DI extends IDataItem<?>, MR>
 		return true;
 	}
 
+	@Override
+	protected double doScore(LexicalEntry<MR> entry,
+			IHashVectorImmutable theta) {
+		final double score = super.doScore(entry, theta);
+		final Category<MR> category = entry.getCategory();
+		final TokenSeq tokens = entry.getTokens();
+		if (tokenIds.containsKey(tokens) && categoryIds.containsKey(category)) {
+			return score + theta.get(featureTag,
+					String.valueOf(tokenIds.getInt(tokens)),
+					String.valueOf(categoryIds.getInt(category)));
+		} else {
+			return score + theta.get(featureTag, DEFAULT_FEAT)
+					* initialScorer.score(entry);
+		}
+	}
+
 	public static class Builder<DI extends IDataItem<?>, MR> {
 
 		private boolean									computeSyntaxAttributeFeatures	= false;
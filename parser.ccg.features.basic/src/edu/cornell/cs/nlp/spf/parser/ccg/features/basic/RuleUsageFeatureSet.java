@@ -21,6 +21,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
@@ -66,11 +67,36 @@ public class RuleUsageFeatureSet<DI extends IDataItem<?>, MR> implements
 		return Collections.emptySet();
 	}
 
+	@Override
+	public double score(IParseStep<MR> obj, IHashVectorImmutable theta,
+			DI dataItem) {
+		return score(obj.getRuleName(), theta);
+	}
+
 	@Override
 	public void setFeatures(IParseStep<MR> obj, IHashVector feats, DI dataItem) {
 		setFeats(obj.getRuleName(), feats);
 	}
 
+	private double score(RuleName ruleName, IHashVectorImmutable theta) {
+		if (ruleName instanceof OverloadedRuleName) {
+			return score(((OverloadedRuleName) ruleName).getOverloadedRuleName(),
+					theta)
+					+ score(((OverloadedRuleName) ruleName).getUnaryRule(),
+							theta);
+		} else {
+			double score = 0.0;
+			if (!ignoreSet.contains(ruleName.getLabel())
+					&& (!unaryRulesOnly || ruleName instanceof UnaryRuleName)) {
+				for (final String ruleLabel : RuleName.splitRuleLabel(ruleName
+						.toString())) {
+					score += theta.get(FEATURE_TAG, ruleLabel) * scale;
+				}
+			}
+			return score;
+		}
+	}
+
 	private void setFeats(RuleName ruleName, IHashVector features) {
 		if (ruleName instanceof OverloadedRuleName) {
 			setFeats(((OverloadedRuleName) ruleName).getOverloadedRuleName(),
@@ -23,6 +23,7 @@ import java.util.Set;
 import edu.cornell.cs.nlp.spf.base.collections.AllPairs;
 import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
@@ -50,6 +51,19 @@ public class LogicalExpressionCooccurrenceFeatureSet<DI extends IDataItem<?>>
 		return Collections.emptySet();
 	}
 
+	@Override
+	public double score(IParseStep<LogicalExpression> parseStep,
+			IHashVectorImmutable theta, DI dataItem) {
+		if (!parseStep.isFullParse()) {
+			// Only score the final logical form, so avoid any allocation for
+			// the majority of steps.
+			return 0.0;
+		}
+
+		return theta.dotProduct(
+				ExtractFeatures.of(parseStep.getRoot().getSemantics(), 1.0));
+	}
+
 	@Override
 	public void setFeatures(IParseStep<LogicalExpression> parseStep,
 			IHashVector feats, DI dataItem) {
@@ -26,6 +26,7 @@ import java.util.Set;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
@@ -75,6 +76,24 @@ public class LogicalExpressionCoordinationFeatureSet<DI extends IDataItem<?>>
 		return Collections.emptySet();
 	}
 
+	@Override
+	public double score(IParseStep<LogicalExpression> parseStep,
+			IHashVectorImmutable theta, DI dataItem) {
+		if (!parseStep.isFullParse()) {
+			// Only score the final logical form, so avoid any allocation for
+			// the majority of steps.
+			return 0.0;
+		}
+
+		final LogicalExpression sem = parseStep.getRoot().getSemantics();
+		if (sem == null) {
+			return 0.0;
+		}
+
+		return theta.dotProduct(ExtractFeatures.of(sem, cpp1Features,
+				cpapFeatures, reptFeatures, SCALE));
+	}
+
 	@Override
 	public void setFeatures(IParseStep<LogicalExpression> parseStep,
 			IHashVector feats, DI dataItem) {
@@ -28,6 +28,7 @@ import java.util.List;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.ConcurrentLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.Lexicon;
 import edu.cornell.cs.nlp.spf.data.situated.ISituatedDataItem;
@@ -216,6 +217,8 @@ public class JointModel<DI extends ISituatedDataItem<?, ?>, MR, ESTEP> extends
 		protected ILexicon<MR> createLexicon(String lexiconType) {
 			if ("conventional".equals(lexiconType)) {
 				return new Lexicon<MR>();
+			} else if ("concurrent".equals(lexiconType)) {
+				return new ConcurrentLexicon<MR>();
 			} else {
 				throw new IllegalArgumentException("Invalid lexicon type: "
 						+ lexiconType);
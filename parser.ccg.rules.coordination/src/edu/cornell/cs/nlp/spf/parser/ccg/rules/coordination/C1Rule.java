@@ -25,6 +25,7 @@ import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 
 class C1Rule<MR> implements IBinaryParseRule<MR> {
 
@@ -96,6 +97,11 @@ class C1Rule<MR> implements IBinaryParseRule<MR> {
 		return RULE_NAME;
 	}
 
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return left.isSimple(Syntax.C);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
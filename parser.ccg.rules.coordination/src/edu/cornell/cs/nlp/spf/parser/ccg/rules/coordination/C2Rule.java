@@ -25,6 +25,7 @@ import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 
 class C2Rule<MR> implements IBinaryParseRule<MR> {
 	private static final RuleName			RULE_NAME			= RuleName
@@ -88,6 +89,11 @@ class C2Rule<MR> implements IBinaryParseRule<MR> {
 		return RULE_NAME;
 	}
 
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return left.isSimple(Syntax.C);
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
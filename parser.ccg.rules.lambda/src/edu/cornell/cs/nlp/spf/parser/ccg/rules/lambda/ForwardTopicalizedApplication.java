@@ -30,6 +30,7 @@ import edu.cornell.cs.nlp.spf.mr.lambda.visitor.IsTypeConsistent;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.application.AbstractApplication;
 
 /**
@@ -104,4 +105,9 @@ public class ForwardTopicalizedApplication extends
 				newSyntax, newSem);
 		return doApplication(newLeft, right, false);
 	}
+
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return right.hasSlash(Slash.FORWARD) && right.hasHead(Syntax.S);
+	}
 }
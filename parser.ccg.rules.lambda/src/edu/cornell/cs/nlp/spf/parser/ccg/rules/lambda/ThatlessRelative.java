@@ -31,6 +31,7 @@ import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.application.AbstractApplication;
 
 /**
@@ -89,6 +90,12 @@ public class ThatlessRelative extends AbstractApplication<LogicalExpression> {
 		return doApplication(first.getResultCategory(), right, false);
 	}
 
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return left.isSimple(Syntax.N) && right.isComplex()
+				&& right.hasHead(Syntax.S);
+	}
+
 	public static class Creator implements
 			IResourceObjectCreator<ThatlessRelative> {
 
@@ -32,6 +32,7 @@ import edu.cornell.cs.nlp.spf.mr.language.type.Type;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.composition.AbstractComposition;
 import edu.cornell.cs.nlp.utils.filter.IFilter;
 
@@ -134,6 +135,11 @@ public class ForwardTypeRaisedComposition extends
 				compositionResult.getResultCategory());
 	}
 
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return right.hasSlash(Slash.FORWARD);
+	}
+
 	public static class Creator implements
 			IResourceObjectCreator<ForwardTypeRaisedComposition> {
 
@@ -18,6 +18,7 @@ package edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.application;
 
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Slash;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment.Parameters;
@@ -26,6 +27,7 @@ import edu.cornell.cs.nlp.spf.explat.resources.usage.ResourceUsage;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 
 /**
  * Forward application rule:
@@ -47,6 +49,11 @@ public class ForwardApplication<MR> extends AbstractApplication<MR> {
 		return doApplication(left, right, false);
 	}
 
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return left.hasSlash(Slash.FORWARD);
+	}
+
 	public static class Creator<MR> implements
 			IResourceObjectCreator<ForwardApplication<MR>> {
 
@@ -18,6 +18,7 @@ package edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.composition;
 
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Slash;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment.Parameters;
@@ -26,6 +27,7 @@ import edu.cornell.cs.nlp.spf.explat.resources.usage.ResourceUsage;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 
 /**
  * A rule for logical composition. Backward composition rule:
@@ -50,6 +52,11 @@ public class BackwardComposition<MR> extends AbstractComposition<MR> {
 		return doComposition(right, left, true);
 	}
 
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return right.hasSlash(Slash.BACKWARD) && left.isComplex();
+	}
+
 	public static class Creator<MR> implements
 			IResourceObjectCreator<BackwardComposition<MR>> {
 
@@ -30,6 +30,7 @@ import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.RuleName.Direction;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 import edu.cornell.cs.nlp.utils.collections.SetUtils;
 
 /**
@@ -64,6 +65,11 @@ public class PunctuationRule<MR> implements IBinaryReversibleParseRule<MR> {
 		return name;
 	}
 
+	@Override
+	public boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return right.isSimple(Syntax.PUNCT);
+	}
+
 	@Override
 	public Set<Category<MR>> reverseApplyLeft(Category<MR> left,
 			Category<MR> result, SentenceSpan span) {
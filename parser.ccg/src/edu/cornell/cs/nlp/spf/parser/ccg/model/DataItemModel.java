@@ -19,6 +19,7 @@ package edu.cornell.cs.nlp.spf.parser.ccg.model;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.IVersionedLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
 import edu.cornell.cs.nlp.spf.parser.ccg.IParseStep;
@@ -44,9 +45,19 @@ public class DataItemModel<DI extends IDataItem<?>, MR> implements
 		return model.computeFeatures(lexicalEntry);
 	}
 
+	/**
+	 * If the model lexicon is versioned, returns a snapshot of its current
+	 * version. A parse that retrieves the lexicon once sees a consistent set
+	 * of entries, even if the model lexicon is modified concurrently.
+	 */
 	@Override
 	public ILexiconImmutable<MR> getLexicon() {
-		return model.getLexicon();
+		final ILexiconImmutable<MR> lexicon = model.getLexicon();
+		if (lexicon instanceof IVersionedLexicon) {
+			return ((IVersionedLexicon<MR>) lexicon).snapshot();
+		} else {
+			return lexicon;
+		}
 	}
 
 	@Override
@@ -59,6 +70,11 @@ public class DataItemModel<DI extends IDataItem<?>, MR> implements
 		return model.score(features);
 	}
 
+	@Override
+	public double score(IParseStep<MR> parseStep) {
+		return model.score(parseStep, dataItem);
+	}
+
 	@Override
 	public double score(LexicalEntry<MR> entry) {
 		return model.score(entry);
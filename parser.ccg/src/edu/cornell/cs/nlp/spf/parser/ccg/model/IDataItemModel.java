@@ -50,6 +50,12 @@ public interface IDataItemModel<MR> {
 	 */
 	double score(IHashVectorImmutable features);
 
+	/**
+	 * @see IModelImmutable#score(IParseStep,
+	 *      edu.cornell.cs.nlp.spf.data.IDataItem)
+	 */
+	double score(IParseStep<MR> parseStep);
+
 	/**
 	 * @see IModelImmutable#score(LexicalEntry)
 	 */
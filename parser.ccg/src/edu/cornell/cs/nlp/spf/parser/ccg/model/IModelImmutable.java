@@ -73,5 +73,12 @@ public interface IModelImmutable<DI extends IDataItem<?>, MR> extends
 	 */
 	double score(IHashVectorImmutable features);
 
+	/**
+	 * Computes the score of a parsing step without materializing its features.
+	 * Equivalent to scoring the features returned by
+	 * {@link #computeFeatures(IParseStep, IDataItem)}.
+	 */
+	double score(IParseStep<MR> parseStep, DI dataItem);
+
 	double score(LexicalEntry<MR> entry);
 }
@@ -40,6 +40,7 @@ import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.ConcurrentLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.Lexicon;
@@ -123,12 +124,19 @@ public class Model<DI extends IDataItem<?>, MR>
 	}
 
 	/**
-	 * Read {@link Model} object from a file.
+	 * Read {@link Model} object from a file. Both Java serialization and the
+	 * binary format of {@link ModelBinaryFormat} are supported.
 	 */
 	public static <DI extends IDataItem<?>, MR> Model<DI, MR> readModel(
 			File file) throws ClassNotFoundException, IOException {
 		LOG.info("Reading model from file...");
 		final long start = System.currentTimeMillis();
+		if (ModelBinaryFormat.isBinaryModel(file)) {
+			final Model<DI, MR> model = ModelBinaryFormat.read(file);
+			LOG.info("Binary model loaded. Reading time: %.4f",
+					(System.currentTimeMillis() - start) / 1000.0);
+			return model;
+		}
 		try (final ObjectInput input = new ObjectInputStream(
 				new BufferedInputStream(new FileInputStream(file)))) {
 			@SuppressWarnings("unchecked")
@@ -153,6 +161,23 @@ public class Model<DI extends IDataItem<?>, MR>
 		}
 	}
 
+	/**
+	 * Store model object in a file.
+	 *
+	 * @param binary
+	 *            Use the compact format of {@link ModelBinaryFormat} instead of
+	 *            Java serialization.
+	 * @throws IOException
+	 */
+	public static <DI extends IDataItem<?>, MR> void write(Model<DI, MR> model,
+			File file, boolean binary) throws IOException {
+		if (binary) {
+			ModelBinaryFormat.write(model, file);
+		} else {
+			write(model, file);
+		}
+	}
+
 	/**
 	 * Adds a batch of lexical items. The items are indifferent to one another
 	 * when getting their initial scores.
@@ -161,14 +186,15 @@ public class Model<DI extends IDataItem<?>, MR>
 	 * @return 'true' iff at least one new entry was introduced to the lexicon.
 	 */
 	public boolean addLexEntries(Collection<LexicalEntry<MR>> entries) {
-		final Set<LexicalEntry<MR>> addedEntries = new HashSet<>();
 		for (final LexicalEntry<MR> entry : entries) {
 			if (entry.isDynamic()) {
 				throw new IllegalStateException(
 						"Trying to add a dynmic entry to the model: " + entry);
 			}
-			addedEntries.addAll(lexicon.add(entry));
 		}
+		// Add all entries in a single call, so versioned lexicons create a
+		// single new version.
+		final Set<LexicalEntry<MR>> addedEntries = lexicon.addAll(entries);
 		for (final IParseFeatureSet<DI, MR> fs : featureSets) {
 			if (fs instanceof ILexicalFeatureSet) {
 				for (final LexicalEntry<MR> entry : addedEntries) {
@@ -276,9 +302,22 @@ public class Model<DI extends IDataItem<?>, MR>
 		return theta.dotProduct(features);
 	}
 
+	@Override
+	public double score(IParseStep<MR> parseStep, DI dataItem) {
+		double score = 0.0;
+		for (final IParseFeatureSetImmutable<DI, MR> featureSet : featureSets) {
+			score += featureSet.score(parseStep, theta, dataItem);
+		}
+		return score;
+	}
+
 	@Override
 	public double score(LexicalEntry<MR> entry) {
-		return score(computeFeatures(entry));
+		double score = 0.0;
+		for (final IIndependentLexicalFeatureSet<DI, MR> lfs : independentLexicalFeatureSets) {
+			score += lfs.score(entry, theta);
+		}
+		return score;
 	}
 
 	@Override
@@ -332,8 +371,13 @@ public class Model<DI extends IDataItem<?>, MR>
 	}
 
 	public static class Builder<DI extends IDataItem<?>, MR> {
-		private final List<IParseFeatureSet<DI, MR>>	featureSets	= new LinkedList<IParseFeatureSet<DI, MR>>();
-		private ILexicon<MR>							lexicon		= new Lexicon<MR>();
+		/**
+		 * Use a weight vector that supports concurrent reads and updates (e.g.,
+		 * for asynchronous learning).
+		 */
+		private boolean									concurrentTheta	= false;
+		private final List<IParseFeatureSet<DI, MR>>	featureSets		= new LinkedList<IParseFeatureSet<DI, MR>>();
+		private ILexicon<MR>							lexicon			= new Lexicon<MR>();
 
 		public Builder<DI, MR> addFeatureSet(
 				IParseFeatureSet<DI, MR> featureSet) {
@@ -343,7 +387,13 @@ public class Model<DI extends IDataItem<?>, MR>
 
 		public Model<DI, MR> build() {
 			return new Model<DI, MR>(featureSets, lexicon,
-					HashVectorFactory.create());
+					concurrentTheta ? HashVectorFactory.createConcurrent()
+							: HashVectorFactory.create());
+		}
+
+		public Builder<DI, MR> setConcurrentTheta(boolean concurrentTheta) {
+			this.concurrentTheta = concurrentTheta;
+			return this;
 		}
 
 		public Builder<DI, MR> setLexicon(ILexicon<MR> lexicon) {
@@ -381,6 +431,9 @@ public class Model<DI extends IDataItem<?>, MR>
 							(ILexicon<MR>) repo.get(params.get("lexicon")));
 				}
 
+				builder.setConcurrentTheta(
+						params.getAsBoolean("concurrentTheta", false));
+
 				// Feature sets.
 				for (final String setId : params.getSplit("features")) {
 					builder.addFeatureSet(
@@ -404,6 +457,8 @@ public class Model<DI extends IDataItem<?>, MR>
 					.setDescription(
 							"Parsing model, including lexicon, features and a weight vector")
 					.addParam("lexicon", "id", "Lexicon to use with this model")
+					.addParam("concurrentTheta", "boolean",
+							"Use a weight vector that supports concurrent updates, required for asynchronous learning (default: false)")
 					.addParam("lexicalFeatures", "[id]",
 							"Lexical feature sets to use (e.g., 'lfs1,lfs2,lfs3')")
 					.addParam("parseFeatures", "[id]",
@@ -414,6 +469,8 @@ public class Model<DI extends IDataItem<?>, MR>
 		protected ILexicon<MR> createLexicon(String lexiconType) {
 			if ("conventional".equals(lexiconType)) {
 				return new Lexicon<MR>();
+			} else if ("concurrent".equals(lexiconType)) {
+				return new ConcurrentLexicon<MR>();
 			} else {
 				throw new IllegalArgumentException(
 						"Invalid lexicon type: " + lexiconType);
@@ -0,0 +1,393 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexicon;
+import edu.cornell.cs.nlp.spf.data.IDataItem;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.parse.IParseFeatureSet;
+import edu.cornell.cs.nlp.utils.composites.Pair;
+import edu.cornell.cs.nlp.utils.log.ILogger;
+import edu.cornell.cs.nlp.utils.log.LoggerFactory;
+
+/**
+ * Versioned binary file format for {@link Model}, with a compact encoding of
+ * the weight vector. All strings (feature key arguments) are stored once in a
+ * string table, and the weight vector is stored as parallel arrays of key
+ * string IDs and values. Both sections are read from a memory mapped file,
+ * without the per-object overhead of Java serialization. The weight vector is
+ * still decoded eagerly into a hash vector when the model is read, and so is
+ * every string it references. Each string is decoded once and shared by all
+ * keys.
+ * <p>
+ * The feature sets and the lexicon are not encoded natively. They are
+ * MR-generic and define their own serializable state (e.g., the lexemes and
+ * templates of a factored lexicon, or the category IDs of the lexical feature
+ * set, which reference every logical form in the lexicon), so they are stored
+ * with Java serialization, with the weight vector excluded, as the last section
+ * of the file. The section is streamed from and to the file and deserialized
+ * eagerly when the model is read. Loading this section takes the same time and
+ * heap as with plain Java serialization. There is no constant/type table,
+ * logical forms are not prefix encoded, lexical entries are not stored by
+ * reference and nothing is materialized lazily.
+ * <p>
+ * All offsets are 64-bit, and the file is mapped in chunks, so models larger
+ * than 2GB are supported.
+ * <p>
+ * Layout (big endian):
+ *
+ * <pre>
+ * header:       int magic, int version, int flags,
+ *               long stringsOffset, long thetaOffset, long structureOffset
+ * strings:      int n, long[n + 1] offsets, byte[] UTF-8 data
+ * theta:        int n, int[5 * n] key string IDs (-1 for null), double[n]
+ * structure:    serialized feature sets and lexicon, to the end of the file
+ * </pre>
+ *
+ * @author Yoav Artzi
+ */
+public final class ModelBinaryFormat {
+	public static final ILogger	LOG				= LoggerFactory
+			.create(ModelBinaryFormat.class);
+
+	/**
+	 * File signature ("SPFM").
+	 */
+	public static final int		MAGIC			= 0x5350464D;
+
+	public static final int		VERSION			= 2;
+
+	/**
+	 * Maximum size of a single mapped region of the file.
+	 */
+	private static final int	CHUNK_SIZE		= 1 << 30;
+
+	private static final int	FLAG_CONCURRENT	= 1;
+
+	private static final int	HEADER_SIZE		= 3 * 4 + 3 * 8;
+
+	private static final int	NUM_KEY_ARGS	= 5;
+
+	private ModelBinaryFormat() {
+		// Static services class.
+	}
+
+	/**
+	 * Checks if the file starts with the binary model signature.
+	 */
+	public static boolean isBinaryModel(File file) throws IOException {
+		if (file.length() < HEADER_SIZE) {
+			return false;
+		}
+		try (final DataInputStream input = new DataInputStream(
+				new FileInputStream(file))) {
+			return input.readInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Read a {@link Model} from a binary file.
+	 */
+	public static <DI extends IDataItem<?>, MR> Model<DI, MR> read(File file)
+			throws ClassNotFoundException, IOException {
+		return read(file, CHUNK_SIZE);
+	}
+
+	/**
+	 * Store a {@link Model} in a binary file.
+	 */
+	public static <DI extends IDataItem<?>, MR> void write(Model<DI, MR> model,
+			File file) throws IOException {
+		// Sort the weights to get a deterministic weight section, and index all
+		// strings.
+		final List<Pair<KeyArgs, Double>> weights = new ArrayList<>();
+		for (final Pair<KeyArgs, Double> entry : model.getTheta()) {
+			weights.add(entry);
+		}
+		Collections.sort(weights, (p1, p2) -> p1.first().compareTo(p2.first()));
+		final Map<String, Integer> stringIds = new HashMap<>();
+		final List<byte[]> stringBytes = new ArrayList<>();
+		final int[] keyIds = new int[NUM_KEY_ARGS * weights.size()];
+		int index = 0;
+		for (final Pair<KeyArgs, Double> entry : weights) {
+			final KeyArgs key = entry.first();
+			keyIds[index++] = stringId(key.getArg1(), stringIds, stringBytes);
+			keyIds[index++] = stringId(key.getArg2(), stringIds, stringBytes);
+			keyIds[index++] = stringId(key.getArg3(), stringIds, stringBytes);
+			keyIds[index++] = stringId(key.getArg4(), stringIds, stringBytes);
+			keyIds[index++] = stringId(key.getArg5(), stringIds, stringBytes);
+		}
+
+		// Compute section offsets.
+		long stringsSize = 4 + 8 * (stringBytes.size() + 1L);
+		for (final byte[] bytes : stringBytes) {
+			stringsSize += bytes.length;
+		}
+		final long stringsOffset = HEADER_SIZE;
+		final long thetaOffset = stringsOffset + stringsSize;
+		final long structureOffset = thetaOffset + 4
+				+ (4 * NUM_KEY_ARGS + 8) * (long) weights.size();
+
+		try (final DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(HashVectorFactory.isConcurrent(model.getTheta())
+					? FLAG_CONCURRENT : 0);
+			output.writeLong(stringsOffset);
+			output.writeLong(thetaOffset);
+			output.writeLong(structureOffset);
+
+			output.writeInt(stringBytes.size());
+			long offset = 0;
+			output.writeLong(offset);
+			for (final byte[] bytes : stringBytes) {
+				offset += bytes.length;
+				output.writeLong(offset);
+			}
+			for (final byte[] bytes : stringBytes) {
+				output.write(bytes);
+			}
+
+			output.writeInt(weights.size());
+			for (final int id : keyIds) {
+				output.writeInt(id);
+			}
+			for (final Pair<KeyArgs, Double> entry : weights) {
+				output.writeDouble(entry.second());
+			}
+
+			// Serialize the feature sets and the lexicon together to preserve
+			// shared references. The section is written directly to the file,
+			// so its size is not limited by an intermediate buffer.
+			final ObjectOutputStream objectOutput = new ObjectOutputStream(
+					output);
+			objectOutput.writeObject(new ArrayList<>(model.getParseFeatures()));
+			objectOutput.writeObject(model.getLexicon());
+			objectOutput.flush();
+		}
+		LOG.info("Wrote binary model: %d weights, %d strings, %d bytes",
+				weights.size(), stringBytes.size(), file.length());
+	}
+
+	private static KeyArgs createKey(String arg1, String arg2, String arg3,
+			String arg4, String arg5) {
+		if (arg2 == null) {
+			return new KeyArgs(arg1);
+		} else if (arg3 == null) {
+			return new KeyArgs(arg1, arg2);
+		} else if (arg4 == null) {
+			return new KeyArgs(arg1, arg2, arg3);
+		} else if (arg5 == null) {
+			return new KeyArgs(arg1, arg2, arg3, arg4);
+		} else {
+			return new KeyArgs(arg1, arg2, arg3, arg4, arg5);
+		}
+	}
+
+	private static int stringId(String string, Map<String, Integer> stringIds,
+			List<byte[]> stringBytes) {
+		if (string == null) {
+			return -1;
+		}
+		final Integer id = stringIds.get(string);
+		if (id != null) {
+			return id;
+		}
+		stringIds.put(string, stringBytes.size());
+		stringBytes.add(string.getBytes(StandardCharsets.UTF_8));
+		return stringBytes.size() - 1;
+	}
+
+	/**
+	 * Read a {@link Model} from a binary file, mapping it in chunks of the
+	 * given size.
+	 */
+	static <DI extends IDataItem<?>, MR> Model<DI, MR> read(File file,
+			int chunkSize) throws ClassNotFoundException, IOException {
+		final MappedFile buffer = new MappedFile(file, chunkSize);
+
+		// Header.
+		if (buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a binary model file: " + file);
+		}
+		final int version = buffer.getInt(4);
+		if (version != VERSION) {
+			throw new IOException(
+					"Unsupported binary model version: " + version);
+		}
+		final int flags = buffer.getInt(8);
+		final long stringsOffset = buffer.getLong(12);
+		final long thetaOffset = buffer.getLong(20);
+		final long structureOffset = buffer.getLong(28);
+
+		final StringTable strings = new StringTable(buffer, stringsOffset);
+
+		// Weight vector.
+		final IHashVector theta = (flags & FLAG_CONCURRENT) != 0
+				? HashVectorFactory.createConcurrent()
+				: HashVectorFactory.create();
+		final int numWeights = buffer.getInt(thetaOffset);
+		final long idsStart = thetaOffset + 4;
+		final long valuesStart = idsStart + 4L * NUM_KEY_ARGS * numWeights;
+		for (int i = 0; i < numWeights; ++i) {
+			final long base = idsStart + 4L * NUM_KEY_ARGS * i;
+			theta.set(
+					createKey(strings.get(buffer.getInt(base)),
+							strings.get(buffer.getInt(base + 4)),
+							strings.get(buffer.getInt(base + 8)),
+							strings.get(buffer.getInt(base + 12)),
+							strings.get(buffer.getInt(base + 16))),
+					buffer.getDouble(valuesStart + 8L * i));
+		}
+
+		// Feature sets and lexicon, streamed from the file.
+		try (final FileInputStream fileInput = new FileInputStream(file)) {
+			fileInput.getChannel().position(structureOffset);
+			try (final ObjectInputStream input = new ObjectInputStream(
+					new BufferedInputStream(fileInput))) {
+				@SuppressWarnings("unchecked")
+				final List<IParseFeatureSet<DI, MR>> featureSets = (List<IParseFeatureSet<DI, MR>>) input
+						.readObject();
+				@SuppressWarnings("unchecked")
+				final ILexicon<MR> lexicon = (ILexicon<MR>) input.readObject();
+				return new Model<DI, MR>(featureSets, lexicon, theta);
+			}
+		}
+	}
+
+	/**
+	 * Read-only view of a file, memory mapped in chunks, so it can be
+	 * addressed with 64-bit offsets. Values may cross chunk boundaries.
+	 */
+	private static class MappedFile {
+		private final ByteBuffer[]	chunks;
+		private final int			chunkSize;
+
+		public MappedFile(File file, int chunkSize) throws IOException {
+			this.chunkSize = chunkSize;
+			try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+					final FileChannel channel = raf.getChannel()) {
+				final long size = channel.size();
+				this.chunks = new ByteBuffer[(int) ((size + chunkSize - 1)
+						/ chunkSize)];
+				for (int i = 0; i < chunks.length; ++i) {
+					final long start = (long) i * chunkSize;
+					chunks[i] = channel.map(MapMode.READ_ONLY, start,
+							Math.min(chunkSize, size - start));
+				}
+			}
+		}
+
+		public void get(long position, byte[] bytes) {
+			int copied = 0;
+			while (copied < bytes.length) {
+				final long current = position + copied;
+				final ByteBuffer chunk = chunks[(int) (current / chunkSize)]
+						.duplicate();
+				chunk.position((int) (current % chunkSize));
+				final int n = Math.min(bytes.length - copied,
+						chunk.remaining());
+				chunk.get(bytes, copied, n);
+				copied += n;
+			}
+		}
+
+		public double getDouble(long position) {
+			return Double.longBitsToDouble(getLong(position));
+		}
+
+		public int getInt(long position) {
+			final ByteBuffer chunk = chunks[(int) (position / chunkSize)];
+			final int offset = (int) (position % chunkSize);
+			if (offset + 4 <= chunk.limit()) {
+				return chunk.getInt(offset);
+			}
+			final byte[] bytes = new byte[4];
+			get(position, bytes);
+			return ByteBuffer.wrap(bytes).getInt();
+		}
+
+		public long getLong(long position) {
+			final ByteBuffer chunk = chunks[(int) (position / chunkSize)];
+			final int offset = (int) (position % chunkSize);
+			if (offset + 8 <= chunk.limit()) {
+				return chunk.getLong(offset);
+			}
+			final byte[] bytes = new byte[8];
+			get(position, bytes);
+			return ByteBuffer.wrap(bytes).getLong();
+		}
+	}
+
+	/**
+	 * String table backed by the mapped file. Each string is decoded once, on
+	 * first access, and the same instance is shared by all references to it.
+	 * Reading the weight vector accesses all strings of the table.
+	 */
+	private static class StringTable {
+		private final MappedFile	buffer;
+		private final long			dataStart;
+		private final String[]		decoded;
+		private final long			offsetsStart;
+
+		public StringTable(MappedFile buffer, long offset) {
+			this.buffer = buffer;
+			final int size = buffer.getInt(offset);
+			this.decoded = new String[size];
+			this.offsetsStart = offset + 4;
+			this.dataStart = offsetsStart + 8 * (size + 1L);
+		}
+
+		public String get(int id) {
+			if (id < 0) {
+				return null;
+			}
+			if (decoded[id] == null) {
+				final long start = buffer.getLong(offsetsStart + 8L * id);
+				final long end = buffer.getLong(offsetsStart + 8L * (id + 1));
+				final byte[] bytes = new byte[(int) (end - start)];
+				buffer.get(dataStart + start, bytes);
+				decoded[id] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			return decoded[id];
+		}
+	}
+}
@@ -19,7 +19,9 @@ package edu.cornell.cs.nlp.spf.parser.ccg.model.lexical;
 import java.util.Set;
 import java.util.function.Predicate;
 
+import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.ccg.categories.syntax.ComplexSyntax;
 import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Syntax;
 import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Syntax.SimpleSyntax;
@@ -64,6 +66,27 @@ public abstract class AbstractLexicalFeatureSet<DI extends IDataItem<?>, MR>
 		return false;
 	}
 
+	@Override
+	public double score(IParseStep<MR> parseStep, IHashVectorImmutable theta,
+			DI dataItem) {
+		if (parseStep instanceof ILexicalParseStep && ignoreFilter
+				.test(((ILexicalParseStep<MR>) parseStep).getLexicalEntry())) {
+			return score(((ILexicalParseStep<MR>) parseStep).getLexicalEntry(),
+					theta);
+		}
+		return 0.0;
+	}
+
+	@Override
+	public final double score(LexicalEntry<MR> entry,
+			IHashVectorImmutable theta) {
+		if (entry == null || entry.isDynamic() || !ignoreFilter.test(entry)) {
+			return 0.0;
+		}
+
+		return doScore(entry, theta);
+	}
+
 	@Override
 	public void setFeatures(IParseStep<MR> parseStep, IHashVector features,
 			DI dataItem) {
@@ -87,87 +110,112 @@ public abstract class AbstractLexicalFeatureSet<DI extends IDataItem<?>, MR>
 	protected abstract boolean doAddEntry(LexicalEntry<MR> entry,
 			IHashVector parametersVector);
 
+	/**
+	 * Computes the score of the features set by
+	 * {@link #doSetFeatures(LexicalEntry, IHashVector)}. Classes that override
+	 * {@link #doSetFeatures(LexicalEntry, IHashVector)} should override this
+	 * method as well.
+	 */
+	protected double doScore(LexicalEntry<MR> entry,
+			IHashVectorImmutable theta) {
+		if (computeSyntaxAttributeFeatures
+				&& entry.getCategory().getSyntax() instanceof ComplexSyntax) {
+			// Syntax attribute features are relatively rare, so simply
+			// materialize them.
+			final IHashVector features = HashVectorFactory.create();
+			setSyntaxAttributeFeatures(entry, features);
+			return theta.dotProduct(features);
+		}
+		return 0.0;
+	}
+
 	protected void doSetFeatures(LexicalEntry<MR> entry, IHashVector features) {
 		if (computeSyntaxAttributeFeatures) {
-			if (entry.getCategory().getSyntax() instanceof ComplexSyntax) {
-				// If the syntax is complex, discriminate between various
-				// patterns of attribute usage. This will allow the system to
-				// prefer one over the other, mainly in newly considered
-				// templates during lexical induction. It also allows better
-				// flow of information between lexical entries.
-
-				final ComplexSyntax syntax = (ComplexSyntax) entry.getCategory()
-						.getSyntax();
-
-				final Syntax arg = syntax.getRight();
-				final Syntax ret = syntax.getLeft();
-
-				final Set<String> argAttributes = arg.getAttributes();
-				final Set<String> retAttributes = ret.getAttributes();
-				final boolean argHasVariable = arg.hasAttributeVariable();
-				final boolean retHasVariable = ret.hasAttributeVariable();
-
-				// Process attributes.
-				if (!argAttributes.isEmpty() || !retAttributes.isEmpty()) {
-					for (final String attribute : SetUtils.union(argAttributes,
-							retAttributes)) {
-						final boolean argContains = argAttributes
-								.contains(attribute);
-						final boolean retContains = retAttributes
-								.contains(attribute);
-						if (argContains && !retContains) {
-							// Attribute appears in the argument, but not in the
-							// return syntax.
-							features.add(featureTag, "syntaxattrib", "argonly",
-									arg instanceof SimpleSyntax
-											? ((SimpleSyntax) arg).getLabel()
-											: "complex",
-									1.0);
-						} else if (!argContains && retContains) {
-							// Attribute appears in the return syntax, but not
-							// in the argument.
-							features.add(featureTag, "syntaxattrib", "retonly",
-									ret instanceof SimpleSyntax
-											? ((SimpleSyntax) ret).getLabel()
-											: "complex",
-									1.0);
-						} else {
-							// Attribute appears on both side of the slash (the
-							// state of it not appearing on either side is not
-							// possible).
-							features.add(featureTag, "syntaxattrib",
-									"agreement", 1.0);
-						}
-					}
-				}
+			setSyntaxAttributeFeatures(entry, features);
+		}
+	}
 
-				// Process variables.
-				if (argHasVariable || retHasVariable) {
-					if (argHasVariable && !retHasVariable) {
-						// Attribute appears in the argument, but not in the
-						// return syntax.
-						features.add(featureTag, "syntaxattrib", "varargonly",
-								arg instanceof SimpleSyntax
-										? ((SimpleSyntax) arg).getLabel()
-										: "complex",
-								1.0);
-					} else if (!argHasVariable && retHasVariable) {
-						// Attribute appears in the return syntax, but not
-						// in the argument.
-						features.add(featureTag, "syntaxattrib", "varretonly",
-								ret instanceof SimpleSyntax
-										? ((SimpleSyntax) ret).getLabel()
-										: "complex",
-								1.0);
-					} else {
-						// Attribute appears on both side of the slash (the
-						// state of it not appearing on either side is not
-						// possible).
-						features.add(featureTag, "varsyntaxattrib", "agreement",
-								1.0);
-					}
+	private void setSyntaxAttributeFeatures(LexicalEntry<MR> entry,
+			IHashVector features) {
+		if (!(entry.getCategory().getSyntax() instanceof ComplexSyntax)) {
+			return;
+		}
+
+		// If the syntax is complex, discriminate between various
+		// patterns of attribute usage. This will allow the system to
+		// prefer one over the other, mainly in newly considered
+		// templates during lexical induction. It also allows better
+		// flow of information between lexical entries.
+
+		final ComplexSyntax syntax = (ComplexSyntax) entry.getCategory()
+				.getSyntax();
+
+		final Syntax arg = syntax.getRight();
+		final Syntax ret = syntax.getLeft();
+
+		final Set<String> argAttributes = arg.getAttributes();
+		final Set<String> retAttributes = ret.getAttributes();
+		final boolean argHasVariable = arg.hasAttributeVariable();
+		final boolean retHasVariable = ret.hasAttributeVariable();
+
+		// Process attributes.
+		if (!argAttributes.isEmpty() || !retAttributes.isEmpty()) {
+			for (final String attribute : SetUtils.union(argAttributes,
+					retAttributes)) {
+				final boolean argContains = argAttributes
+						.contains(attribute);
+				final boolean retContains = retAttributes
+						.contains(attribute);
+				if (argContains && !retContains) {
+					// Attribute appears in the argument, but not in the
+					// return syntax.
+					features.add(featureTag, "syntaxattrib", "argonly",
+							arg instanceof SimpleSyntax
+									? ((SimpleSyntax) arg).getLabel()
+									: "complex",
+							1.0);
+				} else if (!argContains && retContains) {
+					// Attribute appears in the return syntax, but not
+					// in the argument.
+					features.add(featureTag, "syntaxattrib", "retonly",
+							ret instanceof SimpleSyntax
+									? ((SimpleSyntax) ret).getLabel()
+									: "complex",
+							1.0);
+				} else {
+					// Attribute appears on both side of the slash (the
+					// state of it not appearing on either side is not
+					// possible).
+					features.add(featureTag, "syntaxattrib",
+							"agreement", 1.0);
 				}
+			}
+		}
 
+		// Process variables.
+		if (argHasVariable || retHasVariable) {
+			if (argHasVariable && !retHasVariable) {
+				// Attribute appears in the argument, but not in the
+				// return syntax.
+				features.add(featureTag, "syntaxattrib", "varargonly",
+						arg instanceof SimpleSyntax
+								? ((SimpleSyntax) arg).getLabel()
+								: "complex",
+						1.0);
+			} else if (!argHasVariable && retHasVariable) {
+				// Attribute appears in the return syntax, but not
+				// in the argument.
+				features.add(featureTag, "syntaxattrib", "varretonly",
+						ret instanceof SimpleSyntax
+								? ((SimpleSyntax) ret).getLabel()
+								: "complex",
+						1.0);
+			} else {
+				// Attribute appears on both side of the slash (the
+				// state of it not appearing on either side is not
+				// possible).
+				features.add(featureTag, "varsyntaxattrib", "agreement",
+						1.0);
 			}
 		}
 	}
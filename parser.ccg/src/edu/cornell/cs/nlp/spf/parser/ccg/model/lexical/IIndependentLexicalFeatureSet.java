@@ -16,9 +16,12 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.parser.ccg.model.lexical;
 
+import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.parse.IParseFeatureSetImmutable;
 
 /**
  * Lexical feature set that is independent of the data item.
@@ -27,5 +30,20 @@ import edu.cornell.cs.nlp.spf.data.IDataItem;
  */
 public interface IIndependentLexicalFeatureSet<DI extends IDataItem<?>, MR>
 		extends ILexicalFeatureSet<DI, MR> {
+
+	/**
+	 * Computes the score of the features of the given lexical entry. The
+	 * default implementation materializes the features.
+	 *
+	 * @see IParseFeatureSetImmutable#score(edu.cornell.cs.nlp.spf.parser.ccg.IParseStep,
+	 *      IHashVectorImmutable, IDataItem)
+	 */
+	default double score(LexicalEntry<MR> lexicalEntry,
+			IHashVectorImmutable theta) {
+		final IHashVector features = HashVectorFactory.create();
+		setFeatures(lexicalEntry, features);
+		return theta.dotProduct(features);
+	}
+
 	void setFeatures(LexicalEntry<MR> lexicalEntry, IHashVector features);
 }
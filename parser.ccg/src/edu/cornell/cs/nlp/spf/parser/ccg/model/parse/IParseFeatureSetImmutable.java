@@ -16,7 +16,9 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.parser.ccg.model.parse;
 
+import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVectorImmutable;
 import edu.cornell.cs.nlp.spf.data.IDataItem;
 import edu.cornell.cs.nlp.spf.parser.ccg.IParseStep;
 import edu.cornell.cs.nlp.spf.parser.ccg.model.IFeatureSet;
@@ -24,5 +26,20 @@ import edu.cornell.cs.nlp.spf.parser.ccg.model.IFeatureSet;
 public interface IParseFeatureSetImmutable<DI extends IDataItem<?>, MR> extends
 		IFeatureSet {
 
+	/**
+	 * Computes the score of the features of the given parse step, i.e., the
+	 * dot product of theta and the features that would be set by
+	 * {@link #setFeatures(IParseStep, IHashVector, IDataItem)}. The default
+	 * implementation materializes the features. Feature sets should override
+	 * it to look up the weights in theta directly, without creating a feature
+	 * vector.
+	 */
+	default double score(IParseStep<MR> parseStep, IHashVectorImmutable theta,
+			DI dataItem) {
+		final IHashVector features = HashVectorFactory.create();
+		setFeatures(parseStep, features, dataItem);
+		return theta.dotProduct(features);
+	}
+
 	void setFeatures(IParseStep<MR> parseStep, IHashVector feats, DI dataItem);
 }
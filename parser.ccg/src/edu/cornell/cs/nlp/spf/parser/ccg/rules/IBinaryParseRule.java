@@ -44,4 +44,20 @@ public interface IBinaryParseRule<MR> extends Serializable {
 
 	@Override
 	int hashCode();
+
+	/**
+	 * Cheap syntactic test used by parsers to index binary rules, so only rules
+	 * that may fire are applied to a pair of categories. The test must be
+	 * conservative: it may only return 'false' if
+	 * {@link #apply(Category, Category, SentenceSpan)} returns 'null' for every
+	 * pair of categories with the given syntactic shapes.
+	 *
+	 * @param left
+	 *            Shape of the left category's syntax.
+	 * @param right
+	 *            Shape of the right category's syntax.
+	 */
+	default boolean isValidArgumentShapes(SyntaxShape left, SyntaxShape right) {
+		return true;
+	}
 }
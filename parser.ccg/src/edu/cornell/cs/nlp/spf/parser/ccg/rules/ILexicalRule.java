@@ -22,6 +22,7 @@ import java.util.Iterator;
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.SentenceSpanLexicon;
 
 /**
  * Lexical parsing rule. Given a {@link ILexiconImmutable}, a {@link TokenSeq}
@@ -35,6 +36,17 @@ public interface ILexicalRule<MR> extends Serializable {
 	Iterator<LexicalResult<MR>> apply(TokenSeq tokens, SentenceSpan span,
 			ILexiconImmutable<MR> lexicon);
 
+	/**
+	 * Same as {@link #apply(TokenSeq, SentenceSpan, ILexiconImmutable)}, for a
+	 * lexicon bound to the sentence. Rules that only use the entries of the
+	 * span should take them directly from the {@link SentenceSpanLexicon},
+	 * which retrieves all spans with the same start in a single pass.
+	 */
+	default Iterator<LexicalResult<MR>> apply(TokenSeq tokens,
+			SentenceSpan span, SentenceSpanLexicon<MR> lexicon) {
+		return apply(tokens, span, (ILexiconImmutable<MR>) lexicon);
+	}
+
 	@Override
 	boolean equals(Object obj);
 
@@ -21,6 +21,7 @@ import java.util.Iterator;
 import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.SentenceSpanLexicon;
 import edu.cornell.cs.nlp.spf.explat.IResourceRepository;
 import edu.cornell.cs.nlp.spf.explat.ParameterizedExperiment.Parameters;
 import edu.cornell.cs.nlp.spf.explat.resources.IResourceObjectCreator;
@@ -59,6 +60,17 @@ public class LexicalRule<MR> implements ILexicalRule<MR> {
 				t -> new LexicalResult<MR>(name, t.getCategory(), t), iterator);
 	}
 
+	@Override
+	public Iterator<LexicalResult<MR>> apply(TokenSeq tokens, SentenceSpan span,
+			SentenceSpanLexicon<MR> lexicon) {
+
+		final Iterator<? extends LexicalEntry<MR>> iterator = lexicon
+				.get(span.getStart(), span.getEnd());
+
+		return new TransformedIterator<LexicalEntry<MR>, LexicalResult<MR>>(
+				t -> new LexicalResult<MR>(name, t.getCategory(), t), iterator);
+	}
+
 	@Override
 	public UnaryRuleName getName() {
 		return name;
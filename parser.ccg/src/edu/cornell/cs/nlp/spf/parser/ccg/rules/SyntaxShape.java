@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.rules;
+
+import java.io.Serializable;
+
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.ComplexSyntax;
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Slash;
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Syntax;
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Syntax.SimpleSyntax;
+
+/**
+ * Coarse summary of a syntactic category: the label of its head (the left-most
+ * simple syntax, ignoring attributes) and the direction of its outermost
+ * slash, if it's complex. Used by parsers to index binary rules by the
+ * categories they may combine, see
+ * {@link IBinaryParseRule#isValidArgumentShapes(SyntaxShape, SyntaxShape)}.
+ *
+ * @author Yoav Artzi
+ */
+public class SyntaxShape implements Serializable {
+
+	private static final long	serialVersionUID	= 4471094406620853392L;
+
+	private final int			hashCode;
+
+	/**
+	 * Label of the left-most simple syntax.
+	 */
+	private final String		head;
+
+	/**
+	 * The outermost slash, 'null' for simple syntax.
+	 */
+	private final Slash			slash;
+
+	private SyntaxShape(String head, Slash slash) {
+		this.head = head;
+		this.slash = slash;
+		this.hashCode = calcHashCode();
+	}
+
+	public static SyntaxShape of(Syntax syntax) {
+		final Slash slash = syntax instanceof ComplexSyntax
+				? ((ComplexSyntax) syntax).getSlash() : null;
+		Syntax current = syntax;
+		while (current instanceof ComplexSyntax) {
+			current = ((ComplexSyntax) current).getLeft();
+		}
+		return new SyntaxShape(((SimpleSyntax) current).getLabel(), slash);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final SyntaxShape other = (SyntaxShape) obj;
+		if (!head.equals(other.head)) {
+			return false;
+		}
+		if (slash != other.slash) {
+			return false;
+		}
+		return true;
+	}
+
+	public String getHead() {
+		return head;
+	}
+
+	public Slash getSlash() {
+		return slash;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/**
+	 * @return 'true' iff the head of the syntax has the same label as the
+	 *         given simple syntax.
+	 */
+	public boolean hasHead(SimpleSyntax syntax) {
+		return head.equals(syntax.getLabel());
+	}
+
+	/**
+	 * @return 'true' iff the syntax is complex with the given outermost slash.
+	 */
+	public boolean hasSlash(Slash other) {
+		return slash == other;
+	}
+
+	public boolean isComplex() {
+		return slash != null;
+	}
+
+	/**
+	 * @return 'true' iff the syntax is simple and has the same label as the
+	 *         given simple syntax. Attributes are ignored.
+	 */
+	public boolean isSimple(SimpleSyntax syntax) {
+		return slash == null && hasHead(syntax);
+	}
+
+	@Override
+	public String toString() {
+		return slash == null ? head : head + slash;
+	}
+
+	private int calcHashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + head.hashCode();
+		result = prime * result + (slash == null ? 0 : slash.hashCode());
+		return result;
+	}
+
+}
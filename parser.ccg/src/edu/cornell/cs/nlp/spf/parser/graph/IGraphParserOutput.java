@@ -16,6 +16,7 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.parser.graph;
 
+import java.util.Iterator;
 import java.util.List;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
@@ -47,6 +48,21 @@ public interface IGraphParserOutput<MR> extends IParserOutput<MR> {
 	List<? extends IGraphDerivation<MR>> getDerivations(
 			IFilter<Category<MR>> filter);
 
+	/**
+	 * Lazily iterate over complete parse trees in descending order of score.
+	 * Unlike the other derivations, each returned derivation is a single tree.
+	 * Trees are extracted from the packed parser output on demand, so getting
+	 * the top-k trees is much cheaper than parsing with a larger beam.
+	 */
+	Iterator<? extends IGraphDerivation<MR>> kBestIterator();
+
+	/**
+	 * Same as {@link #kBestIterator()}, but only for trees with root categories
+	 * that pass the filter.
+	 */
+	Iterator<? extends IGraphDerivation<MR>> kBestIterator(
+			IFilter<Category<MR>> filter);
+
 	/**
 	 * Compute non-normalized log expected features values over all complete
 	 * parses. To normalize, use the log normalization constant (
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.base.concurrency;
+
+import java.io.Serializable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.cornell.cs.nlp.utils.log.Log;
+import edu.cornell.cs.nlp.utils.log.Logger;
+import edu.cornell.cs.nlp.utils.log.thread.ILoggingThread;
+
+/**
+ * Creates {@link ForkJoinPool} worker threads that support the thread-specific
+ * logging of {@link ILoggingThread}. The fork-join equivalent of
+ * {@link edu.cornell.cs.nlp.utils.log.thread.LoggingThreadFactory}.
+ *
+ * @author Yoav Artzi
+ */
+public class LoggingForkJoinWorkerThreadFactory
+		implements ForkJoinWorkerThreadFactory, Serializable {
+
+	private static final long	serialVersionUID	= 4410813470262437924L;
+	private final String		namePrefix;
+	private final AtomicInteger	threadNumber		= new AtomicInteger(1);
+
+	public LoggingForkJoinWorkerThreadFactory() {
+		this("P");
+	}
+
+	public LoggingForkJoinWorkerThreadFactory(String threadNamePrefix) {
+		this.namePrefix = threadNamePrefix + "-T";
+	}
+
+	@Override
+	public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+		return new LoggingForkJoinWorkerThread(pool,
+				namePrefix + threadNumber.getAndIncrement());
+	}
+
+	private static class LoggingForkJoinWorkerThread extends ForkJoinWorkerThread
+			implements ILoggingThread {
+		private Log				log	= Logger.DEFAULT_LOG;
+		private final String	prefix;
+
+		public LoggingForkJoinWorkerThread(ForkJoinPool pool, String name) {
+			super(pool);
+			setName(name);
+			this.prefix = String.format("[%s] ", name);
+		}
+
+		@Override
+		public Log getLog() {
+			return log;
+		}
+
+		@Override
+		public void println(String string) {
+			synchronized (log) {
+				log.println(prefix + string);
+			}
+		}
+
+		@Override
+		public void println(Throwable throwable) {
+			synchronized (log) {
+				log.println(throwable);
+			}
+		}
+
+		@Override
+		public void setLog(Log log) {
+			this.log = log;
+		}
+	}
+
+}
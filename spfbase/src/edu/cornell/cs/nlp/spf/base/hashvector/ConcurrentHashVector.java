@@ -0,0 +1,528 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.base.hashvector;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.google.common.util.concurrent.AtomicDouble;
+
+import edu.cornell.cs.nlp.utils.composites.Pair;
+
+/**
+ * Sparse vector that supports concurrent reads and updates without a global
+ * lock. Each key is paired with an atomic cell, so concurrent updates of
+ * existing keys are lock-free compare-and-set operations, and the underlying
+ * {@link ConcurrentHashMap} only synchronizes when new keys are introduced.
+ * This is the parameter vector for asynchronous (Hogwild) learning, where
+ * workers concurrently read the parameters and apply sparse updates.
+ * <p>
+ * Single-key operations are atomic. Operations that span the whole vector
+ * (e.g., {@link #multiplyBy(double)}, {@link #dropNoise()} and iteration) are
+ * atomic per key, but are not isolated from concurrent updates. For example,
+ * an update to a key that is concurrently dropped as noise may be lost.
+ * </p>
+ *
+ * @author Yoav Artzi
+ */
+class ConcurrentHashVector implements IHashVector {
+	public static final IHashVectorImmutable				EMPTY				= new ConcurrentHashVector();
+	private static final long								serialVersionUID	= -3183573938962498542L;
+	private final ConcurrentHashMap<KeyArgs, AtomicDouble>	values;
+
+	ConcurrentHashVector() {
+		this.values = new ConcurrentHashMap<KeyArgs, AtomicDouble>();
+	}
+
+	ConcurrentHashVector(IHashVectorImmutable other) {
+		this.values = new ConcurrentHashMap<KeyArgs, AtomicDouble>(
+				Math.max(other.size(), 16));
+		other.iterate((key, value) -> values.put(key, new AtomicDouble(value)));
+	}
+
+	/**
+	 * Atomically replace the value of the cell with the function of its
+	 * current value.
+	 */
+	private static void update(AtomicDouble cell, ValueFunction function) {
+		double current;
+		do {
+			current = cell.get();
+		} while (!cell.compareAndSet(current, function.apply(current)));
+	}
+
+	@Override
+	public void add(final double num) {
+		for (final AtomicDouble cell : values.values()) {
+			cell.addAndGet(num);
+		}
+	}
+
+	@Override
+	public void add(KeyArgs key, double value) {
+		getCell(key).addAndGet(value);
+	}
+
+	@Override
+	public void add(String arg1, double value) {
+		add(new KeyArgs(arg1), value);
+	}
+
+	@Override
+	public void add(String arg1, String arg2, double value) {
+		add(new KeyArgs(arg1, arg2), value);
+	}
+
+	@Override
+	public void add(String arg1, String arg2, String arg3, double value) {
+		add(new KeyArgs(arg1, arg2, arg3), value);
+	}
+
+	@Override
+	public void add(String arg1, String arg2, String arg3, String arg4,
+			double value) {
+		add(new KeyArgs(arg1, arg2, arg3, arg4), value);
+	}
+
+	@Override
+	public void add(String arg1, String arg2, String arg3, String arg4,
+			String arg5, double value) {
+		add(new KeyArgs(arg1, arg2, arg3, arg4, arg5), value);
+	}
+
+	@Override
+	public ConcurrentHashVector addTimes(final double times,
+			IHashVectorImmutable other) {
+		final ConcurrentHashVector ret = new ConcurrentHashVector(this);
+		other.addTimesInto(times, ret);
+		return ret;
+	}
+
+	@Override
+	public void addTimesInto(final double times, final IHashVector other) {
+		for (final Entry<KeyArgs, AtomicDouble> entry : values.entrySet()) {
+			other.add(entry.getKey(), times * entry.getValue().get());
+		}
+	}
+
+	@Override
+	public void applyFunction(final ValueFunction function) {
+		for (final AtomicDouble cell : values.values()) {
+			update(cell, function);
+		}
+	}
+
+	@Override
+	public void clear() {
+		values.clear();
+	}
+
+	@Override
+	public boolean contains(KeyArgs key) {
+		return values.containsKey(key);
+	}
+
+	@Override
+	public boolean contains(String arg1) {
+		return contains(new KeyArgs(arg1));
+	}
+
+	@Override
+	public boolean contains(String arg1, String arg2) {
+		return contains(new KeyArgs(arg1, arg2));
+	}
+
+	@Override
+	public boolean contains(String arg1, String arg2, String arg3) {
+		return contains(new KeyArgs(arg1, arg2, arg3));
+	}
+
+	@Override
+	public boolean contains(String arg1, String arg2, String arg3, String arg4) {
+		return contains(new KeyArgs(arg1, arg2, arg3, arg4));
+	}
+
+	@Override
+	public boolean contains(String arg1, String arg2, String arg3, String arg4,
+			String arg5) {
+		return contains(new KeyArgs(arg1, arg2, arg3, arg4, arg5));
+	}
+
+	@Override
+	public void divideBy(final double d) {
+		applyFunction(value -> value / d);
+	}
+
+	@Override
+	public double dotProduct(IHashVectorImmutable other) {
+		// Never copy this vector, it's usually the (large) parameter vector.
+		// Instead, iterate over the smaller vector and look up the other.
+		double sum = 0.0;
+		if (size() <= other.size()) {
+			for (final Entry<KeyArgs, AtomicDouble> entry : values
+					.entrySet()) {
+				sum += entry.getValue().get() * other.get(entry.getKey());
+			}
+		} else {
+			for (final Pair<KeyArgs, Double> entry : other) {
+				sum += entry.second() * get(entry.first());
+			}
+		}
+		return sum;
+	}
+
+	@Override
+	public void dropNoise() {
+		values.values().removeIf(cell -> Math.abs(cell.get()) < NOISE);
+	}
+
+	@Override
+	public void dropZeros() {
+		values.values().removeIf(cell -> cell.get() == ZERO_VALUE);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final ConcurrentHashVector other = (ConcurrentHashVector) obj;
+		if (values.size() != other.values.size()) {
+			return false;
+		}
+		for (final Entry<KeyArgs, AtomicDouble> entry : values.entrySet()) {
+			final AtomicDouble otherCell = other.values.get(entry.getKey());
+			if (otherCell == null || Double.compare(entry.getValue().get(),
+					otherCell.get()) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public double get(KeyArgs key) {
+		final AtomicDouble cell = values.get(key);
+		return cell == null ? ZERO_VALUE : cell.get();
+	}
+
+	@Override
+	public double get(KeyArgs key, double defaultReturn) {
+		final AtomicDouble cell = values.get(key);
+		return cell == null ? defaultReturn : cell.get();
+	}
+
+	@Override
+	public double get(String arg1) {
+		return get(new KeyArgs(arg1));
+	}
+
+	@Override
+	public double get(String arg1, double defaultReturn) {
+		return get(new KeyArgs(arg1), defaultReturn);
+	}
+
+	@Override
+	public double get(String arg1, String arg2) {
+		return get(new KeyArgs(arg1, arg2));
+	}
+
+	@Override
+	public double get(String arg1, String arg2, double defaultReturn) {
+		return get(new KeyArgs(arg1, arg2), defaultReturn);
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3) {
+		return get(new KeyArgs(arg1, arg2, arg3));
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3,
+			double defaultReturn) {
+		return get(new KeyArgs(arg1, arg2, arg3), defaultReturn);
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3, String arg4) {
+		return get(new KeyArgs(arg1, arg2, arg3, arg4));
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3, String arg4,
+			double defaultReturn) {
+		return get(new KeyArgs(arg1, arg2, arg3, arg4), defaultReturn);
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3, String arg4,
+			String arg5) {
+		return get(new KeyArgs(arg1, arg2, arg3, arg4, arg5));
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3, String arg4,
+			String arg5, double defaultReturn) {
+		return get(new KeyArgs(arg1, arg2, arg3, arg4, arg5), defaultReturn);
+	}
+
+	@Override
+	public IHashVector getAll(KeyArgs partialKey) {
+		return filter(key -> partialKey.contains(key));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1) {
+		return filter(key -> arg1.equals(key.arg1));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1, final String arg2) {
+		return filter(key -> arg1.equals(key.arg1) && arg2.equals(key.arg2));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1, final String arg2,
+			final String arg3) {
+		return filter(key -> arg1.equals(key.arg1) && arg2.equals(key.arg2)
+				&& arg3.equals(key.arg3));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1, final String arg2,
+			final String arg3, final String arg4) {
+		return filter(key -> arg1.equals(key.arg1) && arg2.equals(key.arg2)
+				&& arg3.equals(key.arg3) && arg4.equals(key.arg4));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1, final String arg2,
+			final String arg3, final String arg4, final String arg5) {
+		return filter(key -> arg1.equals(key.arg1) && arg2.equals(key.arg2)
+				&& arg3.equals(key.arg3) && arg4.equals(key.arg4)
+				&& arg5.equals(key.arg5));
+	}
+
+	@Override
+	public int hashCode() {
+		int result = 0;
+		for (final Entry<KeyArgs, AtomicDouble> entry : values.entrySet()) {
+			result += entry.getKey().hashCode()
+					^ Double.hashCode(entry.getValue().get());
+		}
+		return result;
+	}
+
+	@Override
+	public boolean isBad() {
+		for (final AtomicDouble cell : values.values()) {
+			final double value = cell.get();
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isInit() {
+		return false;
+	}
+
+	@Override
+	public void iterate(EntryFunction function) {
+		for (final Entry<KeyArgs, AtomicDouble> entry : values.entrySet()) {
+			function.apply(entry.getKey(), entry.getValue().get());
+		}
+	}
+
+	@Override
+	public Iterator<Pair<KeyArgs, Double>> iterator() {
+		return new Iterator<Pair<KeyArgs, Double>>() {
+			private final Iterator<Entry<KeyArgs, AtomicDouble>>	innerIterator	= values
+					.entrySet().iterator();
+
+			@Override
+			public boolean hasNext() {
+				return innerIterator.hasNext();
+			}
+
+			@Override
+			public Pair<KeyArgs, Double> next() {
+				final Entry<KeyArgs, AtomicDouble> entry = innerIterator
+						.next();
+				return Pair.of(entry.getKey(), entry.getValue().get());
+			}
+
+			@Override
+			public void remove() {
+				innerIterator.remove();
+			}
+		};
+	}
+
+	@Override
+	public double l1Norm() {
+		double sum = 0.0;
+		for (final AtomicDouble cell : values.values()) {
+			sum += Math.abs(cell.get());
+		}
+		return sum;
+	}
+
+	@Override
+	public void multiplyBy(final double value) {
+		applyFunction(current -> current * value);
+	}
+
+	@Override
+	public ConcurrentHashVector pairWiseProduct(
+			final IHashVectorImmutable other) {
+		final ConcurrentHashVector ret = new ConcurrentHashVector();
+		for (final Entry<KeyArgs, AtomicDouble> entry : values.entrySet()) {
+			if (other.contains(entry.getKey())) {
+				ret.values.put(entry.getKey(), new AtomicDouble(
+						entry.getValue().get() * other.get(entry.getKey())));
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public String printValues(IHashVectorImmutable other) {
+		final StringBuilder ret = new StringBuilder();
+		ret.append("{");
+		for (final Iterator<Pair<KeyArgs, Double>> iterator = other
+				.iterator(); iterator.hasNext();) {
+			final Pair<KeyArgs, Double> entry = iterator.next();
+			ret.append(entry.first()).append("=");
+			final AtomicDouble cell = values.get(entry.first());
+			if (cell == null) {
+				ret.append(ZERO_VALUE);
+			} else {
+				ret.append(String.format("%.3f", cell.get()));
+			}
+			ret.append("(").append(String.format("%.3f", entry.second()))
+					.append(")");
+			if (iterator.hasNext()) {
+				ret.append(",");
+			}
+		}
+		ret.append("}");
+		return ret.toString();
+	}
+
+	@Override
+	public void set(KeyArgs key, double value) {
+		getCell(key).set(value);
+	}
+
+	@Override
+	public void set(String arg1, double value) {
+		set(new KeyArgs(arg1), value);
+	}
+
+	@Override
+	public void set(String arg1, String arg2, double value) {
+		set(new KeyArgs(arg1, arg2), value);
+	}
+
+	@Override
+	public void set(String arg1, String arg2, String arg3, double value) {
+		set(new KeyArgs(arg1, arg2, arg3), value);
+	}
+
+	@Override
+	public void set(String arg1, String arg2, String arg3, String arg4,
+			double value) {
+		set(new KeyArgs(arg1, arg2, arg3, arg4), value);
+	}
+
+	@Override
+	public void set(String arg1, String arg2, String arg3, String arg4,
+			String arg5, double value) {
+		set(new KeyArgs(arg1, arg2, arg3, arg4, arg5), value);
+	}
+
+	@Override
+	public int size() {
+		return values.size();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder ret = new StringBuilder();
+		ret.append("{");
+		for (final Iterator<Entry<KeyArgs, AtomicDouble>> iterator = values
+				.entrySet().iterator(); iterator.hasNext();) {
+			final Entry<KeyArgs, AtomicDouble> entry = iterator.next();
+			ret.append(entry.getKey());
+			ret.append("=");
+			ret.append(String.format("%.3f", entry.getValue().get()));
+			if (iterator.hasNext()) {
+				ret.append(", ");
+			}
+		}
+		ret.append("}");
+		return ret.toString();
+	}
+
+	@Override
+	public boolean valuesInRange(final double min, final double max) {
+		for (final AtomicDouble cell : values.values()) {
+			final double value = cell.get();
+			if (value < min || value > max) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private ConcurrentHashVector filter(Predicate<KeyArgs> filter) {
+		final ConcurrentHashVector result = new ConcurrentHashVector();
+		for (final Entry<KeyArgs, AtomicDouble> entry : values.entrySet()) {
+			if (filter.test(entry.getKey())) {
+				result.values.put(entry.getKey(),
+						new AtomicDouble(entry.getValue().get()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the cell of the given key. If the key is not present, a new cell is
+	 * created with the value {@link #ZERO_VALUE}. If several threads
+	 * introduce the same key, they all get the same cell.
+	 */
+	private AtomicDouble getCell(KeyArgs key) {
+		final AtomicDouble cell = values.get(key);
+		if (cell != null) {
+			return cell;
+		}
+		final AtomicDouble newCell = new AtomicDouble(ZERO_VALUE);
+		final AtomicDouble existing = values.putIfAbsent(key, newCell);
+		return existing == null ? newCell : existing;
+	}
+}
@@ -31,8 +31,12 @@ public class HashVectorFactory {
 
 	public static IHashVector create() {
 		switch (DEFAULT) {
+			case CONCURRENT:
+				return createConcurrent();
 			case FAST_TREE:
 				return createFastTree();
+			case INDEXED:
+				return createIndexed();
 			case TREE:
 				return createTree();
 			case TROVE:
@@ -44,8 +48,12 @@ public class HashVectorFactory {
 
 	public static IHashVector create(IHashVectorImmutable vector) {
 		switch (DEFAULT) {
+			case CONCURRENT:
+				return createConcurrent(vector);
 			case FAST_TREE:
 				return createFastTree(vector);
+			case INDEXED:
+				return createIndexed(vector);
 			case TREE:
 				return createTree(vector);
 			case TROVE:
@@ -55,6 +63,14 @@ public class HashVectorFactory {
 		}
 	}
 
+	public static IHashVector createConcurrent() {
+		return new ConcurrentHashVector();
+	}
+
+	public static IHashVector createConcurrent(IHashVectorImmutable vector) {
+		return new ConcurrentHashVector(vector);
+	}
+
 	public static IHashVector createFastTree() {
 		return new FastTreeHashVector();
 	}
@@ -63,6 +79,14 @@ public class HashVectorFactory {
 		return new FastTreeHashVector(vector);
 	}
 
+	public static IHashVector createIndexed() {
+		return new IndexedHashVector();
+	}
+
+	public static IHashVector createIndexed(IHashVectorImmutable vector) {
+		return new IndexedHashVector(vector);
+	}
+
 	public static IHashVector createTree() {
 		return new TreeHashVector();
 	}
@@ -96,8 +120,12 @@ public class HashVectorFactory {
 
 	public static IHashVectorImmutable empty() {
 		switch (DEFAULT) {
+			case CONCURRENT:
+				return ConcurrentHashVector.EMPTY;
 			case FAST_TREE:
 				return FastTreeHashVector.EMPTY;
+			case INDEXED:
+				return IndexedHashVector.EMPTY;
 			case TREE:
 				return TreeHashVector.EMPTY;
 			case TROVE:
@@ -107,6 +135,14 @@ public class HashVectorFactory {
 		}
 	}
 
+	/**
+	 * @return 'true' iff the vector supports concurrent reads and updates (see
+	 *         {@link #createConcurrent()}).
+	 */
+	public static boolean isConcurrent(IHashVectorImmutable vector) {
+		return vector instanceof ConcurrentHashVector;
+	}
+
 	public static IHashVector read(File file) throws IOException {
 		try (final BufferedReader reader = new BufferedReader(new FileReader(
 				file))) {
@@ -126,8 +162,11 @@ public class HashVectorFactory {
 	public static enum Type {
 		// Only general-purpose hash vectors are enumerated here. For example,
 		// vectors with special initialization are not, since they are
-		// specifically designed to store parameters.
-		FAST_TREE, TREE, TROVE;
+		// specifically designed to store parameters. INDEXED vectors map keys
+		// to integers using the global KeyArgsIndexer, and are the fastest
+		// for arithmetic between vectors (e.g., scoring and updates).
+		// CONCURRENT vectors support concurrent reads and lock-free updates.
+		CONCURRENT, FAST_TREE, INDEXED, TREE, TROVE;
 	}
 
 }
@@ -0,0 +1,574 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.base.hashvector;
+
+import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+import gnu.trove.procedure.TIntDoubleProcedure;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+import edu.cornell.cs.nlp.utils.composites.Pair;
+
+/**
+ * Sparse vector over the integer feature space defined by
+ * {@link KeyArgsIndexer}. Values are stored in a primitive int-to-double map,
+ * so arithmetic between two indexed vectors (e.g., dot products and
+ * {@link #addTimesInto(double, IHashVector)}) never hashes or compares
+ * {@link KeyArgs}. Since IDs are process-specific, the serialized form of the
+ * vector contains the keys themselves, and they are re-indexed when the vector
+ * is read.
+ *
+ * @author Yoav Artzi
+ */
+class IndexedHashVector implements IHashVector {
+	public static final IHashVectorImmutable	EMPTY				= new IndexedHashVector();
+	private static final long					serialVersionUID	= 6305213815377009125L;
+	private transient TIntDoubleHashMap			values;
+
+	IndexedHashVector() {
+		this.values = createMap(10);
+	}
+
+	IndexedHashVector(IHashVectorImmutable other) {
+		if (other instanceof IndexedHashVector) {
+			this.values = new TIntDoubleHashMap(
+					((IndexedHashVector) other).values);
+		} else {
+			this.values = createMap(other.size());
+			for (final Pair<KeyArgs, Double> o : other) {
+				values.put(KeyArgsIndexer.index(o.first()), o.second());
+			}
+		}
+	}
+
+	private static TIntDoubleHashMap createMap(int initialCapacity) {
+		return new TIntDoubleHashMap(Math.max(initialCapacity, 10), 0.5f,
+				KeyArgsIndexer.NO_INDEX, ZERO_VALUE);
+	}
+
+	@Override
+	public void add(final double num) {
+		values.transformValues(value -> value + num);
+	}
+
+	@Override
+	public void add(KeyArgs key, double value) {
+		values.adjustOrPutValue(KeyArgsIndexer.index(key), value, value);
+	}
+
+	@Override
+	public void add(String arg1, double value) {
+		add(new KeyArgs(arg1), value);
+	}
+
+	@Override
+	public void add(String arg1, String arg2, double value) {
+		add(new KeyArgs(arg1, arg2), value);
+	}
+
+	@Override
+	public void add(String arg1, String arg2, String arg3, double value) {
+		add(new KeyArgs(arg1, arg2, arg3), value);
+	}
+
+	@Override
+	public void add(String arg1, String arg2, String arg3, String arg4,
+			double value) {
+		add(new KeyArgs(arg1, arg2, arg3, arg4), value);
+	}
+
+	@Override
+	public void add(String arg1, String arg2, String arg3, String arg4,
+			String arg5, double value) {
+		add(new KeyArgs(arg1, arg2, arg3, arg4, arg5), value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public IndexedHashVector addTimes(final double times,
+			IHashVectorImmutable other) {
+		if (other instanceof IndexedHashVector) {
+			final IndexedHashVector ret = new IndexedHashVector(this);
+			((IndexedHashVector) other).values.forEachEntry((a, b) -> {
+				final double val = times * b;
+				ret.values.adjustOrPutValue(a, val, val);
+				return true;
+			});
+			return ret;
+		} else {
+			return addTimes(times, new IndexedHashVector(other));
+		}
+	}
+
+	@Override
+	public void addTimesInto(final double times, final IHashVector other) {
+		if (other instanceof IndexedHashVector) {
+			final TIntDoubleHashMap otherValues = ((IndexedHashVector) other).values;
+			values.forEachEntry((a, b) -> {
+				final double val = times * b;
+				otherValues.adjustOrPutValue(a, val, val);
+				return true;
+			});
+		} else {
+			// Less efficient when we can't access the underlying map.
+			values.forEachEntry((a, b) -> {
+				other.add(KeyArgsIndexer.lookup(a), times * b);
+				return true;
+			});
+		}
+	}
+
+	@Override
+	public void applyFunction(final ValueFunction function) {
+		values.transformValues(value -> function.apply(value));
+	}
+
+	@Override
+	public void clear() {
+		values.clear();
+	}
+
+	@Override
+	public boolean contains(KeyArgs key) {
+		final int id = KeyArgsIndexer.indexIfPresent(key);
+		return id != KeyArgsIndexer.NO_INDEX && values.containsKey(id);
+	}
+
+	@Override
+	public boolean contains(String arg1) {
+		return contains(new KeyArgs(arg1));
+	}
+
+	@Override
+	public boolean contains(String arg1, String arg2) {
+		return contains(new KeyArgs(arg1, arg2));
+	}
+
+	@Override
+	public boolean contains(String arg1, String arg2, String arg3) {
+		return contains(new KeyArgs(arg1, arg2, arg3));
+	}
+
+	@Override
+	public boolean contains(String arg1, String arg2, String arg3, String arg4) {
+		return contains(new KeyArgs(arg1, arg2, arg3, arg4));
+	}
+
+	@Override
+	public boolean contains(String arg1, String arg2, String arg3, String arg4,
+			String arg5) {
+		return contains(new KeyArgs(arg1, arg2, arg3, arg4, arg5));
+	}
+
+	@Override
+	public void divideBy(final double d) {
+		values.transformValues(value -> value / d);
+	}
+
+	@Override
+	public double dotProduct(IHashVectorImmutable other) {
+		if (size() <= other.size()) {
+			if (other instanceof IndexedHashVector) {
+				final VectorMultiplyProcedure procedure = new VectorMultiplyProcedure(
+						((IndexedHashVector) other).values);
+				values.forEachEntry(procedure);
+				return procedure.sum;
+			} else {
+				return dotProduct(new IndexedHashVector(other));
+			}
+		} else {
+			return other.dotProduct(this);
+		}
+	}
+
+	@Override
+	public void dropNoise() {
+		values.retainEntries((a, b) -> Math.abs(b) >= NOISE);
+	}
+
+	@Override
+	public void dropZeros() {
+		values.retainEntries((a, b) -> Math.abs(b) != ZERO_VALUE);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		final IndexedHashVector other = (IndexedHashVector) obj;
+		return values.equals(other.values);
+	}
+
+	@Override
+	public double get(KeyArgs key) {
+		// The index is never used as a key, so the map returns ZERO_VALUE for
+		// unknown keys.
+		return values.get(KeyArgsIndexer.indexIfPresent(key));
+	}
+
+	@Override
+	public double get(KeyArgs key, double defaultReturn) {
+		final int id = KeyArgsIndexer.indexIfPresent(key);
+		if (id != KeyArgsIndexer.NO_INDEX && values.containsKey(id)) {
+			return values.get(id);
+		} else {
+			return defaultReturn;
+		}
+	}
+
+	@Override
+	public double get(String arg1) {
+		return get(new KeyArgs(arg1));
+	}
+
+	@Override
+	public double get(String arg1, double defaultReturn) {
+		return get(new KeyArgs(arg1), defaultReturn);
+	}
+
+	@Override
+	public double get(String arg1, String arg2) {
+		return get(new KeyArgs(arg1, arg2));
+	}
+
+	@Override
+	public double get(String arg1, String arg2, double defaultReturn) {
+		return get(new KeyArgs(arg1, arg2), defaultReturn);
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3) {
+		return get(new KeyArgs(arg1, arg2, arg3));
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3,
+			double defaultReturn) {
+		return get(new KeyArgs(arg1, arg2, arg3), defaultReturn);
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3, String arg4) {
+		return get(new KeyArgs(arg1, arg2, arg3, arg4));
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3, String arg4,
+			double defaultReturn) {
+		return get(new KeyArgs(arg1, arg2, arg3, arg4), defaultReturn);
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3, String arg4,
+			String arg5) {
+		return get(new KeyArgs(arg1, arg2, arg3, arg4, arg5));
+	}
+
+	@Override
+	public double get(String arg1, String arg2, String arg3, String arg4,
+			String arg5, double defaultReturn) {
+		return get(new KeyArgs(arg1, arg2, arg3, arg4, arg5), defaultReturn);
+	}
+
+	@Override
+	public IHashVector getAll(KeyArgs partialKey) {
+		return filter(key -> partialKey.contains(key));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1) {
+		return filter(key -> arg1.equals(key.arg1));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1, final String arg2) {
+		return filter(key -> arg1.equals(key.arg1) && arg2.equals(key.arg2));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1, final String arg2,
+			final String arg3) {
+		return filter(key -> arg1.equals(key.arg1) && arg2.equals(key.arg2)
+				&& arg3.equals(key.arg3));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1, final String arg2,
+			final String arg3, final String arg4) {
+		return filter(key -> arg1.equals(key.arg1) && arg2.equals(key.arg2)
+				&& arg3.equals(key.arg3) && arg4.equals(key.arg4));
+	}
+
+	@Override
+	public IHashVector getAll(final String arg1, final String arg2,
+			final String arg3, final String arg4, final String arg5) {
+		return filter(key -> arg1.equals(key.arg1) && arg2.equals(key.arg2)
+				&& arg3.equals(key.arg3) && arg4.equals(key.arg4)
+				&& arg5.equals(key.arg5));
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + values.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean isBad() {
+		return !values.forEachValue(
+				value -> !Double.isNaN(value) && !Double.isInfinite(value));
+	}
+
+	@Override
+	public boolean isInit() {
+		return false;
+	}
+
+	@Override
+	public void iterate(final EntryFunction function) {
+		values.forEachEntry((a, b) -> {
+			function.apply(KeyArgsIndexer.lookup(a), b);
+			return true;
+		});
+	}
+
+	@Override
+	public Iterator<Pair<KeyArgs, Double>> iterator() {
+		return new Iterator<Pair<KeyArgs, Double>>() {
+			private final TIntDoubleIterator	innerIterator	= values.iterator();
+
+			@Override
+			public boolean hasNext() {
+				return innerIterator.hasNext();
+			}
+
+			@Override
+			public Pair<KeyArgs, Double> next() {
+				if (innerIterator.hasNext()) {
+					innerIterator.advance();
+					return Pair.of(KeyArgsIndexer.lookup(innerIterator.key()),
+							innerIterator.value());
+				} else {
+					return null;
+				}
+			}
+
+			@Override
+			public void remove() {
+				innerIterator.remove();
+			}
+		};
+	}
+
+	@Override
+	public double l1Norm() {
+		final double[] sum = new double[] { 0.0 };
+		values.forEachValue(value -> {
+			sum[0] += Math.abs(value);
+			return true;
+		});
+		return sum[0];
+	}
+
+	@Override
+	public void multiplyBy(final double d) {
+		values.transformValues(value -> value * d);
+	}
+
+	@Override
+	public IndexedHashVector pairWiseProduct(final IHashVectorImmutable other) {
+		if (other instanceof IndexedHashVector) {
+			final IndexedHashVector p = (IndexedHashVector) other;
+			if (size() <= other.size()) {
+				final IndexedHashVector ret = new IndexedHashVector();
+				values.forEachEntry((a, b) -> {
+					if (p.values.containsKey(a)) {
+						ret.values.put(a, b * p.values.get(a));
+					}
+					return true;
+				});
+				return ret;
+			} else {
+				return p.pairWiseProduct(this);
+			}
+		} else {
+			return pairWiseProduct(new IndexedHashVector(other));
+		}
+	}
+
+	@Override
+	public String printValues(IHashVectorImmutable other) {
+		if (other instanceof IndexedHashVector) {
+			final IndexedHashVector p = (IndexedHashVector) other;
+			final StringBuilder ret = new StringBuilder();
+			ret.append("{");
+			p.values.forEachEntry(new TIntDoubleProcedure() {
+				boolean	first	= true;
+
+				@Override
+				public boolean execute(int a, double b) {
+					if (!first) {
+						ret.append(",");
+					}
+					first = false;
+					ret.append(KeyArgsIndexer.lookup(a)).append("=");
+					if (values.containsKey(a)) {
+						ret.append(String.format("%.3f", values.get(a)));
+					} else {
+						ret.append(ZERO_VALUE);
+					}
+					ret.append("(").append(String.format("%.3f", b))
+							.append(")");
+					return true;
+				}
+			});
+			ret.append("}");
+			return ret.toString();
+		} else {
+			return printValues(new IndexedHashVector(other));
+		}
+	}
+
+	@Override
+	public void set(KeyArgs key, double value) {
+		values.put(KeyArgsIndexer.index(key), value);
+	}
+
+	@Override
+	public void set(String arg1, double value) {
+		set(new KeyArgs(arg1), value);
+	}
+
+	@Override
+	public void set(String arg1, String arg2, double value) {
+		set(new KeyArgs(arg1, arg2), value);
+	}
+
+	@Override
+	public void set(String arg1, String arg2, String arg3, double value) {
+		set(new KeyArgs(arg1, arg2, arg3), value);
+	}
+
+	@Override
+	public void set(String arg1, String arg2, String arg3, String arg4,
+			double value) {
+		set(new KeyArgs(arg1, arg2, arg3, arg4), value);
+	}
+
+	@Override
+	public void set(String arg1, String arg2, String arg3, String arg4,
+			String arg5, double value) {
+		set(new KeyArgs(arg1, arg2, arg3, arg4, arg5), value);
+	}
+
+	@Override
+	public int size() {
+		return values.size();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder ret = new StringBuilder();
+		ret.append("{");
+		values.forEachEntry(new TIntDoubleProcedure() {
+			boolean	notFirst	= false;
+
+			@Override
+			public boolean execute(int a, double b) {
+				if (notFirst) {
+					ret.append(", ");
+				}
+				ret.append(KeyArgsIndexer.lookup(a));
+				ret.append("=");
+				ret.append(String.format("%.3f", b));
+				notFirst = true;
+				return true;
+			}
+		});
+		ret.append("}");
+		return ret.toString();
+	}
+
+	@Override
+	public boolean valuesInRange(final double min, final double max) {
+		return values.forEachValue(value -> value >= min && value <= max);
+	}
+
+	private IndexedHashVector filter(Predicate<KeyArgs> filter) {
+		final IndexedHashVector result = new IndexedHashVector();
+		values.forEachEntry((id, value) -> {
+			if (filter.test(KeyArgsIndexer.lookup(id))) {
+				result.values.put(id, value);
+			}
+			return true;
+		});
+		return result;
+	}
+
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		final int size = in.readInt();
+		values = createMap(size);
+		for (int i = 0; i < size; ++i) {
+			final KeyArgs key = (KeyArgs) in.readObject();
+			values.put(KeyArgsIndexer.index(key), in.readDouble());
+		}
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(values.size());
+		final TIntDoubleIterator iterator = values.iterator();
+		while (iterator.hasNext()) {
+			iterator.advance();
+			out.writeObject(KeyArgsIndexer.lookup(iterator.key()));
+			out.writeDouble(iterator.value());
+		}
+	}
+
+	private static class VectorMultiplyProcedure
+			implements TIntDoubleProcedure {
+		private final TIntDoubleHashMap	other;
+		private double					sum	= 0.0;
+
+		public VectorMultiplyProcedure(TIntDoubleHashMap other) {
+			this.other = other;
+		}
+
+		@Override
+		public boolean execute(int a, double b) {
+			// If 'a' is not in other, Trove returns ZERO_VALUE.
+			sum += b * other.get(a);
+			return true;
+		}
+	}
+}
@@ -43,6 +43,12 @@ public final class KeyArgs implements Comparable<KeyArgs>, Serializable {
 
 	final int								hashCode;
 
+	/**
+	 * Cached ID assigned by {@link KeyArgsIndexer}. 0 if not indexed yet. IDs
+	 * are process-specific, so the cache is never serialized.
+	 */
+	transient int							index;
+
 	public KeyArgs(String arg1) {
 		assert arg1 != null;
 		this.arg1 = arg1;
@@ -239,11 +245,11 @@ public final class KeyArgs implements Comparable<KeyArgs>, Serializable {
 		}
 
 		// arg5
-		if (arg4 == null) {
-			if (other.arg4 != null) {
+		if (arg5 == null) {
+			if (other.arg5 != null) {
 				return false;
 			}
-		} else if (!arg4.equals(other.arg4)) {
+		} else if (!arg5.equals(other.arg5)) {
 			return false;
 		}
 
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.base.hashvector;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Global interner that maps each {@link KeyArgs} to a stable positive integer
+ * ID. IDs are only stable within a single process. Vectors that index their
+ * keys (e.g., {@link IndexedHashVector}) must therefore serialize the
+ * {@link KeyArgs} themselves and re-index them when read. The ID
+ * {@value #NO_INDEX} is never assigned and stands for a key that was never
+ * indexed. The index only grows, which matches the feature space of a model.
+ *
+ * @author Yoav Artzi
+ */
+public final class KeyArgsIndexer {
+
+	/**
+	 * Returned for keys that have no ID.
+	 */
+	public static final int										NO_INDEX	= 0;
+
+	private static final ConcurrentHashMap<KeyArgs, Integer>	ids			= new ConcurrentHashMap<>();
+
+	/**
+	 * Reverse mapping. Written under {@link #lock} before the ID is published
+	 * through {@link #ids}, so readers that obtained an ID always observe its
+	 * key.
+	 */
+	private static volatile KeyArgs[]							keys		= new KeyArgs[1024];
+
+	private static final Object									lock		= new Object();
+
+	private static int											nextId		= NO_INDEX + 1;
+
+	private KeyArgsIndexer() {
+		// Service class.
+	}
+
+	/**
+	 * Returns the ID of the given key, assigning a new one if the key was
+	 * never indexed.
+	 */
+	public static int index(KeyArgs key) {
+		final int cached = key.index;
+		if (cached != NO_INDEX) {
+			return cached;
+		}
+
+		Integer id = ids.get(key);
+		if (id == null) {
+			synchronized (lock) {
+				id = ids.get(key);
+				if (id == null) {
+					final int newId = nextId++;
+					KeyArgs[] current = keys;
+					if (newId >= current.length) {
+						current = Arrays.copyOf(current, current.length * 2);
+					}
+					current[newId] = key;
+					keys = current;
+					ids.put(key, newId);
+					id = newId;
+				}
+			}
+		}
+		key.index = id;
+		return id;
+	}
+
+	/**
+	 * Returns the ID of the given key, or {@link #NO_INDEX} if it was never
+	 * indexed. Unlike {@link #index(KeyArgs)}, never grows the index, so it
+	 * should be used for read-only lookups.
+	 */
+	public static int indexIfPresent(KeyArgs key) {
+		final int cached = key.index;
+		if (cached != NO_INDEX) {
+			return cached;
+		}
+
+		final Integer id = ids.get(key);
+		if (id == null) {
+			return NO_INDEX;
+		}
+		key.index = id;
+		return id;
+	}
+
+	/**
+	 * Returns the canonical instance of the given key.
+	 */
+	public static KeyArgs intern(KeyArgs key) {
+		return keys[index(key)];
+	}
+
+	/**
+	 * Returns the key for the given ID.
+	 */
+	public static KeyArgs lookup(int id) {
+		final KeyArgs[] current = keys;
+		if (id <= NO_INDEX || id >= current.length || current[id] == null) {
+			throw new IllegalArgumentException("Unknown key ID: " + id);
+		}
+		return current[id];
+	}
+
+	/**
+	 * Number of indexed keys.
+	 */
+	public static int size() {
+		return ids.size();
+	}
+
+}
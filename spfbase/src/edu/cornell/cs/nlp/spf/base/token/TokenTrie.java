@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.base.token;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A map from {@link TokenSeq}s to values, stored as a trie over tokens. Beyond
+ * the usual map operations, the trie supports enumerating the values of all
+ * token sequences that start at a given index of a sentence in a single walk,
+ * without creating a {@link TokenSeq} for each span. Similar to
+ * {@link HashMap}, the trie is not synchronized. Concurrent reads are safe as
+ * long as there are no concurrent modifications.
+ *
+ * @author Yoav Artzi
+ * @param <V>
+ *            Value type.
+ */
+public class TokenTrie<V> {
+
+	private final Node<V>	root	= new Node<V>();
+	private int				size	= 0;
+
+	public void clear() {
+		root.children = null;
+		root.value = null;
+		size = 0;
+	}
+
+	public V computeIfAbsent(TokenSeq tokens,
+			Function<? super TokenSeq, ? extends V> mappingFunction) {
+		final Node<V> node = getNode(tokens, true);
+		if (node.value == null) {
+			final V value = mappingFunction.apply(tokens);
+			if (value != null) {
+				node.value = value;
+				++size;
+			}
+		}
+		return node.value;
+	}
+
+	public boolean containsKey(TokenSeq tokens) {
+		return get(tokens) != null;
+	}
+
+	/**
+	 * Iterates over all token sequences that start at index <code>start</code>
+	 * of the given tokens and are present in the trie. For each such sequence,
+	 * the consumer is given its value and its exclusive end index. Sequences
+	 * are visited in increasing length.
+	 */
+	public void forEachPrefix(TokenSeq tokens, int start,
+			ObjIntConsumer<? super V> consumer) {
+		final int length = tokens.size();
+		Node<V> node = root;
+		for (int i = start; i < length; ++i) {
+			node = node.getChild(tokens.get(i));
+			if (node == null) {
+				return;
+			}
+			if (node.value != null) {
+				consumer.accept(node.value, i + 1);
+			}
+		}
+	}
+
+	public V get(TokenSeq tokens) {
+		final Node<V> node = getNode(tokens, false);
+		return node == null ? null : node.value;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public V put(TokenSeq tokens, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("null values are not supported");
+		}
+		final Node<V> node = getNode(tokens, true);
+		final V old = node.value;
+		node.value = value;
+		if (old == null) {
+			++size;
+		}
+		return old;
+	}
+
+	/**
+	 * Removes the value of the given sequence. Internal nodes are not pruned,
+	 * so the structure of the trie only grows.
+	 */
+	public V remove(TokenSeq tokens) {
+		final Node<V> node = getNode(tokens, false);
+		if (node == null || node.value == null) {
+			return null;
+		}
+		final V old = node.value;
+		node.value = null;
+		--size;
+		return old;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private Node<V> getNode(TokenSeq tokens, boolean create) {
+		Node<V> node = root;
+		final int length = tokens.size();
+		for (int i = 0; i < length; ++i) {
+			final String token = tokens.get(i);
+			Node<V> child = node.getChild(token);
+			if (child == null) {
+				if (!create) {
+					return null;
+				}
+				child = new Node<V>();
+				if (node.children == null) {
+					node.children = new HashMap<String, Node<V>>(4);
+				}
+				node.children.put(token, child);
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	private static class Node<V> {
+		private Map<String, Node<V>>	children	= null;
+		private V						value		= null;
+
+		public Node<V> getChild(String token) {
+			return children == null ? null : children.get(token);
+		}
+	}
+
+}
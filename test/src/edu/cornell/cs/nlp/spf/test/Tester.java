@@ -16,7 +16,10 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.test;
 
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
@@ -34,6 +37,8 @@ import edu.cornell.cs.nlp.spf.parser.IParserOutput;
 import edu.cornell.cs.nlp.spf.parser.ccg.IWeightedParseStep;
 import edu.cornell.cs.nlp.spf.parser.ccg.model.IDataItemModel;
 import edu.cornell.cs.nlp.spf.parser.ccg.model.IModelImmutable;
+import edu.cornell.cs.nlp.spf.parser.graph.IGraphDerivation;
+import edu.cornell.cs.nlp.spf.parser.graph.IGraphParserOutput;
 import edu.cornell.cs.nlp.spf.test.stats.ITestingStatistics;
 import edu.cornell.cs.nlp.utils.collections.ListUtils;
 import edu.cornell.cs.nlp.utils.filter.IFilter;
@@ -58,6 +63,12 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 	public static final ILogger LOG = LoggerFactory
 			.create(Tester.class.getName());
 
+	/**
+	 * Number of top parse trees to inspect when the best parse is wrong. 0
+	 * disables k-best logging.
+	 */
+	private final int kBest;
+
 	private final IOutputLogger<MR> outputLogger;
 
 	private final IParser<SAMPLE, MR> parser;
@@ -68,12 +79,14 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 
 	private Tester(IDataCollection<? extends DI> testData,
 			IFilter<SAMPLE> skipParsingFilter, IParser<SAMPLE, MR> parser,
-			IOutputLogger<MR> outputLogger) {
+			IOutputLogger<MR> outputLogger, int kBest) {
 		this.testData = testData;
 		this.skipParsingFilter = skipParsingFilter;
 		this.parser = parser;
 		this.outputLogger = outputLogger;
-		LOG.info("Init Tester:  testData.size()=%d", testData.size());
+		this.kBest = kBest;
+		LOG.info("Init Tester:  testData.size()=%d, kBest=%d",
+				testData.size(), kBest);
 	}
 
 	@Override
@@ -91,6 +104,42 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 		}
 	}
 
+	/**
+	 * Log the distinct logical forms of the top-k parse trees, and the rank of
+	 * the first tree with the correct logical form, if any. Only supported for
+	 * graph-based parser output.
+	 */
+	@SuppressWarnings("unchecked")
+	private void logKBest(DI dataItem, IParserOutput<MR> parserOutput) {
+		if (kBest <= 0 || !(parserOutput instanceof IGraphParserOutput)) {
+			return;
+		}
+
+		final Iterator<? extends IGraphDerivation<MR>> iterator = ((IGraphParserOutput<MR>) parserOutput)
+				.kBestIterator();
+		final Set<MR> logicalForms = new HashSet<MR>();
+		int rank = 0;
+		int correctRank = -1;
+		LOG.info("Top-%d trees:", kBest);
+		while (iterator.hasNext() && rank < kBest) {
+			final IGraphDerivation<MR> tree = iterator.next();
+			++rank;
+			if (logicalForms.add(tree.getSemantics())) {
+				final boolean correct = dataItem.isCorrect(tree.getSemantics());
+				if (correct && correctRank < 0) {
+					correctRank = rank;
+				}
+				LOG.info("%s[%d] [%.2f] %s", correct ? "* " : "  ", rank,
+						tree.getScore(), tree.getSemantics());
+			}
+		}
+		if (correctRank < 0) {
+			LOG.info("Correct logical form not in top-%d trees", kBest);
+		} else {
+			LOG.info("Correct logical form at tree rank %d", correctRank);
+		}
+	}
+
 	private void logParse(ILabeledDataItem<SAMPLE, MR> dataItem,
 			IDerivation<MR> parse, boolean logLexicalItems, String tag,
 			IModelImmutable<SAMPLE, MR> model) {
@@ -150,6 +199,7 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 			}
 			LOG.info("Feats: %s", dataItemModel.getTheta()
 					.printValues(parse.getAverageMaxFeatureVector()));
+			logKBest(dataItem, modelParserOutput);
 		}
 	}
 
@@ -212,6 +262,7 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 					logDerivation(correctParse, dataItemModel);
 				}
 			}
+			logKBest(dataItem, modelParserOutput);
 		} else {
 			// No parses
 			LOG.info("no parses");
@@ -280,6 +331,8 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 			}
 		};
 
+		private int kBest = 0;
+
 		private final IParser<SAMPLE, MR> parser;
 
 		/** Filters which data items are valid for parsing with word skipping */
@@ -295,7 +348,12 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 
 		public Tester<SAMPLE, MR, DI> build() {
 			return new Tester<SAMPLE, MR, DI>(testData, skipParsingFilter,
-					parser, outputLogger);
+					parser, outputLogger, kBest);
+		}
+
+		public Builder<SAMPLE, MR, DI> setKBest(int kBest) {
+			this.kBest = kBest;
+			return this;
 		}
 
 		public Builder<SAMPLE, MR, DI> setOutputLogger(
@@ -349,6 +407,8 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 						.get(parameters.get("skippingFilter")));
 			}
 
+			builder.setKBest(parameters.getAsInteger("kBest", 0));
+
 			return builder.build();
 		}
 
@@ -367,6 +427,8 @@ public class Tester<SAMPLE extends IDataItem<?>, MR, DI extends ILabeledDataItem
 					.addParam("parser", "id", "Parser object")
 					.addParam("skippingFilter", "id",
 							"IFilter used to decide which data items to skip")
+					.addParam("kBest", Integer.class,
+							"Number of top parse trees to log when the best parse is wrong, requires a graph-based parser (default: 0)")
 					.build();
 		}
 
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.base.hashvector;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.utils.composites.Pair;
+
+public class ConcurrentHashVectorTest {
+
+	@Test
+	public void test() {
+		final ConcurrentHashVector vector = new ConcurrentHashVector();
+
+		vector.set("p1", 1.0);
+		vector.set("p1", "p2", "p3", "p4", 2.0);
+
+		assertTrue(vector.get("p1") == 1.0);
+		assertTrue(vector.get("p1", "p2", "p3", "p4") == 2.0);
+		assertTrue(vector.size() == 2);
+
+		vector.set("p2", 3.0);
+
+		final IHashVector p1 = vector.getAll("p1");
+		assertTrue(p1.get("p1") == 1.0);
+		assertTrue(p1.get("p1", "p2", "p3", "p4") == 2.0);
+		assertTrue(p1.size() == 2);
+
+		vector.set("p3", -2.5);
+		Assert.assertEquals(2.5 + 3.0 + 1.0 + 2.0, vector.l1Norm(), 0.0);
+		final ConcurrentHashVector pairwise = vector.pairWiseProduct(vector);
+		for (final Pair<KeyArgs, Double> entry : pairwise) {
+			Assert.assertEquals(entry.second(),
+					Math.pow(vector.get(entry.first()), 2), 0.0);
+		}
+
+		vector.multiplyBy(2.0);
+		Assert.assertEquals(-5.0, vector.get("p3"), 0.0);
+		vector.set("p4", 0.0001);
+		vector.dropNoise();
+		Assert.assertFalse(vector.contains("p4"));
+		Assert.assertEquals(4, vector.size());
+	}
+
+	@Test
+	public void testConcurrentUpdates() {
+		final ConcurrentHashVector vector = new ConcurrentHashVector();
+		final int numThreads = 8;
+		final int numUpdates = 10000;
+		final List<Thread> threads = new LinkedList<Thread>();
+		for (int i = 0; i < numThreads; ++i) {
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < numUpdates; ++j) {
+					vector.add("f", String.valueOf(j % 10), 1.0);
+				}
+			}));
+		}
+		for (final Thread t : threads) {
+			t.start();
+		}
+		for (final Thread t : threads) {
+			try {
+				t.join();
+			} catch (final InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+
+		// No update is lost.
+		Assert.assertEquals(10, vector.size());
+		for (int j = 0; j < 10; ++j) {
+			Assert.assertEquals(numThreads * numUpdates / 10,
+					vector.get("f", String.valueOf(j)), 0.0);
+		}
+	}
+
+	@Test
+	public void testMixedTypes() {
+		final ConcurrentHashVector vector = new ConcurrentHashVector();
+		vector.set("p1", 1.0);
+		vector.set("p1", "p2", 2.0);
+		vector.set("p3", "p4", "p5", -1.0);
+
+		final IHashVector other = HashVectorFactory.createTree();
+		other.set("p1", 3.0);
+		other.set("p3", "p4", "p5", 2.0);
+		other.set("p6", 5.0);
+
+		Assert.assertEquals(1.0, vector.dotProduct(other), 0.0);
+		Assert.assertEquals(1.0, other.dotProduct(vector), 0.0);
+
+		other.addTimesInto(2.0, vector);
+		Assert.assertEquals(7.0, vector.get("p1"), 0.0);
+		Assert.assertEquals(2.0, vector.get("p1", "p2"), 0.0);
+		Assert.assertEquals(3.0, vector.get("p3", "p4", "p5"), 0.0);
+		Assert.assertEquals(10.0, vector.get("p6"), 0.0);
+
+		final ConcurrentHashVector copy = new ConcurrentHashVector(other);
+		Assert.assertEquals(other.size(), copy.size());
+		for (final Pair<KeyArgs, Double> entry : other) {
+			Assert.assertEquals(entry.second(), copy.get(entry.first()), 0.0);
+		}
+		Assert.assertFalse(copy.contains("p7"));
+		Assert.assertEquals(-1.0, copy.get("p7", -1.0), 0.0);
+	}
+
+	@Test
+	public void testSerialization() {
+		final ConcurrentHashVector vector = new ConcurrentHashVector();
+		for (int i = 0; i < 1000; ++i) {
+			vector.set(Integer.toString(i), Integer.toString(i % 7), i / 10.0);
+		}
+
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			new ObjectOutputStream(out).writeObject(vector);
+			final ConcurrentHashVector object = (ConcurrentHashVector) new ObjectInputStream(
+					new ByteArrayInputStream(out.toByteArray())).readObject();
+			Assert.assertEquals(vector, object);
+		} catch (final IOException e) {
+			e.printStackTrace();
+			fail();
+		} catch (final ClassNotFoundException e) {
+			e.printStackTrace();
+			fail();
+		}
+	}
+
+}
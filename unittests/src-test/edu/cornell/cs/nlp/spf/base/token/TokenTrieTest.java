@@ -0,0 +1,51 @@
+package edu.cornell.cs.nlp.spf.base.token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenTrieTest {
+
+	@Test
+	public void test() {
+		final TokenTrie<String> trie = new TokenTrie<>();
+		Assert.assertNull(trie.put(TokenSeq.of("a"), "1"));
+		Assert.assertNull(trie.put(TokenSeq.of("a", "b", "c"), "2"));
+		Assert.assertEquals("1", trie.put(TokenSeq.of("a"), "3"));
+		Assert.assertEquals(2, trie.size());
+		Assert.assertEquals("3", trie.get(TokenSeq.of("a")));
+		Assert.assertNull(trie.get(TokenSeq.of("a", "b")));
+		Assert.assertNull(trie.get(TokenSeq.of("b")));
+		Assert.assertEquals("3", trie.remove(TokenSeq.of("a")));
+		Assert.assertNull(trie.get(TokenSeq.of("a")));
+		Assert.assertEquals("2", trie.get(TokenSeq.of("a", "b", "c")));
+		Assert.assertEquals(1, trie.size());
+	}
+
+	@Test
+	public void test2() {
+		final TokenTrie<String> trie = new TokenTrie<>();
+		trie.put(TokenSeq.of("b"), "b");
+		trie.put(TokenSeq.of("b", "c", "d"), "bcd");
+		trie.put(TokenSeq.of("c"), "c");
+		trie.put(TokenSeq.of("b", "c", "d", "e", "f"), "bcdef");
+		final TokenSeq sentence = TokenSeq.of("a", "b", "c", "d", "e");
+		final List<String> values = new ArrayList<>();
+		final List<Integer> ends = new ArrayList<>();
+		trie.forEachPrefix(sentence, 1, (value, end) -> {
+			values.add(value);
+			ends.add(end);
+		});
+		Assert.assertEquals(2, values.size());
+		Assert.assertEquals("b", values.get(0));
+		Assert.assertEquals("bcd", values.get(1));
+		Assert.assertEquals(Integer.valueOf(2), ends.get(0));
+		Assert.assertEquals(Integer.valueOf(4), ends.get(1));
+		values.clear();
+		trie.forEachPrefix(sentence, 0, (value, end) -> values.add(value));
+		Assert.assertTrue(values.isEmpty());
+	}
+
+}
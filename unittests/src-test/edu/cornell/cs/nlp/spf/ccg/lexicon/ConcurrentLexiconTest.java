@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.ccg.lexicon;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.base.string.StubStringFilter;
+import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+
+public class ConcurrentLexiconTest {
+
+	private static LexicalEntry<LogicalExpression> read(String line) {
+		return LexicalEntry.read(line, new StubStringFilter(),
+				TestServices.CATEGORY_SERVICES, "test");
+	}
+
+	private static Set<LexicalEntry<LogicalExpression>> toSet(
+			Iterator<? extends LexicalEntry<LogicalExpression>> iterator) {
+		final Set<LexicalEntry<LogicalExpression>> set = new HashSet<>();
+		iterator.forEachRemaining(set::add);
+		return set;
+	}
+
+	@Test
+	public void test() {
+		final LexicalEntry<LogicalExpression> e1 = read("boo :- NP : boo:e");
+		final LexicalEntry<LogicalExpression> e2 = read("boo :- N : foo:e");
+		final LexicalEntry<LogicalExpression> e3 = read("boo goo :- NP : goo:e");
+		final ConcurrentLexicon<LogicalExpression> lexicon = new ConcurrentLexicon<>();
+		Assert.assertEquals(0, lexicon.getVersion());
+
+		Assert.assertEquals(new HashSet<>(Arrays.asList(e1, e2)),
+				lexicon.addAll(Arrays.asList(e1, e2, e1)));
+		Assert.assertEquals(1, lexicon.getVersion());
+		final ILexiconImmutable<LogicalExpression> snapshot = lexicon
+				.snapshot();
+
+		Assert.assertTrue(lexicon.add(e1).isEmpty());
+		Assert.assertEquals(1, lexicon.getVersion());
+		Assert.assertEquals(1, lexicon.add(e3).size());
+		Assert.assertEquals(2, lexicon.getVersion());
+		Assert.assertEquals(1, lexicon.getVersion(TokenSeq.of("boo")));
+		Assert.assertEquals(2, lexicon.getVersion(TokenSeq.of("boo", "goo")));
+		Assert.assertEquals(0, lexicon.getVersion(TokenSeq.of("goo")));
+
+		// The snapshot is not affected by the modification.
+		Assert.assertEquals(2, snapshot.size());
+		Assert.assertFalse(snapshot.contains(e3));
+		Assert.assertEquals(3, lexicon.size());
+		Assert.assertTrue(lexicon.contains(e3));
+
+		final TokenSeq sentence = TokenSeq.of("boo", "goo", "moo");
+		Assert.assertEquals(new HashSet<>(Arrays.asList(e1, e2)),
+				toSet(lexicon.getSpans(sentence, 0).get(0)));
+		Assert.assertEquals(new HashSet<>(Arrays.asList(e3)),
+				toSet(lexicon.getSpans(sentence, 0).get(1)));
+		Assert.assertFalse(snapshot.getSpans(sentence, 0).get(1).hasNext());
+
+		Assert.assertTrue(lexicon.retainAll(Arrays.asList(e1, e3)));
+		Assert.assertEquals(3, lexicon.getVersion(TokenSeq.of("boo")));
+		Assert.assertEquals(2, lexicon.getVersion(TokenSeq.of("boo", "goo")));
+		Assert.assertEquals(new HashSet<>(Arrays.asList(e1, e3)),
+				new HashSet<>(lexicon.toCollection()));
+		Assert.assertEquals(2, snapshot.size());
+	}
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.genlex.ccg.template;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoringServices;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.Lexeme;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.LexicalTemplate;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalConstant;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+
+public class TemplateApplicationCacheTest {
+
+	public TemplateApplicationCacheTest() {
+		TestServices.init();
+		FactoringServices.set(new FactoringServices.Builder().build());
+	}
+
+	private static FactoredLexicalEntry factor(String string) {
+		return FactoringServices.factor(LexicalEntry.parse(string,
+				TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN));
+	}
+
+	private static Map<String, String> properties(String origin) {
+		final Map<String, String> properties = new HashMap<String, String>();
+		properties.put(LexicalEntry.ORIGIN_PROPERTY, origin);
+		return properties;
+	}
+
+	@Test
+	public void testApplyAndFactor() {
+		final FactoredLexicalEntry turn = factor(
+				"turn :- N : (lambda $0:e (turn:<e,t> $0))");
+		final FactoredLexicalEntry dir = factor(
+				"turn :- S/NP : (lambda $0:e (lambda $1:e (and:<t*,t> (turn:<e,t> $1) (dir:<e,<e,t>> $1 $0))))");
+		final List<LexicalTemplate> templates = new ArrayList<LexicalTemplate>();
+		templates.add(turn.getTemplate());
+		templates.add(dir.getTemplate());
+
+		// Lexemes that share constants, but differ in their tokens and
+		// properties. The template with a single constant can't be applied
+		// to the last one.
+		final List<LogicalConstant> constants = turn.getLexeme()
+				.getConstants();
+		final List<String> attributes = Collections.emptyList();
+		final List<Lexeme> lexemes = new ArrayList<Lexeme>();
+		lexemes.add(new Lexeme(TokenSeq.of("turn"), constants, attributes,
+				properties("a")));
+		lexemes.add(new Lexeme(TokenSeq.of("turn"), constants, attributes,
+				properties("b")));
+		lexemes.add(new Lexeme(TokenSeq.of("rotate"), constants, attributes,
+				properties("a")));
+		lexemes.add(new Lexeme(TokenSeq.of("turn", "to"),
+				dir.getLexeme().getConstants(), attributes, properties("c")));
+
+		final TemplateApplicationCache cache = new TemplateApplicationCache(
+				100);
+		final TemplateApplicationCache noCache = new TemplateApplicationCache(
+				0);
+		int applied = 0;
+		for (int i = 0; i < 2; ++i) {
+			for (final LexicalTemplate template : templates) {
+				for (final Lexeme lexeme : lexemes) {
+					final FactoredLexicalEntry expected = noCache
+							.applyAndFactor(template, lexeme);
+					final FactoredLexicalEntry actual = cache
+							.applyAndFactor(template, lexeme);
+					if (expected == null) {
+						Assert.assertNull(actual);
+						continue;
+					}
+					++applied;
+					Assert.assertEquals(expected, actual);
+					Assert.assertEquals(expected.getTokens(),
+							actual.getTokens());
+					Assert.assertEquals(expected.getLexeme(),
+							actual.getLexeme());
+					Assert.assertEquals(expected.getTemplate(),
+							actual.getTemplate());
+					// Equality ignores properties.
+					Assert.assertEquals(lexeme.getProperties(),
+							actual.getProperties());
+					Assert.assertEquals(expected.getProperties(),
+							actual.getProperties());
+					Assert.assertEquals(expected.getLexeme().getProperties(),
+							actual.getLexeme().getProperties());
+					Assert.assertEquals(
+							expected.getTemplate().getProperties(),
+							actual.getTemplate().getProperties());
+				}
+			}
+		}
+		Assert.assertTrue(applied > 0);
+		Assert.assertTrue(cache.factoringStats().hitCount() > 0);
+		Assert.assertNull(noCache.factoringStats());
+	}
+
+}
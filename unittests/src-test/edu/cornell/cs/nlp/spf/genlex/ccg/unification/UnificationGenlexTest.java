@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.genlex.ccg.unification;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.ccg.categories.Category;
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Syntax;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoringServices;
+import edu.cornell.cs.nlp.spf.data.singlesentence.SingleSentence;
+import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
+import edu.cornell.cs.nlp.spf.genlex.ccg.unification.split.IUnificationSplitter;
+import edu.cornell.cs.nlp.spf.genlex.ccg.unification.split.SplitBudget;
+import edu.cornell.cs.nlp.spf.genlex.ccg.unification.split.SplittingServices.SplittingPair;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYBinaryParsingRule;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.single.CKYParser;
+import edu.cornell.cs.nlp.spf.parser.ccg.features.basic.LexicalFeatureSet;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.Model;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.application.BackwardApplication;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.application.ForwardApplication;
+import edu.cornell.cs.nlp.spf.parser.filter.StubFilterFactory;
+import edu.cornell.cs.nlp.utils.collections.ISerializableScorer;
+
+public class UnificationGenlexTest {
+
+	private static final String	LEFT1	= "boo :- N/N : (lambda $0:<e,t> (lambda $1:e (and:<t*,t> (boo:<e,t> $1) ($0 $1))))";
+	private static final String	LEFT2	= "boo :- N : (lambda $0:e (boo:<e,t> $0))";
+	private static final String	RIGHT1	= "foo :- N : (lambda $0:e (foo:<e,t> $0))";
+	private static final String	RIGHT2	= "foo :- N\\N : (lambda $0:<e,t> (lambda $1:e (and:<t*,t> ($0 $1) (foo:<e,t> $1))))";
+	private static final String	ROOT	= "boo foo :- N : (lambda $0:e (and:<t*,t> (boo:<e,t> $0) (foo:<e,t> $0)))";
+
+	public UnificationGenlexTest() {
+		TestServices.init();
+		FactoringServices.set(new FactoringServices.Builder().build());
+	}
+
+	private static Set<String> generate(int maxSteps) {
+		// The root entry is the only entry in the lexicon. The second split
+		// improves the score of the parse more than the first.
+		final LexicalEntry<LogicalExpression> root = parse(ROOT);
+		final Map<String, Double> weights = new HashMap<String, Double>();
+		weights.put(key(parse(LEFT1)), 1.0);
+		weights.put(key(parse(RIGHT1)), 1.0);
+		weights.put(key(parse(LEFT2)), 2.0);
+		weights.put(key(parse(RIGHT2)), 2.0);
+		final Model<Sentence, LogicalExpression> model = new Model.Builder<Sentence, LogicalExpression>()
+				.addFeatureSet(
+						new LexicalFeatureSet.Builder<Sentence, LogicalExpression>()
+								.setInitialScorer(
+										(ISerializableScorer<LexicalEntry<LogicalExpression>>) e -> weights
+												.getOrDefault(key(e), 0.0))
+								.build())
+				.build();
+		model.getTheta().set("LEX", "DEFAULT", 1.0);
+		model.addLexEntry(root);
+
+		// Splitter that returns the weaker split first.
+		final Set<SplittingPair> splits = new LinkedHashSet<SplittingPair>();
+		splits.add(new SplittingPair(parse(LEFT1).getCategory(),
+				parse(RIGHT1).getCategory()));
+		splits.add(new SplittingPair(parse(LEFT2).getCategory(),
+				parse(RIGHT2).getCategory()));
+		final IUnificationSplitter splitter = new IUnificationSplitter() {
+
+			@Override
+			public Set<SplittingPair> getSplits(
+					Category<LogicalExpression> category) {
+				return splits;
+			}
+
+			@Override
+			public Set<SplittingPair> getSplits(
+					Category<LogicalExpression> category,
+					SplitBudget budget) {
+				return splits;
+			}
+		};
+
+		final UnificationGenlex<Sentence, SingleSentence> genlex = new UnificationGenlex<Sentence, SingleSentence>(
+				new CKYParser.Builder<Sentence, LogicalExpression>(
+						TestServices.getCategoryServices())
+								.addParseRule(
+										new CKYBinaryParsingRule<LogicalExpression>(
+												new ForwardApplication<LogicalExpression>(
+														TestServices
+																.getCategoryServices())))
+								.addParseRule(
+										new CKYBinaryParsingRule<LogicalExpression>(
+												new BackwardApplication<LogicalExpression>(
+														TestServices
+																.getCategoryServices())))
+								.build(),
+				splitter, false,
+				new StubFilterFactory<SingleSentence, LogicalExpression>(),
+				Syntax.N, "splitting", false, maxSteps, 0);
+
+		final Set<String> generated = new HashSet<String>();
+		for (final LexicalEntry<LogicalExpression> entry : genlex
+				.generate(
+						new SingleSentence(new Sentence("boo foo"),
+								root.getCategory().getSemantics()),
+						model, TestServices.getCategoryServices())
+				.toCollection()) {
+			generated.add(entry.getTokens() + " :- " + entry.getCategory());
+		}
+		return generated;
+	}
+
+	private static String key(LexicalEntry<LogicalExpression> entry) {
+		return entry.getTokens() + " :- " + entry.getCategory().getSyntax();
+	}
+
+	private static LexicalEntry<LogicalExpression> parse(String string) {
+		return LexicalEntry.parse(string, TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN);
+	}
+
+	private static Set<String> toStrings(String... entries) {
+		final Set<String> strings = new HashSet<String>();
+		for (final String string : entries) {
+			final LexicalEntry<LogicalExpression> entry = parse(string);
+			strings.add(entry.getTokens() + " :- " + entry.getCategory());
+		}
+		return strings;
+	}
+
+	@Test
+	public void testExhaustedBudget() {
+		// Only the first split is evaluated, so it's the best found.
+		Assert.assertEquals(toStrings(LEFT1, RIGHT1), generate(1));
+	}
+
+	@Test
+	public void testUnbounded() {
+		Assert.assertEquals(toStrings(LEFT2, RIGHT2), generate(0));
+	}
+
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.genlex.ccg.unification.split;
+
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.ccg.categories.Category;
+import edu.cornell.cs.nlp.spf.genlex.ccg.unification.split.SplittingServices.SplittingPair;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+
+public class SplitterTest {
+
+	public SplitterTest() {
+		TestServices.init();
+	}
+
+	@Test
+	public void testExhaustedBudget() {
+		final Category<LogicalExpression> category = TestServices
+				.getCategoryServices()
+				.read("N : (lambda $0:e (and:<t*,t> (boo:<e,t> $0) (foo:<e,t> $0)))");
+		final Set<SplittingPair> all = new Splitter(
+				TestServices.getCategoryServices()).getSplits(category);
+
+		// The enumeration stops once the budget is exhausted, and returns the
+		// splits enumerated so far.
+		final Splitter splitter = new Splitter(
+				TestServices.getCategoryServices(), 10);
+		final SplitBudget budget = new SplitBudget(1, 0);
+		final Set<SplittingPair> partial = splitter.getSplits(category,
+				budget);
+		Assert.assertTrue(budget.isExhausted());
+		Assert.assertEquals(1, budget.getNumSteps());
+		Assert.assertFalse(partial.isEmpty());
+		Assert.assertTrue(partial.size() < all.size());
+		Assert.assertTrue(all.containsAll(partial));
+
+		// Partial splits are not memoized.
+		Assert.assertEquals(all, splitter.getSplits(category));
+	}
+
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.learn.validation.perceptron;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.ccg.categories.Category;
+import edu.cornell.cs.nlp.spf.ccg.categories.ICategoryServices;
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Syntax;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.ILexiconImmutable;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.Lexicon;
+import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
+import edu.cornell.cs.nlp.spf.data.singlesentence.SingleSentence;
+import edu.cornell.cs.nlp.spf.data.singlesentence.SingleSentenceCollection;
+import edu.cornell.cs.nlp.spf.data.utils.IValidator;
+import edu.cornell.cs.nlp.spf.genlex.ccg.AbstractLexiconGenerator;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYBinaryParsingRule;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.single.CKYParser;
+import edu.cornell.cs.nlp.spf.parser.ccg.features.basic.LexicalFeatureSet;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.IModelImmutable;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.Model;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.application.ForwardApplication;
+import edu.cornell.cs.nlp.utils.collections.ISerializableScorer;
+
+public class ValidationPerceptronTest {
+
+	private static final String[]				LABELS	= { "texas:s",
+			"ohio:s", "alaska:s"								};
+
+	private static final String[]				TOKENS	= { "a", "b", "c" };
+
+	private final SingleSentenceCollection		data;
+
+	private final AtomicInteger					numValidations;
+
+	private final Set<List<Object>>				validated;
+
+	private final IValidator<SingleSentence, LogicalExpression>	validator;
+
+	public ValidationPerceptronTest() {
+		TestServices.init();
+		final List<SingleSentence> samples = new ArrayList<SingleSentence>();
+		for (int i = 0; i < TOKENS.length; ++i) {
+			samples.add(new SingleSentence(new Sentence(TOKENS[i]),
+					TestServices.getCategoryServices().readSemantics(
+							LABELS[i])));
+		}
+		this.data = new SingleSentenceCollection(samples);
+		this.numValidations = new AtomicInteger();
+		this.validated = new HashSet<List<Object>>();
+		this.validator = (dataItem, label) -> {
+			numValidations.incrementAndGet();
+			synchronized (validated) {
+				final List<Object> key = new ArrayList<Object>();
+				key.add(dataItem);
+				key.add(label);
+				validated.add(key);
+			}
+			return dataItem.getLabel().equals(label);
+		};
+	}
+
+	@Test
+	public void testBatch() {
+		final Model<Sentence, LogicalExpression> sequential = train(
+				builder().build());
+		final Model<Sentence, LogicalExpression> batched = train(
+				builder().setBatchSize(TOKENS.length)
+						.setBatchAveraging(false).build());
+		assertSameModel(sequential, batched);
+
+		// All generated entries are added and learned to outscore the initial
+		// ones.
+		for (int i = 0; i < TOKENS.length; ++i) {
+			Assert.assertTrue(batched.getLexicon().contains(correctEntry(i)));
+			Assert.assertTrue(batched.score(correctEntry(i)) > batched
+					.score(initialEntry(i)));
+		}
+	}
+
+	@Test
+	public void testParallelMargin() {
+		final Model<Sentence, LogicalExpression> sequential = train(
+				builder().build());
+		final Model<Sentence, LogicalExpression> parallel = train(
+				builder().setParallelMarginThreshold(1).build());
+		assertSameModel(sequential, parallel);
+	}
+
+	@Test
+	public void testValidationCache() {
+		final Model<Sentence, LogicalExpression> uncached = train(
+				builder().build());
+		final int uncachedValidations = numValidations.getAndSet(0);
+		validated.clear();
+
+		final Model<Sentence, LogicalExpression> cached = train(
+				builder().setValidationCacheSize(TOKENS.length).build());
+		assertSameModel(uncached, cached);
+
+		// Each label is validated once for each sample across all epochs.
+		Assert.assertEquals(validated.size(), numValidations.get());
+		Assert.assertTrue(numValidations.get() < uncachedValidations);
+	}
+
+	private void assertSameModel(Model<Sentence, LogicalExpression> expected,
+			Model<Sentence, LogicalExpression> actual) {
+		Assert.assertEquals(
+				new HashSet<LexicalEntry<LogicalExpression>>(
+						expected.getLexicon().toCollection()),
+				new HashSet<LexicalEntry<LogicalExpression>>(
+						actual.getLexicon().toCollection()));
+		Assert.assertEquals(expected.getTheta().size(),
+				actual.getTheta().size());
+		Assert.assertEquals(0.0, expected.getTheta()
+				.addTimes(-1.0, actual.getTheta()).l1Norm(), 1e-9);
+	}
+
+	private ValidationPerceptron.Builder<Sentence, SingleSentence, LogicalExpression> builder() {
+		return new ValidationPerceptron.Builder<Sentence, SingleSentence, LogicalExpression>(
+				data,
+				new CKYParser.Builder<Sentence, LogicalExpression>(
+						TestServices.getCategoryServices())
+								.addParseRule(
+										new CKYBinaryParsingRule<LogicalExpression>(
+												new ForwardApplication<LogicalExpression>(
+														TestServices
+																.getCategoryServices())))
+								.build(),
+				validator).setEpochs(2).setMaxTrainingIterations(0)
+						.setGenlex(new TestGenlex(),
+								TestServices.getCategoryServices());
+	}
+
+	private LexicalEntry<LogicalExpression> correctEntry(int i) {
+		return LexicalEntry.parse(TOKENS[i] + " :- NP : " + LABELS[i],
+				TestServices.getCategoryServices(), TestGenlex.ORIGIN);
+	}
+
+	private LexicalEntry<LogicalExpression> initialEntry(int i) {
+		return LexicalEntry.parse(TOKENS[i] + " :- NP : utah:s",
+				TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN);
+	}
+
+	private Model<Sentence, LogicalExpression> train(
+			ValidationPerceptron<Sentence, SingleSentence, LogicalExpression> learner) {
+		final Model<Sentence, LogicalExpression> model = new Model.Builder<Sentence, LogicalExpression>()
+				.addFeatureSet(
+						new LexicalFeatureSet.Builder<Sentence, LogicalExpression>()
+								.setInitialScorer(
+										(ISerializableScorer<LexicalEntry<LogicalExpression>>) e -> TestGenlex.ORIGIN
+												.equals(e.getOrigin()) ? 0.0
+														: 1.0)
+								.build())
+				.build();
+		for (int i = 0; i < TOKENS.length; ++i) {
+			model.addLexEntry(initialEntry(i));
+		}
+		learner.train(model);
+		return model;
+	}
+
+	/**
+	 * Generates the correct entry of each sample.
+	 */
+	private static class TestGenlex extends
+			AbstractLexiconGenerator<SingleSentence, LogicalExpression, IModelImmutable<Sentence, LogicalExpression>> {
+
+		private static final String	ORIGIN				= "test";
+		private static final long	serialVersionUID	= -3185346577393373042L;
+
+		public TestGenlex() {
+			super(ORIGIN, false);
+		}
+
+		@Override
+		public ILexiconImmutable<LogicalExpression> generate(
+				SingleSentence dataItem,
+				IModelImmutable<Sentence, LogicalExpression> model,
+				ICategoryServices<LogicalExpression> categoryServices) {
+			final Lexicon<LogicalExpression> lexicon = new Lexicon<LogicalExpression>();
+			lexicon.add(new LexicalEntry<LogicalExpression>(
+					dataItem.getSample().getTokens(),
+					Category.create(Syntax.NP, dataItem.getLabel()), false,
+					entryProperties));
+			return lexicon;
+		}
+
+		@Override
+		public void init(IModelImmutable<Sentence, LogicalExpression> model) {
+			// Nothing to do.
+		}
+
+		@Override
+		public boolean isGenerated(LexicalEntry<LogicalExpression> entry) {
+			return ORIGIN.equals(entry.getOrigin());
+		}
+
+	}
+
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.mr.lambda;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+
+public class LogicalExpressionInternerTest {
+
+	public LogicalExpressionInternerTest() {
+		TestServices.init();
+	}
+
+	@Test
+	public void test() {
+		final LogicalExpressionInterner interner = new LogicalExpressionInterner();
+		final LogicalExpression e1 = LogicalExpression
+				.read("(lambda $0:e (and:<t*,t> (boo:<e,t> $0) (foo:<e,t> $0)))");
+		final LogicalExpression e2 = LogicalExpression
+				.read("(lambda $1:e (and:<t*,t> (foo:<e,t> $1) (boo:<e,t> $1)))");
+		final LogicalExpression c1 = interner.intern(e1);
+		Assert.assertSame(e1, c1);
+		Assert.assertSame(c1, interner.intern(e2));
+		Assert.assertSame(c1, interner.intern(c1));
+	}
+
+	@Test
+	public void test2() {
+		final LogicalExpressionInterner interner = new LogicalExpressionInterner();
+		final LogicalExpression e1 = LogicalExpression.read("(boo:<e,t> $0:e)");
+		Assert.assertSame(e1, interner.intern(e1));
+		Assert.assertEquals(0, e1.internTableId);
+	}
+
+	@Test
+	public void test3() {
+		final LogicalExpressionInterner interner = new LogicalExpressionInterner();
+		final LogicalExpression e1 = interner.intern(
+				LogicalExpression.read("(lambda $0:e (boo:<e,t> $0))"));
+		final LogicalExpression e2 = interner.intern(
+				LogicalExpression.read("(lambda $0:e (foo:<e,t> $0))"));
+		final LogicalExpression e3 = LogicalExpression
+				.read("(lambda $0:e (foo:<e,t> $0))");
+		Assert.assertFalse(e1.equals(e2));
+		Assert.assertTrue(e2.equals(e3));
+		Assert.assertTrue(e3.equals(e2));
+	}
+
+	@Test
+	public void test4() {
+		// Two canonical instances of the same equality class in one table are
+		// still equal.
+		final LogicalExpressionInterner interner = new LogicalExpressionInterner();
+		final LogicalExpression e1 = interner.intern(
+				LogicalExpression.read("(lambda $0:e (boo:<e,t> $0))"));
+		final LogicalExpression e2 = LogicalExpression
+				.read("(lambda $0:e (boo:<e,t> $0))");
+		e2.internTableId = e1.internTableId;
+		Assert.assertNotSame(e1, e2);
+		Assert.assertTrue(e1.equals(e2));
+		Assert.assertTrue(e2.equals(e1));
+	}
+
+}
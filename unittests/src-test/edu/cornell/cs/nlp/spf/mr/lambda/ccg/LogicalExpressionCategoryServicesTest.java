@@ -502,6 +502,40 @@ public class LogicalExpressionCategoryServicesTest {
 
 	}
 
+	@Test
+	public void cache1() {
+		final LogicalExpressionCategoryServices cs = new LogicalExpressionCategoryServices(
+				true, 100);
+		final LogicalExpression f = cs
+				.readSemantics("(lambda $0:e (f:<e,t> $0))");
+		final LogicalExpression g = cs.readSemantics("(lambda $0:e $0)");
+		final LogicalExpression a = cs.readSemantics("boo:e");
+		final LogicalExpression expectedComposition = cs
+				.readSemantics("(lambda $0:e (f:<e,t> $0))");
+		final LogicalExpression expectedApplication = cs
+				.readSemantics("(f:<e,t> boo:e)");
+
+		for (int i = 0; i < 3; ++i) {
+			assertEquals(expectedComposition, cs.compose(f, g, 1));
+			assertEquals(expectedApplication, cs.apply(f, a));
+			// Failed application is cached as well.
+			Assert.assertNull(cs.apply(a, f));
+		}
+
+		// Equal (but not identical) expressions hit the cache.
+		assertEquals(expectedApplication,
+				cs.apply(cs.readSemantics("(lambda $1:e (f:<e,t> $1))"), a));
+
+		assertEquals(2, cs.getApplyCacheStats().missCount());
+		assertEquals(5, cs.getApplyCacheStats().hitCount());
+		assertEquals(1, cs.getComposeCacheStats().missCount());
+		assertEquals(2, cs.getComposeCacheStats().hitCount());
+
+		cs.invalidateCaches();
+		assertEquals(expectedApplication, cs.apply(f, a));
+		assertEquals(3, cs.getApplyCacheStats().missCount());
+	}
+
 	@Test
 	public void compose2() {
 		final LogicalExpression f = TestServices.getCategoryServices()
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.cky;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.Cell;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.chart.CellFactory;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.single.CKYParser;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.steps.CKYLexicalStep;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.steps.CKYParseStep;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.steps.IWeightedCKYStep;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.steps.WeightedCKYLexicalStep;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.steps.WeightedCKYParseStep;
+import edu.cornell.cs.nlp.spf.parser.ccg.features.basic.LexicalFeatureSet;
+import edu.cornell.cs.nlp.spf.parser.ccg.features.basic.RuleUsageFeatureSet;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.IDataItemModel;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.Model;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.UnaryRuleName;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.application.ForwardApplication;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.composition.ForwardComposition;
+import edu.cornell.cs.nlp.utils.collections.ISerializableScorer;
+
+public class LazyKBestIteratorTest {
+
+	@Test
+	public void testCycle() {
+		TestServices.init();
+		final LexicalEntry<LogicalExpression> entry = LexicalEntry.parse(
+				"x :- NP : texas:s", TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN);
+		final Model<Sentence, LogicalExpression> model = new Model.Builder<Sentence, LogicalExpression>()
+				.addFeatureSet(
+						new LexicalFeatureSet.Builder<Sentence, LogicalExpression>()
+								.setInitialScorer(
+										(ISerializableScorer<LexicalEntry<LogicalExpression>>) e -> 0.5)
+								.build())
+				.addFeatureSet(
+						new RuleUsageFeatureSet<Sentence, LogicalExpression>(
+								1.0, false, Collections.<String> emptySet()))
+				.build();
+		model.addLexEntry(entry);
+		model.getTheta().set("RULE", "up", -1.0);
+		model.getTheta().set("RULE", "down", -1.0);
+		final Sentence sentence = new Sentence("x");
+		final IDataItemModel<LogicalExpression> dataItemModel = model
+				.createDataItemModel(sentence);
+
+		// Cell a has a lexical step and a unary step from b, and the only step
+		// of b is a unary step from a.
+		final CellFactory<LogicalExpression> cellFactory = new CellFactory<LogicalExpression>(
+				1);
+		final Cell<LogicalExpression> a = cellFactory
+				.create(new WeightedCKYLexicalStep<LogicalExpression>(
+						new CKYLexicalStep<LogicalExpression>(entry, true, 0,
+								0),
+						dataItemModel));
+		final Cell<LogicalExpression> b = cellFactory
+				.create(new WeightedCKYParseStep<LogicalExpression>(
+						new CKYParseStep<LogicalExpression>(
+								TestServices.getCategoryServices()
+										.read("N : (lambda $0:e (boo:<e,t> $0))"),
+								a, null, true, UnaryRuleName.create("up"), 0,
+								0),
+						dataItemModel));
+		a.addCell(cellFactory
+				.create(new WeightedCKYParseStep<LogicalExpression>(
+						new CKYParseStep<LogicalExpression>(a.getCategory(), b,
+								null, true, UnaryRuleName.create("down"), 0,
+								0),
+						dataItemModel)));
+		Assert.assertEquals(2, a.numSteps());
+
+		// The trees alternate between the cells, each using the previous
+		// tree. The result doesn't depend on the order of the cells.
+		final double[] expectedScores = { 0.5, -0.5, -1.5, -2.5 };
+		for (final List<Cell<LogicalExpression>> rootCells : Arrays
+				.asList(Arrays.asList(a, b), Arrays.asList(b, a))) {
+			final LazyKBestIterator<LogicalExpression> iterator = new LazyKBestIterator<LogicalExpression>(
+					rootCells);
+			CKYTreeDerivation<LogicalExpression> previous = null;
+			for (int i = 0; i < expectedScores.length; ++i) {
+				Assert.assertTrue(iterator.hasNext());
+				final CKYTreeDerivation<LogicalExpression> tree = iterator
+						.next();
+				Assert.assertEquals(expectedScores[i], tree.getScore(), 1e-9);
+				Assert.assertSame(i % 2 == 0 ? a : b, tree.getCell());
+				if (previous == null) {
+					Assert.assertTrue(tree.getChildren().isEmpty());
+				} else {
+					Assert.assertEquals(
+							Collections.singletonList(previous),
+							tree.getChildren());
+				}
+				previous = tree;
+			}
+		}
+	}
+
+	@Test
+	public void testEagerKBest() {
+		TestServices.init();
+		final Map<String, Double> weights = new HashMap<String, Double>();
+		weights.put("a :- NP/NP : (lambda $0:e $0)", 0.3);
+		weights.put("a :- NP/NP : (lambda $0:e (f:<e,e> $0))", 1.1);
+		weights.put("b :- NP/NP : (lambda $0:e $0)", 0.9);
+		weights.put("b :- NP/NP : (lambda $0:e (f:<e,e> $0))", -0.4);
+		weights.put("x :- NP : texas:s", 0.5);
+		weights.put("x :- NP : ohio:s", 0.2);
+
+		final Map<LexicalEntry<LogicalExpression>, Double> entryWeights = new HashMap<LexicalEntry<LogicalExpression>, Double>();
+		for (final Map.Entry<String, Double> weight : weights.entrySet()) {
+			entryWeights.put(LexicalEntry.parse(weight.getKey(),
+					TestServices.getCategoryServices(),
+					LexicalEntry.Origin.FIXED_DOMAIN), weight.getValue());
+		}
+		final Model<Sentence, LogicalExpression> model = new Model.Builder<Sentence, LogicalExpression>()
+				.addFeatureSet(
+						new LexicalFeatureSet.Builder<Sentence, LogicalExpression>()
+								.setInitialScorer(
+										(ISerializableScorer<LexicalEntry<LogicalExpression>>) entryWeights::get)
+								.build())
+				.build();
+		model.addLexEntries(entryWeights.keySet());
+
+		final Sentence sentence = new Sentence("a b x");
+		final CKYParserOutput<LogicalExpression> output = new CKYParser.Builder<Sentence, LogicalExpression>(
+				TestServices.getCategoryServices())
+						.addParseRule(
+								new CKYBinaryParsingRule<LogicalExpression>(
+										new ForwardApplication<LogicalExpression>(
+												TestServices
+														.getCategoryServices())))
+						.addParseRule(
+								new CKYBinaryParsingRule<LogicalExpression>(
+										new ForwardComposition<LogicalExpression>(
+												TestServices
+														.getCategoryServices(),
+												1, false)))
+						.build()
+						.parse(sentence, model.createDataItemModel(sentence));
+
+		// Eagerly enumerate the scores of all trees of all roots.
+		final List<Double> expected = new ArrayList<Double>();
+		for (final CKYDerivation<LogicalExpression> derivation : output
+				.getAllDerivations()) {
+			expected.addAll(treeScores(derivation.getCell()));
+		}
+		Collections.sort(expected, Collections.reverseOrder());
+		// Some roots have several trees with different scores.
+		Assert.assertTrue(expected.size() > output.getAllDerivations().size());
+
+		final List<Double> actual = new ArrayList<Double>();
+		final LazyKBestIterator<LogicalExpression> iterator = output
+				.kBestIterator();
+		while (iterator.hasNext()) {
+			final CKYTreeDerivation<LogicalExpression> tree = iterator.next();
+			Assert.assertEquals(tree.getScore(),
+					model.score(tree.getAverageMaxFeatureVector()), 1e-9);
+			actual.add(tree.getScore());
+		}
+
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i) {
+			Assert.assertEquals(expected.get(i), actual.get(i), 1e-9);
+		}
+	}
+
+	private static List<Double> treeScores(Cell<LogicalExpression> cell) {
+		final List<Double> scores = new ArrayList<Double>();
+		for (final IWeightedCKYStep<LogicalExpression> step : cell
+				.getSteps()) {
+			List<Double> stepScores = Collections
+					.singletonList(step.getStepScore());
+			for (int i = 0; i < step.numChildren(); ++i) {
+				final List<Double> combined = new ArrayList<Double>();
+				for (final Double childScore : treeScores(
+						step.getChildCell(i))) {
+					for (final Double score : stepScores) {
+						combined.add(score + childScore);
+					}
+				}
+				stepScores = combined;
+			}
+			scores.addAll(stepScores);
+		}
+		return scores;
+	}
+
+}
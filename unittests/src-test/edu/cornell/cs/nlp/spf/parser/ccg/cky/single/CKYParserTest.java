@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.cky.single;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYBinaryParsingRule;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.CKYParserOutput;
+import edu.cornell.cs.nlp.spf.parser.ccg.cky.ParseBudget;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.Model;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.application.ForwardApplication;
+
+public class CKYParserTest {
+
+	private final Model<Sentence, LogicalExpression>	model;
+
+	private final Sentence								sentence	= new Sentence(
+			"state state state");
+
+	public CKYParserTest() {
+		TestServices.init();
+		model = new Model.Builder<Sentence, LogicalExpression>().build();
+		// Four cells for each token, which don't combine.
+		for (final String state : new String[] { "texas", "ohio", "utah",
+				"iowa" }) {
+			model.addLexEntry(LexicalEntry.parse(
+					"state :- NP : " + state + ":s",
+					TestServices.getCategoryServices(),
+					LexicalEntry.Origin.FIXED_DOMAIN));
+		}
+	}
+
+	@Test
+	public void testExhaustedBudget() {
+		final CKYParserOutput<LogicalExpression> output = createParser(
+				new ParseBudget(0, 2, 0, false)).parse(sentence,
+						model.createDataItemModel(sentence));
+		Assert.assertTrue(output.isBudgetExhausted());
+		Assert.assertFalse(output.isExact());
+	}
+
+	@Test
+	public void testProgressiveBeam() {
+		// The 12 lexical cells use 75% of the budget, so only a single cell of
+		// each span is combined further. The dropped cells make the output
+		// inexact, although the budget is never exhausted.
+		final CKYParserOutput<LogicalExpression> output = createParser(
+				new ParseBudget(0, 16, 0, true)).parse(sentence,
+						model.createDataItemModel(sentence));
+		Assert.assertFalse(output.isBudgetExhausted());
+		Assert.assertFalse(output.isExact());
+	}
+
+	@Test
+	public void testWithinBudget() {
+		final CKYParserOutput<LogicalExpression> output = createParser(
+				new ParseBudget(0, 16, 0, false)).parse(sentence,
+						model.createDataItemModel(sentence));
+		Assert.assertFalse(output.isBudgetExhausted());
+		Assert.assertTrue(output.isExact());
+	}
+
+	private CKYParser<Sentence, LogicalExpression> createParser(
+			ParseBudget budget) {
+		return new CKYParser.Builder<Sentence, LogicalExpression>(
+				TestServices.getCategoryServices())
+						.addParseRule(
+								new CKYBinaryParsingRule<LogicalExpression>(
+										new ForwardApplication<LogicalExpression>(
+												TestServices
+														.getCategoryServices())))
+						.setMaxNumberOfCellsInSpan(4).setBudget(budget)
+						.build();
+	}
+
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.cky.steps;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.base.hashvector.IHashVector;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+import edu.cornell.cs.nlp.spf.parser.ccg.features.basic.LexicalFeatureSet;
+import edu.cornell.cs.nlp.spf.parser.ccg.features.basic.scorer.UniformScorer;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.IDataItemModel;
+import edu.cornell.cs.nlp.spf.parser.ccg.model.Model;
+
+public class WeightedCKYLexicalStepTest {
+
+	@Test
+	public void testFeaturesSnapshot() {
+		final Model<Sentence, LogicalExpression> model = new Model.Builder<Sentence, LogicalExpression>()
+				.addFeatureSet(
+						new LexicalFeatureSet.Builder<Sentence, LogicalExpression>()
+								.setInitialScorer(
+										new UniformScorer<LexicalEntry<LogicalExpression>>(
+												0.5))
+								.build())
+				.build();
+		model.getTheta().set("LEX", "DEFAULT", 2.0);
+		final LexicalEntry<LogicalExpression> entry = LexicalEntry.parse(
+				"turn :- N : (lambda $0:e (turn:<e,t> $0))",
+				TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN);
+		final IDataItemModel<LogicalExpression> dataItemModel = model
+				.createDataItemModel(new Sentence("turn"));
+
+		final WeightedCKYLexicalStep<LogicalExpression> step = new WeightedCKYLexicalStep<LogicalExpression>(
+				new CKYLexicalStep<LogicalExpression>(entry, true, 0, 0),
+				dataItemModel);
+		Assert.assertEquals(1.0, step.getStepScore(), 0.0);
+
+		// Adding the entry changes the features of new steps, but not the
+		// features the step was scored with.
+		model.addLexEntry(entry);
+		final IHashVector features = step.getStepFeatures();
+		Assert.assertEquals(0.5, features.get("LEX", "DEFAULT"), 0.0);
+		Assert.assertEquals(step.getStepScore(),
+				model.getTheta().dotProduct(features), 0.0);
+		Assert.assertNotEquals(features,
+				new WeightedCKYLexicalStep<LogicalExpression>(
+						new CKYLexicalStep<LogicalExpression>(entry, true, 0,
+								0),
+						dataItemModel).getStepFeatures());
+	}
+
+}
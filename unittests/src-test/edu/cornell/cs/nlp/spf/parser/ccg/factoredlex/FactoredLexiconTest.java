@@ -16,12 +16,18 @@
  *******************************************************************************/
 package edu.cornell.cs.nlp.spf.parser.ccg.factoredlex;
 
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoredLexicon;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.FactoringServices;
 import edu.cornell.cs.nlp.spf.ccg.lexicon.factored.lambda.LexicalTemplate;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
@@ -47,5 +53,86 @@ public class FactoredLexiconTest {
 		System.out.println(t2);
 		Assert.assertEquals(t1, t2);
 	}
+
+	@Test
+	public void testCache() {
+		FactoringServices.set(new FactoringServices.Builder().build());
+		final FactoredLexicon cached = new FactoredLexicon(true);
+		final FactoredLexicon uncached = new FactoredLexicon();
+		final TokenSeq turn = TokenSeq.of("turn");
+		final TokenSeq walk = TokenSeq.of("walk");
+		// The second entry adds a template that applies to the lexeme of the
+		// first, so it must invalidate the cached entries of "turn".
+		final String[] entries = new String[] {
+				"turn :- N : (lambda $0:e (turn:<e,t> $0))",
+				"walk :- S\\NP : (lambda $0:e (move:<e,t> $0))",
+				"turn :- S/NP : (lambda $0:e (lambda $1:e (and:<t*,t> (turn:<e,t> $1) (dir:<e,<e,t>> $1 $0))))",
+				"walk :- S/NP : (lambda $0:e (lambda $1:e (and:<t*,t> (move:<e,t> $1) (dir:<e,<e,t>> $1 $0))))" };
+		for (final String line : entries) {
+			final LexicalEntry<LogicalExpression> entry = LexicalEntry.parse(
+					line, TestServices.getCategoryServices(),
+					LexicalEntry.Origin.FIXED_DOMAIN);
+			cached.add(entry);
+			uncached.add(entry);
+			// Both lexicons must agree after every update, and the cached one
+			// must agree with itself once the entries are cached.
+			for (final TokenSeq tokens : new TokenSeq[] { turn, walk }) {
+				final Set<LexicalEntry<LogicalExpression>> expected = toSet(
+						uncached.get(tokens));
+				Assert.assertEquals(expected, toSet(cached.get(tokens)));
+				Assert.assertEquals(expected, toSet(cached.get(tokens)));
+			}
+		}
+		Assert.assertEquals(3, toSet(cached.get(turn)).size());
+		cached.materialize();
+		Assert.assertEquals(toSet(uncached.get(walk)),
+				toSet(cached.get(walk)));
+	}
+
+	@Test
+	public void testVersions() {
+		FactoringServices.set(new FactoringServices.Builder().build());
+		final FactoredLexicon lexicon = new FactoredLexicon(true);
+		final TokenSeq turn = TokenSeq.of("turn");
+		final TokenSeq walk = TokenSeq.of("walk");
+		Assert.assertEquals(0L, lexicon.getVersion(turn));
+
+		lexicon.add(LexicalEntry.parse(
+				"turn :- N : (lambda $0:e (turn:<e,t> $0))",
+				TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN));
+		final long turnVersion = lexicon.getVersion(turn);
+		Assert.assertTrue(turnVersion > 0L);
+		Assert.assertEquals(0L, lexicon.getVersion(walk));
+		Assert.assertEquals(1, toSet(lexicon.get(turn)).size());
+
+		// A new lexeme with an existing template only modifies its own
+		// tokens, so the cached entries of "turn" stay valid.
+		lexicon.add(LexicalEntry.parse(
+				"walk :- N : (lambda $0:e (move:<e,t> $0))",
+				TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN));
+		Assert.assertEquals(turnVersion, lexicon.getVersion(turn));
+		Assert.assertTrue(lexicon.getVersion(walk) > turnVersion);
+
+		// A new template modifies all tokens with lexemes it applies to.
+		lexicon.add(LexicalEntry.parse(
+				"walk :- S\\NP : (lambda $0:e (move:<e,t> $0))",
+				TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN));
+		Assert.assertTrue(lexicon.getVersion(turn) > turnVersion);
+		Assert.assertEquals(lexicon.getVersion(), Math.max(
+				lexicon.getVersion(turn), lexicon.getVersion(walk)));
+		Assert.assertEquals(2, toSet(lexicon.get(turn)).size());
+	}
+
+	private static Set<LexicalEntry<LogicalExpression>> toSet(
+			Iterator<? extends LexicalEntry<LogicalExpression>> iterator) {
+		final Set<LexicalEntry<LogicalExpression>> set = new HashSet<LexicalEntry<LogicalExpression>>();
+		while (iterator.hasNext()) {
+			set.add(iterator.next());
+		}
+		return set;
+	}
 	
 }
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (C) 2011 - 2015 Yoav Artzi, All rights reserved.
+ * <p>
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ *******************************************************************************/
+package edu.cornell.cs.nlp.spf.parser.ccg.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.cornell.cs.nlp.spf.TestServices;
+import edu.cornell.cs.nlp.spf.base.hashvector.HashVectorFactory;
+import edu.cornell.cs.nlp.spf.base.hashvector.KeyArgs;
+import edu.cornell.cs.nlp.spf.base.token.TokenSeq;
+import edu.cornell.cs.nlp.spf.ccg.lexicon.LexicalEntry;
+import edu.cornell.cs.nlp.spf.data.sentence.Sentence;
+import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
+
+public class ModelBinaryFormatTest {
+
+	@Test
+	public void test() throws IOException, ClassNotFoundException {
+		final Model<Sentence, LogicalExpression> model = new Model.Builder<Sentence, LogicalExpression>()
+				.setConcurrentTheta(true).build();
+		model.addLexEntry(LexicalEntry.parse(
+				"turn :- N : (lambda $0:e (turn:<e,t> $0))",
+				TestServices.getCategoryServices(),
+				LexicalEntry.Origin.FIXED_DOMAIN));
+		model.getTheta().set(new KeyArgs("p1"), 1.0);
+		model.getTheta().set(new KeyArgs("p1", "p2"), -2.0);
+		model.getTheta().set(new KeyArgs("p1", "p2", "p3", "p4", "p5"), 0.5);
+		model.getTheta().set(new KeyArgs("p\u00e9", "p2", "p3"), 3.0);
+
+		final File file = File.createTempFile("model", ".spfm");
+		file.deleteOnExit();
+		Model.write(model, file, true);
+		Assert.assertTrue(ModelBinaryFormat.isBinaryModel(file));
+
+		final Model<Sentence, LogicalExpression> read = Model.readModel(file);
+		Assert.assertEquals(model.getTheta(), read.getTheta());
+		Assert.assertTrue(HashVectorFactory.isConcurrent(read.getTheta()));
+		Assert.assertEquals(new HashSet<>(model.getLexicon().toCollection()),
+				new HashSet<>(read.getLexicon().toCollection()));
+		Assert.assertTrue(
+				read.getLexicon().get(TokenSeq.of("turn")).hasNext());
+
+		// Map the file in tiny chunks, so values and strings cross chunk
+		// boundaries.
+		for (final int chunkSize : new int[] { 3, 7, 64 }) {
+			final Model<Sentence, LogicalExpression> chunked = ModelBinaryFormat
+					.read(file, chunkSize);
+			Assert.assertEquals(model.getTheta(), chunked.getTheta());
+			Assert.assertEquals(
+					new HashSet<>(model.getLexicon().toCollection()),
+					new HashSet<>(chunked.getLexicon().toCollection()));
+		}
+	}
+
+	@Test
+	public void testSerializedModel() throws IOException {
+		final File file = File.createTempFile("model", ".sp");
+		file.deleteOnExit();
+		Model.write(new Model.Builder<Sentence, LogicalExpression>().build(),
+				file);
+		Assert.assertFalse(ModelBinaryFormat.isBinaryModel(file));
+	}
+
+}
@@ -21,9 +21,11 @@ import org.junit.Test;
 
 import edu.cornell.cs.nlp.spf.TestServices;
 import edu.cornell.cs.nlp.spf.ccg.categories.Category;
+import edu.cornell.cs.nlp.spf.ccg.categories.syntax.Syntax;
 import edu.cornell.cs.nlp.spf.mr.lambda.LogicalExpression;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.ParseRuleResult;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.SentenceSpan;
+import edu.cornell.cs.nlp.spf.parser.ccg.rules.SyntaxShape;
 import edu.cornell.cs.nlp.spf.parser.ccg.rules.primitivebinary.composition.ForwardComposition;
 
 public class ForwardCompositionTest {
@@ -65,4 +67,28 @@ public class ForwardCompositionTest {
 				">comp1->N[x]/N[x] : (lambda $0:<e,t> (lambda $1:e (and:<t*,t> ($0 $1) (c_ARGX-of:<e,<e,t>> $1 (a:<id,<<e,t>,e>> na:id (lambda $2:e (and:<t*,t> (manufacture-01:<e,t> $2) (c_ARGX:<e,<e,t>> $2 (a:<id,<<e,t>,e>> na:id (lambda $3:e (and:<t*,t> (c_REL:<e,<e,t>> $3 (a:<id,<<e,t>,e>> na:id (lambda $4:e (and:<t*,t> (name:<e,t> $4) (c_op:<e,<e,t>> $4 KTX:e))))) (railway-line:<e,t> $3))))) (c_ARGX-of:<e,<e,t>> $2 (a:<id,<<e,t>,e>> na:id (lambda $5:e (and:<t*,t> (c_ARGX:<e,<e,t>> $5 (a:<id,<<e,t>,e>> na:id (lambda $6:e (and:<t*,t> (c_REL:<e,<e,t>> $6 (a:<id,<<e,t>,e>> na:id (lambda $7:e (and:<t*,t> (c_op:<e,<e,t>> $7 South++Korea:e) (name:<e,t> $7))))) (country:<e,t> $6))))) (cause-01:<e,t> $5))))))))) (c_ARGX-of:<e,<e,t>> $1 (a:<id,<<e,t>,e>> na:id (lambda $8:e (and:<t*,t> (use-01:<e,t> $8) (c_ARGX:<e,<e,t>> $8 (a:<id,<<e,t>,e>> na:id (lambda $9:e (technology:<e,t> $9)))))))))))",
 				result.toString());
 	}
+
+	@Test
+	public void testShapes() {
+		final Category<LogicalExpression> primary = TestServices
+				.getCategoryServices().read("N[x]/N[x] : (lambda $0:<e,t> $0)");
+		final Category<LogicalExpression> secondary = TestServices
+				.getCategoryServices()
+				.read("N\\N : (lambda $0:<e,t> (lambda $1:e ($0 $1)))");
+		final ForwardComposition<LogicalExpression> rule = new ForwardComposition<LogicalExpression>(
+				TestServices.getCategoryServices(), 1, true);
+		final SyntaxShape primaryShape = SyntaxShape.of(primary.getSyntax());
+		final SyntaxShape secondaryShape = SyntaxShape
+				.of(secondary.getSyntax());
+		Assert.assertTrue(
+				rule.isValidArgumentShapes(primaryShape, secondaryShape));
+		Assert.assertNotNull(rule.apply(primary, secondary,
+				new SentenceSpan(0, 1, 2)));
+		Assert.assertFalse(
+				rule.isValidArgumentShapes(secondaryShape, primaryShape));
+		Assert.assertNull(rule.apply(secondary, primary,
+				new SentenceSpan(0, 1, 2)));
+		Assert.assertFalse(rule.isValidArgumentShapes(primaryShape,
+				SyntaxShape.of(Syntax.N)));
+	}
 }